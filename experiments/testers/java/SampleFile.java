@@ -0,0 +1,159 @@
+//
+// Copyright 2020 Google LLC
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//      http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+
+import java.io.BufferedOutputStream;
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.DoubleBuffer;
+import java.nio.LongBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * Compact binary format of the samples that are read by the Statistical Tester, which is
+ * memory-mapped rather than parsed line by line.
+ *
+ * <p>A sample file starts with a header of 16 bytes: the magic number {@code "DPSAMPLE"} as a long,
+ * followed by the type of the samples as an int and the number of samples as an int. The samples
+ * follow as little-endian longs or doubles. Readers view the mapped samples through a {@link
+ * LongBuffer} or {@link DoubleBuffer} without copying them.
+ */
+public final class SampleFile {
+  /** The suffix of sample files, which replaces the ".txt" suffix of the text files. */
+  public static final String SUFFIX = ".bin";
+
+  private static final long MAGIC = 0x44505341_4D504C45L; // "DPSAMPLE"
+  private static final int HEADER_BYTES = 16;
+  private static final int LONG_SAMPLES = 0;
+  private static final int DOUBLE_SAMPLES = 1;
+  private static final int MAX_SAMPLES = (Integer.MAX_VALUE - HEADER_BYTES) / 8;
+
+  private final boolean longSamples;
+  private final ByteBuffer samples;
+
+  private SampleFile(boolean longSamples, ByteBuffer samples) {
+    this.longSamples = longSamples;
+    this.samples = samples;
+  }
+
+  /** Maps the sample file at {@code path} into memory. */
+  public static SampleFile open(Path path) throws IOException {
+    try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+      MappedByteBuffer mapped = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+      mapped.order(ByteOrder.LITTLE_ENDIAN);
+      if (mapped.limit() < HEADER_BYTES || mapped.getLong(0) != MAGIC) {
+        throw new IOException(path + " is not a sample file.");
+      }
+      int type = mapped.getInt(8);
+      int numberOfSamples = mapped.getInt(12);
+      if ((type != LONG_SAMPLES && type != DOUBLE_SAMPLES)
+          || mapped.limit() != HEADER_BYTES + 8L * numberOfSamples) {
+        throw new IOException(path + " is corrupted.");
+      }
+      mapped.position(HEADER_BYTES);
+      // The mapping remains valid after the channel is closed.
+      return new SampleFile(type == LONG_SAMPLES, mapped.slice().order(ByteOrder.LITTLE_ENDIAN));
+    }
+  }
+
+  /** Returns true if the samples are longs, and false if they are doubles. */
+  public boolean hasLongSamples() {
+    return longSamples;
+  }
+
+  public int getNumberOfSamples() {
+    return samples.limit() / 8;
+  }
+
+  /** Returns a view of the long samples. Only valid if {@link #hasLongSamples()}. */
+  public LongBuffer getLongSamples() {
+    if (!longSamples) {
+      throw new IllegalStateException("The samples are doubles.");
+    }
+    return samples.asLongBuffer();
+  }
+
+  /** Returns a view of the double samples. Only valid if not {@link #hasLongSamples()}. */
+  public DoubleBuffer getDoubleSamples() {
+    if (longSamples) {
+      throw new IllegalStateException("The samples are longs.");
+    }
+    return samples.asDoubleBuffer();
+  }
+
+  /**
+   * Converts a text file with one sample per line into a sample file. The samples are stored as
+   * longs if all of them are integers, and as doubles otherwise, so that no precision is lost.
+   */
+  public static void convert(Path textFile, Path sampleFile) throws IOException {
+    int numberOfSamples = 0;
+    boolean integers = true;
+    try (BufferedReader reader = Files.newBufferedReader(textFile)) {
+      String line;
+      while ((line = reader.readLine()) != null) {
+        numberOfSamples++;
+        integers &= isLong(line);
+      }
+    }
+    // A sample file is mapped into a single buffer, which is limited to 2 GB.
+    if (numberOfSamples > MAX_SAMPLES) {
+      throw new IOException(textFile + " contains more than " + MAX_SAMPLES + " samples.");
+    }
+    ByteBuffer sample = ByteBuffer.allocate(8).order(ByteOrder.LITTLE_ENDIAN);
+    try (BufferedReader reader = Files.newBufferedReader(textFile);
+        OutputStream out = new BufferedOutputStream(Files.newOutputStream(sampleFile))) {
+      ByteBuffer header = ByteBuffer.allocate(HEADER_BYTES).order(ByteOrder.LITTLE_ENDIAN);
+      header.putLong(MAGIC);
+      header.putInt(integers ? LONG_SAMPLES : DOUBLE_SAMPLES);
+      header.putInt(numberOfSamples);
+      out.write(header.array());
+      String line;
+      while ((line = reader.readLine()) != null) {
+        sample.clear();
+        if (integers) {
+          sample.putLong(Long.parseLong(line.trim()));
+        } else {
+          sample.putDouble(Double.parseDouble(line));
+        }
+        out.write(sample.array());
+      }
+    }
+  }
+
+  /** Returns the path of the sample file that corresponds to the text file at {@code textFile}. */
+  public static Path getSampleFilePath(Path textFile) {
+    String fileName = textFile.getFileName().toString();
+    if (fileName.endsWith(".txt")) {
+      fileName = fileName.substring(0, fileName.length() - ".txt".length());
+    }
+    return textFile.resolveSibling(fileName + SUFFIX);
+  }
+
+  private static boolean isLong(String line) {
+    try {
+      Long.parseLong(line.trim());
+      return true;
+    } catch (NumberFormatException e) {
+      return false;
+    }
+  }
+}
@@ -0,0 +1,52 @@
+//
+// Copyright 2020 Google LLC
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//      http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.List;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+/**
+ * Converts the text files of samples in the given directories, e.g., "countsamples", into sample
+ * files (see {@link SampleFile}), which the Statistical Tester reads instead of the text files.
+ */
+public class SampleFileConverter {
+
+  public static void main(String[] args) throws IOException {
+    if (args.length == 0) {
+      System.err.println("Usage: convert_samples <sample_directory>...");
+      System.exit(1);
+    }
+    int converted = 0;
+    for (String directory : args) {
+      List<Path> textFiles;
+      try (Stream<Path> files = Files.walk(Paths.get(directory))) {
+        textFiles =
+            files
+                .filter(file -> file.getFileName().toString().matches("TestCase\\d+[AB]\\.txt"))
+                .collect(Collectors.toList());
+      }
+      for (Path textFile : textFiles) {
+        SampleFile.convert(textFile, SampleFile.getSampleFilePath(textFile));
+        converted++;
+      }
+    }
+    System.out.println("Converted " + converted + " sample files.");
+  }
+}
@@ -0,0 +1,200 @@
+//
+// Copyright 2020 Google LLC
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//      http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+
+import java.io.FileNotFoundException;
+import java.io.PrintWriter;
+import java.sql.Timestamp;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * Runs the scenarios of a Statistical Tester for a range of ratios and records the results in an
+ * output text file. All pairs of a ratio and a scenario are independent, so they run concurrently
+ * on a fixed number of threads, which can be set by the system property
+ * "statistical_tester.parallelism" and defaults to the number of available processors.
+ *
+ * <p>The time of each ratio in the results file is the wall-clock time from the start of its first
+ * scenario to the end of its last one. Since the scenarios of different ratios share the threads,
+ * this is not the time the ratio would take on its own. The outcomes and times of the individual
+ * scenarios are written to a second file with the suffix "_scenarios", which also records the
+ * wall-clock time of the whole run below its timestamp.
+ */
+public class ScenarioRunner {
+
+  private static final int PARALLELISM =
+      Integer.getInteger(
+          "statistical_tester.parallelism", Runtime.getRuntime().availableProcessors());
+
+  /** The parameters of the statistical test of a scenario. */
+  static final class Scenario {
+    final double epsilon;
+    final double deltaTolerance;
+
+    Scenario(double epsilon, double deltaTolerance) {
+      this.epsilon = epsilon;
+      this.deltaTolerance = deltaTolerance;
+    }
+  }
+
+  private static final class ScenarioResult {
+    final int outcome;
+    final long startNanos;
+    final long endNanos;
+
+    ScenarioResult(int outcome, long startNanos, long endNanos) {
+      this.outcome = outcome;
+      this.startNanos = startNanos;
+      this.endNanos = endNanos;
+    }
+
+    double seconds() {
+      return (endNanos - startNanos) / 1e9;
+    }
+  }
+
+  private ScenarioRunner() {}
+
+  /**
+   * Runs scenarios[i] on the samples in homedir + "R" + ratio + "/Scenario" + (i + 1) for every
+   * ratio from ratioMin to ratioMax. An algorithm is considered DP for a ratio only if it passes
+   * all of its scenarios.
+   */
+  static void collectData(
+      String algorithmType,
+      String homedir,
+      Scenario[] scenarios,
+      double delta,
+      int numberOfVotes,
+      int numberOfSamples,
+      int ratioMin,
+      int ratioMax,
+      String fileName) {
+    String testName = "insufficient_noise";
+    String expected = "0";
+    long start = System.nanoTime();
+
+    List<List<Future<ScenarioResult>>> results = new ArrayList<>();
+    ExecutorService executor = Executors.newFixedThreadPool(PARALLELISM);
+    try {
+      for (int ratio = ratioMin; ratio <= ratioMax; ratio++) {
+        List<Future<ScenarioResult>> ratioResults = new ArrayList<>();
+        for (int i = 0; i < scenarios.length; i++) {
+          String subfolder = homedir + "R" + ratio + "/Scenario" + (i + 1) + "/";
+          Scenario scenario = scenarios[i];
+          ratioResults.add(
+              executor.submit(
+                  () -> {
+                    long scenarioStart = System.nanoTime();
+                    int outcome =
+                        StatisticalUtils.getMajorityVote(
+                            subfolder,
+                            numberOfSamples,
+                            scenario.epsilon,
+                            delta,
+                            scenario.deltaTolerance,
+                            numberOfVotes);
+                    return new ScenarioResult(outcome, scenarioStart, System.nanoTime());
+                  }));
+        }
+        results.add(ratioResults);
+      }
+
+      StringBuilder builder = new StringBuilder();
+      StringBuilder scenarioBuilder = new StringBuilder();
+      Timestamp timestamp = new Timestamp(System.currentTimeMillis());
+      builder.append("Results run on: " + timestamp + "\n");
+      builder.append(
+          "test_name,algorithm,expected,actual,ratio,num_datasets,num_samples,time(sec)\n");
+      scenarioBuilder.append("algorithm,ratio,scenario,actual,time(sec)\n");
+      for (int ratio = ratioMin; ratio <= ratioMax; ratio++) {
+        List<ScenarioResult> ratioResults = getAll(results.get(ratio - ratioMin));
+        int allCases = 0;
+        long ratioStart = ratioResults.get(0).startNanos;
+        long ratioEnd = ratioResults.get(0).endNanos;
+        for (int i = 0; i < scenarios.length; i++) {
+          ScenarioResult result = ratioResults.get(i);
+          allCases += result.outcome;
+          // Compared as differences since System.nanoTime() may overflow.
+          if (result.startNanos - ratioStart < 0) {
+            ratioStart = result.startNanos;
+          }
+          if (result.endNanos - ratioEnd > 0) {
+            ratioEnd = result.endNanos;
+          }
+          scenarioBuilder.append(
+              algorithmType + "," + ratio + "," + (i + 1) + "," + result.outcome + ","
+                  + result.seconds() + "\n");
+        }
+        double seconds = (ratioEnd - ratioStart) / 1e9;
+        System.out.println(
+            "Ratio " + ratio + ": The algorithm incorrectly passed " + allCases + " out of "
+                + scenarios.length + " tests.");
+        // The algorithm passes only if it incorrectly passes all scenarios.
+        int outcome = allCases < scenarios.length ? 0 : 1;
+        builder.append(
+            testName + "," + algorithmType + "," + expected + "," + outcome + "," + ratio + ","
+                + scenarios.length + "," + numberOfSamples + "," + seconds + "\n");
+      }
+      scenarioBuilder.insert(
+          0,
+          "Results run on: " + timestamp + "\nTotal wall-clock time(sec): " + secondsSince(start)
+              + "\n");
+
+      write("../results/" + fileName, builder.toString());
+      write("../results/" + getScenariosFileName(fileName), scenarioBuilder.toString());
+    } finally {
+      executor.shutdownNow();
+    }
+  }
+
+  private static List<ScenarioResult> getAll(List<Future<ScenarioResult>> futures) {
+    List<ScenarioResult> results = new ArrayList<>();
+    try {
+      for (Future<ScenarioResult> future : futures) {
+        results.add(future.get());
+      }
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new IllegalStateException("Interrupted while running the scenarios.", e);
+    } catch (ExecutionException e) {
+      throw new IllegalStateException("Failed to run a scenario.", e.getCause());
+    }
+    return results;
+  }
+
+  private static double secondsSince(long startNanos) {
+    return (System.nanoTime() - startNanos) / 1e9;
+  }
+
+  private static String getScenariosFileName(String fileName) {
+    int extension = fileName.lastIndexOf('.');
+    return extension < 0
+        ? fileName + "_scenarios"
+        : fileName.substring(0, extension) + "_scenarios" + fileName.substring(extension);
+  }
+
+  private static void write(String path, String contents) {
+    try (PrintWriter pw = new PrintWriter(path)) {
+      pw.write(contents);
+    } catch (FileNotFoundException e) {
+      e.printStackTrace();
+    }
+  }
+}
@@ -16,36 +16,86 @@
 import static com.google.common.truth.Truth.assertThat;
 import static java.nio.charset.StandardCharsets.UTF_8;
 
+import com.google.privacy.differentialprivacy.testing.SampleHistogram;
 import com.google.privacy.differentialprivacy.testing.StatisticalTestsUtil;
 import java.io.*;
 import java.lang.*;
+import java.nio.DoubleBuffer;
+import java.nio.LongBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
 import java.util.*;
 import java.sql.Timestamp;
 import java.text.SimpleDateFormat;
 import java.util.Date;
 
 public class StatisticalUtils {
-// Reads in samples of Count algorithms with insufficient noise.
-	protected static Long[] getData(String filepath) {
+// Histograms of recently read sample files, which are small compared to the samples. The
+// least recently used histograms are evicted.
+	private static final int MAX_CACHED_HISTOGRAMS = 256;
+	private static final Map<String, SampleHistogram> histogramCache =
+		Collections.synchronizedMap(
+			new LinkedHashMap<String, SampleHistogram>(16, 0.75f, /* accessOrder= */ true) {
+				@Override
+				protected boolean removeEldestEntry(Map.Entry<String, SampleHistogram> eldest) {
+					return size() > MAX_CACHED_HISTOGRAMS;
+				}
+			});
 
-	  File file = new File(filepath);
-	  int counter = 0;
-	  ArrayList<Long> sample = new ArrayList<Long>();
+// Reads in samples of Count algorithms with insufficient noise. If the text file was converted
+// by SampleFileConverter, the samples are read from the memory-mapped sample file instead.
+	protected static SampleHistogram getHistogram(String filepath) {
+		SampleHistogram histogram = histogramCache.get(filepath);
+		if (histogram == null) {
+			Path sampleFile = SampleFile.getSampleFilePath(Paths.get(filepath));
+			histogram = Files.exists(sampleFile) ? readSampleFile(sampleFile) : readTextFile(filepath);
+			// Files that could not be read are not cached.
+			if (histogram.getNumberOfSamples() > 0) {
+				histogramCache.put(filepath, histogram);
+			}
+		}
+		return histogram;
+	}
+
+// Counts the samples of a sample file, which are truncated to ints like those of text files.
+	private static SampleHistogram readSampleFile(Path path) {
+		SampleHistogram histogram = new SampleHistogram();
+		try {
+			SampleFile sampleFile = SampleFile.open(path);
+			if (sampleFile.hasLongSamples()) {
+				LongBuffer samples = sampleFile.getLongSamples();
+				while (samples.hasRemaining()) {
+					histogram.add((long) (int) (double) samples.get());
+				}
+			} else {
+				DoubleBuffer samples = sampleFile.getDoubleSamples();
+				while (samples.hasRemaining()) {
+					histogram.add((long) (int) samples.get());
+				}
+			}
+		} catch (IOException e) {
+			e.printStackTrace();
+		}
+		return histogram;
+	}
+
+// The samples are counted while the file is streamed, so memory only grows with the number of
+// distinct samples.
+	private static SampleHistogram readTextFile(String filepath) {
+
+	  SampleHistogram histogram = new SampleHistogram();
 
-	  try (BufferedReader br = new BufferedReader(new FileReader(file))) {
+	  try (BufferedReader br = new BufferedReader(new FileReader(new File(filepath)))) {
 	    String line;
 	    while ((line = br.readLine()) != null) {
-	    	counter++;
 				int i = Double.valueOf(line).intValue();
-	      Long dpcount = Long.valueOf(i);
-	      sample.add(dpcount);
+	      histogram.add((long) i);
 	    }
 	  } catch (IOException e) {
 	      e.printStackTrace();
 	  }
-	    Long sample_array[] = new Long[counter];
-	    sample_array = sample.toArray(sample_array);
-	    return sample_array;
+	    return histogram;
 	}
 
 // Runs the Statistical Tester on a given pair of differentially protected samples.
@@ -58,10 +108,10 @@ public class StatisticalUtils {
 	  double delta,
 	  double l2Tolerance) {
 
-		Long[] samplesA = getData(fileA);
-		Long[] samplesB = getData(fileB);
+		SampleHistogram histogramA = getHistogram(fileA);
+		SampleHistogram histogramB = getHistogram(fileB);
 
-	  return StatisticalTestsUtil.verifyApproximateDp(samplesA, samplesB, epsilon,
+	  return StatisticalTestsUtil.verifyApproximateDp(histogramA, histogramB, epsilon,
 	  	delta, l2Tolerance);
 	}
 
@@ -85,7 +135,7 @@ public class StatisticalUtils {
   		}
 		}
 
-		System.out.println("The algorithm passed "+Integer.toString(numPassed)
+		System.out.println(subfolder+": The algorithm passed "+Integer.toString(numPassed)
 			+" out of "+Integer.toString(numberOfVotes)+" test runs.");
 
 		long majorityVote = Math.round(numberOfVotes*0.5);
@@ -0,0 +1,176 @@
+//
+// Copyright 2020 Google LLC
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//      http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+//
+
+package com.google.privacy.differentialprivacy.benchmarks;
+
+import com.google.privacy.differentialprivacy.BoundedMean;
+import com.google.privacy.differentialprivacy.BoundedSum;
+import com.google.privacy.differentialprivacy.Count;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Measures the throughput of the hot paths of the aggregations, i.e., adding entries and merging
+ * serialized summaries. Aggregators are rebuilt for every iteration so that none of them
+ * accumulates unbounded state across the whole run.
+ *
+ * <p>The per-partition benchmarks compare building a new aggregator for every partition, either
+ * from a builder or from shared validated parameters, with resetting a single one. Run them with
+ * {@code -prof gc} to compare the allocation rates.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Fork(3)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 5)
+public class AggregationBenchmark {
+  private static final double EPSILON = Math.log(3);
+  private static final double LOWER = -10.0;
+  private static final double UPPER = 10.0;
+
+  private Count count;
+  private BoundedSum boundedSum;
+  private BoundedSum autoBoundsSum;
+  private BoundedMean boundedMean;
+  private BoundedMean reusedBoundedMean;
+  private BoundedMean.Params boundedMeanParams;
+
+  private byte[] countSummary;
+  private byte[] boundedSumSummary;
+  private byte[] boundedMeanSummary;
+
+  private double entry;
+
+  @Setup(Level.Iteration)
+  public void setUp() {
+    count = newCount();
+    boundedSum = newBoundedSum();
+    autoBoundsSum = BoundedSum.builder().epsilon(EPSILON).maxPartitionsContributed(1).build();
+    boundedMean = newBoundedMean();
+    reusedBoundedMean = newBoundedMean();
+    boundedMeanParams = newBoundedMeanBuilder().buildParams();
+
+    Count otherCount = newCount();
+    otherCount.incrementBy(100);
+    countSummary = otherCount.getSerializableSummary();
+
+    BoundedSum otherBoundedSum = newBoundedSum();
+    otherBoundedSum.addEntry(5.0);
+    boundedSumSummary = otherBoundedSum.getSerializableSummary();
+
+    BoundedMean otherBoundedMean = newBoundedMean();
+    otherBoundedMean.addEntry(5.0);
+    boundedMeanSummary = otherBoundedMean.getSerializableSummary();
+  }
+
+  @Benchmark
+  public void countIncrement() {
+    count.increment();
+  }
+
+  @Benchmark
+  public void boundedSumAddEntry() {
+    // Cycle through values inside and outside of the bounds to exercise clamping.
+    entry = entry > 2.0 * UPPER ? 2.0 * LOWER : entry + 1.0;
+    boundedSum.addEntry(entry);
+  }
+
+  @Benchmark
+  public void boundedSumAutoBoundsAddEntry() {
+    // Spans several bins of the automatically determined bounds.
+    entry = entry > 1000.0 ? -1000.0 : entry + 1.0;
+    autoBoundsSum.addEntry(entry);
+  }
+
+  @Benchmark
+  public void boundedMeanAddEntry() {
+    entry = entry > 2.0 * UPPER ? 2.0 * LOWER : entry + 1.0;
+    boundedMean.addEntry(entry);
+  }
+
+  @Benchmark
+  public void countMergeWith() {
+    count.mergeWith(countSummary);
+  }
+
+  @Benchmark
+  public void boundedSumMergeWith() {
+    boundedSum.mergeWith(boundedSumSummary);
+  }
+
+  @Benchmark
+  public void boundedMeanMergeWith() {
+    boundedMean.mergeWith(boundedMeanSummary);
+  }
+
+  @Benchmark
+  public double boundedMeanPerPartitionNew() {
+    BoundedMean partitionMean = newBoundedMean();
+    partitionMean.addEntry(5.0);
+    return partitionMean.computeResult();
+  }
+
+  @Benchmark
+  public double boundedMeanPerPartitionNewInstance() {
+    BoundedMean partitionMean = boundedMeanParams.newInstance();
+    partitionMean.addEntry(5.0);
+    return partitionMean.computeResult();
+  }
+
+  @Benchmark
+  public double boundedMeanPerPartitionReset() {
+    reusedBoundedMean.reset();
+    reusedBoundedMean.addEntry(5.0);
+    return reusedBoundedMean.computeResult();
+  }
+
+  private static Count newCount() {
+    return Count.builder().epsilon(EPSILON).maxPartitionsContributed(1).build();
+  }
+
+  private static BoundedSum newBoundedSum() {
+    return BoundedSum.builder()
+        .epsilon(EPSILON)
+        .maxPartitionsContributed(1)
+        .lower(LOWER)
+        .upper(UPPER)
+        .build();
+  }
+
+  private static BoundedMean newBoundedMean() {
+    return newBoundedMeanBuilder().build();
+  }
+
+  private static BoundedMean.Params.Builder newBoundedMeanBuilder() {
+    return BoundedMean.builder()
+        .epsilon(EPSILON)
+        .maxPartitionsContributed(1)
+        .maxContributionsPerPartition(1)
+        .lower(LOWER)
+        .upper(UPPER);
+  }
+}
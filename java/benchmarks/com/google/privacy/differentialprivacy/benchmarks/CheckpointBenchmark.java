@@ -0,0 +1,133 @@
+//
+// Copyright 2020 Google LLC
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//      http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+//
+
+package com.google.privacy.differentialprivacy.benchmarks;
+
+import com.google.privacy.differentialprivacy.AggregationCheckpoint;
+import com.google.privacy.differentialprivacy.BoundedSum;
+import com.google.privacy.differentialprivacy.Count;
+import com.google.privacy.differentialprivacy.LaplaceNoise;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Measures how many checkpoints of {@link AggregationCheckpoint} can be written and restored per
+ * second, depending on the number of checkpointed aggregations.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Fork(3)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 5)
+public class CheckpointBenchmark {
+  private static final double EPSILON = Math.log(3);
+  private static final double LOWER = -10.0;
+  private static final double UPPER = 10.0;
+  // Shared by all aggregations so that restoring doesn't measure the setup of secure randomness.
+  private static final LaplaceNoise NOISE = new LaplaceNoise();
+
+  @Param({"1000", "10000", "100000"})
+  public int numAggregations;
+
+  private Path directory;
+  private Path countsCheckpoint;
+  private Path boundedSumsCheckpoint;
+  private Path writtenCheckpoint;
+  private List<Count> counts;
+  private List<BoundedSum> boundedSums;
+
+  @Setup(Level.Trial)
+  public void setUp() throws IOException {
+    counts = new ArrayList<>(numAggregations);
+    boundedSums = new ArrayList<>(numAggregations);
+    for (int i = 0; i < numAggregations; i++) {
+      Count count = newCount();
+      count.incrementBy(i);
+      counts.add(count);
+      BoundedSum boundedSum = newBoundedSum();
+      boundedSum.addEntry(i % 20 - 10.0);
+      boundedSums.add(boundedSum);
+    }
+
+    directory = Files.createTempDirectory("checkpoint_benchmark");
+    countsCheckpoint = directory.resolve("counts");
+    boundedSumsCheckpoint = directory.resolve("bounded_sums");
+    writtenCheckpoint = directory.resolve("written");
+    AggregationCheckpoint.writeCounts(countsCheckpoint, counts);
+    AggregationCheckpoint.writeBoundedSums(boundedSumsCheckpoint, boundedSums);
+  }
+
+  @TearDown(Level.Trial)
+  public void tearDown() throws IOException {
+    Files.deleteIfExists(countsCheckpoint);
+    Files.deleteIfExists(boundedSumsCheckpoint);
+    Files.deleteIfExists(writtenCheckpoint);
+    Files.delete(directory);
+  }
+
+  @Benchmark
+  public void writeCounts() throws IOException {
+    AggregationCheckpoint.writeCounts(writtenCheckpoint, counts);
+  }
+
+  @Benchmark
+  public List<Count> restoreCounts() throws IOException {
+    return AggregationCheckpoint.restoreCounts(countsCheckpoint, CheckpointBenchmark::newCount);
+  }
+
+  @Benchmark
+  public void writeBoundedSums() throws IOException {
+    AggregationCheckpoint.writeBoundedSums(writtenCheckpoint, boundedSums);
+  }
+
+  @Benchmark
+  public List<BoundedSum> restoreBoundedSums() throws IOException {
+    return AggregationCheckpoint.restoreBoundedSums(
+        boundedSumsCheckpoint, CheckpointBenchmark::newBoundedSum);
+  }
+
+  private static Count newCount() {
+    return Count.builder().noise(NOISE).epsilon(EPSILON).maxPartitionsContributed(1).build();
+  }
+
+  private static BoundedSum newBoundedSum() {
+    return BoundedSum.builder()
+        .noise(NOISE)
+        .epsilon(EPSILON)
+        .maxPartitionsContributed(1)
+        .lower(LOWER)
+        .upper(UPPER)
+        .build();
+  }
+}
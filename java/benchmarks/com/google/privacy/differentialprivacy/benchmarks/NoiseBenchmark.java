@@ -0,0 +1,87 @@
+//
+// Copyright 2020 Google LLC
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//      http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+//
+
+package com.google.privacy.differentialprivacy.benchmarks;
+
+import com.google.privacy.differentialprivacy.GaussianNoise;
+import com.google.privacy.differentialprivacy.LaplaceNoise;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Measures the throughput of {@link LaplaceNoise#addNoise} and {@link GaussianNoise#addNoise}, and
+ * of the calibration of {@link GaussianNoise#computeQuantile}.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Fork(3)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 5)
+public class NoiseBenchmark {
+  private static final int L0_SENSITIVITY = 1;
+  private static final double EPSILON = Math.log(3);
+  private static final double DELTA = 1e-5;
+  // More distinct epsilons than the quantile cache of GaussianNoise holds, so that every call
+  // calibrates the noise.
+  private static final int NUM_CALIBRATION_EPSILONS = 64;
+
+  private final LaplaceNoise laplaceNoise = new LaplaceNoise();
+  private final GaussianNoise gaussianNoise = new GaussianNoise();
+  private final double[] calibrationEpsilons = new double[NUM_CALIBRATION_EPSILONS];
+  private int calibrationIndex = 0;
+
+  public NoiseBenchmark() {
+    for (int i = 0; i < NUM_CALIBRATION_EPSILONS; i++) {
+      calibrationEpsilons[i] = EPSILON * (1.0 + i / (double) NUM_CALIBRATION_EPSILONS);
+    }
+  }
+
+  @Benchmark
+  public double laplaceAddNoiseDouble() {
+    return laplaceNoise.addNoise(42.0, L0_SENSITIVITY, 1.0, EPSILON, null);
+  }
+
+  @Benchmark
+  public long laplaceAddNoiseLong() {
+    return laplaceNoise.addNoise(42L, L0_SENSITIVITY, 1L, EPSILON, null);
+  }
+
+  @Benchmark
+  public double gaussianAddNoiseDouble() {
+    return gaussianNoise.addNoise(42.0, L0_SENSITIVITY, 1.0, EPSILON, DELTA);
+  }
+
+  @Benchmark
+  public long gaussianAddNoiseLong() {
+    return gaussianNoise.addNoise(42L, L0_SENSITIVITY, 1L, EPSILON, DELTA);
+  }
+
+  @Benchmark
+  public double gaussianComputeQuantile() {
+    calibrationIndex = (calibrationIndex + 1) % NUM_CALIBRATION_EPSILONS;
+    return gaussianNoise.computeQuantile(
+        0.05, 42.0, L0_SENSITIVITY, 1.0, calibrationEpsilons[calibrationIndex], DELTA);
+  }
+}
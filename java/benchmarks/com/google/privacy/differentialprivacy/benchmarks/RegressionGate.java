@@ -0,0 +1,288 @@
+//
+// Copyright 2020 Google LLC
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//      http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+//
+
+package com.google.privacy.differentialprivacy.benchmarks;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+
+import com.google.gson.GsonBuilder;
+import com.google.gson.JsonArray;
+import com.google.gson.JsonElement;
+import com.google.gson.JsonObject;
+import com.google.gson.JsonParser;
+import java.io.IOException;
+import java.io.Reader;
+import java.io.Writer;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.TreeMap;
+import org.openjdk.jmh.results.RunResult;
+import org.openjdk.jmh.results.format.ResultFormatType;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+/**
+ * Runs the JMH benchmarks of this package and compares their throughput against a checked-in
+ * baseline. The process exits with a non-zero status if any benchmark regresses, which makes it
+ * usable as a Bazel test target.
+ *
+ * <p>A benchmark regresses if its throughput drops by more than the allowed percentage and the
+ * 99.9% confidence intervals that JMH reports as score errors of the baseline and of the current
+ * run do not overlap, i.e., if the current score plus its error is below the baseline score minus
+ * its error. This keeps run-to-run noise from failing or passing the gate. Absolute throughput
+ * depends on the hardware, so the baseline must be recorded on the machine that runs the gate.
+ *
+ * <p>The baseline is a JMH result file in JSON format. Results are matched by the fully qualified
+ * benchmark name and the values of its JMH parameters, so every combination of {@code @Param}
+ * values is gated separately. A benchmark without a baseline fails the gate as well, since it
+ * would otherwise never be gated. To update the baseline, e.g., after adding a benchmark, run the
+ * gate and copy the results file it writes (see {@code --output}) over the baseline. The gate
+ * removes the machine-specific path and arguments of the JVM from the results file.
+ *
+ * <p>Supported flags:
+ *
+ * <ul>
+ *   <li>{@code --baseline=<path>}: the baseline JSON file. Required.
+ *   <li>{@code --max_regression_percent=<double>}: the largest tolerated drop in throughput
+ *       relative to the baseline. Defaults to 10.
+ *   <li>{@code --include=<regex>}: restricts the benchmarks that are run. Defaults to all
+ *       benchmarks of this package.
+ *   <li>{@code --allow_missing_baseline=<boolean>}: whether benchmarks without a baseline are only
+ *       reported instead of failing the gate, e.g., to record the results of a new benchmark.
+ *       Defaults to false.
+ *   <li>{@code --output=<path>}: where to write the JMH results of this run. Defaults to {@code
+ *       jmh_results.json} in the undeclared outputs directory of the Bazel test, if available.
+ * </ul>
+ */
+public final class RegressionGate {
+  private static final String DEFAULT_INCLUDE =
+      "com\\.google\\.privacy\\.differentialprivacy\\.benchmarks\\..*";
+  private static final double DEFAULT_MAX_REGRESSION_PERCENT = 10.0;
+  private static final String RESULTS_FILE_NAME = "jmh_results.json";
+  // Fields of a JMH result that only describe the machine that recorded it.
+  private static final String[] MACHINE_SPECIFIC_FIELDS = {"jvm", "jvmArgs"};
+
+  private RegressionGate() {}
+
+  public static void main(String[] args) throws IOException, RunnerException {
+    Map<String, String> flags = parseFlags(args);
+    if (!flags.containsKey("baseline")) {
+      System.err.println("The --baseline flag must be set.");
+      System.exit(2);
+    }
+    double maxRegressionPercent =
+        flags.containsKey("max_regression_percent")
+            ? Double.parseDouble(flags.get("max_regression_percent"))
+            : DEFAULT_MAX_REGRESSION_PERCENT;
+
+    boolean allowMissingBaseline =
+        Boolean.parseBoolean(flags.getOrDefault("allow_missing_baseline", "false"));
+
+    Map<String, Score> baseline = readBaseline(flags.get("baseline"));
+
+    String outputPath = getOutputPath(flags);
+    Options options =
+        new OptionsBuilder()
+            .include(flags.getOrDefault("include", DEFAULT_INCLUDE))
+            .resultFormat(ResultFormatType.JSON)
+            .result(outputPath)
+            .build();
+    Collection<RunResult> results = new Runner(options).run();
+    removeMachineSpecificFields(outputPath);
+
+    int regressions = 0;
+    int missingBaselines = 0;
+    System.out.printf("%n%-64s %24s %24s %10s%n", "Benchmark", "Baseline", "Current", "Change");
+    for (RunResult result : results) {
+      Map<String, String> params = new TreeMap<>();
+      for (String key : result.getParams().getParamsKeys()) {
+        params.put(key, result.getParams().getParam(key));
+      }
+      String benchmark = getKey(result.getParams().getBenchmark(), params);
+      String displayName = getDisplayName(benchmark);
+      Score current =
+          new Score(
+              result.getPrimaryResult().getScore(),
+              result.getPrimaryResult().getScoreError(),
+              result.getPrimaryResult().getScoreUnit());
+      Score expected = baseline.get(benchmark);
+
+      if (expected == null) {
+        System.out.printf(
+            "%-64s %24s %24s %10s%n",
+            displayName,
+            "n/a",
+            current,
+            allowMissingBaseline ? "(new)" : "(no baseline)");
+        missingBaselines++;
+        continue;
+      }
+      if (!expected.unit.equals(current.unit)) {
+        System.out.printf(
+            "%-64s %24s %24s %10s%n",
+            displayName, expected.unit, current.unit, "(unit mismatch)");
+        regressions++;
+        continue;
+      }
+
+      double changePercent = (current.value - expected.value) / expected.value * 100.0;
+      // A drop within the errors of the two runs may be noise.
+      boolean regressed =
+          changePercent < -maxRegressionPercent
+              && current.getUpperBound() < expected.getLowerBound();
+      if (regressed) {
+        regressions++;
+      }
+      System.out.printf(
+          "%-64s %24s %24s %+9.1f%%%s%n",
+          displayName,
+          expected,
+          current,
+          changePercent,
+          regressed ? "  REGRESSION" : "");
+    }
+
+    if (regressions > 0) {
+      System.out.printf(
+          "%n%d benchmark(s) regressed by more than %.1f%% against the baseline.%n",
+          regressions, maxRegressionPercent);
+      System.exit(1);
+    }
+    if (missingBaselines > 0 && !allowMissingBaseline) {
+      System.out.printf(
+          "%n%d benchmark(s) have no baseline. Update the baseline to gate them.%n",
+          missingBaselines);
+      System.exit(1);
+    }
+    System.out.printf(
+        "%nNo benchmark regressed by more than %.1f%% against the baseline.%n",
+        maxRegressionPercent);
+  }
+
+  private static Map<String, String> parseFlags(String[] args) {
+    Map<String, String> flags = new HashMap<>();
+    for (String arg : args) {
+      if (!arg.startsWith("--") || !arg.contains("=")) {
+        throw new IllegalArgumentException("Flags must be of the form --name=value: " + arg);
+      }
+      int separator = arg.indexOf('=');
+      flags.put(arg.substring(2, separator), arg.substring(separator + 1));
+    }
+    return flags;
+  }
+
+  private static String getOutputPath(Map<String, String> flags) {
+    if (flags.containsKey("output")) {
+      return flags.get("output");
+    }
+    String outputsDir = System.getenv("TEST_UNDECLARED_OUTPUTS_DIR");
+    return outputsDir == null
+        ? RESULTS_FILE_NAME
+        : Paths.get(outputsDir, RESULTS_FILE_NAME).toString();
+  }
+
+  /**
+   * Returns the key of a benchmark result, i.e., the fully qualified benchmark name followed by
+   * the values of its JMH parameters, if any, to tell apart the results of parameterized
+   * benchmarks.
+   */
+  private static String getKey(String benchmark, Map<String, String> params) {
+    return params.isEmpty() ? benchmark : benchmark + params;
+  }
+
+  /** Strips the package from a benchmark key to keep the diff table readable. */
+  private static String getDisplayName(String benchmark) {
+    int paramsStart = benchmark.indexOf('{');
+    int methodSeparator =
+        benchmark.lastIndexOf('.', paramsStart < 0 ? benchmark.length() : paramsStart);
+    return benchmark.substring(benchmark.lastIndexOf('.', methodSeparator - 1) + 1);
+  }
+
+  /** Reads the primary scores of a JMH result file in JSON format, keyed by {@link #getKey}. */
+  private static Map<String, Score> readBaseline(String path) throws IOException {
+    Map<String, Score> baseline = new TreeMap<>();
+    try (Reader reader = Files.newBufferedReader(Paths.get(path), UTF_8)) {
+      for (JsonElement element : JsonParser.parseReader(reader).getAsJsonArray()) {
+        JsonObject result = element.getAsJsonObject();
+        JsonObject primaryMetric = result.getAsJsonObject("primaryMetric");
+        Map<String, String> params = new TreeMap<>();
+        if (result.has("params")) {
+          for (Map.Entry<String, JsonElement> param : result.getAsJsonObject("params").entrySet()) {
+            params.put(param.getKey(), param.getValue().getAsString());
+          }
+        }
+        baseline.put(
+            getKey(result.get("benchmark").getAsString(), params),
+            new Score(
+                primaryMetric.get("score").getAsDouble(),
+                primaryMetric.get("scoreError").getAsDouble(),
+                primaryMetric.get("scoreUnit").getAsString()));
+      }
+    }
+    return baseline;
+  }
+
+  /** Removes the fields that only describe this machine from a JMH result file in JSON format. */
+  private static void removeMachineSpecificFields(String path) throws IOException {
+    JsonArray results;
+    try (Reader reader = Files.newBufferedReader(Paths.get(path), UTF_8)) {
+      results = JsonParser.parseReader(reader).getAsJsonArray();
+    }
+    for (JsonElement result : results) {
+      for (String field : MACHINE_SPECIFIC_FIELDS) {
+        result.getAsJsonObject().remove(field);
+      }
+    }
+    try (Writer writer = Files.newBufferedWriter(Paths.get(path), UTF_8)) {
+      new GsonBuilder()
+          .setPrettyPrinting()
+          .serializeSpecialFloatingPointValues()
+          .create()
+          .toJson(results, writer);
+    }
+  }
+
+  private static final class Score {
+    final double value;
+    final double error;
+    final String unit;
+
+    Score(double value, double error, String unit) {
+      this.value = value;
+      // JMH reports no error for a single measurement.
+      this.error = Double.isNaN(error) ? 0.0 : error;
+      this.unit = unit;
+    }
+
+    double getLowerBound() {
+      return value - error;
+    }
+
+    double getUpperBound() {
+      return value + error;
+    }
+
+    @Override
+    public String toString() {
+      return String.format("%.1f +- %.1f", value, error);
+    }
+  }
+}
@@ -13,6 +13,10 @@ def dp_java_deps():
             "com.google.errorprone:error_prone_annotations:2.3.4",
             "com.google.guava:guava:28.2-jre",
             "com.google.protobuf:protobuf-java:3.11.4",
+            # artifacts for benchmarking only
+            "com.google.code.gson:gson:2.8.6",
+            "org.openjdk.jmh:jmh-core:1.23",
+            "org.openjdk.jmh:jmh-generator-annprocess:1.23",
             # artifacts for testing only
             "org.mockito:mockito-core:3.3.0",
             "junit:junit:4.13",
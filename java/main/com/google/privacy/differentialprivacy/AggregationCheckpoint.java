@@ -0,0 +1,245 @@
+//
+// Copyright 2020 Google LLC
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//      http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+//
+
+package com.google.privacy.differentialprivacy;
+
+import com.google.common.base.Preconditions;
+import com.google.protobuf.CodedOutputStream;
+import com.google.protobuf.MessageLite;
+import java.io.IOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileChannel.MapMode;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.BiConsumer;
+import java.util.function.Function;
+import java.util.function.Supplier;
+
+/**
+ * Checkpoints the raw partial state of {@link Count}, {@link BoundedSum} and {@link BoundedMean}
+ * aggregations to a memory-mapped file, and restores it into fresh aggregations, e.g., after a
+ * long-running job restarts.
+ *
+ * <p>Unlike {@link Count#getSerializableSummary()} and its counterparts, writing a checkpoint does
+ * not consume the aggregations: they can continue to receive entries and compute their results.
+ * The checkpoint stores the same summaries, so restoring an aggregation merges the summary into a
+ * fresh aggregation from a supplier, which verifies that the parameters are equal.
+ *
+ * <p>A checkpoint contains raw, non-private data and must be protected accordingly. Moreover, a
+ * restored aggregation and the aggregation it was checkpointed from must not both release a
+ * result, since that would spend the privacy budget twice. Checkpoints are only meant to be
+ * restored after the process that wrote them has stopped without releasing results.
+ *
+ * <p>The file starts with a header of a magic number, the format version, the type of the
+ * aggregations and their number, followed by the length and the bytes of every summary. It is
+ * written to a temporary file in the same directory that replaces the previous checkpoint once it
+ * is complete, so a crash while writing leaves the previous checkpoint intact.
+ */
+public final class AggregationCheckpoint {
+  private static final int MAGIC = 0x44504350;
+  private static final int VERSION = 1;
+  private static final int HEADER_BYTES = 4 * Integer.BYTES;
+  // A single mapping of a file can span at most Integer.MAX_VALUE bytes.
+  private static final long MAX_MAPPING_BYTES = Integer.MAX_VALUE;
+
+  private static final int COUNT = 1;
+  private static final int BOUNDED_SUM = 2;
+  private static final int BOUNDED_MEAN = 3;
+
+  private AggregationCheckpoint() {}
+
+  /**
+   * Writes the raw state of {@code counts} to {@code file}, replacing any previous checkpoint.
+   *
+   * @throws IllegalStateException if a count has already been calculated or serialized.
+   */
+  public static void writeCounts(Path file, List<Count> counts) throws IOException {
+    write(file, COUNT, counts, Count::buildSummary);
+  }
+
+  /**
+   * Restores the counts of the checkpoint in {@code file}, in the order in which they were
+   * written. Every count is created by {@code newCount} with the same parameters as the
+   * checkpointed count.
+   *
+   * @throws IllegalArgumentException if the checkpoint doesn't contain counts or if the parameters
+   *     of a created count differ from those of the checkpointed count.
+   */
+  public static List<Count> restoreCounts(Path file, Supplier<Count> newCount)
+      throws IOException {
+    return restore(file, COUNT, newCount, Count::mergeWith);
+  }
+
+  /**
+   * Writes the raw state of {@code sums} to {@code file}, replacing any previous checkpoint.
+   *
+   * @throws IllegalStateException if a sum has already been calculated or serialized.
+   */
+  public static void writeBoundedSums(Path file, List<BoundedSum> sums) throws IOException {
+    write(file, BOUNDED_SUM, sums, BoundedSum::buildSummary);
+  }
+
+  /**
+   * Restores the sums of the checkpoint in {@code file}, in the order in which they were written.
+   * Every sum is created by {@code newSum} with the same parameters as the checkpointed sum.
+   *
+   * @throws IllegalArgumentException if the checkpoint doesn't contain sums or if the parameters
+   *     of a created sum differ from those of the checkpointed sum.
+   */
+  public static List<BoundedSum> restoreBoundedSums(Path file, Supplier<BoundedSum> newSum)
+      throws IOException {
+    return restore(file, BOUNDED_SUM, newSum, BoundedSum::mergeWith);
+  }
+
+  /**
+   * Writes the raw state of {@code means} to {@code file}, replacing any previous checkpoint.
+   *
+   * @throws IllegalStateException if a mean has already been calculated or serialized.
+   */
+  public static void writeBoundedMeans(Path file, List<BoundedMean> means) throws IOException {
+    write(file, BOUNDED_MEAN, means, BoundedMean::buildSummary);
+  }
+
+  /**
+   * Restores the means of the checkpoint in {@code file}, in the order in which they were
+   * written. Every mean is created by {@code newMean} with the same parameters as the
+   * checkpointed mean.
+   *
+   * @throws IllegalArgumentException if the checkpoint doesn't contain means or if the parameters
+   *     of a created mean differ from those of the checkpointed mean.
+   */
+  public static List<BoundedMean> restoreBoundedMeans(Path file, Supplier<BoundedMean> newMean)
+      throws IOException {
+    return restore(file, BOUNDED_MEAN, newMean, BoundedMean::mergeWith);
+  }
+
+  private static <T> void write(
+      Path file, int type, List<T> aggregations, Function<T, ? extends MessageLite> toSummary)
+      throws IOException {
+    // All summaries are taken before writing so that no aggregation is half written if one of
+    // them cannot be checkpointed.
+    List<MessageLite> summaries = new ArrayList<>(aggregations.size());
+    long totalBytes = HEADER_BYTES;
+    for (T aggregation : aggregations) {
+      MessageLite summary = toSummary.apply(aggregation);
+      summaries.add(summary);
+      totalBytes += Integer.BYTES + summary.getSerializedSize();
+    }
+
+    Path tempFile = file.resolveSibling(file.getFileName() + ".tmp");
+    try (FileChannel channel =
+        FileChannel.open(
+            tempFile,
+            StandardOpenOption.CREATE,
+            StandardOpenOption.TRUNCATE_EXISTING,
+            StandardOpenOption.READ,
+            StandardOpenOption.WRITE)) {
+      MappedByteBuffer buffer = map(channel, MapMode.READ_WRITE, 0, totalBytes);
+      long bufferStart = 0;
+      buffer.putInt(MAGIC).putInt(VERSION).putInt(type).putInt(summaries.size());
+      for (MessageLite summary : summaries) {
+        int size = summary.getSerializedSize();
+        if (buffer.remaining() < Integer.BYTES + size) {
+          // Continues in a new mapping that starts at the current position in the file.
+          buffer.force();
+          bufferStart += buffer.position();
+          buffer = map(channel, MapMode.READ_WRITE, bufferStart, totalBytes - bufferStart);
+        }
+        buffer.putInt(size);
+        CodedOutputStream output = CodedOutputStream.newInstance(buffer);
+        summary.writeTo(output);
+        output.flush();
+      }
+      buffer.force();
+    }
+    Files.move(
+        tempFile, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+  }
+
+  private static <T> List<T> restore(
+      Path file, int type, Supplier<T> newAggregation, BiConsumer<T, byte[]> mergeWith)
+      throws IOException {
+    try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+      long fileBytes = channel.size();
+      if (fileBytes < HEADER_BYTES) {
+        throw new IOException("Checkpoint " + file + " is truncated.");
+      }
+      MappedByteBuffer buffer = map(channel, MapMode.READ_ONLY, 0, fileBytes);
+      long bufferStart = 0;
+      if (buffer.getInt() != MAGIC || buffer.getInt() != VERSION) {
+        throw new IOException(file + " is not a checkpoint of this version.");
+      }
+      int actualType = buffer.getInt();
+      Preconditions.checkArgument(
+          actualType == type,
+          "The checkpoint contains a different type of aggregations. Expected type = %s, actual"
+              + " type = %s",
+          type,
+          actualType);
+      int numAggregations = buffer.getInt();
+      // Each record takes at least the bytes of its length.
+      if (numAggregations < 0 || numAggregations > (fileBytes - HEADER_BYTES) / Integer.BYTES) {
+        throw new IOException(
+            "Checkpoint " + file + " has an invalid number of records: " + numAggregations);
+      }
+      List<T> aggregations = new ArrayList<>(numAggregations);
+      for (int i = 0; i < numAggregations; i++) {
+        if (buffer.remaining() < Integer.BYTES) {
+          bufferStart += buffer.position();
+          buffer = map(channel, MapMode.READ_ONLY, bufferStart, fileBytes - bufferStart);
+          checkRemaining(buffer, Integer.BYTES, file);
+        }
+        int size = buffer.getInt();
+        if (size < 0 || size > fileBytes - (bufferStart + buffer.position())) {
+          throw new IOException(
+              "Checkpoint " + file + " is truncated or has an invalid record length: " + size);
+        }
+        byte[] summary = new byte[size];
+        if (buffer.remaining() < summary.length) {
+          bufferStart += buffer.position();
+          buffer = map(channel, MapMode.READ_ONLY, bufferStart, fileBytes - bufferStart);
+          checkRemaining(buffer, summary.length, file);
+        }
+        buffer.get(summary);
+        T aggregation = newAggregation.get();
+        mergeWith.accept(aggregation, summary);
+        aggregations.add(aggregation);
+      }
+      if (bufferStart + buffer.position() != fileBytes) {
+        throw new IOException(
+            "Checkpoint " + file + " has unexpected bytes after the last record.");
+      }
+      return aggregations;
+    }
+  }
+
+  private static void checkRemaining(MappedByteBuffer buffer, int bytes, Path file)
+      throws IOException {
+    if (buffer.remaining() < bytes) {
+      throw new IOException("Checkpoint " + file + " is truncated.");
+    }
+  }
+
+  private static MappedByteBuffer map(FileChannel channel, MapMode mode, long start, long bytes)
+      throws IOException {
+    return channel.map(mode, start, Math.min(bytes, MAX_MAPPING_BYTES));
+  }
+}
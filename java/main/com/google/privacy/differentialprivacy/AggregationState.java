@@ -23,7 +23,12 @@ public enum AggregationState {
   /** Object has been serialized. */
   SERIALIZED("Object has been already serialized."),
   /** computeResult() was called. */
-  RESULT_RETURNED("DP result was already computed and returned.");
+  RESULT_RETURNED("DP result was already computed and returned."),
+  /**
+   * A snapshot of the raw state was taken. The object can still be amended, merged and serialized,
+   * but computeResult() can no longer be called.
+   */
+  SNAPSHOTTED("A snapshot of the object's raw state was already taken.");
   private final String errorMessage;
 
   AggregationState(String errorMessage) {
@@ -33,4 +38,9 @@ public enum AggregationState {
   public String getErrorMessage() {
     return errorMessage;
   }
+
+  /** Returns whether the raw state of the aggregation can still be amended or serialized. */
+  boolean isLive() {
+    return this == DEFAULT || this == SNAPSHOTTED;
+  }
 }
@@ -0,0 +1,693 @@
+//
+// Copyright 2020 Google LLC
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//      http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+//
+
+package com.google.privacy.differentialprivacy;
+
+import static java.lang.Math.abs;
+import static java.lang.Math.max;
+import static java.lang.Math.min;
+
+import com.google.auto.value.AutoValue;
+import com.google.auto.value.extension.memoized.Memoized;
+import com.google.common.base.Preconditions;
+import com.google.common.primitives.Longs;
+import com.google.differentialprivacy.Data.ValueType;
+import com.google.differentialprivacy.SummaryOuterClass.ApproxBoundsSummary;
+import com.google.protobuf.InvalidProtocolBufferException;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.List;
+import javax.annotation.Nullable;
+
+/**
+ * Calculates differentially private approximate lower and upper bounds of a collection of values.
+ * The bounds can be used to clamp the values of other aggregations, such as {@link BoundedSum} and
+ * {@link BoundedMean}, which determine their bounds with this class if none are specified.
+ *
+ * <p>The entries are counted in two logarithmic histograms, one for non-negative and one for
+ * negative entries. Bin i of the non-negative histogram counts the entries in (scale * base^(i-1),
+ * scale * base^i], except for bin 0, which counts the entries in [0, scale]. The negative
+ * histogram mirrors the non-negative one. The bins are noised and the approximate upper bound is
+ * the largest boundary of the largest bin whose noised count exceeds a threshold. Similarly, the
+ * approximate lower bound is the smallest boundary of the smallest bin whose noised count exceeds
+ * the threshold. The threshold is chosen such that, with the specified success probability, none
+ * of the bins that are empty exceeds it.
+ *
+ * <p>For example, if the entries {0.5, 3, 3, 6, 7} are added with base 2 and scale 1, the bins
+ * [0, 1], (2, 4] and (4, 8] have counts 1, 2 and 2. For a threshold of 1.5, the approximate bounds
+ * are 2 and 8.
+ *
+ * <p>By default, the base is 2 and the scale is the smallest positive normal double, so that the
+ * histograms cover the entire range of finite doubles.
+ *
+ * <p>Supports contributions from a single privacy unit to multiple partitions as well as multiple
+ * contributions from a single privacy unit to a given partition.
+ *
+ * <p>The user can provide a {@link Noise} instance which will be used to generate the noise. If no
+ * instance is specified, {@link LaplaceNoise} is applied.
+ *
+ * <p>Note: this class is not thread-safe.
+ *
+ * <p>For general details and key definitions, see <a href=
+ * "https://github.com/google/differential-privacy/blob/main/differential_privacy.md#key-definitions">
+ * this</a> introduction to Differential Privacy.
+ */
+public class ApproxBounds {
+  private static final long SIGNIFICAND_MASK = (1L << 52) - 1;
+
+  private final Params params;
+  // Counts of the entries in the non-negative and negative logarithmic bins.
+  private final long[] posBins;
+  private final long[] negBins;
+  // Magnitude of the larger-magnitude boundary of each bin, i.e., scale * base^i.
+  private final double[] binBoundaries;
+  private final double logScale;
+  private final double logBase;
+  // Exponent of the scale if the base is 2 and the scale is a normal power of 2, which allows to
+  // determine the bins from the binary representation of the entries. Otherwise null.
+  @Nullable private final Integer scaleExponent;
+
+  private AggregationState state = AggregationState.DEFAULT;
+
+  private ApproxBounds(Params params) {
+    this.params = params;
+    binBoundaries = params.binBoundaries();
+    posBins = new long[binBoundaries.length];
+    negBins = new long[binBoundaries.length];
+    logScale = Math.log(params.scale());
+    logBase = Math.log(params.base());
+    scaleExponent =
+        params.base() == 2.0 && isNormalPowerOfTwo(params.scale())
+            ? Math.getExponent(params.scale())
+            : null;
+  }
+
+  public static Params.Builder builder() {
+    return Params.Builder.newBuilder();
+  }
+
+  /** Adds the input value to the histograms. */
+  public void addEntry(double e) {
+    addEntry(e, null, null);
+  }
+
+  /**
+   * Adds the input value to the histograms and, if {@code posSums} and {@code negSums} are
+   * specified, its partial sum in its own bin to {@code negSums} if the value is negative and to
+   * {@code posSums} otherwise. The arrays must have {@link #getNumBins()} elements.
+   *
+   * <p>The partial sum of a value in a bin is the part of the value that lies in the bin. For
+   * example, for value 7 and the bins [0, 1], (1, 2], (2, 4] and (4, 8], the partial sums are 1, 1,
+   * 2 and 3. The partial sums in the bins below the bin of the value always equal the widths of
+   * these bins. They are therefore not stored per entry but derived from the bin counts by {@link
+   * #getCumulativePartialSums}, which keeps the cost of adding an entry constant. Later, {@link
+   * #computeFromPartialSums} can compute the sum of the values clamped to any bounds that are bin
+   * boundaries. For bounds [0, 4], the clamped value is 1 + 1 + 2 = 4.
+   */
+  void addEntry(double e, @Nullable double[] posSums, @Nullable double[] negSums) {
+    Preconditions.checkState(
+        state == AggregationState.DEFAULT,
+        "Approximate bounds cannot be amended. Reason: %s",
+        state.getErrorMessage());
+
+    // NaN is ignored because it does not belong to any bin.
+    if (Double.isNaN(e)) {
+      return;
+    }
+
+    int index = mostSignificantBit(e);
+    if (e >= 0) {
+      posBins[index]++;
+      if (posSums != null) {
+        posSums[index] += getPartialSumInBin(index, e);
+      }
+    } else {
+      negBins[index]++;
+      if (negSums != null) {
+        negSums[index] -= getPartialSumInBin(index, -e);
+      }
+    }
+    params.metrics().increment(DpMetrics.Counter.ENTRIES_ADDED, 1);
+  }
+
+  /** Adds the input values to the histograms. */
+  public void addEntries(Collection<Double> e) {
+    e.forEach(this::addEntry);
+  }
+
+  /**
+   * Computes and returns differentially private approximate bounds of the entries added via {@link
+   * #addEntry} and {@link #addEntries}. The method can be called only once for a given collection
+   * of elements. All subsequent calls will throw an exception.
+   *
+   * <p>The returned bounds are always bin boundaries, i.e., 0 or a power of the base times the
+   * scale, or the negation thereof.
+   *
+   * @throws IllegalStateException if no bin exceeds the threshold, which typically means that too
+   *     few entries were added. In this case, run over a larger dataset or decrease the success
+   *     probability.
+   */
+  public Result computeResult() {
+    Preconditions.checkState(
+        state == AggregationState.DEFAULT,
+        "Approximate bounds cannot be computed. Reason: %s",
+        state.getErrorMessage());
+
+    state = AggregationState.RESULT_RETURNED;
+    long startNanos = params.metrics().startLatency();
+    long[] noisedPosBins = addNoise(posBins);
+    long[] noisedNegBins = addNoise(negBins);
+    double threshold = getThreshold();
+
+    Double lower = null;
+    for (int i = negBins.length - 1; i >= 0 && lower == null; i--) {
+      if (noisedNegBins[i] >= threshold) {
+        lower = -getRightBinBoundary(i);
+      }
+    }
+    for (int i = 0; i < posBins.length && lower == null; i++) {
+      if (noisedPosBins[i] >= threshold) {
+        lower = getLeftBinBoundary(i);
+      }
+    }
+
+    Double upper = null;
+    for (int i = posBins.length - 1; i >= 0 && upper == null; i--) {
+      if (noisedPosBins[i] >= threshold) {
+        upper = getRightBinBoundary(i);
+      }
+    }
+    for (int i = 0; i < negBins.length && upper == null; i++) {
+      if (noisedNegBins[i] >= threshold) {
+        upper = -getLeftBinBoundary(i);
+      }
+    }
+    params.metrics().recordLatency(DpMetrics.Histogram.COMPUTE_RESULT_LATENCY_NANOS, startNanos);
+
+    if (lower == null || upper == null) {
+      throw new IllegalStateException(
+          "Bin count threshold was too large to find approximate bounds. Either run over a larger"
+              + " dataset or decrease successProbability and try again.");
+    }
+    return Result.create(lower, upper);
+  }
+
+  /**
+   * Returns {@code bounds} clamped to the largest bin boundary whose magnitude is at most {@code
+   * maxMagnitude}, e.g., to keep the sensitivity of a sum with these bounds finite. The returned
+   * bounds are bin boundaries, and the lower bound stays smaller than the upper bound: if both
+   * bounds are clamped to the same boundary, the one closer to 0 is moved to the other boundary of
+   * its bin. This is post-processing of the bounds and doesn't consume privacy budget.
+   */
+  Result capMagnitude(Result bounds, double maxMagnitude) {
+    int index = 0;
+    while (index + 1 < posBins.length && getRightBinBoundary(index + 1) <= maxMagnitude) {
+      index++;
+    }
+    double cap = getRightBinBoundary(index);
+    double lower = min(max(bounds.lower(), -cap), cap);
+    double upper = min(max(bounds.upper(), -cap), cap);
+    if (lower == upper) {
+      if (upper > 0) {
+        lower = getLeftBinBoundary(index);
+      } else {
+        upper = -getLeftBinBoundary(index);
+      }
+    }
+    return lower == bounds.lower() && upper == bounds.upper()
+        ? bounds
+        : Result.create(lower, upper);
+  }
+
+  /**
+   * Returns a serializable version of the current state of {@link ApproxBounds}. After calling this
+   * method, this instance of ApproxBounds will be unusable, since the result can only be output
+   * once.
+   *
+   * <p>Note that the parameters of the aggregation are not part of the summary. It is the
+   * responsibility of the caller to only merge summaries of instances with equal parameters.
+   */
+  public byte[] getSerializableSummary() {
+    Preconditions.checkState(
+        state == AggregationState.DEFAULT,
+        "Approximate bounds cannot be serialized. Reason: %s",
+        state.getErrorMessage());
+
+    byte[] summary = buildSummary().toByteArray();
+
+    // Record that this object is no longer suitable for producing differentially private bounds,
+    // since serialization exposes the object's raw state.
+    state = AggregationState.SERIALIZED;
+    params.metrics().increment(DpMetrics.Counter.SERIALIZED_BYTES, summary.length);
+    return summary;
+  }
+
+  /** Returns the summary of {@link #getSerializableSummary()} without changing the state. */
+  ApproxBoundsSummary buildSummary() {
+    Preconditions.checkState(
+        state == AggregationState.DEFAULT,
+        "Approximate bounds cannot be checkpointed. Reason: %s",
+        state.getErrorMessage());
+    return ApproxBoundsSummary.newBuilder()
+        .addAllPosBinCount(Longs.asList(posBins))
+        .addAllNegBinCount(Longs.asList(negBins))
+        .build();
+  }
+
+  /**
+   * Merges this instance with the output of {@link #getSerializableSummary()} from a different
+   * {@link ApproxBounds} and stores the merged result in this instance.
+   *
+   * @throws IllegalArgumentException if the passed summary is invalid or has a different number of
+   *     bins.
+   * @throws IllegalStateException if the bounds have already been calculated or serialized.
+   */
+  public void mergeWith(byte[] otherApproxBoundsSummary) {
+    Preconditions.checkState(
+        state == AggregationState.DEFAULT,
+        "Approximate bounds cannot be merged. Reason: %s",
+        state.getErrorMessage());
+
+    long startNanos = params.metrics().startLatency();
+    ApproxBoundsSummary otherSummaryParsed;
+    try {
+      otherSummaryParsed = ApproxBoundsSummary.parseFrom(otherApproxBoundsSummary);
+    } catch (InvalidProtocolBufferException pbe) {
+      throw new IllegalArgumentException(pbe);
+    }
+
+    Preconditions.checkArgument(
+        otherSummaryParsed.getPosBinCountCount() == posBins.length
+            && otherSummaryParsed.getNegBinCountCount() == negBins.length,
+        "Failed to merge: unequal number of bins. numBins1 = %s, numBins2 = %s",
+        posBins.length,
+        otherSummaryParsed.getPosBinCountCount());
+    for (int i = 0; i < posBins.length; i++) {
+      posBins[i] += otherSummaryParsed.getPosBinCount(i);
+      negBins[i] += otherSummaryParsed.getNegBinCount(i);
+    }
+    params.metrics().increment(DpMetrics.Counter.MERGES, 1);
+    params.metrics().recordLatency(DpMetrics.Histogram.MERGE_LATENCY_NANOS, startNanos);
+  }
+
+  /**
+   * Discards the histograms of this instance and makes it usable for a new aggregation with the
+   * same parameters, e.g., of the next partition. The bounds of each aggregation can still be
+   * computed only once.
+   */
+  public void reset() {
+    Arrays.fill(posBins, 0);
+    Arrays.fill(negBins, 0);
+    state = AggregationState.DEFAULT;
+  }
+
+  /** Returns the number of bins of each of the two histograms. */
+  int getNumBins() {
+    return posBins.length;
+  }
+
+  /**
+   * Returns the index of the bin of the magnitude of {@code value}, i.e., the smallest i such that
+   * |value| <= scale * base^i. Infinities are mapped to the bin of {@link Double#MAX_VALUE}.
+   */
+  int mostSignificantBit(double value) {
+    if (value == 0) {
+      return 0;
+    }
+
+    double magnitude = min(abs(value), Double.MAX_VALUE);
+    int index = (int) max(0, min(getExponent(magnitude), posBins.length - 1));
+
+    // Floating point errors of the logarithms may place values that are close to a bin boundary
+    // in a neighbouring bin.
+    if (magnitude <= getLeftBinBoundary(index)) {
+      return max(0, index - 1);
+    }
+    if (magnitude > getRightBinBoundary(index) && index < posBins.length - 1) {
+      return index + 1;
+    }
+    return index;
+  }
+
+  /**
+   * Returns the partial sums of all entries per bin, given the partial sums of the entries in
+   * their own bins that were added via {@link #addEntry(double, double[], double[])}. In contrast
+   * to the latter, each bin also contains the widths of the bin for all entries in higher bins.
+   * This is the layout of the partial sums in the summaries of the C++ library. Set {@code
+   * negative} to true for the partial sums of the negative entries.
+   */
+  double[] getCumulativePartialSums(double[] sums, boolean negative) {
+    long[] bins = negative ? negBins : posBins;
+    double sign = negative ? -1.0 : 1.0;
+    double[] cumulativeSums = new double[sums.length];
+    long numEntriesInHigherBins = 0;
+    for (int i = sums.length - 1; i >= 0; i--) {
+      cumulativeSums[i] = sums[i] + sign * getBinWidth(i) * numEntriesInHigherBins;
+      numEntriesInHigherBins += bins[i];
+    }
+    return cumulativeSums;
+  }
+
+  /**
+   * Adds the cumulative partial sums of another instance (see {@link #getCumulativePartialSums})
+   * to {@code sums}, which stores the partial sums of the entries in their own bins. {@code
+   * otherBins} are the bin counts of the other instance, which must be merged into this instance
+   * as well.
+   */
+  void mergePartialSums(
+      double[] sums, List<ValueType> otherCumulativeSums, List<Long> otherBins, boolean negative) {
+    double sign = negative ? -1.0 : 1.0;
+    long numEntriesInHigherBins = 0;
+    for (int i = sums.length - 1; i >= 0; i--) {
+      sums[i] +=
+          otherCumulativeSums.get(i).getFloatValue()
+              - sign * getBinWidth(i) * numEntriesInHigherBins;
+      numEntriesInHigherBins += otherBins.get(i);
+    }
+  }
+
+  /**
+   * Computes the sum of {@code count} values clamped to [{@code lower}, {@code upper}] from their
+   * partial sums, which were added via {@link #addEntry(double, double[], double[])}. The bounds
+   * must be bin boundaries, e.g., the result of {@link #computeResult()}.
+   */
+  double computeFromPartialSums(
+      double[] inBinPosSums, double[] inBinNegSums, double lower, double upper, long count) {
+    double[] posSums = getCumulativePartialSums(inBinPosSums, /* negative= */ false);
+    double[] negSums = getCumulativePartialSums(inBinNegSums, /* negative= */ true);
+    int lowerMsb = mostSignificantBit(lower);
+    int upperMsb = mostSignificantBit(upper);
+
+    double sum = 0.0;
+    if (lower <= 0 && 0 <= upper) {
+      // Values were clamped to upper from above and to lower from below, so only the partial sums
+      // between 0 and the bounds are added.
+      if (lower < 0) {
+        for (int i = 0; i <= lowerMsb; i++) {
+          sum += negSums[i];
+        }
+      }
+      if (upper > 0) {
+        for (int i = 0; i <= upperMsb; i++) {
+          sum += posSums[i];
+        }
+      }
+    } else if (upper < 0) {
+      // Each value contributes at most upper. Any smaller contribution is stored in the partial
+      // sums between upper and lower.
+      sum += count * upper;
+      for (int i = upperMsb + 1; i <= lowerMsb; i++) {
+        sum += negSums[i];
+      }
+    } else {
+      // 0 < lower <= upper. Each value contributes at least lower. Any larger contribution is
+      // stored in the partial sums between lower and upper.
+      sum += count * lower;
+      for (int i = lowerMsb + 1; i <= upperMsb; i++) {
+        sum += posSums[i];
+      }
+    }
+    return sum;
+  }
+
+  /**
+   * Returns the raw number of entries outside of [{@code lower}, {@code upper}]. The bounds are
+   * rounded to the larger-magnitude boundary of their bin, and entries in the bins of the bounds
+   * are not counted as outside.
+   */
+  long countOutside(double lower, double upper) {
+    int lowerMsb = mostSignificantBit(lower);
+    int upperMsb = mostSignificantBit(upper);
+    long numOutside = 0;
+
+    // Entries below lower.
+    int negFrom = lower < 0 ? lowerMsb + 1 : 0;
+    int posTo = lower > 0 ? lowerMsb + 1 : 0;
+    for (int i = negFrom; i < negBins.length; i++) {
+      numOutside += negBins[i];
+    }
+    for (int i = 0; i < posTo; i++) {
+      numOutside += posBins[i];
+    }
+
+    // Entries above upper.
+    int posFrom = upper > 0 ? upperMsb + 1 : 0;
+    int negTo = upper < 0 ? upperMsb : -1;
+    for (int i = posFrom; i < posBins.length; i++) {
+      numOutside += posBins[i];
+    }
+    for (int i = 0; i <= negTo; i++) {
+      numOutside += negBins[i];
+    }
+    return numOutside;
+  }
+
+  private long[] addNoise(long[] bins) {
+    long[] noisedBins = new long[bins.length];
+    for (int i = 0; i < bins.length; i++) {
+      noisedBins[i] =
+          params
+              .noise()
+              .addNoise(
+                  bins[i],
+                  params.maxPartitionsContributed(),
+                  params.maxContributionsPerPartition(),
+                  params.epsilon(),
+                  params.delta());
+    }
+    return noisedBins;
+  }
+
+  /**
+   * Returns the smallest noised count that a bin must have to be chosen as a bound. With
+   * probability successProbability, the noise of none of the 2 * numBins - 1 bins that can be
+   * empty exceeds the threshold.
+   */
+  private double getThreshold() {
+    double rank = Math.exp(Math.log(params.successProbability()) / (2.0 * posBins.length - 1.0));
+    return params
+        .noise()
+        .computeQuantile(
+            rank,
+            0.0,
+            params.maxPartitionsContributed(),
+            params.maxContributionsPerPartition(),
+            params.epsilon(),
+            params.delta());
+  }
+
+  /**
+   * Returns the part of {@code magnitude} that lies in bin {@code index}, which is capped at the
+   * width of the bin. The cap is only relevant for values that exceed the last bin.
+   */
+  private double getPartialSumInBin(int index, double magnitude) {
+    return min(getBinWidth(index), magnitude - getLeftBinBoundary(index));
+  }
+
+  private double getBinWidth(int index) {
+    return getRightBinBoundary(index) - getLeftBinBoundary(index);
+  }
+
+  /**
+   * Returns ceil(log_base(magnitude / scale)) for a positive and finite {@code magnitude}, which is
+   * the index of its bin up to clamping and floating point errors.
+   */
+  private double getExponent(double magnitude) {
+    if (scaleExponent == null) {
+      return Math.ceil((Math.log(magnitude) - logScale) / logBase);
+    }
+    // Bins of powers of 2 are determined exactly from the exponent of the magnitude, avoiding the
+    // costly logarithm.
+    if (magnitude <= params.scale()) {
+      // Also covers subnormal magnitudes, whose exponent is not represented explicitly.
+      return 0;
+    }
+    int exponent = Math.getExponent(magnitude);
+    return isNormalPowerOfTwo(magnitude) ? exponent - scaleExponent : exponent + 1 - scaleExponent;
+  }
+
+  private static boolean isNormalPowerOfTwo(double value) {
+    return value >= Double.MIN_NORMAL
+        && (Double.doubleToRawLongBits(value) & SIGNIFICAND_MASK) == 0;
+  }
+
+  /** Returns the magnitude of the larger-magnitude boundary of bin {@code index}. */
+  private double getRightBinBoundary(int index) {
+    return binBoundaries[index];
+  }
+
+  /** Returns the magnitude of the smaller-magnitude boundary of bin {@code index}. */
+  private double getLeftBinBoundary(int index) {
+    return index == 0 ? 0.0 : binBoundaries[index - 1];
+  }
+
+  /** Returns the number of bins required to cover all finite doubles. */
+  private static int getNumBins(double scale, double base) {
+    return (int) Math.ceil((Math.log(Double.MAX_VALUE) - Math.log(scale)) / Math.log(base)) + 1;
+  }
+
+  /** Differentially private approximate bounds returned by {@link #computeResult()}. */
+  @AutoValue
+  public abstract static class Result {
+    static Result create(double lower, double upper) {
+      return new AutoValue_ApproxBounds_Result(lower, upper);
+    }
+
+    public abstract double lower();
+
+    public abstract double upper();
+  }
+
+  @AutoValue
+  public abstract static class Params {
+    abstract Noise noise();
+
+    abstract double epsilon();
+
+    @Nullable
+    abstract Double delta();
+
+    abstract int maxPartitionsContributed();
+
+    abstract int maxContributionsPerPartition();
+
+    abstract DpMetrics metrics();
+
+    abstract double scale();
+
+    abstract double base();
+
+    abstract double successProbability();
+
+    /**
+     * Returns a new {@link ApproxBounds} with these parameters. The parameters were validated when
+     * they were built, and the bin boundaries are shared by all instances.
+     */
+    public ApproxBounds newInstance() {
+      return new ApproxBounds(this);
+    }
+
+    /**
+     * Magnitude of the larger-magnitude boundary of each bin. Boundaries that would exceed the
+     * largest finite double are set to Double.MAX_VALUE, whose bin also contains infinities. The
+     * array is shared by all instances and must not be modified.
+     */
+    @Memoized
+    double[] binBoundaries() {
+      int numBins = getNumBins(scale(), base());
+      double[] binBoundaries = new double[numBins];
+      double boundary = scale();
+      for (int i = 0; i < numBins; i++) {
+        if (boundary >= Double.MAX_VALUE / base()) {
+          binBoundaries[i] = Double.MAX_VALUE;
+        } else {
+          binBoundaries[i] = boundary;
+          boundary *= base();
+        }
+      }
+      return binBoundaries;
+    }
+
+    @AutoValue.Builder
+    public abstract static class Builder {
+      private static Builder newBuilder() {
+        Params.Builder builder = new AutoValue_ApproxBounds_Params.Builder();
+        // Provide LaplaceNoise as a default noise generator.
+        builder.noise(new LaplaceNoise());
+        // By default, assume that each user contributes to a given partition no more than once.
+        builder.maxContributionsPerPartition(1);
+        // By default, runtime metrics are discarded.
+        builder.metrics(DpMetrics.noOp());
+        // By default, the bins cover all finite doubles and are powers of 2.
+        builder.scale(Double.MIN_NORMAL);
+        builder.base(2.0);
+        builder.successProbability(1 - 1e-9);
+        return builder;
+      }
+
+      /** Epsilon DP parameter. */
+      public abstract Builder epsilon(double value);
+
+      /**
+       * Delta DP parameter.
+       *
+       * <p>Note that Laplace noise does not use delta. Hence, delta should not be set when Laplace
+       * noise is used.
+       */
+      public abstract Builder delta(@Nullable Double value);
+
+      /**
+       * Maximum number of partitions to which a single privacy unit (i.e., an individual) is
+       * allowed to contribute.
+       */
+      public abstract Builder maxPartitionsContributed(int value);
+
+      /** Max contributions per partition from a single privacy unit (e.g., an individual). */
+      public abstract Builder maxContributionsPerPartition(int value);
+
+      /** Distribution from which the noise will be generated and added to the bins. */
+      public abstract Builder noise(Noise value);
+
+      /** Receiver of runtime metrics of the bounds. See {@link DpMetrics} for details. */
+      public abstract Builder metrics(DpMetrics value);
+
+      /** Larger-magnitude boundary of bin 0. Defaults to {@link Double#MIN_NORMAL}. */
+      public abstract Builder scale(double value);
+
+      /** Ratio of the boundaries of consecutive bins. Defaults to 2. */
+      public abstract Builder base(double value);
+
+      /**
+       * Probability that no empty bin is chosen as a bound. Higher values require more entries
+       * for the bounds to be found. Defaults to 1 - 10^-9.
+       */
+      public abstract Builder successProbability(double value);
+
+      abstract Params autoBuild();
+
+      public ApproxBounds build() {
+        return buildParams().newInstance();
+      }
+
+      /**
+       * Validates the parameters and returns them without building an {@link ApproxBounds}. The
+       * returned parameters are immutable and can be shared to build many instances with {@link
+       * Params#newInstance()} without validating them again.
+       */
+      public Params buildParams() {
+        Params params = autoBuild();
+        DpPreconditions.checkEpsilon(params.epsilon());
+        DpPreconditions.checkNoiseDelta(params.delta(), params.noise());
+        DpPreconditions.checkMaxPartitionsContributed(params.maxPartitionsContributed());
+        DpPreconditions.checkMaxContributionsPerPartition(params.maxContributionsPerPartition());
+        Preconditions.checkArgument(
+            Double.isFinite(params.scale()) && params.scale() > 0,
+            "scale must be > 0 and finite. Provided value: %s",
+            params.scale());
+        Preconditions.checkArgument(
+            Double.isFinite(params.base()) && params.base() > 1,
+            "base must be > 1 and finite. Provided value: %s",
+            params.base());
+        Preconditions.checkArgument(
+            params.successProbability() > 0 && params.successProbability() < 1,
+            "successProbability must be > 0 and < 1. Provided value: %s",
+            params.successProbability());
+
+        return params;
+      }
+    }
+  }
+}
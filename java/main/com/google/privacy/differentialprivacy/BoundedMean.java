@@ -17,13 +17,17 @@
 package com.google.privacy.differentialprivacy;
 
 import com.google.auto.value.AutoValue;
+import com.google.auto.value.extension.memoized.Memoized;
 import com.google.common.annotations.VisibleForTesting;
 import com.google.common.base.Preconditions;
+import com.google.differentialprivacy.Data.Output.ErrorReport;
+import com.google.differentialprivacy.Data.ValueType;
+import com.google.differentialprivacy.SummaryOuterClass.ApproxBoundsSummary;
 import com.google.differentialprivacy.SummaryOuterClass.BoundedMeanSummary;
-import com.google.differentialprivacy.SummaryOuterClass.BoundedSumSummary;
-import com.google.differentialprivacy.SummaryOuterClass.CountSummary;
 import com.google.protobuf.InvalidProtocolBufferException;
+import java.util.Arrays;
 import java.util.Collection;
+import java.util.OptionalDouble;
 import javax.annotation.Nullable;
 
 /**
@@ -43,6 +47,12 @@ import javax.annotation.Nullable;
  * means, which according to them yields better accuracy. However, the proof of the Algorithm 2.3 is
  * flawed and it is not actually DP.
  *
+ * <p>If neither a lower nor an upper bound is specified, the bounds are determined automatically
+ * with {@link ApproxBounds} in the same pass over the data. Half of the privacy budget is then
+ * spent on the bounds and a quarter each on the sum and the count. The sum of the entries clamped
+ * to the bounds is reconstructed from partial sums per bin of {@link ApproxBounds} (see {@link
+ * ApproxBounds#addEntry(double, double[], double[])}) and normalized afterwards.
+ *
  * <p>Supports contributions from a single privacy unit to multiple partitions as well as multiple
  * contributions from a single privacy unit to a given partition.
  *
@@ -59,27 +69,43 @@ import javax.annotation.Nullable;
  */
 public class BoundedMean {
   private final BoundedMean.Params params;
-  private final BoundedSum normalizedSum;
+  // Only created by computeResult() if the bounds are determined automatically.
+  private BoundedSum normalizedSum;
   private final Count count;
+  // The bounds used to clamp the entries. They are only known after computeResult() if they are
+  // determined automatically.
+  private double lower;
+  private double upper;
   /**
    * The midpoint between lower and upper bounds. It cannot be set by the user: it will be
    * calculated based on the {@link Params#lower()} and {@link Params#upper()} values.
    */
-  private final double midpoint;
+  private double midpoint;
+  // Only set if the bounds are determined automatically. The partial sums of the non-negative and
+  // negative entries are stored in the bins of approxBounds that contain the entries.
+  @Nullable private final ApproxBounds approxBounds;
+  @Nullable private final double[] posSums;
+  @Nullable private final double[] negSums;
+  // Raw clamping statistics, which are released only via computeBoundingReport. The entries are
+  // clamped before they are passed to normalizedSum, so it never observes clamping itself.
+  private long numInputs;
+  private long numClampedBelow;
+  private long numClampedAbove;
 
   private AggregationState state = AggregationState.DEFAULT;
+  private boolean boundingReportReturned = false;
 
   private BoundedMean(BoundedMean.Params params) {
     this.params = params;
-
-    // Note: we don't calculate the midpoint as "(lower + upper) / 2" to avoid overflow.
-    midpoint = params.lower() * 0.5 + params.upper() * 0.5;
-
-    double maxDistFromMidpoint = Math.abs(params.upper() - midpoint);
-
-    // We split the budget in half to calculate count and noised normalized sum
-    double halfEpsilon = params.epsilon() * 0.5;
-    Double halfDelta = params.delta() == null ? null : params.delta() * 0.5;
+    if (!params.lower().isPresent()) {
+      approxBounds = params.approxBoundsParams().newInstance();
+      posSums = new double[approxBounds.getNumBins()];
+      negSums = new double[approxBounds.getNumBins()];
+    } else {
+      approxBounds = null;
+      posSums = null;
+      negSums = null;
+    }
 
     // normalizedSum yields a differentially private sum of the position of the entries e_i relative
     // to the midpoint m = (lower + upper) / 2 of the range of the bounded mean, i.e., Σ_i (e_i - m)
@@ -94,27 +120,30 @@ public class BoundedMean {
     //   (Σ_i e_i) / c
     //
     // the rest follows from the code.
-    normalizedSum =
-        BoundedSum.builder()
-            .noise(params.noise())
-            .epsilon(halfEpsilon)
-            // TODO: this can be optimized for the Gaussian noise
-            .delta(halfDelta)
-            .maxPartitionsContributed(params.maxPartitionsContributed())
-            .maxContributionsPerPartition(params.maxContributionsPerPartition())
-            .lower(-maxDistFromMidpoint)
-            .upper(maxDistFromMidpoint)
-            .build();
+    if (approxBounds == null) {
+      // The parameters of the normalized sum are derived once per Params.
+      lower = params.lower().getAsDouble();
+      upper = params.upper().getAsDouble();
+      midpoint = getMidpoint(lower, upper);
+      normalizedSum = params.normalizedSumParams().newInstance();
+    }
     // Noised count of the entities.
-    count =
-        Count.builder()
-            .noise(params.noise())
-            .epsilon(halfEpsilon)
-            // TODO: this can be optimized for the Gaussian noise
-            .delta(halfDelta)
-            .maxPartitionsContributed(params.maxPartitionsContributed())
-            .maxContributionsPerPartition(params.maxContributionsPerPartition())
-            .build();
+    count = params.countParams().newInstance();
+  }
+
+  /** Sets the bounds used to clamp the entries and creates the normalized sum accordingly. */
+  private void setBounds(double lower, double upper) {
+    this.lower = lower;
+    this.upper = upper;
+    midpoint = getMidpoint(lower, upper);
+    // The bounds were capped such that the sensitivities of the normalized sum are finite, so the
+    // parameters are not validated again.
+    normalizedSum = params.newNormalizedSumParamsBuilder(lower, upper).autoBuild().newInstance();
+  }
+
+  private static double getMidpoint(double lower, double upper) {
+    // Note: we don't calculate the midpoint as "(lower + upper) / 2" to avoid overflow.
+    return lower * 0.5 + upper * 0.5;
   }
 
   public static BoundedMean.Params.Builder builder() {
@@ -123,7 +152,7 @@ public class BoundedMean {
 
   /** Clamps the input value and adds it to the average. */
   public void addEntry(double e) {
-    Preconditions.checkState(state == AggregationState.DEFAULT, "Mean cannot be amended.");
+    Preconditions.checkState(state.isLive(), "Mean cannot be amended.");
 
     // NaN is ignored because introducing even a single NaN entry will result in a NaN mean
     // regardless of other entries, which would break the indistinguishability
@@ -132,10 +161,24 @@ public class BoundedMean {
       return;
     }
 
-    // BoundedSum will also attempt to clamp the input value but we do it here for transparency.
-    normalizedSum.addEntry(clamp(e) - midpoint);
+    numInputs++;
+    if (approxBounds != null) {
+      approxBounds.addEntry(e, posSums, negSums);
+    } else {
+      if (e < lower) {
+        numClampedBelow++;
+        params.metrics().increment(DpMetrics.Counter.ENTRIES_CLAMPED, 1);
+      } else if (e > upper) {
+        numClampedAbove++;
+        params.metrics().increment(DpMetrics.Counter.ENTRIES_CLAMPED, 1);
+      }
+
+      // BoundedSum will also attempt to clamp the input value but we do it here for transparency.
+      normalizedSum.addEntry(clamp(e) - midpoint);
+    }
 
     count.increment();
+    params.metrics().increment(DpMetrics.Counter.ENTRIES_ADDED, 1);
   }
 
   /** Clamps the input values and adds them to the average. */
@@ -144,12 +187,12 @@ public class BoundedMean {
   }
 
   private double clamp(double e) {
-    if (e > params.upper()) {
-      return params.upper();
+    if (e > upper) {
+      return upper;
     }
 
-    if (e < params.lower()) {
-      return params.lower();
+    if (e < lower) {
+      return lower;
     }
 
     return e;
@@ -161,6 +204,9 @@ public class BoundedMean {
    * All subsequent calls will result in throwing an exception.
    *
    * <p>Note that the returned value is not an unbiased estimate of the raw bounded mean.
+   *
+   * @throws IllegalStateException if the bounds are determined automatically and too few entries
+   *     were added to find them (see {@link ApproxBounds#computeResult()}).
    */
   public double computeResult() {
     Preconditions.checkState(
@@ -168,8 +214,22 @@ public class BoundedMean {
 
     state = AggregationState.RESULT_RETURNED;
 
+    long startNanos = params.metrics().startLatency();
+    if (approxBounds != null) {
+      // The half-range of the bounds is the magnitude of the bounds of the normalized sum.
+      ApproxBounds.Result bounds =
+          approxBounds.capMagnitude(
+              approxBounds.computeResult(),
+              BoundedSum.getMaxBoundMagnitude(
+                  params.maxPartitionsContributed(), params.maxContributionsPerPartition()));
+      setBounds(bounds.lower(), bounds.upper());
+      double clampedSum =
+          approxBounds.computeFromPartialSums(posSums, negSums, lower, upper, numInputs);
+      normalizedSum.addClampedPartialSum(clampedSum - numInputs * midpoint);
+    }
     long noisedCount = Math.max(1, count.computeResult());
     double normalizedNoisedSum = normalizedSum.computeResult();
+    params.metrics().recordLatency(DpMetrics.Histogram.COMPUTE_RESULT_LATENCY_NANOS, startNanos);
 
     // Clamp the average before returning it to ensure it does not exceed the lower and upper
     // bounds.
@@ -247,6 +307,44 @@ public class BoundedMean {
     return ConfidenceInterval.create(meanLowerBound, meanUpperBound);
   }
 
+  /**
+   * Computes a differentially private report of how many entries were added to the mean and how
+   * many of them were clamped to the bounds. See {@link BoundedSum#computeBoundingReport} for
+   * details.
+   *
+   * <p>The report consumes the additional privacy budget {@code epsilon} and {@code delta}, on top
+   * of the budget of the mean. The method can be called only once, and not after the mean has been
+   * serialized. If the bounds are determined automatically, it can only be called after {@link
+   * #computeResult()}.
+   */
+  public ErrorReport computeBoundingReport(double epsilon, @Nullable Double delta) {
+    Preconditions.checkState(
+        state != AggregationState.SERIALIZED && state != AggregationState.SNAPSHOTTED,
+        "Bounding report of mean cannot be computed.");
+    Preconditions.checkState(
+        !boundingReportReturned, "Bounding report was already computed and returned.");
+    Preconditions.checkState(
+        approxBounds == null || state == AggregationState.RESULT_RETURNED,
+        "computeResult() must be called before calling computeBoundingReport() if the bounds are"
+            + " determined automatically.");
+
+    boundingReportReturned = true;
+    long numOutside =
+        approxBounds == null
+            ? numClampedBelow + numClampedAbove
+            : approxBounds.countOutside(lower, upper);
+    return BoundingReports.create(
+        params.noise(),
+        numInputs,
+        numOutside,
+        lower,
+        upper,
+        params.maxPartitionsContributed(),
+        params.maxContributionsPerPartition(),
+        epsilon,
+        delta);
+  }
+
   /**
    * Returns a serializable version of the current state of {@link BoundedMean} and the parameters
    * used to calculate it. After calling this method, this instance of BoundedMean will be unusable
@@ -258,29 +356,73 @@ public class BoundedMean {
    * @throws IllegalStateException if this mean has already been calculated or serialized.
    */
   public byte[] getSerializableSummary() {
-    Preconditions.checkState(state == AggregationState.DEFAULT);
+    Preconditions.checkState(state.isLive());
 
-    CountSummary deserializedCount;
-    BoundedSumSummary deserializedNormalizedSum;
-    try {
-      deserializedCount = CountSummary.parseFrom(count.getSerializableSummary());
-      deserializedNormalizedSum =
-          BoundedSumSummary.parseFrom(normalizedSum.getSerializableSummary());
-    } catch (InvalidProtocolBufferException e) {
-      throw new IllegalStateException("Mean object cannot be serialized. Reason: " + e);
-    }
-
-    BoundedMeanSummary serializedMean =
-        BoundedMeanSummary.newBuilder()
-            .setCountSummary(deserializedCount)
-            .setSumSummary(deserializedNormalizedSum)
-            .build();
+    byte[] summary = buildSummary().toByteArray();
 
     // Record that this object is no longer suitable for producing a differentially private mean,
     // since serialization exposes the object's raw state.
     state = AggregationState.SERIALIZED;
+    params.metrics().increment(DpMetrics.Counter.SERIALIZED_BYTES, summary.length);
+    return summary;
+  }
 
-    return serializedMean.toByteArray();
+  /**
+   * Returns the same summary as {@link #getSerializableSummary()}, but leaves this instance usable
+   * for further entries and merges, e.g., to emit partial results of a streaming pipeline every N
+   * entries. Each snapshot contains all entries added so far, so a consumer should replace earlier
+   * snapshots of the same mean rather than merge them.
+   *
+   * <p>Since the snapshots expose the raw state, the differentially private result must be
+   * computed by whoever consumes them. {@link #computeResult()} and {@link #computeBoundingReport}
+   * of this instance throw after a snapshot was taken, while {@link #getSerializableSummary()} can
+   * still be called to hand off the final state.
+   */
+  public byte[] getSnapshotSummary() {
+    Preconditions.checkState(
+        state.isLive(),
+        "Mean object cannot be snapshotted. Reason: %s",
+        state.getErrorMessage());
+
+    byte[] summary = buildSummary().toByteArray();
+    state = AggregationState.SNAPSHOTTED;
+    params.metrics().increment(DpMetrics.Counter.SERIALIZED_BYTES, summary.length);
+    return summary;
+  }
+
+  /**
+   * Returns the summary of {@link #getSerializableSummary()} without changing the state. This
+   * allows {@link AggregationCheckpoint} to checkpoint a mean that keeps receiving entries.
+   */
+  BoundedMeanSummary buildSummary() {
+    Preconditions.checkState(
+        state.isLive(),
+        "Mean object cannot be checkpointed. Reason: %s",
+        state.getErrorMessage());
+
+    BoundedMeanSummary.Builder serializedMean = BoundedMeanSummary.newBuilder();
+    serializedMean.setCountSummary(count.buildSummary());
+    if (approxBounds == null) {
+      // The clamping statistics of the mean are stored in the summary of its normalized sum,
+      // which receives the same entries after they have been clamped.
+      serializedMean.setSumSummary(
+          normalizedSum.buildSummary().toBuilder()
+              .setNumInputs(numInputs)
+              .setNumClampedBelow(numClampedBelow)
+              .setNumClampedAbove(numClampedAbove));
+    } else {
+      serializedMean.setCount(numInputs).setBoundsSummary(approxBounds.buildSummary());
+      // The summary stores the partial sums in the layout of the C++ library.
+      double[] cumulativePosSums =
+          approxBounds.getCumulativePartialSums(posSums, /* negative= */ false);
+      double[] cumulativeNegSums =
+          approxBounds.getCumulativePartialSums(negSums, /* negative= */ true);
+      for (int i = 0; i < posSums.length; i++) {
+        serializedMean.addPosSum(ValueType.newBuilder().setFloatValue(cumulativePosSums[i]));
+        serializedMean.addNegSum(ValueType.newBuilder().setFloatValue(cumulativeNegSums[i]));
+      }
+    }
+    return serializedMean.build();
   }
 
   /**
@@ -293,8 +435,9 @@ public class BoundedMean {
    * @throws IllegalStateException if this mean has already been calculated or serialized.
    */
   public void mergeWith(byte[] otherBoundedMeanSummary) {
-    Preconditions.checkState(state == AggregationState.DEFAULT, "Mean object cannot be merged.");
+    Preconditions.checkState(state.isLive(), "Mean object cannot be merged.");
 
+    long startNanos = params.metrics().startLatency();
     BoundedMeanSummary otherSummaryParsed;
     try {
       otherSummaryParsed = BoundedMeanSummary.parseFrom(otherBoundedMeanSummary);
@@ -302,8 +445,72 @@ public class BoundedMean {
       throw new IllegalArgumentException(pbe);
     }
 
-    this.normalizedSum.mergeWith(otherSummaryParsed.getSumSummary().toByteArray());
-    this.count.mergeWith(otherSummaryParsed.getCountSummary().toByteArray());
+    Preconditions.checkArgument(
+        otherSummaryParsed.hasBoundsSummary() == (approxBounds != null),
+        "Failed to merge: only one of the means determines its bounds automatically.");
+    if (approxBounds == null) {
+      this.normalizedSum.mergeWith(otherSummaryParsed.getSumSummary().toByteArray());
+      this.count.mergeWith(otherSummaryParsed.getCountSummary().toByteArray());
+      this.numInputs += otherSummaryParsed.getSumSummary().getNumInputs();
+      this.numClampedBelow += otherSummaryParsed.getSumSummary().getNumClampedBelow();
+      this.numClampedAbove += otherSummaryParsed.getSumSummary().getNumClampedAbove();
+    } else {
+      Preconditions.checkArgument(
+          otherSummaryParsed.getPosSumCount() == posSums.length
+              && otherSummaryParsed.getNegSumCount() == negSums.length,
+          "Failed to merge: unequal number of partial sums. numPartialSums1 = %s,"
+              + " numPartialSums2 = %s",
+          posSums.length,
+          otherSummaryParsed.getPosSumCount());
+      // Merging the count first validates the privacy parameters of the other mean.
+      this.count.mergeWith(otherSummaryParsed.getCountSummary().toByteArray());
+      ApproxBoundsSummary otherBounds = otherSummaryParsed.getBoundsSummary();
+      this.approxBounds.mergeWith(otherBounds.toByteArray());
+      this.approxBounds.mergePartialSums(
+          posSums,
+          otherSummaryParsed.getPosSumList(),
+          otherBounds.getPosBinCountList(),
+          /* negative= */ false);
+      this.approxBounds.mergePartialSums(
+          negSums,
+          otherSummaryParsed.getNegSumList(),
+          otherBounds.getNegBinCountList(),
+          /* negative= */ true);
+      this.numInputs += otherSummaryParsed.getCount();
+    }
+    params.metrics().increment(DpMetrics.Counter.MERGES, 1);
+    params.metrics().recordLatency(DpMetrics.Histogram.MERGE_LATENCY_NANOS, startNanos);
+  }
+
+  /**
+   * Discards the state of this instance, including a computed result or bounding report, and makes
+   * it usable for a new aggregation with the same parameters, e.g., of the next partition. The
+   * inner count and normalized sum are reset as well, so reusing an instance avoids building three
+   * aggregations per partition.
+   *
+   * <p>The result of each aggregation can still be computed only once: after the reset, {@link
+   * #computeResult()} only covers the entries added afterwards. It is the responsibility of the
+   * caller not to add the same entries again and release them a second time.
+   */
+  public void reset() {
+    count.reset();
+    numInputs = 0;
+    numClampedBelow = 0;
+    numClampedAbove = 0;
+    if (approxBounds == null) {
+      normalizedSum.reset();
+    } else {
+      // The bounds, and hence the normalized sum, are determined anew for every aggregation.
+      approxBounds.reset();
+      Arrays.fill(posSums, 0.0);
+      Arrays.fill(negSums, 0.0);
+      normalizedSum = null;
+      lower = 0.0;
+      upper = 0.0;
+      midpoint = 0.0;
+    }
+    state = AggregationState.DEFAULT;
+    boundingReportReturned = false;
   }
 
   @AutoValue
@@ -319,9 +526,104 @@ public class BoundedMean {
 
     abstract int maxContributionsPerPartition();
 
-    abstract double lower();
+    abstract DpMetrics metrics();
+
+    abstract OptionalDouble lower();
+
+    abstract OptionalDouble upper();
+
+    /**
+     * Returns a new {@link BoundedMean} with these parameters. The parameters, including those of
+     * the inner count and normalized sum, were validated and derived when they were built, so this
+     * only allocates the mean and its inner aggregations.
+     */
+    public BoundedMean newInstance() {
+      return new BoundedMean(this);
+    }
+
+    // We split the budget in half to calculate count and noised normalized sum. If the bounds are
+    // determined automatically, the budget is halved beforehand to determine them.
+    private double aggregationEpsilon() {
+      return lower().isPresent() ? epsilon() : epsilon() * 0.5;
+    }
+
+    @Nullable
+    private Double aggregationDelta() {
+      if (delta() == null) {
+        return null;
+      }
+      return lower().isPresent() ? delta() : delta() * 0.5;
+    }
+
+    /**
+     * Privacy budget of the normalized sum and of the count each, excluding the budget of
+     * automatically determined bounds.
+     */
+    double sumEpsilon() {
+      return aggregationEpsilon() * 0.5;
+    }
+
+    @Nullable
+    Double sumDelta() {
+      return delta() == null ? null : aggregationDelta() * 0.5;
+    }
 
-    abstract double upper();
+    /** Parameters of the count of the entries. */
+    @Memoized
+    Count.Params countParams() {
+      return Count.builder()
+          .noise(noise())
+          .epsilon(sumEpsilon())
+          // TODO: this can be optimized for the Gaussian noise
+          .delta(sumDelta())
+          .maxPartitionsContributed(maxPartitionsContributed())
+          .maxContributionsPerPartition(maxContributionsPerPartition())
+          .buildParams();
+    }
+
+    /**
+     * Parameters of the normalized sum if the bounds are set. Otherwise null, since the normalized
+     * sum can only be created once the bounds are determined.
+     */
+    @Memoized
+    @Nullable
+    BoundedSum.Params normalizedSumParams() {
+      if (!lower().isPresent()) {
+        return null;
+      }
+      return newNormalizedSumParamsBuilder(lower().getAsDouble(), upper().getAsDouble())
+          .buildParams();
+    }
+
+    /** Parameters of the approximate bounds if the bounds are determined automatically. */
+    @Memoized
+    @Nullable
+    ApproxBounds.Params approxBoundsParams() {
+      if (lower().isPresent()) {
+        return null;
+      }
+      return ApproxBounds.builder()
+          .noise(noise())
+          .epsilon(aggregationEpsilon())
+          .delta(aggregationDelta())
+          .maxPartitionsContributed(maxPartitionsContributed())
+          .maxContributionsPerPartition(maxContributionsPerPartition())
+          .buildParams();
+    }
+
+    /** Returns a builder of the parameters of a normalized sum for the given bounds. */
+    BoundedSum.Params.Builder newNormalizedSumParamsBuilder(double lower, double upper) {
+      double maxDistFromMidpoint = Math.abs(upper - getMidpoint(lower, upper));
+      return BoundedSum.builder()
+          .noise(noise())
+          .epsilon(sumEpsilon())
+          // TODO: this can be optimized for the Gaussian noise
+          .delta(sumDelta())
+          .maxPartitionsContributed(maxPartitionsContributed())
+          .maxContributionsPerPartition(maxContributionsPerPartition())
+          .lower(-maxDistFromMidpoint)
+          .upper(maxDistFromMidpoint);
+    }
 
     @AutoValue.Builder
     public abstract static class Builder {
@@ -330,6 +632,8 @@ public class BoundedMean {
         BoundedMean.Params.Builder builder = new AutoValue_BoundedMean_Params.Builder();
         // Provides LaplaceNoise as a default noise generator.
         builder.noise(new LaplaceNoise());
+        // By default, runtime metrics are discarded.
+        builder.metrics(DpMetrics.noOp());
 
         return builder;
       }
@@ -357,29 +661,57 @@ public class BoundedMean {
       /** Noise that will be used to make the mean differentially private. */
       public abstract BoundedMean.Params.Builder noise(Noise value);
 
+      /** Receiver of runtime metrics of the mean. See {@link DpMetrics} for details. */
+      public abstract BoundedMean.Params.Builder metrics(DpMetrics value);
+
       /**
        * Lower bound for the entries added to the mean. Lower values will be clamped to this bound.
+       * If neither bound is set, the bounds are determined automatically. See {@link BoundedMean}
+       * for details.
        */
       public abstract BoundedMean.Params.Builder lower(double value);
 
       /**
        * Higher bound for the entries added to the mean. Greater values will be clamped to this
-       * bound.
+       * bound. If neither bound is set, the bounds are determined automatically. See {@link
+       * BoundedMean} for details.
        */
       public abstract BoundedMean.Params.Builder upper(double value);
 
       abstract BoundedMean.Params autoBuild();
 
       public BoundedMean build() {
+        return buildParams().newInstance();
+      }
+
+      /**
+       * Validates the parameters and returns them without building a {@link BoundedMean}. The
+       * returned parameters are immutable and can be shared to build many means with {@link
+       * Params#newInstance()}, e.g., one per partition, without validating them again.
+       */
+      public BoundedMean.Params buildParams() {
         BoundedMean.Params params = autoBuild();
         // No need to check noise nullability: the noise is defaulted to Laplace noise.
         DpPreconditions.checkEpsilon(params.epsilon());
         DpPreconditions.checkNoiseDelta(params.delta(), params.noise());
         DpPreconditions.checkL0Sensitivity(params.maxPartitionsContributed());
         DpPreconditions.checkMaxContributionsPerPartition(params.maxContributionsPerPartition());
-        DpPreconditions.checkBounds(params.lower(), params.upper());
-
-        return new BoundedMean(params);
+        // Like any other missing parameter, a single missing bound is an illegal state.
+        Preconditions.checkState(
+            params.lower().isPresent() == params.upper().isPresent(),
+            "Either both or none of the bounds must be set. Provided values: lower = %s upper = %s",
+            params.lower(),
+            params.upper());
+        if (params.lower().isPresent()) {
+          DpPreconditions.checkBounds(
+              params.lower().getAsDouble(), params.upper().getAsDouble());
+        }
+        // Derives and validates the parameters of the inner aggregations once.
+        params.countParams();
+        params.normalizedSumParams();
+        params.approxBoundsParams();
+
+        return params;
       }
     }
   }
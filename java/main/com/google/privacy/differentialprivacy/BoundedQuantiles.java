@@ -0,0 +1,493 @@
+//
+// Copyright 2020 Google LLC
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//      http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+//
+
+package com.google.privacy.differentialprivacy;
+
+import static java.lang.Math.max;
+import static java.lang.Math.min;
+
+import com.google.auto.value.AutoValue;
+import com.google.common.base.Preconditions;
+import com.google.differentialprivacy.SummaryOuterClass.BoundedQuantilesSummary;
+import com.google.protobuf.InvalidProtocolBufferException;
+import java.util.Arrays;
+import java.util.Collection;
+import javax.annotation.Nullable;
+
+/**
+ * Calculates differentially private quantiles for a collection of values using a quantile tree
+ * with noised node counts.
+ *
+ * <p>The interval [lower, upper] is split into {@code branchingFactor ^ treeHeight} equally wide
+ * leaves. Every inner node of the tree covers the leaves of its {@code branchingFactor} children
+ * and counts the entries that fall into them. An entry is clamped to the bounds and increments one
+ * node per level of the tree, i.e., adding an entry takes O(treeHeight) time. The node counts are
+ * kept in a single array whose size only depends on the shape of the tree, not on the number of
+ * entries.
+ *
+ * <p>To compute a quantile, the tree is traversed from the root to a leaf. On every level, the
+ * child that contains the requested rank is chosen based on the noised counts of the children.
+ * Finally, the quantile is linearly interpolated within the node where the traversal ends.
+ *
+ * <p>This class allows a single privacy unit (e.g., an individual) to contribute data to multiple
+ * different partitions. The class does not check whether the number of partitions is within the
+ * specified bounds. This is the responsibility of the caller.
+ *
+ * <p>This class assumes that each privacy unit may contribute to a single partition only a
+ * limited number of times, as specified by {@link Params.Builder#maxContributionsPerPartition}.
+ *
+ * <p>The user can provide a {@link Noise} instance which will be used to generate the noise. If no
+ * instance is specified, {@link LaplaceNoise} is applied.
+ *
+ * <p>Note: this class is not thread-safe.
+ *
+ * <p>For more implementation details, see {@link #computeResult(double)}.
+ *
+ * <p>For general details and key definitions, see <a href=
+ * "https://github.com/google/differential-privacy/blob/main/differential_privacy.md#key-definitions">
+ * this</a> introduction to Differential Privacy.
+ */
+public class BoundedQuantiles {
+  // Limits the memory used by the node counts of a single instance to 128 MiB.
+  private static final long MAX_NUM_NODES = 1L << 24;
+  // Fraction of the total count of a set of siblings that a sibling needs to exceed in order to
+  // be considered during the traversal of the tree. This filters out empty nodes whose noised
+  // count is positive.
+  private static final double ALPHA = 0.0075;
+  // Marks nodes whose count has not been noised yet.
+  private static final long NOT_NOISED = Long.MIN_VALUE;
+  private static final int ROOT_INDEX = 0;
+
+  private final Params params;
+  private final int branchingFactor;
+  private final int numLeaves;
+  private final int firstLeafIndex;
+  // Raw counts of the nodes in breadth-first order. The root is not counted because it is never
+  // needed to choose between siblings.
+  private final long[] tree;
+  // Noised counts of the nodes, populated lazily once a result has been computed.
+  @Nullable private long[] noisedTree;
+
+  private AggregationState state = AggregationState.DEFAULT;
+
+  private BoundedQuantiles(Params params) {
+    this.params = params;
+    branchingFactor = params.branchingFactor();
+    int numNodes = (int) getNumNodes(params.treeHeight(), branchingFactor);
+    numLeaves = (int) Math.pow(branchingFactor, params.treeHeight());
+    firstLeafIndex = numNodes - numLeaves;
+    tree = new long[numNodes];
+  }
+
+  public static Params.Builder builder() {
+    return Params.Builder.newBuilder();
+  }
+
+  /** Clamps the input value and adds it to the quantile tree. */
+  public void addEntry(double e) {
+    if (state != AggregationState.DEFAULT) {
+      throw new IllegalStateException(
+          "Quantiles cannot be amended. Reason: " + state.getErrorMessage());
+    }
+
+    // NaN is ignored because it cannot be assigned to any leaf of the tree.
+    if (Double.isNaN(e)) {
+      return;
+    }
+
+    if (e < params.lower() || e > params.upper()) {
+      params.metrics().increment(DpMetrics.Counter.ENTRIES_CLAMPED, 1);
+    }
+    int index = firstLeafIndex + getLeaf(e);
+    while (index != ROOT_INDEX) {
+      tree[index]++;
+      index = getParent(index);
+    }
+    params.metrics().increment(DpMetrics.Counter.ENTRIES_ADDED, 1);
+  }
+
+  /** Clamps the input values and adds them to the quantile tree. */
+  public void addEntries(Collection<Double> e) {
+    e.forEach(this::addEntry);
+  }
+
+  /**
+   * Computes and returns a differentially private quantile of the entries added via {@link
+   * #addEntry} and {@link #addEntries}. For instance, a {@code rank} of 0.5 returns the median.
+   *
+   * <p>Unlike the results of other aggregations, quantiles can be computed repeatedly for
+   * different ranks: the noise is added to each node of the tree only once, the first time it is
+   * visited, and the privacy budget covers the release of the whole tree. Once a quantile has been
+   * computed, no more entries can be added and the instance can no longer be serialized or merged.
+   *
+   * <p>A single privacy unit changes the counts of {@code treeHeight} nodes in each partition it
+   * contributes to, each by at most {@code maxContributionsPerPartition}. The nodes are noised
+   * accordingly.
+   *
+   * <p>The returned value is always within the bounds. Quantiles are not guaranteed to be monotone
+   * in the rank, which can be corrected by the caller of this method, e.g., by sorting the
+   * quantiles of several ranks.
+   *
+   * @param rank the rank of the quantile, between 0 and 1.
+   */
+  public double computeResult(double rank) {
+    Preconditions.checkArgument(
+        rank >= 0.0 && rank <= 1.0, "rank must be >= 0 and <= 1. Provided value: %s", rank);
+    if (state == AggregationState.SERIALIZED) {
+      throw new IllegalStateException(
+          "Quantiles' noised result cannot be computed. Reason: " + state.getErrorMessage());
+    }
+
+    long startNanos = params.metrics().startLatency();
+    if (state == AggregationState.DEFAULT) {
+      state = AggregationState.RESULT_RETURNED;
+      noisedTree = new long[tree.length];
+      Arrays.fill(noisedTree, NOT_NOISED);
+    }
+
+    // The position of the current node and of the quantile relative to [lower, upper].
+    double nodeStart = 0.0;
+    double nodeWidth = 1.0;
+    double remainingRank = rank;
+    int index = ROOT_INDEX;
+    while (index < firstLeafIndex) {
+      int firstChild = getFirstChild(index);
+      long totalCount = 0;
+      for (int child = firstChild; child < firstChild + branchingFactor; child++) {
+        totalCount += max(0, getNoisedCount(child));
+      }
+      double threshold = ALPHA * totalCount;
+      long filteredTotalCount = 0;
+      for (int child = firstChild; child < firstChild + branchingFactor; child++) {
+        filteredTotalCount += filterCount(getNoisedCount(child), threshold);
+      }
+      if (filteredTotalCount == 0) {
+        // None of the children contains any entries, so there is nothing to choose from.
+        break;
+      }
+
+      // Descend into the child whose cumulative count covers the requested rank.
+      double targetCount = remainingRank * filteredTotalCount;
+      long cumulativeCount = 0;
+      int chosenChild = firstChild;
+      long chosenCount = 0;
+      for (int child = firstChild; child < firstChild + branchingFactor; child++) {
+        long count = filterCount(getNoisedCount(child), threshold);
+        if (count == 0) {
+          continue;
+        }
+        chosenChild = child;
+        chosenCount = count;
+        if (cumulativeCount + count >= targetCount) {
+          break;
+        }
+        cumulativeCount += count;
+      }
+      remainingRank = min(1.0, max(0.0, (targetCount - cumulativeCount) / chosenCount));
+      nodeWidth /= branchingFactor;
+      nodeStart += (chosenChild - firstChild) * nodeWidth;
+      index = chosenChild;
+    }
+
+    double fraction = min(1.0, nodeStart + remainingRank * nodeWidth);
+    // Interpolating this way cannot overflow, even if upper - lower exceeds Double.MAX_VALUE.
+    double result = params.lower() * (1.0 - fraction) + params.upper() * fraction;
+    params.metrics().recordLatency(DpMetrics.Histogram.COMPUTE_RESULT_LATENCY_NANOS, startNanos);
+    return min(params.upper(), max(params.lower(), result));
+  }
+
+  /**
+   * Returns a serializable version of the current state of {@link BoundedQuantiles} and the
+   * parameters used to calculate it. After calling this method, this instance of BoundedQuantiles
+   * will be unusable, since the result can only be output once.
+   *
+   * <p>Only the nodes with a non-zero count are serialized, so that the size of the summary is
+   * bounded by both the size of the tree and the number of entries times the height of the tree.
+   */
+  public byte[] getSerializableSummary() {
+    if (state != AggregationState.DEFAULT) {
+      throw new IllegalStateException(
+          "Quantiles object cannot be serialized. Reason: " + state.getErrorMessage());
+    }
+
+    BoundedQuantilesSummary.Builder builder =
+        BoundedQuantilesSummary.newBuilder()
+            .setEpsilon(params.epsilon())
+            .setMechanismType(params.noise().getMechanismType())
+            .setLower(params.lower())
+            .setUpper(params.upper())
+            .setMaxPartitionsContributed(params.maxPartitionsContributed())
+            .setMaxContributionsPerPartition(params.maxContributionsPerPartition())
+            .setTreeHeight(params.treeHeight())
+            .setBranchingFactor(params.branchingFactor());
+    if (params.delta() != null) {
+      builder.setDelta(params.delta());
+    }
+    for (int i = 0; i < tree.length; i++) {
+      if (tree[i] != 0) {
+        builder.addNodeIndex(i).addNodeCount(tree[i]);
+      }
+    }
+
+    // Record that this object is no longer suitable for producing differentially private
+    // quantiles, since serialization exposes the object's raw state.
+    state = AggregationState.SERIALIZED;
+
+    byte[] summary = builder.build().toByteArray();
+    params.metrics().increment(DpMetrics.Counter.SERIALIZED_BYTES, summary.length);
+    return summary;
+  }
+
+  /**
+   * Merges this instance with the output of {@link #getSerializableSummary()} from a different
+   * {@link BoundedQuantiles} and stores the merged result in this instance. This is required in
+   * the distributed calculations context for merging partial results.
+   *
+   * @throws IllegalArgumentException if not all config parameters (e.g., epsilon, contribution
+   *     bounds, shape of the tree) are equal or if the passed serialized quantiles are invalid.
+   * @throws IllegalStateException if this instance has already been calculated or serialized.
+   */
+  public void mergeWith(byte[] otherBoundedQuantilesSummary) {
+    if (state != AggregationState.DEFAULT) {
+      throw new IllegalStateException(
+          "Quantiles object cannot be merged. Reason: " + state.getErrorMessage());
+    }
+
+    long startNanos = params.metrics().startLatency();
+    BoundedQuantilesSummary otherSummaryParsed;
+    try {
+      otherSummaryParsed = BoundedQuantilesSummary.parseFrom(otherBoundedQuantilesSummary);
+    } catch (InvalidProtocolBufferException pbe) {
+      throw new IllegalArgumentException(pbe);
+    }
+
+    checkMergeParametersAreEqual(otherSummaryParsed);
+    Preconditions.checkArgument(
+        otherSummaryParsed.getNodeIndexCount() == otherSummaryParsed.getNodeCountCount(),
+        "Failed to merge: the number of node indices and node counts differ.");
+    for (int i = 0; i < otherSummaryParsed.getNodeIndexCount(); i++) {
+      int index = otherSummaryParsed.getNodeIndex(i);
+      Preconditions.checkArgument(
+          index > ROOT_INDEX && index < tree.length,
+          "Failed to merge: node index out of range. Provided value: %s",
+          index);
+      tree[index] += otherSummaryParsed.getNodeCount(i);
+    }
+    params.metrics().increment(DpMetrics.Counter.MERGES, 1);
+    params.metrics().recordLatency(DpMetrics.Histogram.MERGE_LATENCY_NANOS, startNanos);
+  }
+
+  private void checkMergeParametersAreEqual(BoundedQuantilesSummary otherQuantiles) {
+    DpPreconditions.checkMergeMechanismTypesAreEqual(
+        params.noise().getMechanismType(), otherQuantiles.getMechanismType());
+    DpPreconditions.checkMergeEpsilonAreEqual(params.epsilon(), otherQuantiles.getEpsilon());
+    DpPreconditions.checkMergeDeltaAreEqual(params.delta(), otherQuantiles.getDelta());
+    DpPreconditions.checkMergeMaxPartitionsContributedAreEqual(
+        params.maxPartitionsContributed(), otherQuantiles.getMaxPartitionsContributed());
+    DpPreconditions.checkMergeMaxContributionsPerPartitionAreEqual(
+        params.maxContributionsPerPartition(), otherQuantiles.getMaxContributionsPerPartition());
+    DpPreconditions.checkMergeBoundsAreEqual(
+        params.lower(), otherQuantiles.getLower(), params.upper(), otherQuantiles.getUpper());
+    Preconditions.checkArgument(
+        params.treeHeight() == otherQuantiles.getTreeHeight()
+            && params.branchingFactor() == otherQuantiles.getBranchingFactor(),
+        "Failed to merge: unequal tree shapes. treeHeight1 = %s, branchingFactor1 = %s,"
+            + " treeHeight2 = %s, branchingFactor2 = %s",
+        params.treeHeight(),
+        params.branchingFactor(),
+        otherQuantiles.getTreeHeight(),
+        otherQuantiles.getBranchingFactor());
+  }
+
+  /** Returns the index of the leaf that {@code e} is clamped to, counted from the leftmost leaf. */
+  private int getLeaf(double e) {
+    double clamped = min(params.upper(), max(params.lower(), e));
+    // Halving the operands prevents an overflow of upper - lower. If the bounds are equal, the
+    // fraction is NaN and all entries are assigned to the leftmost leaf.
+    double fraction =
+        (clamped * 0.5 - params.lower() * 0.5) / (params.upper() * 0.5 - params.lower() * 0.5);
+    return (int) min(numLeaves - 1, (long) (fraction * numLeaves));
+  }
+
+  private long getNoisedCount(int index) {
+    if (noisedTree[index] == NOT_NOISED) {
+      noisedTree[index] =
+          params
+              .noise()
+              .addNoise(
+                  tree[index],
+                  getL0Sensitivity(),
+                  params.maxContributionsPerPartition(),
+                  params.epsilon(),
+                  params.delta());
+    }
+    return noisedTree[index];
+  }
+
+  private static long filterCount(long noisedCount, double threshold) {
+    return noisedCount > 0 && noisedCount >= threshold ? noisedCount : 0;
+  }
+
+  private int getFirstChild(int index) {
+    return index * branchingFactor + 1;
+  }
+
+  private int getParent(int index) {
+    return (index - 1) / branchingFactor;
+  }
+
+  private int getL0Sensitivity() {
+    // An entry increments one node on every level of the tree.
+    return params.treeHeight() * params.maxPartitionsContributed();
+  }
+
+  /** Returns the number of nodes of the tree, or a number > MAX_NUM_NODES if there are more. */
+  private static long getNumNodes(int treeHeight, int branchingFactor) {
+    long numNodes = 1;
+    long numNodesOnLevel = 1;
+    for (int level = 1; level <= treeHeight && numNodes <= MAX_NUM_NODES; level++) {
+      numNodesOnLevel *= branchingFactor;
+      numNodes += numNodesOnLevel;
+    }
+    return numNodes;
+  }
+
+  @AutoValue
+  public abstract static class Params {
+    abstract Noise noise();
+
+    abstract double epsilon();
+
+    @Nullable
+    abstract Double delta();
+
+    abstract int maxPartitionsContributed();
+
+    abstract int maxContributionsPerPartition();
+
+    abstract DpMetrics metrics();
+
+    abstract double lower();
+
+    abstract double upper();
+
+    abstract int treeHeight();
+
+    abstract int branchingFactor();
+
+    @AutoValue.Builder
+    public abstract static class Builder {
+      private static Builder newBuilder() {
+        Builder builder = new AutoValue_BoundedQuantiles_Params.Builder();
+        // Provide LaplaceNoise as a default noise generator.
+        builder.noise(new LaplaceNoise());
+        // By default, assume that each user contributes to a given partition no more than once.
+        builder.maxContributionsPerPartition(1);
+        // By default, runtime metrics are discarded.
+        builder.metrics(DpMetrics.noOp());
+        // The default tree has 16^4 = 65536 leaves.
+        builder.treeHeight(4);
+        builder.branchingFactor(16);
+        return builder;
+      }
+
+      /** Epsilon DP parameter. */
+      public abstract Builder epsilon(double value);
+
+      /**
+       * Delta DP parameter.
+       *
+       * <p>Note that Laplace noise does not use delta. Hence, delta should not be set when Laplace
+       * noise is used.
+       */
+      public abstract Builder delta(@Nullable Double value);
+
+      /**
+       * Maximum number of partitions to which a single privacy unit (i.e., an individual) is
+       * allowed to contribute.
+       */
+      public abstract Builder maxPartitionsContributed(int value);
+
+      /**
+       * Maximum number of contributions associated with a single privacy unit (e.g., an individual)
+       * to a single partition.
+       */
+      public abstract Builder maxContributionsPerPartition(int value);
+
+      /** Distribution from which the noise will be generated and added to the tree nodes. */
+      public abstract Builder noise(Noise value);
+
+      /** Receiver of runtime metrics of the quantiles. See {@link DpMetrics} for details. */
+      public abstract Builder metrics(DpMetrics value);
+
+      /**
+       * Lower bound for the entries added to the quantile tree. Any data values below this value
+       * will be clamped (i.e., set) to this bound.
+       */
+      public abstract Builder lower(double value);
+
+      /**
+       * Upper bound for the entries added to the quantile tree. Any data values above this value
+       * will be clamped (i.e., set) to this bound.
+       */
+      public abstract Builder upper(double value);
+
+      /**
+       * Number of levels of the tree below the root. Higher trees resolve quantiles more finely,
+       * but each level increases the sensitivity and thus the noise of every node. Defaults to 4.
+       */
+      public abstract Builder treeHeight(int value);
+
+      /** Number of children of each inner node of the tree. Defaults to 16. */
+      public abstract Builder branchingFactor(int value);
+
+      abstract Params autoBuild();
+
+      public BoundedQuantiles build() {
+        Params params = autoBuild();
+        // No need to check if noise is null: Laplace noise is used by default.
+        DpPreconditions.checkEpsilon(params.epsilon());
+        DpPreconditions.checkNoiseDelta(params.delta(), params.noise());
+        DpPreconditions.checkMaxPartitionsContributed(params.maxPartitionsContributed());
+        DpPreconditions.checkMaxContributionsPerPartition(params.maxContributionsPerPartition());
+        DpPreconditions.checkBounds(params.lower(), params.upper());
+        Preconditions.checkArgument(
+            params.treeHeight() > 0,
+            "treeHeight must be > 0. Provided value: %s",
+            params.treeHeight());
+        Preconditions.checkArgument(
+            params.branchingFactor() > 1,
+            "branchingFactor must be > 1. Provided value: %s",
+            params.branchingFactor());
+        Preconditions.checkArgument(
+            getNumNodes(params.treeHeight(), params.branchingFactor()) <= MAX_NUM_NODES,
+            "treeHeight and branchingFactor are too high - the tree has more than %s nodes."
+                + " Provided values: treeHeight = %s, branchingFactor = %s",
+            MAX_NUM_NODES,
+            params.treeHeight(),
+            params.branchingFactor());
+        Preconditions.checkArgument(
+            (long) params.treeHeight() * params.maxPartitionsContributed() <= Integer.MAX_VALUE,
+            "treeHeight and maxPartitionsContributed are too high - the L0 sensitivity overflows."
+                + " Provided values: treeHeight = %s, maxPartitionsContributed = %s",
+            params.treeHeight(),
+            params.maxPartitionsContributed());
+
+        return new BoundedQuantiles(params);
+      }
+    }
+  }
+}
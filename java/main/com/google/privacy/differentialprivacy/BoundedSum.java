@@ -21,11 +21,16 @@ import static java.lang.Math.max;
 import static java.lang.Math.min;
 
 import com.google.auto.value.AutoValue;
+import com.google.auto.value.extension.memoized.Memoized;
 import com.google.common.base.Preconditions;
+import com.google.differentialprivacy.Data.Output.ErrorReport;
 import com.google.differentialprivacy.Data.ValueType;
+import com.google.differentialprivacy.SummaryOuterClass.ApproxBoundsSummary;
 import com.google.differentialprivacy.SummaryOuterClass.BoundedSumSummary;
 import com.google.protobuf.InvalidProtocolBufferException;
+import java.util.Arrays;
 import java.util.Collection;
+import java.util.OptionalDouble;
 import javax.annotation.Nullable;
 
 /**
@@ -46,6 +51,14 @@ import javax.annotation.Nullable;
  * <p>This class provides an unbiased estimator for the raw bounded sum meaning that the expected
  * value of the differentially private bounded sum is equal to the raw bounded sum.
  *
+ * <p>If neither a lower nor an upper bound is specified, the bounds are determined automatically
+ * with {@link ApproxBounds} in the same pass over the data. Half of the privacy budget is then
+ * spent on the bounds and the other half on the sum. To clamp the entries to the bounds once they
+ * are known, the part of each entry that lies in its power-of-two bin of {@link ApproxBounds} is
+ * summed up per bin. Once the bounds are chosen, the clamped sum is reconstructed from these
+ * partial sums and the bin counts, without a second pass over the data (see {@link
+ * ApproxBounds#addEntry(double, double[], double[])}).
+ *
  * <p>Note: this class is not thread-safe.
  *
  * <p>For more implementation details, see {@link #computeResult()}.
@@ -58,13 +71,47 @@ public class BoundedSum {
 
   private final Params params;
   private double sum;
+  // The bounds used to clamp the entries. They are only known after computeResult() if they are
+  // determined automatically.
+  private double lower;
+  private double upper;
+  // Privacy budget of the sum, excluding the budget of automatically determined bounds.
+  private final double sumEpsilon;
+  @Nullable private final Double sumDelta;
+  // Only set if the bounds are determined automatically. The partial sums of the non-negative and
+  // negative entries are stored in the bins of approxBounds that contain the entries.
+  @Nullable private final ApproxBounds approxBounds;
+  @Nullable private final double[] posSums;
+  @Nullable private final double[] negSums;
   private double noisedSum;
+  // Raw clamping statistics, which are released only via computeBoundingReport.
+  private long numInputs;
+  private long numClampedBelow;
+  private long numClampedAbove;
 
   private AggregationState state = AggregationState.DEFAULT;
+  private boolean boundingReportReturned = false;
 
   private BoundedSum(Params params) {
     sum = 0.0;
     this.params = params;
+
+    if (params.lower().isPresent()) {
+      lower = params.lower().getAsDouble();
+      upper = params.upper().getAsDouble();
+      sumEpsilon = params.epsilon();
+      sumDelta = params.delta();
+      approxBounds = null;
+      posSums = null;
+      negSums = null;
+    } else {
+      // We split the budget in half to determine the bounds and to calculate the sum.
+      sumEpsilon = params.epsilon() * 0.5;
+      sumDelta = params.delta() == null ? null : params.delta() * 0.5;
+      approxBounds = params.approxBoundsParams().newInstance();
+      posSums = new double[approxBounds.getNumBins()];
+      negSums = new double[approxBounds.getNumBins()];
+    }
   }
 
   public static Params.Builder builder() {
@@ -73,7 +120,7 @@ public class BoundedSum {
 
   /** Clamps the input value and adds it to the sum. */
   public void addEntry(double e) {
-    if (state != AggregationState.DEFAULT) {
+    if (!state.isLive()) {
       throw new IllegalStateException("Sum cannot be amended. Reason: " + state.getErrorMessage());
     }
 
@@ -84,7 +131,13 @@ public class BoundedSum {
       return;
     }
 
-    sum += clamp(e);
+    numInputs++;
+    if (approxBounds == null) {
+      sum += clamp(e);
+    } else {
+      approxBounds.addEntry(e, posSums, negSums);
+    }
+    params.metrics().increment(DpMetrics.Counter.ENTRIES_ADDED, 1);
   }
 
   /** Clamps the input values and adds them to the sum. */
@@ -92,13 +145,29 @@ public class BoundedSum {
     e.forEach(this::addEntry);
   }
 
+  /**
+   * Adds {@code partialSum}, a sum of entries that the caller has already clamped to the bounds of
+   * this instance, without clamping it again.
+   */
+  void addClampedPartialSum(double partialSum) {
+    Preconditions.checkState(
+        state.isLive() && approxBounds == null,
+        "Sum cannot be amended. Reason: %s",
+        state.getErrorMessage());
+    sum += partialSum;
+  }
+
   private double clamp(double e) {
-    if (e > params.upper()) {
-      return params.upper();
+    if (e > upper) {
+      numClampedAbove++;
+      params.metrics().increment(DpMetrics.Counter.ENTRIES_CLAMPED, 1);
+      return upper;
     }
 
-    if (e < params.lower()) {
-      return params.lower();
+    if (e < lower) {
+      numClampedBelow++;
+      params.metrics().increment(DpMetrics.Counter.ENTRIES_CLAMPED, 1);
+      return lower;
     }
 
     return e;
@@ -116,6 +185,15 @@ public class BoundedSum {
    * bound are positive. This can be corrected by the caller of this method, e.g., by snapping the
    * result to the closest value representing a bounded sum that is possible. Note that such post
    * processing introduces bias to the result.
+   *
+   * <p>If the bounds are determined automatically, they are chosen first and the sum of the
+   * clamped entries is reconstructed from the partial sums. Since the sensitivity only depends on
+   * the larger magnitude of the two bounds, the bounds are widened to be symmetric around 0, which
+   * reduces clamping without increasing the noise. The bounds are also capped at the largest
+   * magnitude for which the sensitivity is finite.
+   *
+   * @throws IllegalStateException if the bounds are determined automatically and too few entries
+   *     were added to find them (see {@link ApproxBounds#computeResult()}).
    */
   public double computeResult() {
     if (state != AggregationState.DEFAULT) {
@@ -124,13 +202,25 @@ public class BoundedSum {
     }
 
     state = AggregationState.RESULT_RETURNED;
+    long startNanos = params.metrics().startLatency();
+    if (approxBounds != null) {
+      ApproxBounds.Result bounds =
+          approxBounds.capMagnitude(
+              approxBounds.computeResult(),
+              getMaxBoundMagnitude(
+                  params.maxPartitionsContributed(), params.maxContributionsPerPartition()));
+      lower = min(bounds.lower(), -bounds.upper());
+      upper = max(bounds.upper(), -bounds.lower());
+      sum = approxBounds.computeFromPartialSums(posSums, negSums, lower, upper, numInputs);
+    }
     noisedSum = params.noise().addNoise(
         sum,
         getL0Sensitivity(),
         getLInfSensitivity(),
-        params.epsilon(),
-        params.delta()
+        sumEpsilon,
+        sumDelta
     );
+    params.metrics().recordLatency(DpMetrics.Histogram.COMPUTE_RESULT_LATENCY_NANOS, startNanos);
     return noisedSum;
   }
 
@@ -155,49 +245,189 @@ public class BoundedSum {
                 noisedSum,
                 getL0Sensitivity(),
                 getLInfSensitivity(),
-                params.epsilon(),
-                params.delta(),
+                sumEpsilon,
+                sumDelta,
                 alpha);
-    if (params.lower() >= 0.0) {
+    if (lower >= 0.0) {
       confInt =
           ConfidenceInterval.create(max(0.0, confInt.lowerBound()), max(0.0, confInt.upperBound()));
-    } else if (params.upper() <= 0.0) {
+    } else if (upper <= 0.0) {
       confInt =
           ConfidenceInterval.create(min(0.0, confInt.lowerBound()), min(0.0, confInt.upperBound()));
     }
     return confInt;
   }
 
+  /**
+   * Computes the confidence intervals of {@link #computeConfidenceInterval(double)} for many noised
+   * sums, e.g., one per partition, that were computed with the same parameters as this sum. The
+   * bounds of the interval of {@code noisedSums[i]} are written to {@code lowerBounds[i]} and
+   * {@code upperBounds[i]}. The quantile of the noise is computed once for all sums, and no objects
+   * are allocated per sum.
+   *
+   * <p>The method only uses the parameters of this sum, so it can be called in any state and any
+   * number of times.
+   *
+   * @throws IllegalStateException if the bounds are determined automatically, since they differ
+   *     from sum to sum.
+   */
+  public void computeConfidenceIntervals(
+      double[] noisedSums, double alpha, double[] lowerBounds, double[] upperBounds) {
+    Preconditions.checkState(
+        approxBounds == null,
+        "Confidence intervals of many sums can only be computed if the bounds are set manually.");
+    params
+        .noise()
+        .computeConfidenceIntervals(
+            noisedSums,
+            getL0Sensitivity(),
+            getLInfSensitivity(),
+            sumEpsilon,
+            sumDelta,
+            alpha,
+            lowerBounds,
+            upperBounds);
+    if (lower >= 0.0) {
+      for (int i = 0; i < noisedSums.length; i++) {
+        lowerBounds[i] = max(0.0, lowerBounds[i]);
+        upperBounds[i] = max(0.0, upperBounds[i]);
+      }
+    } else if (upper <= 0.0) {
+      for (int i = 0; i < noisedSums.length; i++) {
+        lowerBounds[i] = min(0.0, lowerBounds[i]);
+        upperBounds[i] = min(0.0, upperBounds[i]);
+      }
+    }
+  }
+
+  /**
+   * Computes a differentially private report of how many entries were added to the sum and how
+   * many of them were clamped to the bounds. This helps to tune the bounds: bounds that clamp many
+   * entries bias the result, while bounds that clamp none may be wider than necessary and result
+   * in excessive noise.
+   *
+   * <p>The report consumes the additional privacy budget {@code epsilon} and {@code delta}, on top
+   * of the budget of the sum. It is noised with the noise of the sum, i.e., {@code delta} must be
+   * null for Laplace noise. The method can be called only once, and not after the sum has been
+   * serialized.
+   *
+   * <p>If the bounds are determined automatically, the report can only be computed after {@link
+   * #computeResult()}, which determines the bounds. Entries in the bins of {@link ApproxBounds}
+   * that contain the bounds are not counted as clamped.
+   */
+  public ErrorReport computeBoundingReport(double epsilon, @Nullable Double delta) {
+    if (state == AggregationState.SERIALIZED || state == AggregationState.SNAPSHOTTED) {
+      throw new IllegalStateException(
+          "Bounding report cannot be computed. Reason: " + state.getErrorMessage());
+    }
+    if (boundingReportReturned) {
+      throw new IllegalStateException("Bounding report was already computed and returned.");
+    }
+    if (approxBounds != null && state != AggregationState.RESULT_RETURNED) {
+      throw new IllegalStateException(
+          "computeResult must be called before calling computeBoundingReport if the bounds are"
+              + " determined automatically.");
+    }
+
+    boundingReportReturned = true;
+    long numOutside =
+        approxBounds == null
+            ? numClampedBelow + numClampedAbove
+            : approxBounds.countOutside(lower, upper);
+    return BoundingReports.create(
+        params.noise(),
+        numInputs,
+        numOutside,
+        lower,
+        upper,
+        params.maxPartitionsContributed(),
+        params.maxContributionsPerPartition(),
+        epsilon,
+        delta);
+  }
+
   /**
    * Returns a serializable version of the current state of {@link BoundedSum} and the parameters
    * used to calculate it. After calling this method, this instance of BoundedSum will be unusable,
    * since the result can only be output once.
    */
   public byte[] getSerializableSummary() {
-    if (state != AggregationState.DEFAULT) {
+    if (!state.isLive()) {
       throw new IllegalStateException(
           "Sum object cannot be serialized. Reason: " + state.getErrorMessage());
     }
 
+    byte[] summary = buildSummary().toByteArray();
+
+    // Record that this object is no longer suitable for producing a differentially private sum,
+    // since serialization exposes the object's raw state.
+    state = AggregationState.SERIALIZED;
+    params.metrics().increment(DpMetrics.Counter.SERIALIZED_BYTES, summary.length);
+    return summary;
+  }
+
+  /**
+   * Returns the same summary as {@link #getSerializableSummary()}, but leaves this instance usable
+   * for further entries and merges, e.g., to emit partial results of a streaming pipeline every N
+   * entries. Each snapshot contains all entries added so far, so a consumer should replace earlier
+   * snapshots of the same sum rather than merge them.
+   *
+   * <p>Since the snapshots expose the raw state, the differentially private result must be
+   * computed by whoever consumes them. {@link #computeResult()} and {@link #computeBoundingReport}
+   * of this instance throw after a snapshot was taken, while {@link #getSerializableSummary()} can
+   * still be called to hand off the final state.
+   */
+  public byte[] getSnapshotSummary() {
+    if (!state.isLive()) {
+      throw new IllegalStateException(
+          "Sum object cannot be snapshotted. Reason: " + state.getErrorMessage());
+    }
+
+    byte[] summary = buildSummary().toByteArray();
+    state = AggregationState.SNAPSHOTTED;
+    params.metrics().increment(DpMetrics.Counter.SERIALIZED_BYTES, summary.length);
+    return summary;
+  }
+
+  /**
+   * Returns the summary of {@link #getSerializableSummary()} without changing the state. This
+   * allows {@link AggregationCheckpoint} to checkpoint a sum that keeps receiving entries.
+   */
+  BoundedSumSummary buildSummary() {
+    if (!state.isLive()) {
+      throw new IllegalStateException(
+          "Sum object cannot be checkpointed. Reason: " + state.getErrorMessage());
+    }
+
     ValueType sumValue = ValueType.newBuilder().setFloatValue(sum).build();
     BoundedSumSummary.Builder builder =
         BoundedSumSummary.newBuilder()
             .setPartialSum(sumValue)
             .setEpsilon(params.epsilon())
-            .setLower(params.lower())
-            .setUpper(params.upper())
             .setMaxPartitionsContributed(params.maxPartitionsContributed())
             .setMaxContributionsPerPartition(params.maxContributionsPerPartition())
-            .setMechanismType(params.noise().getMechanismType());
+            .setMechanismType(params.noise().getMechanismType())
+            .setNumInputs(numInputs)
+            .setNumClampedBelow(numClampedBelow)
+            .setNumClampedAbove(numClampedAbove);
     if (params.delta() != null) {
       builder.setDelta(params.delta());
     }
-
-    // Record that this object is no longer suitable for producing a differentially private sum,
-    // since serialization exposes the object's raw state.
-    state = AggregationState.SERIALIZED;
-
-    return builder.build().toByteArray();
+    if (approxBounds == null) {
+      builder.setLower(lower).setUpper(upper);
+    } else {
+      builder.setBoundsSummary(approxBounds.buildSummary());
+      // The summary stores the partial sums in the layout of the C++ library.
+      double[] cumulativePosSums =
+          approxBounds.getCumulativePartialSums(posSums, /* negative= */ false);
+      double[] cumulativeNegSums =
+          approxBounds.getCumulativePartialSums(negSums, /* negative= */ true);
+      for (int i = 0; i < posSums.length; i++) {
+        builder.addPosSum(ValueType.newBuilder().setFloatValue(cumulativePosSums[i]));
+        builder.addNegSum(ValueType.newBuilder().setFloatValue(cumulativeNegSums[i]));
+      }
+    }
+    return builder.build();
   }
 
   /**
@@ -210,11 +440,12 @@ public class BoundedSum {
    * @throws IllegalStateException if this sum has already been calculated or serialized.
    */
   public void mergeWith(byte[] otherBoundedSumSummary) {
-    if (state != AggregationState.DEFAULT) {
+    if (!state.isLive()) {
       throw new IllegalStateException(
           "Sum object cannot be merged. Reason: " + state.getErrorMessage());
     }
 
+    long startNanos = params.metrics().startLatency();
     BoundedSumSummary otherSummaryParsed;
     try {
       otherSummaryParsed = BoundedSumSummary.parseFrom(otherBoundedSumSummary);
@@ -223,7 +454,54 @@ public class BoundedSum {
     }
 
     checkMergeParametersAreEqual(otherSummaryParsed);
-    this.sum += otherSummaryParsed.getPartialSum().getFloatValue();
+    if (approxBounds == null) {
+      this.sum += otherSummaryParsed.getPartialSum().getFloatValue();
+    } else {
+      ApproxBoundsSummary otherBounds = otherSummaryParsed.getBoundsSummary();
+      approxBounds.mergeWith(otherBounds.toByteArray());
+      approxBounds.mergePartialSums(
+          posSums,
+          otherSummaryParsed.getPosSumList(),
+          otherBounds.getPosBinCountList(),
+          /* negative= */ false);
+      approxBounds.mergePartialSums(
+          negSums,
+          otherSummaryParsed.getNegSumList(),
+          otherBounds.getNegBinCountList(),
+          /* negative= */ true);
+    }
+    this.numInputs += otherSummaryParsed.getNumInputs();
+    this.numClampedBelow += otherSummaryParsed.getNumClampedBelow();
+    this.numClampedAbove += otherSummaryParsed.getNumClampedAbove();
+    params.metrics().increment(DpMetrics.Counter.MERGES, 1);
+    params.metrics().recordLatency(DpMetrics.Histogram.MERGE_LATENCY_NANOS, startNanos);
+  }
+
+  /**
+   * Discards the state of this instance, including a computed result or bounding report, and makes
+   * it usable for a new aggregation with the same parameters, e.g., of the next partition. Reusing
+   * an instance avoids building a new {@link BoundedSum} per partition.
+   *
+   * <p>The result of each aggregation can still be computed only once: after the reset, {@link
+   * #computeResult()} only covers the entries added afterwards. It is the responsibility of the
+   * caller not to add the same entries again and release them a second time.
+   */
+  public void reset() {
+    sum = 0.0;
+    noisedSum = 0.0;
+    numInputs = 0;
+    numClampedBelow = 0;
+    numClampedAbove = 0;
+    if (approxBounds != null) {
+      // The bounds are determined anew for every aggregation.
+      approxBounds.reset();
+      Arrays.fill(posSums, 0.0);
+      Arrays.fill(negSums, 0.0);
+      lower = 0.0;
+      upper = 0.0;
+    }
+    state = AggregationState.DEFAULT;
+    boundingReportReturned = false;
   }
 
   private void checkMergeParametersAreEqual(BoundedSumSummary otherSum) {
@@ -235,8 +513,21 @@ public class BoundedSum {
         params.maxPartitionsContributed(), otherSum.getMaxPartitionsContributed());
     DpPreconditions.checkMergeMaxContributionsPerPartitionAreEqual(
         params.maxContributionsPerPartition(), otherSum.getMaxContributionsPerPartition());
-    DpPreconditions.checkMergeBoundsAreEqual(
-        params.lower(), otherSum.getLower(), params.upper(), otherSum.getUpper());
+    Preconditions.checkArgument(
+        otherSum.hasBoundsSummary() == (approxBounds != null),
+        "Failed to merge: only one of the sums determines its bounds automatically.");
+    if (approxBounds == null) {
+      DpPreconditions.checkMergeBoundsAreEqual(
+          lower, otherSum.getLower(), upper, otherSum.getUpper());
+    } else {
+      Preconditions.checkArgument(
+          otherSum.getPosSumCount() == posSums.length
+              && otherSum.getNegSumCount() == negSums.length,
+          "Failed to merge: unequal number of partial sums. numPartialSums1 = %s,"
+              + " numPartialSums2 = %s",
+          posSums.length,
+          otherSum.getPosSumCount());
+    }
   }
 
   private int getL0Sensitivity() {
@@ -246,8 +537,7 @@ public class BoundedSum {
   }
 
   private double getLInfSensitivity() {
-    return getLInfSensitivity(
-        params.lower(), params.upper(), params.maxContributionsPerPartition());
+    return getLInfSensitivity(lower, upper, params.maxContributionsPerPartition());
   }
 
   private static double getLInfSensitivity(
@@ -255,6 +545,24 @@ public class BoundedSum {
     return max(abs(lower), abs(upper)) * maxContributionsPerPartition;
   }
 
+  /**
+   * Returns the largest magnitude of the bounds for which the L1 sensitivity of a sum, and hence
+   * also its L2 and LInf sensitivities, are finite. Used to cap automatically determined bounds,
+   * which can be as large as {@link Double#MAX_VALUE}.
+   */
+  static double getMaxBoundMagnitude(
+      int maxPartitionsContributed, int maxContributionsPerPartition) {
+    double magnitude = Double.MAX_VALUE / maxContributionsPerPartition / maxPartitionsContributed;
+    // Rounding may still overflow the sensitivity by an ulp.
+    while (Noise.getL1Sensitivity(
+            maxPartitionsContributed,
+            getLInfSensitivity(-magnitude, magnitude, maxContributionsPerPartition))
+        > Double.MAX_VALUE) {
+      magnitude = Math.nextDown(magnitude);
+    }
+    return magnitude;
+  }
+
   @AutoValue
   public abstract static class Params {
     abstract Noise noise();
@@ -268,9 +576,38 @@ public class BoundedSum {
 
     abstract int maxContributionsPerPartition();
 
-    abstract double lower();
+    abstract DpMetrics metrics();
+
+    abstract OptionalDouble lower();
+
+    abstract OptionalDouble upper();
 
-    abstract double upper();
+    /**
+     * Returns a new {@link BoundedSum} with these parameters. The parameters were validated when
+     * they were built, so this skips all checks, e.g., of the sensitivities.
+     */
+    public BoundedSum newInstance() {
+      return new BoundedSum(this);
+    }
+
+    /**
+     * Parameters of the approximate bounds, which receive half of the budget, if the bounds are
+     * determined automatically. Otherwise null.
+     */
+    @Memoized
+    @Nullable
+    ApproxBounds.Params approxBoundsParams() {
+      if (lower().isPresent()) {
+        return null;
+      }
+      return ApproxBounds.builder()
+          .noise(noise())
+          .epsilon(epsilon() * 0.5)
+          .delta(delta() == null ? null : delta() * 0.5)
+          .maxPartitionsContributed(maxPartitionsContributed())
+          .maxContributionsPerPartition(maxContributionsPerPartition())
+          .buildParams();
+    }
 
     @AutoValue.Builder
     public abstract static class Builder {
@@ -327,6 +664,8 @@ public class BoundedSum {
         builder.noise(new LaplaceNoise());
         // By default, assume that each user contributes to a given partition no more than once.
         builder.maxContributionsPerPartition(1);
+        // By default, runtime metrics are discarded.
+        builder.metrics(DpMetrics.noOp());
         return builder;
       }
 
@@ -350,15 +689,20 @@ public class BoundedSum {
       /** Distribution from which the noise will be generated and added to the sum. */
       public abstract Builder noise(Noise value);
 
+      /** Receiver of runtime metrics of the sum. See {@link DpMetrics} for details. */
+      public abstract Builder metrics(DpMetrics value);
+
       /**
        * Lower bound for the entries added to the sum. Any data values below this value will be
-       * clamped (i.e., set) to this bound.
+       * clamped (i.e., set) to this bound. If neither bound is set, the bounds are determined
+       * automatically. See {@link BoundedSum} for details.
        */
       public abstract Builder lower(double value);
 
       /**
        * Upper bound for the entries added to the sum. Any data values above this value will be
-       * clamped (i.e., set) to this bound.
+       * clamped (i.e., set) to this bound. If neither bound is set, the bounds are determined
+       * automatically. See {@link BoundedSum} for details.
        */
       public abstract Builder upper(double value);
 
@@ -373,26 +717,49 @@ public class BoundedSum {
       abstract Params autoBuild();
 
       public BoundedSum build() {
+        return buildParams().newInstance();
+      }
+
+      /**
+       * Validates the parameters and returns them without building a {@link BoundedSum}. The
+       * returned parameters are immutable and can be shared to build many sums with {@link
+       * Params#newInstance()}, e.g., one per partition, without validating them again.
+       */
+      public Params buildParams() {
         Params params = autoBuild();
         // No need to check if noise is null: Laplace noise is used by default.
         DpPreconditions.checkEpsilon(params.epsilon());
         DpPreconditions.checkNoiseDelta(params.delta(), params.noise());
         DpPreconditions.checkMaxPartitionsContributed(params.maxPartitionsContributed());
         DpPreconditions.checkMaxContributionsPerPartition(params.maxContributionsPerPartition());
-        DpPreconditions.checkBounds(params.lower(), params.upper());
+        // Like any other missing parameter, a single missing bound is an illegal state.
+        Preconditions.checkState(
+            params.lower().isPresent() == params.upper().isPresent(),
+            "Either both or none of the bounds must be set. Provided values: lower = %s upper = %s",
+            params.lower(),
+            params.upper());
+        if (!params.lower().isPresent()) {
+          // The bounds are determined automatically. Their sensitivity cannot be validated before
+          // they are known.
+          params.approxBoundsParams();
+          return params;
+        }
+        double lower = params.lower().getAsDouble();
+        double upper = params.upper().getAsDouble();
+        DpPreconditions.checkBounds(lower, upper);
 
         switch (params.noise().getMechanismType()) {
           case LAPLACE:
             checkL1SensitivityOverflow(
-                params.lower(),
-                params.upper(),
+                lower,
+                upper,
                 params.maxContributionsPerPartition(),
                 params.maxPartitionsContributed());
             break;
           case GAUSSIAN:
             checkL2SensitivityOverflow(
-                params.lower(),
-                params.upper(),
+                lower,
+                upper,
                 params.maxContributionsPerPartition(),
                 params.maxPartitionsContributed());
             break;
@@ -401,10 +768,9 @@ public class BoundedSum {
                 "Unable to validate sensitivity overflow: unknown mechanism type: "
                     + params.noise().getMechanismType());
         }
-        checkLInfSensitivityOverflow(
-            params.lower(), params.upper(), params.maxContributionsPerPartition());
+        checkLInfSensitivityOverflow(lower, upper, params.maxContributionsPerPartition());
 
-        return new BoundedSum(params);
+        return params;
       }
     }
   }
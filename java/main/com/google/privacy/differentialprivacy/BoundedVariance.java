@@ -0,0 +1,452 @@
+//
+// Copyright 2020 Google LLC
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//      http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+//
+
+package com.google.privacy.differentialprivacy;
+
+import static java.lang.Math.max;
+import static java.lang.Math.min;
+
+import com.google.auto.value.AutoValue;
+import com.google.common.base.Preconditions;
+import com.google.differentialprivacy.SummaryOuterClass.BoundedVarianceSummary;
+import com.google.protobuf.InvalidProtocolBufferException;
+import java.util.Collection;
+import javax.annotation.Nullable;
+
+/**
+ * Calculates a differentially private variance for a collection of values.
+ *
+ * <p>The variance is computed as the difference between the mean of the squares and the square of
+ * the mean of the entries, which are both derived from a noisy count, a noisy sum and a noisy sum
+ * of squares. Like in {@link BoundedMean}, the entries are normalized by subtracting the midpoint
+ * of the bounds before they are summed up, which reduces the sensitivity of the sum. The squares
+ * of the normalized entries are normalized again by subtracting the midpoint of their own range
+ * [0, ((upper - lower) / 2)^2].
+ *
+ * <p>All three quantities are kept in a single accumulator that is updated once per entry and
+ * serialized into a single summary. The privacy budget is split evenly between them.
+ *
+ * <p>A differentially private standard deviation is the square root of the result, and a
+ * confidence interval of the standard deviation consists of the square roots of the bounds of
+ * {@link #computeConfidenceInterval(double)}. Both are mere post processing steps.
+ *
+ * <p>Supports contributions from a single privacy unit to multiple partitions as well as multiple
+ * contributions from a single privacy unit to a given partition.
+ *
+ * <p>The user can provide a {@link Noise} instance which will be used to generate the noise. If no
+ * instance is specified, {@link LaplaceNoise} is applied.
+ *
+ * <p>Note: the class is not thread-safe.
+ *
+ * <p>For more implementation details, see {@link #computeResult()}.
+ *
+ * <p>For general details and key definitions, see <a href=
+ * "https://github.com/google/differential-privacy/blob/main/differential_privacy.md#key-definitions">
+ * this</a> introduction to Differential Privacy.
+ */
+public class BoundedVariance {
+  private final Params params;
+  // The midpoint of the bounds, and the largest distance of a clamped entry from it.
+  private final double midpoint;
+  private final double maxDistFromMidpoint;
+  // The midpoint of the range [0, maxDistFromMidpoint^2] of the squared normalized entries.
+  private final double midpointOfSquares;
+  // Privacy budget of each of the count, the sum and the sum of squares.
+  private final double componentEpsilon;
+  @Nullable private final Double componentDelta;
+
+  // The fused accumulator: the number of entries, Σ_i (e_i - m) and Σ_i ((e_i - m)^2 - m2) where
+  // m is midpoint and m2 is midpointOfSquares.
+  private long count;
+  private double normalizedSum;
+  private double normalizedSumOfSquares;
+
+  private long noisedCount;
+  private double noisedNormalizedSum;
+  private double noisedNormalizedSumOfSquares;
+
+  private AggregationState state = AggregationState.DEFAULT;
+
+  private BoundedVariance(Params params) {
+    this.params = params;
+    // Note: we don't calculate the midpoint as "(lower + upper) / 2" to avoid overflow.
+    midpoint = params.lower() * 0.5 + params.upper() * 0.5;
+    maxDistFromMidpoint = params.upper() * 0.5 - params.lower() * 0.5;
+    midpointOfSquares = maxDistFromMidpoint * maxDistFromMidpoint * 0.5;
+
+    componentEpsilon = params.epsilon() / 3.0;
+    componentDelta = params.delta() == null ? null : params.delta() / 3.0;
+  }
+
+  public static Params.Builder builder() {
+    return Params.Builder.newBuilder();
+  }
+
+  /** Clamps the input value and adds it to the variance. */
+  public void addEntry(double e) {
+    Preconditions.checkState(state == AggregationState.DEFAULT, "Variance cannot be amended.");
+
+    // NaN is ignored because introducing even a single NaN entry will result in a NaN variance
+    // regardless of other entries, which would break the indistinguishability property required
+    // for differential privacy.
+    if (Double.isNaN(e)) {
+      return;
+    }
+
+    if (e < params.lower() || e > params.upper()) {
+      params.metrics().increment(DpMetrics.Counter.ENTRIES_CLAMPED, 1);
+    }
+    double normalized = clamp(e) - midpoint;
+    count++;
+    normalizedSum += normalized;
+    normalizedSumOfSquares += normalized * normalized - midpointOfSquares;
+    params.metrics().increment(DpMetrics.Counter.ENTRIES_ADDED, 1);
+  }
+
+  /** Clamps the input values and adds them to the variance. */
+  public void addEntries(Collection<Double> e) {
+    e.forEach(this::addEntry);
+  }
+
+  private double clamp(double e) {
+    return min(params.upper(), max(params.lower(), e));
+  }
+
+  /**
+   * Calculates and returns a differentially private variance of the elements added using {@link
+   * #addEntry} and {@link #addEntries}. The method can be called only once for a given collection
+   * of elements. All subsequent calls will result in throwing an exception.
+   *
+   * <p>The noisy count is set to at least 1, and the noisy means of the normalized entries and of
+   * their squares are clamped to their possible ranges before the variance is computed from them.
+   * The result is clamped to [0, ((upper - lower) / 2)^2], the range of possible variances. Note
+   * that the returned value is not an unbiased estimate of the raw bounded variance.
+   */
+  public double computeResult() {
+    Preconditions.checkState(
+        state == AggregationState.DEFAULT, "Variance's noised result cannot be computed.");
+
+    state = AggregationState.RESULT_RETURNED;
+    long startNanos = params.metrics().startLatency();
+    noisedCount =
+        params
+            .noise()
+            .addNoise(
+                count,
+                params.maxPartitionsContributed(),
+                params.maxContributionsPerPartition(),
+                componentEpsilon,
+                componentDelta);
+    noisedNormalizedSum =
+        params
+            .noise()
+            .addNoise(
+                normalizedSum,
+                params.maxPartitionsContributed(),
+                maxDistFromMidpoint * params.maxContributionsPerPartition(),
+                componentEpsilon,
+                componentDelta);
+    noisedNormalizedSumOfSquares =
+        params
+            .noise()
+            .addNoise(
+                normalizedSumOfSquares,
+                params.maxPartitionsContributed(),
+                midpointOfSquares * params.maxContributionsPerPartition(),
+                componentEpsilon,
+                componentDelta);
+    params.metrics().recordLatency(DpMetrics.Histogram.COMPUTE_RESULT_LATENCY_NANOS, startNanos);
+
+    double denominator = max(1, noisedCount);
+    double mean = clampMean(noisedNormalizedSum / denominator);
+    double meanOfSquares = clampMeanOfSquares(noisedNormalizedSumOfSquares / denominator);
+    return clampVariance(meanOfSquares - mean * mean);
+  }
+
+  /**
+   * Computes a confidence interval that contains the true variance with a probability greater or
+   * equal to {@code 1 - alpha}. The computation is based exclusively on the noised data and the
+   * privacy parameters. Thus no privacy budget is consumed by this operation.
+   *
+   * <p>The interval is derived from confidence intervals of the count, the sum and the sum of
+   * squares. Because their noise is independent, each of them is computed with a confidence level
+   * of {@code (1 - alpha)^(1/3)}. The bounds of the variance are the most extreme values that are
+   * consistent with all three intervals.
+   *
+   * <p>Refer to <a
+   * href="https://github.com/google/differential-privacy/tree/main/common_docs/confidence_intervals.md">this</a> doc for
+   * more information.
+   */
+  public ConfidenceInterval computeConfidenceInterval(double alpha) {
+    Preconditions.checkState(
+        state == AggregationState.RESULT_RETURNED,
+        "computeResult() must be called before calling computeConfidenceInterval()");
+    DpPreconditions.checkAlpha(alpha);
+
+    double componentAlpha = 1.0 - Math.pow(1.0 - alpha, 1.0 / 3.0);
+    ConfidenceInterval confIntCount =
+        params
+            .noise()
+            .computeConfidenceInterval(
+                noisedCount,
+                params.maxPartitionsContributed(),
+                params.maxContributionsPerPartition(),
+                componentEpsilon,
+                componentDelta,
+                componentAlpha);
+    ConfidenceInterval confIntSum =
+        params
+            .noise()
+            .computeConfidenceInterval(
+                noisedNormalizedSum,
+                params.maxPartitionsContributed(),
+                maxDistFromMidpoint * params.maxContributionsPerPartition(),
+                componentEpsilon,
+                componentDelta,
+                componentAlpha);
+    ConfidenceInterval confIntSumOfSquares =
+        params
+            .noise()
+            .computeConfidenceInterval(
+                noisedNormalizedSumOfSquares,
+                params.maxPartitionsContributed(),
+                midpointOfSquares * params.maxContributionsPerPartition(),
+                componentEpsilon,
+                componentDelta,
+                componentAlpha);
+
+    // Ensuring that the bounds of the denominator are consistent with how computeResult()
+    // processes the denominator.
+    double minDenominator = max(1.0, confIntCount.lowerBound());
+    double maxDenominator = max(1.0, confIntCount.upperBound());
+
+    double minMean = clampMean(divideMin(confIntSum.lowerBound(), minDenominator, maxDenominator));
+    double maxMean = clampMean(divideMax(confIntSum.upperBound(), minDenominator, maxDenominator));
+    double minMeanOfSquares =
+        clampMeanOfSquares(
+            divideMin(confIntSumOfSquares.lowerBound(), minDenominator, maxDenominator));
+    double maxMeanOfSquares =
+        clampMeanOfSquares(
+            divideMax(confIntSumOfSquares.upperBound(), minDenominator, maxDenominator));
+
+    double minSquaredMean =
+        minMean <= 0.0 && maxMean >= 0.0 ? 0.0 : min(minMean * minMean, maxMean * maxMean);
+    double maxSquaredMean = max(minMean * minMean, maxMean * maxMean);
+    return ConfidenceInterval.create(
+        clampVariance(minMeanOfSquares - maxSquaredMean),
+        clampVariance(maxMeanOfSquares - minSquaredMean));
+  }
+
+  /** Returns the smallest quotient of {@code numerator} and a denominator in the given range. */
+  private static double divideMin(double numerator, double minDenominator, double maxDenominator) {
+    return numerator >= 0.0 ? numerator / maxDenominator : numerator / minDenominator;
+  }
+
+  /** Returns the largest quotient of {@code numerator} and a denominator in the given range. */
+  private static double divideMax(double numerator, double minDenominator, double maxDenominator) {
+    return numerator >= 0.0 ? numerator / minDenominator : numerator / maxDenominator;
+  }
+
+  /** Clamps a mean of the normalized entries to their range. */
+  private double clampMean(double normalizedMean) {
+    return min(maxDistFromMidpoint, max(-maxDistFromMidpoint, normalizedMean));
+  }
+
+  /** Denormalizes and clamps a mean of the normalized squares to their range. */
+  private double clampMeanOfSquares(double normalizedMeanOfSquares) {
+    return clampVariance(normalizedMeanOfSquares + midpointOfSquares);
+  }
+
+  private double clampVariance(double variance) {
+    return min(maxDistFromMidpoint * maxDistFromMidpoint, max(0.0, variance));
+  }
+
+  /**
+   * Returns a serializable version of the current state of {@link BoundedVariance} and the
+   * parameters used to calculate it. After calling this method, this instance of BoundedVariance
+   * will be unusable, since the result can only be output once.
+   */
+  public byte[] getSerializableSummary() {
+    Preconditions.checkState(
+        state == AggregationState.DEFAULT, "Variance object cannot be serialized.");
+
+    BoundedVarianceSummary.Builder builder =
+        BoundedVarianceSummary.newBuilder()
+            .setCount(count)
+            .setNormalizedSum(normalizedSum)
+            .setNormalizedSumOfSquares(normalizedSumOfSquares)
+            .setEpsilon(params.epsilon())
+            .setMechanismType(params.noise().getMechanismType())
+            .setLower(params.lower())
+            .setUpper(params.upper())
+            .setMaxPartitionsContributed(params.maxPartitionsContributed())
+            .setMaxContributionsPerPartition(params.maxContributionsPerPartition());
+    if (params.delta() != null) {
+      builder.setDelta(params.delta());
+    }
+
+    // Record that this object is no longer suitable for producing a differentially private
+    // variance, since serialization exposes the object's raw state.
+    state = AggregationState.SERIALIZED;
+
+    byte[] summary = builder.build().toByteArray();
+    params.metrics().increment(DpMetrics.Counter.SERIALIZED_BYTES, summary.length);
+    return summary;
+  }
+
+  /**
+   * Merges this instance with the output of {@link #getSerializableSummary()} from a different
+   * {@link BoundedVariance} and stores the merged result in this instance. This is required in the
+   * distributed calculations context for merging partial results.
+   *
+   * @throws IllegalArgumentException if not all config parameters (e.g., epsilon, contribution
+   *     bounds) are equal or if the passed serialized variance is invalid.
+   * @throws IllegalStateException if this variance has already been calculated or serialized.
+   */
+  public void mergeWith(byte[] otherBoundedVarianceSummary) {
+    Preconditions.checkState(
+        state == AggregationState.DEFAULT, "Variance object cannot be merged.");
+
+    long startNanos = params.metrics().startLatency();
+    BoundedVarianceSummary otherSummaryParsed;
+    try {
+      otherSummaryParsed = BoundedVarianceSummary.parseFrom(otherBoundedVarianceSummary);
+    } catch (InvalidProtocolBufferException pbe) {
+      throw new IllegalArgumentException(pbe);
+    }
+
+    checkMergeParametersAreEqual(otherSummaryParsed);
+    count += otherSummaryParsed.getCount();
+    normalizedSum += otherSummaryParsed.getNormalizedSum();
+    normalizedSumOfSquares += otherSummaryParsed.getNormalizedSumOfSquares();
+    params.metrics().increment(DpMetrics.Counter.MERGES, 1);
+    params.metrics().recordLatency(DpMetrics.Histogram.MERGE_LATENCY_NANOS, startNanos);
+  }
+
+  private void checkMergeParametersAreEqual(BoundedVarianceSummary otherVariance) {
+    DpPreconditions.checkMergeMechanismTypesAreEqual(
+        params.noise().getMechanismType(), otherVariance.getMechanismType());
+    DpPreconditions.checkMergeEpsilonAreEqual(params.epsilon(), otherVariance.getEpsilon());
+    DpPreconditions.checkMergeDeltaAreEqual(params.delta(), otherVariance.getDelta());
+    DpPreconditions.checkMergeMaxPartitionsContributedAreEqual(
+        params.maxPartitionsContributed(), otherVariance.getMaxPartitionsContributed());
+    DpPreconditions.checkMergeMaxContributionsPerPartitionAreEqual(
+        params.maxContributionsPerPartition(), otherVariance.getMaxContributionsPerPartition());
+    DpPreconditions.checkMergeBoundsAreEqual(
+        params.lower(), otherVariance.getLower(), params.upper(), otherVariance.getUpper());
+  }
+
+  @AutoValue
+  public abstract static class Params {
+    abstract Noise noise();
+
+    abstract double epsilon();
+
+    @Nullable
+    abstract Double delta();
+
+    abstract int maxPartitionsContributed();
+
+    abstract int maxContributionsPerPartition();
+
+    abstract DpMetrics metrics();
+
+    abstract double lower();
+
+    abstract double upper();
+
+    @AutoValue.Builder
+    public abstract static class Builder {
+      private static Builder newBuilder() {
+        Builder builder = new AutoValue_BoundedVariance_Params.Builder();
+        // Provides LaplaceNoise as a default noise generator.
+        builder.noise(new LaplaceNoise());
+        // By default, runtime metrics are discarded.
+        builder.metrics(DpMetrics.noOp());
+        return builder;
+      }
+
+      /** Epsilon DP parameter. */
+      public abstract Builder epsilon(double value);
+
+      /**
+       * Delta DP parameter.
+       *
+       * <p>Note that Laplace noise does not use delta. Hence, delta should not be set when Laplace
+       * noise is used.
+       */
+      public abstract Builder delta(@Nullable Double value);
+
+      /**
+       * Maximum number of partitions that a single privacy unit (e.g., an individual) is allowed to
+       * contribute to.
+       */
+      public abstract Builder maxPartitionsContributed(int value);
+
+      /** Max contributions per partition from a single privacy unit (e.g., an individual). */
+      public abstract Builder maxContributionsPerPartition(int value);
+
+      /** Noise that will be used to make the variance differentially private. */
+      public abstract Builder noise(Noise value);
+
+      /** Receiver of runtime metrics of the variance. See {@link DpMetrics} for details. */
+      public abstract Builder metrics(DpMetrics value);
+
+      /** Lower bound for the entries added to the variance. Lower values will be clamped. */
+      public abstract Builder lower(double value);
+
+      /** Upper bound for the entries added to the variance. Greater values will be clamped. */
+      public abstract Builder upper(double value);
+
+      abstract Params autoBuild();
+
+      public BoundedVariance build() {
+        Params params = autoBuild();
+        // No need to check noise nullability: the noise is defaulted to Laplace noise.
+        DpPreconditions.checkEpsilon(params.epsilon());
+        DpPreconditions.checkNoiseDelta(params.delta(), params.noise());
+        DpPreconditions.checkMaxPartitionsContributed(params.maxPartitionsContributed());
+        DpPreconditions.checkMaxContributionsPerPartition(params.maxContributionsPerPartition());
+        DpPreconditions.checkBounds(params.lower(), params.upper());
+        // Equal bounds would result in a sensitivity of 0, which the noise does not support.
+        Preconditions.checkArgument(
+            params.lower() < params.upper(),
+            "The upper bound should be strictly greater than the lower bound. Provided values: "
+                + "lower = %s upper = %s",
+            params.lower(),
+            params.upper());
+        // The sensitivity of the sum of squares grows with the square of the bounds. Checking its
+        // L1 sensitivity, which is at least as large as its L2 sensitivity, covers both noises.
+        double maxDistFromMidpoint = params.upper() * 0.5 - params.lower() * 0.5;
+        double lInfSensitivityOfSquares =
+            maxDistFromMidpoint * maxDistFromMidpoint * 0.5 * params.maxContributionsPerPartition();
+        Preconditions.checkArgument(
+            Double.isFinite(
+                Noise.getL1Sensitivity(
+                    params.maxPartitionsContributed(), lInfSensitivityOfSquares)),
+            "bounds and contribution bounds are too high - the sensitivity of the sum of squares"
+                + " overflows. Provided values: lower bound = %s, upper bound = %s,"
+                + " maxContributionsPerPartition = %s, maxPartitionsContributed = %s",
+            params.lower(),
+            params.upper(),
+            params.maxContributionsPerPartition(),
+            params.maxPartitionsContributed());
+
+        return new BoundedVariance(params);
+      }
+    }
+  }
+}
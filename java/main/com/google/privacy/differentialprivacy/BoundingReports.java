@@ -0,0 +1,79 @@
+//
+// Copyright 2020 Google LLC
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//      http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+//
+
+package com.google.privacy.differentialprivacy;
+
+import static java.lang.Math.max;
+
+import com.google.differentialprivacy.Data.BoundingReport;
+import com.google.differentialprivacy.Data.Output.ErrorReport;
+import com.google.differentialprivacy.Data.ValueType;
+import javax.annotation.Nullable;
+
+/** Creates differentially private reports about the clamping performed by bounded aggregations. */
+final class BoundingReports {
+
+  private BoundingReports() {}
+
+  /**
+   * Returns an {@link ErrorReport} with a {@link BoundingReport} for the bounds {@code lower} and
+   * {@code upper}. The number of inputs and the number of inputs outside of the bounds are noised
+   * with {@code noise}, splitting {@code epsilon} and {@code delta} evenly between the two counts.
+   *
+   * <p>A single privacy unit affects each of the counts by at most {@code
+   * maxContributionsPerPartition} in each of at most {@code maxPartitionsContributed} partitions.
+   * Negative noised counts are set to 0, which is a mere post processing step.
+   */
+  static ErrorReport create(
+      Noise noise,
+      long numInputs,
+      long numOutside,
+      double lower,
+      double upper,
+      int maxPartitionsContributed,
+      int maxContributionsPerPartition,
+      double epsilon,
+      @Nullable Double delta) {
+    DpPreconditions.checkEpsilon(epsilon);
+    DpPreconditions.checkNoiseDelta(delta, noise);
+
+    double halfEpsilon = epsilon * 0.5;
+    Double halfDelta = delta == null ? null : delta * 0.5;
+    long noisedNumInputs =
+        noise.addNoise(
+            numInputs,
+            maxPartitionsContributed,
+            maxContributionsPerPartition,
+            halfEpsilon,
+            halfDelta);
+    long noisedNumOutside =
+        noise.addNoise(
+            numOutside,
+            maxPartitionsContributed,
+            maxContributionsPerPartition,
+            halfEpsilon,
+            halfDelta);
+
+    BoundingReport boundingReport =
+        BoundingReport.newBuilder()
+            .setLowerBound(ValueType.newBuilder().setFloatValue(lower))
+            .setUpperBound(ValueType.newBuilder().setFloatValue(upper))
+            .setNumInputs(max(0, noisedNumInputs))
+            .setNumOutside(max(0, noisedNumOutside))
+            .build();
+    return ErrorReport.newBuilder().setBoundingReport(boundingReport).build();
+  }
+}
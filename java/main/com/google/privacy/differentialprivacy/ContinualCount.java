@@ -0,0 +1,251 @@
+//
+// Copyright 2020 Google LLC
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//      http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+//
+
+package com.google.privacy.differentialprivacy;
+
+import com.google.auto.value.AutoValue;
+import com.google.common.base.Preconditions;
+import javax.annotation.Nullable;
+
+/**
+ * Continually releases differentially private running counts of a stream using the binary tree
+ * mechanism of Chan, Shi and Song ("Private and Continual Release of Statistics", 2011).
+ *
+ * <p>Unlike {@link Count}, which releases a single result, this class divides the stream into time
+ * steps, e.g., minutes, and releases the noised count of all time steps so far at the end of each
+ * time step. The releases of all time steps together are differentially private: the time steps
+ * are the leaves of a binary tree, each node of the tree is noised once, and every running count
+ * is the sum of at most one noised node per level. For a stream of at most {@code maxTimeSteps}
+ * time steps, the tree has {@code floor(log2(maxTimeSteps)) + 1} levels. Only one node per level
+ * needs to be kept, so memory and the cost of ending a time step are O(log(maxTimeSteps)), and
+ * the error of every running count grows only polylogarithmically with the number of time steps.
+ *
+ * <p>A single privacy unit (e.g., an individual) may increment the count by at most {@code
+ * maxContributions} in total, over all time steps, in each of at most {@code
+ * maxPartitionsContributed} partitions. It is the responsibility of the caller to bound the
+ * contributions.
+ *
+ * <p>The user can provide a {@link Noise} instance which will be used to generate the noise. If no
+ * instance is specified, {@link LaplaceNoise} is applied.
+ *
+ * <p>Note: this class is not thread-safe.
+ *
+ * <p>For general details and key definitions, see <a href=
+ * "https://github.com/google/differential-privacy/blob/main/differential_privacy.md#key-definitions">
+ * this</a> introduction to Differential Privacy.
+ */
+public class ContinualCount {
+  private final Params params;
+  private final int numLevels;
+  // rawNodes[i] and noisedNodes[i] are the raw and the noised count of the most recent complete
+  // node on level i, which covers 2^i time steps. The node is part of the current running count
+  // iff bit i of the number of ended time steps is set.
+  private final long[] rawNodes;
+  private final long[] noisedNodes;
+  private long currentTimeStepCount;
+  private long numEndedTimeSteps;
+
+  private ContinualCount(Params params) {
+    this.params = params;
+    numLevels = Long.SIZE - Long.numberOfLeadingZeros(params.maxTimeSteps());
+    rawNodes = new long[numLevels];
+    noisedNodes = new long[numLevels];
+  }
+
+  public static Params.Builder builder() {
+    return Params.Builder.newBuilder();
+  }
+
+  /** Increments the count of the current time step by one. */
+  public void increment() {
+    incrementBy(1);
+  }
+
+  /**
+   * Increments the count of the current time step by the given value. Note, that this shouldn't be
+   * used to count more contributions of a privacy unit than {@code maxContributions}.
+   */
+  public void incrementBy(long count) {
+    checkTimeStepsLeft();
+
+    // Non-positive values are ignored because they don't make sense.
+    if (count > 0) {
+      currentTimeStepCount += count;
+      params.metrics().increment(DpMetrics.Counter.ENTRIES_ADDED, count);
+    }
+  }
+
+  /**
+   * Ends the current time step and returns a differentially private count of all increments of
+   * all time steps that have ended so far, including the current one. Subsequent increments count
+   * towards the next time step.
+   *
+   * <p>The returned value is an unbiased estimate of the raw running count. It may sometimes be
+   * negative, and running counts of consecutive time steps are not necessarily monotone. This can
+   * be corrected by the caller, which is a mere post processing step.
+   *
+   * @throws IllegalStateException if {@code maxTimeSteps} time steps have already ended.
+   */
+  public long endTimeStep() {
+    checkTimeStepsLeft();
+
+    long startNanos = params.metrics().startLatency();
+    numEndedTimeSteps++;
+    // The new node on the level of the lowest set bit covers the current time step and the nodes
+    // on all lower levels, which are no longer part of any running count.
+    int level = Long.numberOfTrailingZeros(numEndedTimeSteps);
+    long rawNode = currentTimeStepCount;
+    for (int i = 0; i < level; i++) {
+      rawNode += rawNodes[i];
+      rawNodes[i] = 0;
+      noisedNodes[i] = 0;
+    }
+    rawNodes[level] = rawNode;
+    noisedNodes[level] =
+        params
+            .noise()
+            .addNoise(
+                rawNode,
+                getL0Sensitivity(),
+                params.maxContributions(),
+                params.epsilon(),
+                params.delta());
+    currentTimeStepCount = 0;
+
+    long runningCount = 0;
+    for (int i = level; i < numLevels; i++) {
+      if ((numEndedTimeSteps & (1L << i)) != 0) {
+        runningCount += noisedNodes[i];
+      }
+    }
+    params.metrics().recordLatency(DpMetrics.Histogram.COMPUTE_RESULT_LATENCY_NANOS, startNanos);
+    return runningCount;
+  }
+
+  /** Returns the number of time steps that have ended so far. */
+  public long getNumEndedTimeSteps() {
+    return numEndedTimeSteps;
+  }
+
+  private void checkTimeStepsLeft() {
+    Preconditions.checkState(
+        numEndedTimeSteps < params.maxTimeSteps(),
+        "Continual count cannot be amended. Reason: all %s time steps have ended.",
+        params.maxTimeSteps());
+  }
+
+  private int getL0Sensitivity() {
+    // The increments of a single privacy unit affect one node per level of the tree. On each
+    // level, they affect the nodes by at most maxContributions in total, which bounds both their
+    // L_1 and L_2 norm.
+    return numLevels * params.maxPartitionsContributed();
+  }
+
+  @AutoValue
+  public abstract static class Params {
+    abstract Noise noise();
+
+    abstract double epsilon();
+
+    @Nullable
+    abstract Double delta();
+
+    abstract int maxPartitionsContributed();
+
+    abstract int maxContributions();
+
+    abstract long maxTimeSteps();
+
+    abstract DpMetrics metrics();
+
+    @AutoValue.Builder
+    public abstract static class Builder {
+      private static Builder newBuilder() {
+        Builder builder = new AutoValue_ContinualCount_Params.Builder();
+        // Provide LaplaceNoise as a default noise generator.
+        builder.noise(new LaplaceNoise());
+        // By default, assume that each user contributes to the stream no more than once.
+        builder.maxContributions(1);
+        // By default, runtime metrics are discarded.
+        builder.metrics(DpMetrics.noOp());
+
+        return builder;
+      }
+
+      /** Epsilon DP parameter of all releases of the stream together. */
+      public abstract Builder epsilon(double value);
+
+      /**
+       * Delta DP parameter of all releases of the stream together.
+       *
+       * <p>Note that Laplace noise does not use delta. Hence, delta should not be set when Laplace
+       * noise is used.
+       */
+      public abstract Builder delta(@Nullable Double value);
+
+      /**
+       * Maximum number of partitions to which a single privacy unit (i.e., an individual) is
+       * allowed to contribute.
+       */
+      public abstract Builder maxPartitionsContributed(int value);
+
+      /**
+       * Maximum total increment of the count by a single privacy unit (e.g., an individual) over
+       * all time steps of the stream. Defaults to 1.
+       */
+      public abstract Builder maxContributions(int value);
+
+      /**
+       * Maximum number of time steps of the stream. The noise grows with the logarithm of this
+       * value.
+       */
+      public abstract Builder maxTimeSteps(long value);
+
+      /** Distribution from which the noise will be generated and added to the counts. */
+      public abstract Builder noise(Noise value);
+
+      /** Receiver of runtime metrics of the count. See {@link DpMetrics} for details. */
+      public abstract Builder metrics(DpMetrics value);
+
+      abstract Params autoBuild();
+
+      public ContinualCount build() {
+        Params params = autoBuild();
+        // No need to check if noise is null: Laplace noise is used by default.
+        DpPreconditions.checkEpsilon(params.epsilon());
+        DpPreconditions.checkNoiseDelta(params.delta(), params.noise());
+        DpPreconditions.checkMaxPartitionsContributed(params.maxPartitionsContributed());
+        Preconditions.checkArgument(
+            params.maxContributions() > 0,
+            "maxContributions must be > 0. Provided value: %s",
+            params.maxContributions());
+        Preconditions.checkArgument(
+            params.maxTimeSteps() > 0,
+            "maxTimeSteps must be > 0. Provided value: %s",
+            params.maxTimeSteps());
+        // The tree has at most 63 levels, which keeps the L0 sensitivity from overflowing unless
+        // maxPartitionsContributed is very large.
+        Preconditions.checkArgument(
+            (long) params.maxPartitionsContributed() * Long.SIZE <= Integer.MAX_VALUE,
+            "maxPartitionsContributed is too high - the L0 sensitivity overflows. Provided value:"
+                + " %s",
+            params.maxPartitionsContributed());
+
+        return new ContinualCount(params);
+      }
+    }
+  }
+}
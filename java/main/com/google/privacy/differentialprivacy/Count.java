@@ -19,9 +19,7 @@ package com.google.privacy.differentialprivacy;
 import static java.lang.Math.max;
 
 import com.google.auto.value.AutoValue;
-import com.google.common.base.Preconditions;
 import com.google.differentialprivacy.SummaryOuterClass.CountSummary;
-import com.google.differentialprivacy.SummaryOuterClass.MechanismType;
 import com.google.protobuf.InvalidProtocolBufferException;
 import java.util.Optional;
 import javax.annotation.Nullable;
@@ -78,7 +76,7 @@ public class Count {
    * contributions to a partition from the same user.
    */
   public void incrementBy(long count) {
-    if (state != AggregationState.DEFAULT) {
+    if (!state.isLive()) {
       throw new IllegalStateException(
           "Count cannot be amended. Reason: " + state.getErrorMessage());
     }
@@ -86,6 +84,7 @@ public class Count {
     // Non-positive values are ignored because they don't make sense.
     if (count > 0) {
       this.rawCount += count;
+      params.metrics().increment(DpMetrics.Counter.ENTRIES_ADDED, count);
     }
   }
 
@@ -106,6 +105,7 @@ public class Count {
     }
 
     state = AggregationState.RESULT_RETURNED;
+    long startNanos = params.metrics().startLatency();
     noisedCount =
         params
             .noise()
@@ -115,6 +115,7 @@ public class Count {
                 params.maxContributionsPerPartition(),
                 params.epsilon(),
                 params.delta());
+    params.metrics().recordLatency(DpMetrics.Histogram.COMPUTE_RESULT_LATENCY_NANOS, startNanos);
     return noisedCount;
   }
 
@@ -146,6 +147,35 @@ public class Count {
         max(0.0, confInt.lowerBound()), max(0.0, confInt.upperBound()));
   }
 
+  /**
+   * Computes the confidence intervals of {@link #computeConfidenceInterval(double)} for many noised
+   * counts, e.g., one per partition, that were computed with the same parameters as this count.
+   * The bounds of the interval of {@code noisedCounts[i]} are written to {@code lowerBounds[i]}
+   * and {@code upperBounds[i]}. The quantile of the noise is computed once for all counts, and no
+   * objects are allocated per count.
+   *
+   * <p>The method only uses the parameters of this count, so it can be called in any state and
+   * any number of times.
+   */
+  public void computeConfidenceIntervals(
+      long[] noisedCounts, double alpha, double[] lowerBounds, double[] upperBounds) {
+    params
+        .noise()
+        .computeConfidenceIntervals(
+            noisedCounts,
+            params.maxPartitionsContributed(),
+            params.maxContributionsPerPartition(),
+            params.epsilon(),
+            params.delta(),
+            alpha,
+            lowerBounds,
+            upperBounds);
+    for (int i = 0; i < noisedCounts.length; i++) {
+      lowerBounds[i] = max(0.0, lowerBounds[i]);
+      upperBounds[i] = max(0.0, upperBounds[i]);
+    }
+  }
+
   /**
    * Returns either of {@link #computeResult} or {@link Optional#empty}. The result is (epsilon,
    * noiseDelta + thresholdDelta)-differentially private assuming that empty counts are not
@@ -164,40 +194,14 @@ public class Count {
 
     long noisyCount = computeResult();
 
-    // The implementation will work only for symmetrical noise.
-    Preconditions.checkState(
-        params.noise().getMechanismType() == MechanismType.LAPLACE
-            || params.noise().getMechanismType() == MechanismType.GAUSSIAN,
-        "Unable to calculate the threshold for an unknown mechanism type %s",
-        params.noise().getMechanismType());
-
-    double thresholdDeltaPerPartition = thresholdDelta / params.maxContributionsPerPartition();
-
-    /*
-    The threshold is set s.t. the noised count of a single privacy ID will not exceed it with a
-    probability greater than thresholdDeltaPerPartition. This is equivalent to calculating the
-    rank = (1-thresholdDeltaPerPartition) quantile of the noise added to
-    x = maxContributionsPerPartition, i.e., the max contribution of a single privacy ID.
-
-    The call below is equivalent to calling noise.computeQuantile(1-thresholdDeltaPerPartition,
-    maxContributionsPerPartition, ...). But because thresholdDeltaPerPartition is typically very
-    small, 1-thresholdDelta might be rounded to 1 as a result of the limited resolution of double
-    values around 1. To mitigate inaccuracy, we calculate the rank = thresholdDeltaPerPartition
-    quantile for x = 0.0, negate the result and shift it by maxContributionsPerPartition. This works
-    because the noise is symmetrical and invariant to translation.
-    */
     double threshold =
-        -1.0
-                * params
-                    .noise()
-                    .computeQuantile(
-                        /* rank= */ thresholdDeltaPerPartition,
-                        /* x= */ 0.0,
-                        params.maxPartitionsContributed(),
-                        params.maxContributionsPerPartition(),
-                        params.epsilon(),
-                        params.delta())
-            + params.maxContributionsPerPartition();
+        PartitionSelection.computeThreshold(
+            params.noise(),
+            params.maxPartitionsContributed(),
+            params.maxContributionsPerPartition(),
+            params.epsilon(),
+            params.delta(),
+            thresholdDelta);
     if (Double.compare((double) noisyCount, threshold) >= 0) {
       return Optional.of(noisyCount);
     } else {
@@ -211,11 +215,53 @@ public class Count {
    * result can only be output once.
    */
   public byte[] getSerializableSummary() {
-    if (state != AggregationState.DEFAULT) {
+    if (!state.isLive()) {
       throw new IllegalStateException(
           "Count object cannot be serialized. Reason: " + state.getErrorMessage());
     }
 
+    byte[] summary = buildSummary().toByteArray();
+
+    // Record that this object is no longer suitable for producing a differentially private count,
+    // since serialization exposes the object's raw state.
+    state = AggregationState.SERIALIZED;
+    params.metrics().increment(DpMetrics.Counter.SERIALIZED_BYTES, summary.length);
+    return summary;
+  }
+
+  /**
+   * Returns the same summary as {@link #getSerializableSummary()}, but leaves this instance usable
+   * for further increments and merges, e.g., to emit partial results of a streaming pipeline every
+   * N entries. Each snapshot contains all entries added so far, so a consumer should replace
+   * earlier snapshots of the same count rather than merge them.
+   *
+   * <p>Since the snapshots expose the raw state, the differentially private result must be
+   * computed by whoever consumes them. {@link #computeResult()} of this instance throws after a
+   * snapshot was taken, while {@link #getSerializableSummary()} can still be called to hand off the
+   * final state.
+   */
+  public byte[] getSnapshotSummary() {
+    if (!state.isLive()) {
+      throw new IllegalStateException(
+          "Count object cannot be snapshotted. Reason: " + state.getErrorMessage());
+    }
+
+    byte[] summary = buildSummary().toByteArray();
+    state = AggregationState.SNAPSHOTTED;
+    params.metrics().increment(DpMetrics.Counter.SERIALIZED_BYTES, summary.length);
+    return summary;
+  }
+
+  /**
+   * Returns the summary of {@link #getSerializableSummary()} without changing the state. This
+   * allows {@link AggregationCheckpoint} to checkpoint a count that keeps receiving entries.
+   */
+  CountSummary buildSummary() {
+    if (!state.isLive()) {
+      throw new IllegalStateException(
+          "Count object cannot be checkpointed. Reason: " + state.getErrorMessage());
+    }
+
     CountSummary.Builder builder =
         CountSummary.newBuilder()
             .setCount(rawCount)
@@ -226,12 +272,7 @@ public class Count {
     if (params.delta() != null) {
       builder.setDelta(params.delta());
     }
-
-    // Record that this object is no longer suitable for producing a differentially private count,
-    // since serialization exposes the object's raw state.
-    state = AggregationState.SERIALIZED;
-
-    return builder.build().toByteArray();
+    return builder.build();
   }
 
   /**
@@ -244,11 +285,12 @@ public class Count {
    * @throws IllegalStateException if this count has already been calculated or serialized.
    */
   public void mergeWith(byte[] otherCountSummary) {
-    if (state != AggregationState.DEFAULT) {
+    if (!state.isLive()) {
       throw new IllegalStateException(
           "Count object cannot be merged. Reason: " + state.getErrorMessage());
     }
 
+    long startNanos = params.metrics().startLatency();
     CountSummary otherSummaryParsed;
     try {
       otherSummaryParsed = CountSummary.parseFrom(otherCountSummary);
@@ -258,6 +300,23 @@ public class Count {
 
     checkMergeParametersAreEqual(otherSummaryParsed);
     this.rawCount += otherSummaryParsed.getCount();
+    params.metrics().increment(DpMetrics.Counter.MERGES, 1);
+    params.metrics().recordLatency(DpMetrics.Histogram.MERGE_LATENCY_NANOS, startNanos);
+  }
+
+  /**
+   * Discards the state of this instance, including a computed result, and makes it usable for a new
+   * aggregation with the same parameters, e.g., of the next partition. Reusing an instance avoids
+   * building a new {@link Count} per partition.
+   *
+   * <p>The result of each aggregation can still be computed only once: after the reset, {@link
+   * #computeResult()} only covers the entries added afterwards. It is the responsibility of the
+   * caller not to add the same entries again and release them a second time.
+   */
+  public void reset() {
+    rawCount = 0;
+    noisedCount = 0;
+    state = AggregationState.DEFAULT;
   }
 
   private void checkMergeParametersAreEqual(CountSummary otherCount) {
@@ -284,6 +343,16 @@ public class Count {
 
     abstract int maxContributionsPerPartition();
 
+    abstract DpMetrics metrics();
+
+    /**
+     * Returns a new {@link Count} with these parameters. The parameters were validated when they
+     * were built, so this only allocates the count.
+     */
+    public Count newInstance() {
+      return new Count(this);
+    }
+
     @AutoValue.Builder
     public abstract static class Builder {
       private static Builder newBuilder() {
@@ -292,6 +361,8 @@ public class Count {
         builder.noise(new LaplaceNoise());
         // By default, assume that each user contributes to a given partition no more than once.
         builder.maxContributionsPerPartition(1);
+        // By default, runtime metrics are discarded.
+        builder.metrics(DpMetrics.noOp());
 
         return builder;
       }
@@ -316,6 +387,9 @@ public class Count {
       /** Distribution from which the noise will be generated and added to the count. */
       public abstract Builder noise(Noise value);
 
+      /** Receiver of runtime metrics of the count. See {@link DpMetrics} for details. */
+      public abstract Builder metrics(DpMetrics value);
+
       /**
        * Maximum number of contributions associated with a single privacy unit (e.g., an individual)
        * to a single partition. This is used to calculate the sensitivity of the count operation.
@@ -327,6 +401,15 @@ public class Count {
       abstract Params autoBuild();
 
       public Count build() {
+        return buildParams().newInstance();
+      }
+
+      /**
+       * Validates the parameters and returns them without building a {@link Count}. The returned
+       * parameters are immutable and can be shared to build many counts with {@link
+       * Params#newInstance()}, e.g., one per partition, without validating them again.
+       */
+      public Params buildParams() {
         Params params = autoBuild();
         // No need to check if noise is null: Laplace noise is used by default.
         DpPreconditions.checkEpsilon(params.epsilon());
@@ -334,7 +417,7 @@ public class Count {
         DpPreconditions.checkMaxPartitionsContributed(params.maxPartitionsContributed());
         DpPreconditions.checkMaxContributionsPerPartition(params.maxContributionsPerPartition());
 
-        return new Count(params);
+        return params;
       }
     }
   }
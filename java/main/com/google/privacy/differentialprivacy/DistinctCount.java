@@ -0,0 +1,416 @@
+//
+// Copyright 2020 Google LLC
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//      http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+//
+
+package com.google.privacy.differentialprivacy;
+
+import static java.lang.Math.max;
+import static java.nio.charset.StandardCharsets.UTF_8;
+
+import com.google.auto.value.AutoValue;
+import com.google.common.base.Preconditions;
+import com.google.common.hash.HashFunction;
+import com.google.common.hash.Hashing;
+import com.google.differentialprivacy.SummaryOuterClass.DistinctCountSummary;
+import com.google.protobuf.ByteString;
+import com.google.protobuf.InvalidProtocolBufferException;
+import javax.annotation.Nullable;
+
+/**
+ * Calculates a differentially private count of distinct values, e.g., of the privacy units that
+ * contributed to a partition, using a HyperLogLog sketch.
+ *
+ * <p>Instead of storing the distinct values, the sketch keeps {@code 2^precision} one-byte
+ * registers, so its memory is fixed regardless of the number of values. Every value is hashed; the
+ * first {@code precision} bits of the hash select a register, which records the largest number of
+ * leading zeros seen in the remaining bits. Adding the same value again does not change the sketch,
+ * and two sketches are merged by taking the maximum of each register. Without noise, the relative
+ * standard error of the estimate is about {@code 1.3 / sqrt(2^precision)}, i.e., 1% for the
+ * default precision of 14.
+ *
+ * <p>The registers are not noised directly. Instead, for each level {@code k} between 1 and 32,
+ * the number of registers whose value is at least {@code k} is noised, and the distinct count is
+ * estimated from these noised level counts only. Adding or removing a single value changes at
+ * most one register, whose value can move by many levels at once, but it changes each level count
+ * by at most 1. Each privacy unit is assumed to add at most one distinct value to each of at most
+ * {@code maxPartitionsContributed} partitions, so the level counts of all partitions have an L0
+ * sensitivity of {@code 32 * maxPartitionsContributed} and an L-infinity sensitivity of 1. This
+ * makes the noise about 32 times larger (or {@code sqrt(32)} times for Gaussian noise) than the
+ * noise of a {@link Count}. It is the responsibility of the caller to bound the contributions,
+ * e.g., by adding the privacy unit identifiers themselves.
+ *
+ * <p>The user can provide a {@link Noise} instance which will be used to generate the noise. If no
+ * instance is specified, {@link LaplaceNoise} is applied.
+ *
+ * <p>Note: this class is not thread-safe.
+ *
+ * <p>For more implementation details, see {@link #computeResult()}.
+ *
+ * <p>For general details and key definitions, see <a href=
+ * "https://github.com/google/differential-privacy/blob/main/differential_privacy.md#key-definitions">
+ * this</a> introduction to Differential Privacy.
+ */
+public class DistinctCount {
+  static final int MIN_PRECISION = 4;
+  static final int MAX_PRECISION = 18;
+  /**
+   * Number of levels of the sketch whose counts are noised. Level {@code k} samples every value
+   * with probability {@code 2^-(k - 1)}, so the levels cover cardinalities of up to about {@code
+   * 2^NUM_LEVELS} times the number of registers.
+   */
+  static final int NUM_LEVELS = 32;
+  /**
+   * Largest fraction of registers that may be reached at the level used for the estimate, i.e.,
+   * {@code 1 - e^-2}. Up to this load of two sampled values per register, linear counting is more
+   * accurate than at the level above.
+   */
+  private static final double MAX_LEVEL_OCCUPANCY = 1.0 - Math.exp(-2.0);
+  private static final HashFunction HASH_FUNCTION = Hashing.murmur3_128();
+
+  private final Params params;
+  private final int precision;
+  private final byte[] registers;
+  // The level and the noised level count that computeResult() based its estimate on.
+  private int estimateLevel;
+  private long noisedLevelCount;
+
+  private AggregationState state = AggregationState.DEFAULT;
+
+  private DistinctCount(Params params) {
+    this.params = params;
+    precision = params.precision();
+    registers = new byte[1 << precision];
+  }
+
+  public static Params.Builder builder() {
+    return Params.Builder.newBuilder();
+  }
+
+  /** Adds {@code value} to the set of distinct values. */
+  public void addEntry(String value) {
+    addHash(HASH_FUNCTION.hashString(value, UTF_8).asLong());
+  }
+
+  /** Adds {@code value} to the set of distinct values. */
+  public void addEntry(long value) {
+    addHash(HASH_FUNCTION.hashLong(value).asLong());
+  }
+
+  /** Adds {@code value} to the set of distinct values. */
+  public void addEntry(byte[] value) {
+    addHash(HASH_FUNCTION.hashBytes(value).asLong());
+  }
+
+  private void addHash(long hash) {
+    if (state != AggregationState.DEFAULT) {
+      throw new IllegalStateException(
+          "Distinct count cannot be amended. Reason: " + state.getErrorMessage());
+    }
+
+    int index = (int) (hash >>> (Long.SIZE - precision));
+    // Setting the bit right after the remaining bits bounds the rank if all of them are 0.
+    long remainingBits = (hash << precision) | (1L << (precision - 1));
+    byte rank = (byte) (Long.numberOfLeadingZeros(remainingBits) + 1);
+    if (rank > registers[index]) {
+      registers[index] = rank;
+    }
+    params.metrics().increment(DpMetrics.Counter.ENTRIES_ADDED, 1);
+  }
+
+  /**
+   * Calculates and returns a differentially private count of the distinct values added via {@link
+   * #addEntry}. The method can be called only once for a given collection of elements. All
+   * subsequent calls will throw an exception.
+   *
+   * <p>The count of every level of the sketch is noised, see the class documentation for the
+   * sensitivity. The estimate is then computed from the noised counts only: the lowest level at
+   * which at most {@code 1 - e^-2} of the registers are reached is chosen, and the number of
+   * values sampled at this level is estimated with linear counting and scaled by the inverse of
+   * its sampling probability. Without noise, the first level yields the exact count for small
+   * cardinalities, while the relative standard error for large cardinalities is about {@code 1.3
+   * / sqrt(2^precision)}.
+   *
+   * <p>The returned value is never negative.
+   */
+  public long computeResult() {
+    if (state != AggregationState.DEFAULT) {
+      throw new IllegalStateException(
+          "Distinct count's noised result cannot be computed. Reason: "
+              + state.getErrorMessage());
+    }
+
+    state = AggregationState.RESULT_RETURNED;
+    long startNanos = params.metrics().startLatency();
+    long[] levelCounts = getLevelCounts();
+    int l0Sensitivity = NUM_LEVELS * params.maxPartitionsContributed();
+    long[] noisedLevelCounts = new long[NUM_LEVELS];
+    for (int i = 0; i < NUM_LEVELS; i++) {
+      noisedLevelCounts[i] =
+          params
+              .noise()
+              .addNoise(
+                  levelCounts[i],
+                  l0Sensitivity,
+                  /* lInfSensitivity= */ 1L,
+                  params.epsilon(),
+                  params.delta());
+    }
+
+    // The remainder is post-processing of the noised level counts.
+    double maxOccupiedRegisters = MAX_LEVEL_OCCUPANCY * registers.length;
+    int level = 1;
+    while (level < NUM_LEVELS && noisedLevelCounts[level - 1] > maxOccupiedRegisters) {
+      level++;
+    }
+    estimateLevel = level;
+    noisedLevelCount = noisedLevelCounts[level - 1];
+    long result = Math.round(estimateFromLevelCount(noisedLevelCount, level));
+    params.metrics().recordLatency(DpMetrics.Histogram.COMPUTE_RESULT_LATENCY_NANOS, startNanos);
+    return result;
+  }
+
+  /**
+   * Computes a {@link ConfidenceInterval} with integer bounds that contains the estimate of the
+   * sketch with a probability greater or equal to 1 - alpha using the noised distinct count
+   * computed by {@code computeResult()}. The interval is derived from the confidence interval of
+   * the noised count of the level that the estimate is based on. It only accounts for the noise,
+   * not for the estimation error of the sketch.
+   *
+   * <p>Refer to <a
+   * href="https://github.com/google/differential-privacy/tree/main/common_docs/confidence_intervals.md">this</a> doc for
+   * more information.
+   */
+  public ConfidenceInterval computeConfidenceInterval(double alpha) {
+    if (state != AggregationState.RESULT_RETURNED) {
+      throw new IllegalStateException(
+          "computeResult must be called before calling computeConfidenceInterval.");
+    }
+    ConfidenceInterval confInt =
+        params
+            .noise()
+            .computeConfidenceInterval(
+                noisedLevelCount,
+                NUM_LEVELS * params.maxPartitionsContributed(),
+                /* lInfSensitivity= */ 1L,
+                params.epsilon(),
+                params.delta(),
+                alpha);
+    // The estimate is monotone in the level count, so the bounds map to bounds of the estimate.
+    return ConfidenceInterval.create(
+        Math.floor(estimateFromLevelCount(confInt.lowerBound(), estimateLevel)),
+        Math.ceil(estimateFromLevelCount(confInt.upperBound(), estimateLevel)));
+  }
+
+  /**
+   * Returns the number of registers whose value is at least {@code k}, for each level {@code k}
+   * between 1 and {@link #NUM_LEVELS}. Adding a value to the sketch changes each of these counts by
+   * at most 1.
+   */
+  long[] getLevelCounts() {
+    long[] registersPerValue = new long[Long.SIZE + 1];
+    for (byte rank : registers) {
+      registersPerValue[rank]++;
+    }
+    long[] levelCounts = new long[NUM_LEVELS];
+    long registersAtOrAbove = 0;
+    for (int rank = Long.SIZE; rank >= 1; rank--) {
+      registersAtOrAbove += registersPerValue[rank];
+      if (rank <= NUM_LEVELS) {
+        levelCounts[rank - 1] = registersAtOrAbove;
+      }
+    }
+    return levelCounts;
+  }
+
+  /**
+   * Estimates the number of distinct values from the number of registers reached at {@code level}
+   * with linear counting. The level count is clamped to the range of possible values first.
+   */
+  private double estimateFromLevelCount(double levelCount, int level) {
+    int numRegisters = registers.length;
+    // At least one register is kept empty, which bounds the estimate of a saturated level.
+    double clampedLevelCount = Math.min(max(levelCount, 0.0), numRegisters - 1);
+    return Math.scalb(
+        numRegisters * Math.log(numRegisters / (numRegisters - clampedLevelCount)), level - 1);
+  }
+
+  /**
+   * Returns a serializable version of the current state of {@link DistinctCount} and the
+   * parameters used to calculate it. After calling this method, this instance of DistinctCount
+   * will be unusable, since the result can only be output once.
+   */
+  public byte[] getSerializableSummary() {
+    if (state != AggregationState.DEFAULT) {
+      throw new IllegalStateException(
+          "Distinct count object cannot be serialized. Reason: " + state.getErrorMessage());
+    }
+
+    DistinctCountSummary.Builder builder =
+        DistinctCountSummary.newBuilder()
+            .setRegisters(ByteString.copyFrom(registers))
+            .setPrecision(precision)
+            .setEpsilon(params.epsilon())
+            .setMaxPartitionsContributed(params.maxPartitionsContributed())
+            .setMechanismType(params.noise().getMechanismType());
+    if (params.delta() != null) {
+      builder.setDelta(params.delta());
+    }
+
+    // Record that this object is no longer suitable for producing a differentially private count,
+    // since serialization exposes the object's raw state.
+    state = AggregationState.SERIALIZED;
+
+    byte[] summary = builder.build().toByteArray();
+    params.metrics().increment(DpMetrics.Counter.SERIALIZED_BYTES, summary.length);
+    return summary;
+  }
+
+  /**
+   * Merges this instance with the output of {@link #getSerializableSummary()} from a different
+   * {@link DistinctCount} and stores the merged result in this instance. Values added to both
+   * instances are counted only once. This is required in the distributed calculations context for
+   * merging partial results.
+   *
+   * @throws IllegalArgumentException if not all config parameters (e.g., epsilon, precision) are
+   *     equal or if the passed serialized distinct count is invalid.
+   * @throws IllegalStateException if this distinct count has already been calculated or
+   *     serialized.
+   */
+  public void mergeWith(byte[] otherDistinctCountSummary) {
+    if (state != AggregationState.DEFAULT) {
+      throw new IllegalStateException(
+          "Distinct count object cannot be merged. Reason: " + state.getErrorMessage());
+    }
+
+    long startNanos = params.metrics().startLatency();
+    DistinctCountSummary otherSummaryParsed;
+    try {
+      otherSummaryParsed = DistinctCountSummary.parseFrom(otherDistinctCountSummary);
+    } catch (InvalidProtocolBufferException pbe) {
+      throw new IllegalArgumentException(pbe);
+    }
+
+    checkMergeParametersAreEqual(otherSummaryParsed);
+    byte[] otherRegisters = otherSummaryParsed.getRegisters().toByteArray();
+    Preconditions.checkArgument(
+        otherRegisters.length == registers.length,
+        "Failed to merge: unexpected number of registers. Expected: %s, provided: %s",
+        registers.length,
+        otherRegisters.length);
+    int maxRank = Long.SIZE - precision + 1;
+    for (int i = 0; i < registers.length; i++) {
+      Preconditions.checkArgument(
+          otherRegisters[i] >= 0 && otherRegisters[i] <= maxRank,
+          "Failed to merge: invalid register value %s",
+          otherRegisters[i]);
+      registers[i] = (byte) max(registers[i], otherRegisters[i]);
+    }
+    params.metrics().increment(DpMetrics.Counter.MERGES, 1);
+    params.metrics().recordLatency(DpMetrics.Histogram.MERGE_LATENCY_NANOS, startNanos);
+  }
+
+  private void checkMergeParametersAreEqual(DistinctCountSummary otherCount) {
+    DpPreconditions.checkMergeMechanismTypesAreEqual(
+        params.noise().getMechanismType(), otherCount.getMechanismType());
+    DpPreconditions.checkMergeEpsilonAreEqual(params.epsilon(), otherCount.getEpsilon());
+    DpPreconditions.checkMergeDeltaAreEqual(params.delta(), otherCount.getDelta());
+    DpPreconditions.checkMergeMaxPartitionsContributedAreEqual(
+        params.maxPartitionsContributed(), otherCount.getMaxPartitionsContributed());
+    Preconditions.checkArgument(
+        precision == otherCount.getPrecision(),
+        "Failed to merge: unequal values of precision. precision1 = %s, precision2 = %s",
+        precision,
+        otherCount.getPrecision());
+  }
+
+  @AutoValue
+  public abstract static class Params {
+    abstract Noise noise();
+
+    abstract double epsilon();
+
+    @Nullable
+    abstract Double delta();
+
+    abstract int maxPartitionsContributed();
+
+    abstract int precision();
+
+    abstract DpMetrics metrics();
+
+    @AutoValue.Builder
+    public abstract static class Builder {
+      private static Builder newBuilder() {
+        Builder builder = new AutoValue_DistinctCount_Params.Builder();
+        // Provide LaplaceNoise as a default noise generator.
+        builder.noise(new LaplaceNoise());
+        // By default, the sketch has 2^14 registers, i.e., uses 16 KiB.
+        builder.precision(14);
+        // By default, runtime metrics are discarded.
+        builder.metrics(DpMetrics.noOp());
+
+        return builder;
+      }
+
+      /** Epsilon DP parameter. */
+      public abstract Builder epsilon(double value);
+
+      /**
+       * Delta DP parameter.
+       *
+       * <p>Note that Laplace noise does not use delta. Hence, delta should not be set when Laplace
+       * noise is used.
+       */
+      public abstract Builder delta(@Nullable Double value);
+
+      /**
+       * Maximum number of partitions to which a single privacy unit (i.e., an individual) is
+       * allowed to contribute.
+       */
+      public abstract Builder maxPartitionsContributed(int value);
+
+      /**
+       * Base 2 logarithm of the number of registers of the sketch, between 4 and 18. Each
+       * additional bit doubles the memory of the sketch and reduces its relative error by a factor
+       * of sqrt(2). Defaults to 14.
+       */
+      public abstract Builder precision(int value);
+
+      /** Distribution from which the noise will be generated and added to the count. */
+      public abstract Builder noise(Noise value);
+
+      /** Receiver of runtime metrics of the count. See {@link DpMetrics} for details. */
+      public abstract Builder metrics(DpMetrics value);
+
+      abstract Params autoBuild();
+
+      public DistinctCount build() {
+        Params params = autoBuild();
+        // No need to check if noise is null: Laplace noise is used by default.
+        DpPreconditions.checkEpsilon(params.epsilon());
+        DpPreconditions.checkNoiseDelta(params.delta(), params.noise());
+        DpPreconditions.checkMaxPartitionsContributed(params.maxPartitionsContributed());
+        Preconditions.checkArgument(
+            params.precision() >= MIN_PRECISION && params.precision() <= MAX_PRECISION,
+            "precision must be between %s and %s. Provided value: %s",
+            MIN_PRECISION,
+            MAX_PRECISION,
+            params.precision());
+
+        return new DistinctCount(params);
+      }
+    }
+  }
+}
@@ -0,0 +1,94 @@
+//
+// Copyright 2020 Google LLC
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//      http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+//
+
+package com.google.privacy.differentialprivacy;
+
+/**
+ * Receives runtime metrics of aggregations and noise mechanisms, e.g., to export them to a
+ * monitoring system.
+ *
+ * <p>Instances can be passed to the builders of the aggregations and to the constructors of the
+ * {@link Noise} implementations. If none is specified, {@link #noOp()} is used, which discards all
+ * events. Latencies are only measured if {@link #isEnabled()} returns true, so that the no-op
+ * instance does not incur the cost of reading the clock.
+ *
+ * <p>The recorded values are raw, i.e., they are not differentially private. They are meant for
+ * operational monitoring only and must not be published.
+ *
+ * <p>Implementations are called from the hot paths of the library and should therefore be cheap.
+ * If the same instance is shared by aggregations that are used concurrently, it must be
+ * thread-safe.
+ */
+public interface DpMetrics {
+  /** Monotonic counters. */
+  enum Counter {
+    /** Number of entries added to an aggregation. Counts are incremented by the added amount. */
+    ENTRIES_ADDED,
+    /** Number of entries that were clamped to the lower or upper bound of an aggregation. */
+    ENTRIES_CLAMPED,
+    /** Number of summaries merged into an aggregation. */
+    MERGES,
+    /** Total size in bytes of the summaries produced by {@code getSerializableSummary()}. */
+    SERIALIZED_BYTES,
+  }
+
+  /** Distributions of observed values. */
+  enum Histogram {
+    /** Latency of {@code computeResult()} of an aggregation in nanoseconds. */
+    COMPUTE_RESULT_LATENCY_NANOS,
+    /** Latency of {@code mergeWith()} of an aggregation in nanoseconds. */
+    MERGE_LATENCY_NANOS,
+    /**
+     * Number of iterations of the rejection sampling loop in {@link
+     * GaussianNoise#sampleSymmetricBinomial} per sample.
+     */
+    GAUSSIAN_REJECTION_ITERATIONS,
+    /** Number of steps of the binary search in {@link LaplaceNoise#sampleGeometric} per sample. */
+    LAPLACE_BINARY_SEARCH_DEPTH,
+  }
+
+  /** Returns an instance that discards all events. */
+  static DpMetrics noOp() {
+    return NoOpDpMetrics.INSTANCE;
+  }
+
+  /**
+   * Returns whether this instance records events. Callers may skip measuring values that are
+   * expensive to obtain, such as latencies, if this returns false.
+   */
+  boolean isEnabled();
+
+  /** Increments {@code counter} by {@code value}. */
+  void increment(Counter counter, long value);
+
+  /** Records a single observation of {@code value} in {@code histogram}. */
+  void record(Histogram histogram, long value);
+
+  /**
+   * Returns the start time of a latency measurement to be passed to {@link #recordLatency}, or 0
+   * if this instance is disabled.
+   */
+  default long startLatency() {
+    return isEnabled() ? System.nanoTime() : 0L;
+  }
+
+  /** Records the time elapsed since {@code startNanos} in {@code histogram} if enabled. */
+  default void recordLatency(Histogram histogram, long startNanos) {
+    if (isEnabled()) {
+      record(histogram, System.nanoTime() - startNanos);
+    }
+  }
+}
@@ -157,6 +157,16 @@ public class DpPreconditions {
         alpha);
   }
 
+  static void checkConfidenceIntervalArrays(
+      int numValues, double[] lowerBounds, double[] upperBounds) {
+    checkArgument(
+        lowerBounds.length >= numValues && upperBounds.length >= numValues,
+        "The bound arrays must have space for %s intervals. Provided lengths: %s, %s",
+        numValues,
+        lowerBounds.length,
+        upperBounds.length);
+  }
+
   static void checkNoiseComputeQuantileArguments(
       Noise noise,
       double rank,
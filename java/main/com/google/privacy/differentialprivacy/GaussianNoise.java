@@ -22,8 +22,6 @@ import com.google.common.annotations.VisibleForTesting;
 import com.google.differentialprivacy.SummaryOuterClass.MechanismType;
 import java.security.SecureRandom;
 import javax.annotation.Nullable;
-import org.apache.commons.math3.distribution.NormalDistribution;
-import org.apache.commons.math3.special.Erf;
 
 /**
  * Generates and adds Gaussian noise to a raw piece of numerical data such that the result is
@@ -56,22 +54,34 @@ public class GaussianNoise implements Noise {
       (Long.MAX_VALUE / Math.round(Math.sqrt(2) * BINOMIAL_BOUND + 1.0)) - 1;
 
   /**
-   * The standard normal distribution, of mean 0 and variance 1. Since we don't need to sample from
-   * this distribution but only use its cumulative distribution function, we initialize it with a
-   * null random generator as recommended by its documentation.
+   * The relative accuracy at which to stop the search for the tightest sigma such that Gaussian
+   * noise satisfies (epsilon, delta)-differential privacy given the sensitivities.
    */
-  private static final NormalDistribution NORMAL_DISTRIBUTION = new NormalDistribution(null, 0, 1);
+  private static final double GAUSSIAN_SIGMA_ACCURACY = 1e-9;
+
   /**
-   * The relative accuracy at which to stop the binary search to find the tightest sigma such that
-   * Gaussian noise satisfies (epsilon, delta)-differential privacy given the sensitivities.
+   * The maximum number of iterations of the search for sigma. Newton's method typically converges
+   * in fewer than 10 iterations; the bound only guards against rounding errors of delta that keep
+   * the bracket from shrinking below GAUSSIAN_SIGMA_ACCURACY.
    */
-  private static final double GAUSSIAN_SIGMA_ACCURACY = 1e-3;
+  private static final int MAX_SIGMA_ITERATIONS = 100;
 
   private final SecureRandom random;
+  private final DpMetrics metrics;
+  private final QuantileCache quantileCache = new QuantileCache();
 
   /** Returns a Noise instance initialized with a secure randomness source. */
   public GaussianNoise() {
+    this(DpMetrics.noOp());
+  }
+
+  /**
+   * Returns a Noise instance initialized with a secure randomness source that reports sampling
+   * statistics to {@code metrics}.
+   */
+  public GaussianNoise(DpMetrics metrics) {
     random = new SecureRandom();
+    this.metrics = metrics;
   }
 
   /**
@@ -202,9 +212,17 @@ public class GaussianNoise implements Noise {
     DpPreconditions.checkNoiseComputeQuantileArguments(
         this, rank, l0Sensitivity, lInfSensitivity, epsilon, delta);
 
-    double l2Sensitivity = Noise.getL2Sensitivity(l0Sensitivity, lInfSensitivity);
-    double sigma = getSigma(l2Sensitivity, epsilon, delta);
-    return x - sigma * Math.sqrt(2) * Erf.erfcInv(2 * rank);
+    // The quantile for x is the memoized quantile for 0 shifted by x. This is exactly the result
+    // of computing the quantile for x directly, and it saves the search for sigma.
+    double quantileAtZero =
+        quantileCache.get(rank, l0Sensitivity, lInfSensitivity, epsilon, delta);
+    if (Double.isNaN(quantileAtZero)) {
+      double l2Sensitivity = Noise.getL2Sensitivity(l0Sensitivity, lInfSensitivity);
+      double sigma = getSigma(l2Sensitivity, epsilon, delta);
+      quantileAtZero = sigma * StandardNormalDistribution.quantile(rank);
+      quantileCache.put(rank, l0Sensitivity, lInfSensitivity, epsilon, delta, quantileAtZero);
+    }
+    return x + quantileAtZero;
   }
 
   private void checkParameters(
@@ -228,12 +246,19 @@ public class GaussianNoise implements Noise {
   /**
    * Returns the standard deviation of the Gaussian noise necessary to obtain {@code (epsilon,
    * delta)}-differential privacy for the given L_2 sensitivity. The result will deviate from the
-   * tightest possible value sigma_tight by at most GAUSSIAN_SIGMA_ACCURACY * sigma_tight.
+   * tightest possible value sigma_tight by at most GAUSSIAN_SIGMA_ACCURACY * sigma_tight and is
+   * never smaller than sigma_tight, up to rounding errors of {@link #getDelta}.
    *
-   * <p>This implementation uses a binary search. Its runtime is rougly log(GAUSSIAN_SIGMA_ACCURACY)
-   * + log(max{sigma_tight / l2sensitivity, l2sensitivity / sigma_tight}).
+   * <p>This implementation applies Newton's method to log(getDelta(sigma)) - log(delta), which is
+   * close to linear in sigma, safeguarded by a bracket [lowerBound, upperBound] of sigma_tight.
+   * Steps that leave the bracket are replaced by bisection steps.
    */
   private static double getSigma(double l2Sensitivity, double epsilon, double delta) {
+    if (Math.exp(epsilon) == Double.POSITIVE_INFINITY) {
+      // getDelta is 0 for every sigma, so sigma_tight is 0.
+      return 0;
+    }
+
     // We use l2sensitivity as a starting guess for the upper bound, since the required noise grows
     // linearly with sensitivity.
     double upperBound = l2Sensitivity;
@@ -241,18 +266,37 @@ public class GaussianNoise implements Noise {
 
     // Increase lowerBound and upperBound until upperBound is actually an upper bound of
     // sigma_tight, using exponential search.
-    while (getDelta(upperBound, l2Sensitivity, epsilon) > delta) {
+    double deltaOfSigma;
+    while ((deltaOfSigma = getDelta(upperBound, l2Sensitivity, epsilon)) > delta) {
       lowerBound = upperBound;
       upperBound = upperBound * 2;
     }
 
-    // Binary search [lowerBound, upperBound] to find a good enough approximation of sigma_tight.
-    while (upperBound - lowerBound > GAUSSIAN_SIGMA_ACCURACY * lowerBound) {
-      double middle = lowerBound * 0.5 + upperBound * 0.5;
-      if (getDelta(middle, l2Sensitivity, epsilon) > delta) {
-        lowerBound = middle;
+    double sigma = upperBound;
+    for (int i = 0;
+        i < MAX_SIGMA_ITERATIONS && upperBound - lowerBound > GAUSSIAN_SIGMA_ACCURACY * lowerBound;
+        i++) {
+      double step =
+          -(Math.log(deltaOfSigma) - Math.log(delta))
+              * deltaOfSigma
+              / getDeltaDerivative(sigma, l2Sensitivity, epsilon);
+      // Once Newton's method has converged from one side, a step of half the accuracy crosses
+      // sigma_tight and closes the bracket from the other side.
+      double minStep = 0.5 * GAUSSIAN_SIGMA_ACCURACY * sigma;
+      if (Math.abs(step) < minStep) {
+        step = step > 0 ? minStep : -minStep;
+      }
+      double next = sigma + step;
+      // Also catches NaN steps, e.g., if delta or its derivative underflow.
+      if (!(next > lowerBound && next < upperBound)) {
+        next = lowerBound * 0.5 + upperBound * 0.5;
+      }
+      sigma = next;
+      deltaOfSigma = getDelta(sigma, l2Sensitivity, epsilon);
+      if (deltaOfSigma > delta) {
+        lowerBound = sigma;
       } else {
-        upperBound = middle;
+        upperBound = sigma;
       }
     }
 
@@ -282,8 +326,18 @@ public class GaussianNoise implements Noise {
       // If either l2Sensitivity goes to 0 or e^epsilon goes to infinity, delta goes to 0.
       return 0;
     }
-    return NORMAL_DISTRIBUTION.cumulativeProbability(a - b)
-        - c * NORMAL_DISTRIBUTION.cumulativeProbability(-a - b);
+    return StandardNormalDistribution.cdf(a - b) - c * StandardNormalDistribution.cdf(-a - b);
+  }
+
+  /**
+   * Returns the derivative of {@link #getDelta} with respect to {@code sigma}. With a, b and c as
+   * in {@link #getDelta}, the derivative is -(a + b) / sigma * PDF(a - b) - c * (a - b) / sigma *
+   * PDF(a + b). Since c * PDF(a + b) = PDF(a - b), it simplifies to -2 * a / sigma * PDF(a - b).
+   */
+  private static double getDeltaDerivative(double sigma, double l2Sensitivity, double epsilon) {
+    double a = l2Sensitivity / (2 * sigma);
+    double b = epsilon * sigma / l2Sensitivity;
+    return -2.0 * a / sigma * StandardNormalDistribution.density(a - b);
   }
 
   /**
@@ -310,7 +364,9 @@ public class GaussianNoise implements Noise {
     checkArgument(Double.isFinite(sqrtN), "Input must be finite. Provided value: %s", sqrtN);
 
     long stepSize = Math.round(Math.sqrt(2) * sqrtN + 1.0);
+    long iterations = 0;
     while (true) {
+      iterations++;
       long geometricSample = sampleBoundedGeometric();
       long twoSidedGeometricSample = random.nextBoolean() ? geometricSample : -geometricSample - 1;
       long result = stepSize * twoSidedGeometricSample + sampleUniform(stepSize);
@@ -321,6 +377,7 @@ public class GaussianNoise implements Noise {
           && rejectProbability > 0.0
           && rejectProbability
               < resultProbability * stepSize * Math.pow(2.0, geometricSample) / 4.0) {
+        metrics.record(DpMetrics.Histogram.GAUSSIAN_REJECTION_ITERATIONS, iterations);
         return result;
       }
     }
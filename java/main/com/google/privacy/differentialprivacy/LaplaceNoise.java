@@ -50,10 +50,21 @@ public class LaplaceNoise implements Noise {
   private static final double GRANULARITY_PARAM = (double) (1L << 40);
 
   private final SecureRandom random;
+  private final DpMetrics metrics;
+  private final QuantileCache quantileCache = new QuantileCache();
 
   /** Returns a Noise instance initialized with a secure randomness source. */
   public LaplaceNoise() {
+    this(DpMetrics.noOp());
+  }
+
+  /**
+   * Returns a Noise instance initialized with a secure randomness source that reports sampling
+   * statistics to {@code metrics}.
+   */
+  public LaplaceNoise(DpMetrics metrics) {
     random = new SecureRandom();
+    this.metrics = metrics;
   }
 
   /**
@@ -205,11 +216,17 @@ public class LaplaceNoise implements Noise {
     DpPreconditions.checkNoiseComputeQuantileArguments(
         this, rank, l0Sensitivity, lInfSensitivity, epsilon, delta);
 
-    double lambda = Noise.getL1Sensitivity(l0Sensitivity, lInfSensitivity) / epsilon;
-    if (rank < 0.5) {
-      return x + lambda * Math.log(2 * rank);
+    // The quantile for x is the memoized quantile for 0 shifted by x. This is exactly the result
+    // of computing the quantile for x directly.
+    double quantileAtZero =
+        quantileCache.get(rank, l0Sensitivity, lInfSensitivity, epsilon, delta);
+    if (Double.isNaN(quantileAtZero)) {
+      double lambda = Noise.getL1Sensitivity(l0Sensitivity, lInfSensitivity) / epsilon;
+      quantileAtZero =
+          rank < 0.5 ? lambda * Math.log(2 * rank) : -(lambda * Math.log(2 * (1 - rank)));
+      quantileCache.put(rank, l0Sensitivity, lInfSensitivity, epsilon, delta, quantileAtZero);
     }
-    return x - lambda * Math.log(2 * (1 - rank));
+    return x + quantileAtZero;
   }
 
   private void checkParameters(double l1Sensitivity, double epsilon, @Nullable Double delta) {
@@ -261,8 +278,10 @@ public class LaplaceNoise implements Noise {
     // ends once the interval only contains a single sample.
     long left = 0; // exclusive bound
     long right = Long.MAX_VALUE; // inclusive bound
+    long depth = 0;
 
     while (left + 1 < right) {
+      depth++;
       // Compute a midpoint that divides the probability mass of the current interval approximately
       // evenly between the left and right subinterval. The resulting midpoint will be less or equal
       // to the arithmetic mean of the interval. This reduces the expected number of iterations of
@@ -286,6 +305,7 @@ public class LaplaceNoise implements Noise {
         left = mid;
       }
     }
+    metrics.record(DpMetrics.Histogram.LAPLACE_BINARY_SEARCH_DEPTH, depth);
     return right;
   }
 
@@ -0,0 +1,35 @@
+//
+// Copyright 2020 Google LLC
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//      http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+//
+
+package com.google.privacy.differentialprivacy;
+
+/** {@link DpMetrics} that discards all events. See {@link DpMetrics#noOp()}. */
+final class NoOpDpMetrics implements DpMetrics {
+  static final NoOpDpMetrics INSTANCE = new NoOpDpMetrics();
+
+  private NoOpDpMetrics() {}
+
+  @Override
+  public boolean isEnabled() {
+    return false;
+  }
+
+  @Override
+  public void increment(Counter counter, long value) {}
+
+  @Override
+  public void record(Histogram histogram, long value) {}
+}
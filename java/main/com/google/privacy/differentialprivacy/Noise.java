@@ -47,6 +47,68 @@ public interface Noise {
       @Nullable Double delta,
       double alpha);
 
+  /**
+   * Computes the confidence intervals of {@link #computeConfidenceInterval(double, int, double,
+   * double, Double, double)} for many noised values that share the same noise parameters. The
+   * bounds of the interval of {@code noisedX[i]} are written to {@code lowerBounds[i]} and {@code
+   * upperBounds[i]}.
+   *
+   * <p>The default implementation computes the interval around zero once and shifts it by each
+   * noised value, which is exact for noise that is symmetric and invariant to translation, such as
+   * Laplace and Gaussian noise. No objects are allocated per value.
+   */
+  default void computeConfidenceIntervals(
+      double[] noisedX,
+      int l0Sensitivity,
+      double lInfSensitivity,
+      double epsilon,
+      @Nullable Double delta,
+      double alpha,
+      double[] lowerBounds,
+      double[] upperBounds) {
+    DpPreconditions.checkConfidenceIntervalArrays(noisedX.length, lowerBounds, upperBounds);
+    double quantileAtZero =
+        computeConfidenceInterval(0.0, l0Sensitivity, lInfSensitivity, epsilon, delta, alpha)
+            .lowerBound();
+    for (int i = 0; i < noisedX.length; i++) {
+      double lowerBound = noisedX[i] + quantileAtZero;
+      lowerBounds[i] = lowerBound;
+      upperBounds[i] = 2.0 * noisedX[i] - lowerBound;
+    }
+  }
+
+  /**
+   * Computes the confidence intervals of {@link #computeConfidenceInterval(long, int, long, double,
+   * Double, double)} for many noised values that share the same noise parameters. The bounds of
+   * the interval of {@code noisedX[i]} are written to {@code lowerBounds[i]} and {@code
+   * upperBounds[i]}.
+   *
+   * <p>The default implementation computes the interval around zero once and shifts it by each
+   * noised value, which is exact for noise that is symmetric and invariant to translation, such as
+   * Laplace and Gaussian noise. No objects are allocated per value.
+   */
+  default void computeConfidenceIntervals(
+      long[] noisedX,
+      int l0Sensitivity,
+      long lInfSensitivity,
+      double epsilon,
+      @Nullable Double delta,
+      double alpha,
+      double[] lowerBounds,
+      double[] upperBounds) {
+    DpPreconditions.checkConfidenceIntervalArrays(noisedX.length, lowerBounds, upperBounds);
+    ConfidenceInterval confIntAroundZero =
+        computeConfidenceInterval(0.0, l0Sensitivity, lInfSensitivity, epsilon, delta, alpha);
+    // Like the bounds of a single interval, the bounds are rounded to long before noisedX is added
+    // so that no precision is lost for large noised values.
+    long lowerBoundAroundZero = Math.round(confIntAroundZero.lowerBound());
+    long upperBoundAroundZero = Math.round(confIntAroundZero.upperBound());
+    for (int i = 0; i < noisedX.length; i++) {
+      lowerBounds[i] = SecureNoiseMath.nextSmallerDouble(lowerBoundAroundZero + noisedX[i]);
+      upperBounds[i] = SecureNoiseMath.nextLargerDouble(upperBoundAroundZero + noisedX[i]);
+    }
+  }
+
   MechanismType getMechanismType();
 
   static double getL1Sensitivity(int l0Sensitivity, double lInfSensitivity) {
@@ -0,0 +1,262 @@
+//
+// Copyright 2020 Google LLC
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//      http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+//
+
+package com.google.privacy.differentialprivacy;
+
+import static java.lang.Math.abs;
+import static java.lang.Math.max;
+
+import com.google.auto.value.AutoValue;
+import com.google.common.base.Preconditions;
+import com.google.differentialprivacy.SummaryOuterClass.BoundedSumSummary;
+import com.google.protobuf.InvalidProtocolBufferException;
+import javax.annotation.Nullable;
+
+/**
+ * Calculates differentially private sums of many partitions, e.g., tens of millions, whose raw
+ * sums are kept outside of the Java heap. Each partition costs 8 bytes of direct memory instead
+ * of a {@link BoundedSum} object with its parameters and state, and a key in a map of sums. See
+ * {@link OffHeapPartitionStore} for the memory layout.
+ *
+ * <p>Partitions are identified by an index in [0, numPartitions), e.g., assigned by the caller
+ * when the partitions are first seen. Entries are clamped to the bounds and added to the raw sums
+ * in place, and the raw sums can be merged with the output of {@link
+ * BoundedSum#getSerializableSummary()} of sums with equal parameters. All sums are noised in a
+ * single pass by {@link #computeResults}, which can be called only once.
+ *
+ * <p>Unlike {@link BoundedSum}, the bounds must be set, since the partial sums per bin that are
+ * needed to determine them automatically don't fit into a fixed-width slot. The clamping
+ * statistics of {@link BoundedSum#computeBoundingReport} are not kept either.
+ *
+ * <p>The privacy guarantees are the same as those of a {@link BoundedSum} per partition. Every
+ * partition in [0, numPartitions) is released, including partitions without contributions.
+ * Therefore, the partitions must not depend on the data, or the released partitions must be
+ * selected in a differentially private way, e.g., with {@link PartitionSelection}.
+ *
+ * <p>Note: this class is not thread-safe.
+ */
+public class OffHeapBoundedSumStore extends OffHeapPartitionStore {
+  /** Receives the noised sum of each partition. */
+  public interface ResultConsumer {
+    void accept(int partition, double noisedSum);
+  }
+
+  private final Params params;
+  private final double lInfSensitivity;
+
+  private OffHeapBoundedSumStore(Params params) {
+    super(params.numPartitions());
+    this.params = params;
+    lInfSensitivity =
+        max(abs(params.lower()), abs(params.upper())) * params.maxContributionsPerPartition();
+  }
+
+  public static Params.Builder builder() {
+    return Params.Builder.newBuilder();
+  }
+
+  /** Clamps the input value and adds it to the sum of {@code partition}. */
+  public void addEntry(int partition, double e) {
+    checkModifiable(partition, "amended");
+
+    // NaN is ignored because introducing even a single NaN entry will result in a NaN sum
+    // regardless of other entries, which would break the indistinguishability property required
+    // for differential privacy.
+    if (Double.isNaN(e)) {
+      return;
+    }
+
+    putDouble(partition, getDouble(partition) + clamp(e));
+    params.metrics().increment(DpMetrics.Counter.ENTRIES_ADDED, 1);
+  }
+
+  /**
+   * Merges the raw sum of {@code partition} with the output of {@link
+   * BoundedSum#getSerializableSummary()} of a {@link BoundedSum} with the same parameters.
+   *
+   * @throws IllegalArgumentException if not all config parameters (e.g., epsilon, contribution
+   *     bounds) are equal or if the passed serialized sum is invalid.
+   * @throws IllegalStateException if the results have already been computed.
+   */
+  public void mergeWith(int partition, byte[] boundedSumSummary) {
+    checkModifiable(partition, "merged");
+
+    long startNanos = params.metrics().startLatency();
+    BoundedSumSummary summary;
+    try {
+      summary = BoundedSumSummary.parseFrom(boundedSumSummary);
+    } catch (InvalidProtocolBufferException pbe) {
+      throw new IllegalArgumentException(pbe);
+    }
+
+    checkMergeParametersAreEqual(summary);
+    putDouble(partition, getDouble(partition) + summary.getPartialSum().getFloatValue());
+    params.metrics().increment(DpMetrics.Counter.MERGES, 1);
+    params.metrics().recordLatency(DpMetrics.Histogram.MERGE_LATENCY_NANOS, startNanos);
+  }
+
+  /**
+   * Noises the sum of every partition and passes it to {@code consumer}, in the order of the
+   * partitions. See {@link BoundedSum#computeResult()} for details on the noised sums. The method
+   * can be called only once. Afterwards, the direct memory of the store can be reclaimed.
+   */
+  public void computeResults(ResultConsumer consumer) {
+    checkDefaultState("released");
+
+    long startNanos = params.metrics().startLatency();
+    for (int partition = 0; partition < numPartitions; partition++) {
+      consumer.accept(
+          partition,
+          params
+              .noise()
+              .addNoise(
+                  getDouble(partition),
+                  params.maxPartitionsContributed(),
+                  lInfSensitivity,
+                  params.epsilon(),
+                  params.delta()));
+    }
+    releaseBuffers();
+    params.metrics().recordLatency(DpMetrics.Histogram.COMPUTE_RESULT_LATENCY_NANOS, startNanos);
+  }
+
+  private double clamp(double e) {
+    if (e > params.upper()) {
+      params.metrics().increment(DpMetrics.Counter.ENTRIES_CLAMPED, 1);
+      return params.upper();
+    }
+    if (e < params.lower()) {
+      params.metrics().increment(DpMetrics.Counter.ENTRIES_CLAMPED, 1);
+      return params.lower();
+    }
+    return e;
+  }
+
+  private void checkMergeParametersAreEqual(BoundedSumSummary otherSum) {
+    DpPreconditions.checkMergeMechanismTypesAreEqual(
+        params.noise().getMechanismType(), otherSum.getMechanismType());
+    DpPreconditions.checkMergeEpsilonAreEqual(params.epsilon(), otherSum.getEpsilon());
+    DpPreconditions.checkMergeDeltaAreEqual(params.delta(), otherSum.getDelta());
+    DpPreconditions.checkMergeMaxPartitionsContributedAreEqual(
+        params.maxPartitionsContributed(), otherSum.getMaxPartitionsContributed());
+    DpPreconditions.checkMergeMaxContributionsPerPartitionAreEqual(
+        params.maxContributionsPerPartition(), otherSum.getMaxContributionsPerPartition());
+    Preconditions.checkArgument(
+        !otherSum.hasBoundsSummary(),
+        "Failed to merge: the sum determines its bounds automatically.");
+    DpPreconditions.checkMergeBoundsAreEqual(
+        params.lower(), otherSum.getLower(), params.upper(), otherSum.getUpper());
+  }
+
+  @AutoValue
+  public abstract static class Params {
+    abstract Noise noise();
+
+    abstract double epsilon();
+
+    @Nullable
+    abstract Double delta();
+
+    abstract int maxPartitionsContributed();
+
+    abstract int maxContributionsPerPartition();
+
+    abstract double lower();
+
+    abstract double upper();
+
+    abstract int numPartitions();
+
+    abstract DpMetrics metrics();
+
+    @AutoValue.Builder
+    public abstract static class Builder {
+      private static Builder newBuilder() {
+        Builder builder = new AutoValue_OffHeapBoundedSumStore_Params.Builder();
+        // Provide LaplaceNoise as a default noise generator.
+        builder.noise(new LaplaceNoise());
+        // By default, assume that each user contributes to a given partition no more than once.
+        builder.maxContributionsPerPartition(1);
+        // By default, runtime metrics are discarded.
+        builder.metrics(DpMetrics.noOp());
+        return builder;
+      }
+
+      /** Epsilon DP parameter of each sum. */
+      public abstract Builder epsilon(double value);
+
+      /**
+       * Delta DP parameter of each sum.
+       *
+       * <p>Note that Laplace noise does not use delta. Hence, delta should not be set when Laplace
+       * noise is used.
+       */
+      public abstract Builder delta(@Nullable Double value);
+
+      /**
+       * Maximum number of partitions to which a single privacy unit (i.e., an individual) is
+       * allowed to contribute.
+       */
+      public abstract Builder maxPartitionsContributed(int value);
+
+      /**
+       * Lower bound for the entries added to the sums. Any data values below this value will be
+       * clamped (i.e., set) to this bound.
+       */
+      public abstract Builder lower(double value);
+
+      /**
+       * Upper bound for the entries added to the sums. Any data values above this value will be
+       * clamped (i.e., set) to this bound.
+       */
+      public abstract Builder upper(double value);
+
+      /** Number of partitions of the store, which are identified by indices [0, value). */
+      public abstract Builder numPartitions(int value);
+
+      /** Distribution from which the noise will be generated and added to the sums. */
+      public abstract Builder noise(Noise value);
+
+      /** Receiver of runtime metrics of the store. See {@link DpMetrics} for details. */
+      public abstract Builder metrics(DpMetrics value);
+
+      /**
+       * Maximum number of contributions associated with a single privacy unit (e.g., an individual)
+       * to a single partition. See {@link BoundedSum.Params.Builder#maxContributionsPerPartition}.
+       */
+      abstract Builder maxContributionsPerPartition(int value);
+
+      abstract Params autoBuild();
+
+      public OffHeapBoundedSumStore build() {
+        Params params = autoBuild();
+        checkNumPartitions(params.numPartitions());
+        // Validates the privacy parameters, the bounds and the sensitivities in the same way as a
+        // single sum.
+        BoundedSum.builder()
+            .noise(params.noise())
+            .epsilon(params.epsilon())
+            .delta(params.delta())
+            .maxPartitionsContributed(params.maxPartitionsContributed())
+            .maxContributionsPerPartition(params.maxContributionsPerPartition())
+            .lower(params.lower())
+            .upper(params.upper())
+            .buildParams();
+        return new OffHeapBoundedSumStore(params);
+      }
+    }
+  }
+}
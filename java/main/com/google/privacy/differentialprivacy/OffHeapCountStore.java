@@ -0,0 +1,214 @@
+//
+// Copyright 2020 Google LLC
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//      http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+//
+
+package com.google.privacy.differentialprivacy;
+
+import com.google.auto.value.AutoValue;
+import com.google.differentialprivacy.SummaryOuterClass.CountSummary;
+import com.google.protobuf.InvalidProtocolBufferException;
+import javax.annotation.Nullable;
+
+/**
+ * Calculates differentially private counts of many partitions, e.g., tens of millions, whose raw
+ * counts are kept outside of the Java heap. Each partition costs 8 bytes of direct memory instead
+ * of a {@link Count} object with its parameters and state, and a key in a map of counts. See
+ * {@link OffHeapPartitionStore} for the memory layout.
+ *
+ * <p>Partitions are identified by an index in [0, numPartitions), e.g., assigned by the caller
+ * when the partitions are first seen. The raw counts can be incremented in place and merged with
+ * the output of {@link Count#getSerializableSummary()} of counts with equal parameters. All
+ * counts are noised in a single pass by {@link #computeResults}, which can be called only once.
+ *
+ * <p>The privacy guarantees are the same as those of a {@link Count} per partition. Every
+ * partition in [0, numPartitions) is released, including partitions without contributions.
+ * Therefore, the partitions must not depend on the data, or the released partitions must be
+ * selected in a differentially private way, e.g., with {@link PartitionSelection}.
+ *
+ * <p>Note: this class is not thread-safe.
+ */
+public class OffHeapCountStore extends OffHeapPartitionStore {
+  /** Receives the noised count of each partition. */
+  public interface ResultConsumer {
+    void accept(int partition, long noisedCount);
+  }
+
+  private final Params params;
+
+  private OffHeapCountStore(Params params) {
+    super(params.numPartitions());
+    this.params = params;
+  }
+
+  public static Params.Builder builder() {
+    return Params.Builder.newBuilder();
+  }
+
+  /** Increments the count of {@code partition} by one. */
+  public void increment(int partition) {
+    incrementBy(partition, 1);
+  }
+
+  /**
+   * Increments the count of {@code partition} by {@code count}. Note, that this shouldn't be used
+   * to count multiple contributions to a partition from the same user.
+   */
+  public void incrementBy(int partition, long count) {
+    checkModifiable(partition, "amended");
+    // Non-positive values are ignored because they don't make sense.
+    if (count > 0) {
+      putLong(partition, getLong(partition) + count);
+      params.metrics().increment(DpMetrics.Counter.ENTRIES_ADDED, count);
+    }
+  }
+
+  /**
+   * Merges the raw count of {@code partition} with the output of {@link
+   * Count#getSerializableSummary()} of a {@link Count} with the same parameters.
+   *
+   * @throws IllegalArgumentException if not all config parameters (e.g., epsilon) are equal or if
+   *     the passed serialized count is invalid.
+   * @throws IllegalStateException if the results have already been computed.
+   */
+  public void mergeWith(int partition, byte[] countSummary) {
+    checkModifiable(partition, "merged");
+
+    long startNanos = params.metrics().startLatency();
+    CountSummary summary;
+    try {
+      summary = CountSummary.parseFrom(countSummary);
+    } catch (InvalidProtocolBufferException pbe) {
+      throw new IllegalArgumentException(pbe);
+    }
+
+    checkMergeParametersAreEqual(summary);
+    putLong(partition, getLong(partition) + summary.getCount());
+    params.metrics().increment(DpMetrics.Counter.MERGES, 1);
+    params.metrics().recordLatency(DpMetrics.Histogram.MERGE_LATENCY_NANOS, startNanos);
+  }
+
+  /**
+   * Noises the count of every partition and passes it to {@code consumer}, in the order of the
+   * partitions. See {@link Count#computeResult()} for details on the noised counts. The method
+   * can be called only once. Afterwards, the direct memory of the store can be reclaimed.
+   */
+  public void computeResults(ResultConsumer consumer) {
+    checkDefaultState("released");
+
+    long startNanos = params.metrics().startLatency();
+    for (int partition = 0; partition < numPartitions; partition++) {
+      consumer.accept(
+          partition,
+          params
+              .noise()
+              .addNoise(
+                  getLong(partition),
+                  params.maxPartitionsContributed(),
+                  params.maxContributionsPerPartition(),
+                  params.epsilon(),
+                  params.delta()));
+    }
+    releaseBuffers();
+    params.metrics().recordLatency(DpMetrics.Histogram.COMPUTE_RESULT_LATENCY_NANOS, startNanos);
+  }
+
+  private void checkMergeParametersAreEqual(CountSummary otherCount) {
+    DpPreconditions.checkMergeMechanismTypesAreEqual(
+        params.noise().getMechanismType(), otherCount.getMechanismType());
+    DpPreconditions.checkMergeEpsilonAreEqual(params.epsilon(), otherCount.getEpsilon());
+    DpPreconditions.checkMergeDeltaAreEqual(params.delta(), otherCount.getDelta());
+    DpPreconditions.checkMergeMaxPartitionsContributedAreEqual(
+        params.maxPartitionsContributed(), otherCount.getMaxPartitionsContributed());
+    DpPreconditions.checkMergeMaxContributionsPerPartitionAreEqual(
+        params.maxContributionsPerPartition(), otherCount.getMaxContributionsPerPartition());
+  }
+
+  @AutoValue
+  public abstract static class Params {
+    abstract Noise noise();
+
+    abstract double epsilon();
+
+    @Nullable
+    abstract Double delta();
+
+    abstract int maxPartitionsContributed();
+
+    abstract int maxContributionsPerPartition();
+
+    abstract int numPartitions();
+
+    abstract DpMetrics metrics();
+
+    @AutoValue.Builder
+    public abstract static class Builder {
+      private static Builder newBuilder() {
+        Builder builder = new AutoValue_OffHeapCountStore_Params.Builder();
+        // Provide LaplaceNoise as a default noise generator.
+        builder.noise(new LaplaceNoise());
+        // By default, assume that each user contributes to a given partition no more than once.
+        builder.maxContributionsPerPartition(1);
+        // By default, runtime metrics are discarded.
+        builder.metrics(DpMetrics.noOp());
+        return builder;
+      }
+
+      /** Epsilon DP parameter of each count. */
+      public abstract Builder epsilon(double value);
+
+      /**
+       * Delta DP parameter of each count.
+       *
+       * <p>Note that Laplace noise does not use delta. Hence, delta should not be set when Laplace
+       * noise is used.
+       */
+      public abstract Builder delta(@Nullable Double value);
+
+      /**
+       * Maximum number of partitions to which a single privacy unit (i.e., an individual) is
+       * allowed to contribute.
+       */
+      public abstract Builder maxPartitionsContributed(int value);
+
+      /**
+       * Maximum number of contributions associated with a single privacy unit (e.g., an
+       * individual) to a single partition.
+       */
+      public abstract Builder maxContributionsPerPartition(int value);
+
+      /** Number of partitions of the store, which are identified by indices [0, value). */
+      public abstract Builder numPartitions(int value);
+
+      /** Distribution from which the noise will be generated and added to the counts. */
+      public abstract Builder noise(Noise value);
+
+      /** Receiver of runtime metrics of the store. See {@link DpMetrics} for details. */
+      public abstract Builder metrics(DpMetrics value);
+
+      abstract Params autoBuild();
+
+      public OffHeapCountStore build() {
+        Params params = autoBuild();
+        // No need to check if noise is null: Laplace noise is used by default.
+        DpPreconditions.checkEpsilon(params.epsilon());
+        DpPreconditions.checkNoiseDelta(params.delta(), params.noise());
+        DpPreconditions.checkMaxPartitionsContributed(params.maxPartitionsContributed());
+        DpPreconditions.checkMaxContributionsPerPartition(params.maxContributionsPerPartition());
+        checkNumPartitions(params.numPartitions());
+        return new OffHeapCountStore(params);
+      }
+    }
+  }
+}
@@ -0,0 +1,112 @@
+//
+// Copyright 2020 Google LLC
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//      http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+//
+
+package com.google.privacy.differentialprivacy;
+
+import com.google.common.base.Preconditions;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+
+/**
+ * Keeps one 8 byte partial aggregate per partition in direct byte buffers, i.e., outside of the
+ * Java heap. Used by {@link OffHeapCountStore} and {@link OffHeapBoundedSumStore}.
+ *
+ * <p>Partitions are identified by their index in [0, numPartitions). Partition i is stored in
+ * slot {@code i % SLOTS_PER_BUFFER} of buffer {@code i / SLOTS_PER_BUFFER}, since a single buffer
+ * cannot hold more than 2 GiB. The buffers are zero-initialized on allocation, which is the
+ * initial state of every partition. The garbage collector only sees the few buffer objects,
+ * regardless of the number of partitions. The buffers are dropped once the results have been
+ * computed so that their memory can be reclaimed.
+ */
+abstract class OffHeapPartitionStore {
+  private static final int SLOT_BYTES = Long.BYTES;
+  private static final int SLOTS_PER_BUFFER_BITS = 24;
+  private static final int SLOTS_PER_BUFFER = 1 << SLOTS_PER_BUFFER_BITS;
+
+  final int numPartitions;
+  private ByteBuffer[] buffers;
+  AggregationState state = AggregationState.DEFAULT;
+
+  OffHeapPartitionStore(int numPartitions) {
+    this.numPartitions = numPartitions;
+    int numBuffers = (numPartitions - 1) / SLOTS_PER_BUFFER + 1;
+    buffers = new ByteBuffer[numBuffers];
+    for (int i = 0; i < numBuffers; i++) {
+      int numSlots = Math.min(SLOTS_PER_BUFFER, numPartitions - i * SLOTS_PER_BUFFER);
+      buffers[i] = ByteBuffer.allocateDirect(numSlots * SLOT_BYTES).order(ByteOrder.nativeOrder());
+    }
+  }
+
+  /** Returns the number of partitions of the store. */
+  public int getNumPartitions() {
+    return numPartitions;
+  }
+
+  long getLong(int partition) {
+    return getBuffer(partition).getLong(getByteOffset(partition));
+  }
+
+  void putLong(int partition, long value) {
+    getBuffer(partition).putLong(getByteOffset(partition), value);
+  }
+
+  double getDouble(int partition) {
+    return getBuffer(partition).getDouble(getByteOffset(partition));
+  }
+
+  void putDouble(int partition, double value) {
+    getBuffer(partition).putDouble(getByteOffset(partition), value);
+  }
+
+  /**
+   * Checks that the store can still be modified and that {@code partition} is a valid index.
+   * {@code action} describes the modification in the error message, e.g., "amended".
+   */
+  void checkModifiable(int partition, String action) {
+    checkDefaultState(action);
+    Preconditions.checkElementIndex(partition, numPartitions, "partition");
+  }
+
+  /**
+   * Checks that the results have not been computed yet. {@code action} describes the operation in
+   * the error message, e.g., "amended".
+   */
+  void checkDefaultState(String action) {
+    if (state != AggregationState.DEFAULT) {
+      throw new IllegalStateException(
+          "Off-heap store cannot be " + action + ". Reason: " + state.getErrorMessage());
+    }
+  }
+
+  /** Drops the buffers after the results have been computed. */
+  void releaseBuffers() {
+    state = AggregationState.RESULT_RETURNED;
+    buffers = null;
+  }
+
+  private ByteBuffer getBuffer(int partition) {
+    return buffers[partition >>> SLOTS_PER_BUFFER_BITS];
+  }
+
+  private static int getByteOffset(int partition) {
+    return (partition & (SLOTS_PER_BUFFER - 1)) * SLOT_BYTES;
+  }
+
+  static void checkNumPartitions(int numPartitions) {
+    Preconditions.checkArgument(
+        numPartitions > 0, "numPartitions must be > 0. Provided value: %s", numPartitions);
+  }
+}
@@ -0,0 +1,318 @@
+//
+// Copyright 2020 Google LLC
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//      http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+//
+
+package com.google.privacy.differentialprivacy;
+
+import com.google.auto.value.AutoValue;
+import com.google.common.base.Preconditions;
+import com.google.differentialprivacy.SummaryOuterClass.MechanismType;
+import javax.annotation.Nullable;
+
+/**
+ * Selects the partitions whose differentially private counts may be published, for many candidate
+ * partitions at once. The noised count of a partition is released iff it reaches a threshold,
+ * exactly as in {@link Count#computeThresholdedResult}, so that the set of released partitions is
+ * (epsilon, noiseDelta + thresholdDelta)-differentially private.
+ *
+ * <p>Unlike {@link Count#computeThresholdedResult}, the threshold is computed once when the
+ * instance is built, and the candidates are passed as a primitive array of raw counts, e.g., one
+ * per key of a hash table. Only the indices and noised counts of the surviving partitions are
+ * written out.
+ *
+ * <p>By default, every candidate is noised, even if its raw count is small. Optionally, a {@code
+ * preFilterDelta} can be set to skip noising candidates whose raw count is so far below the
+ * threshold that they would survive with a negligible probability {@code q}. Dropping such a
+ * candidate deterministically changes the distribution of its release by at most {@code q}. A
+ * privacy unit contributes to at most {@code maxPartitionsContributed} partitions, while all other
+ * partitions are treated identically for neighbouring datasets, so the pre-filter adds at most
+ * {@code (1 + e^epsilon) * maxPartitionsContributed * q} to delta. {@code q} is chosen such that
+ * this bound equals {@code preFilterDelta}, i.e., the set of released partitions is then (epsilon,
+ * noiseDelta + thresholdDelta + preFilterDelta)-differentially private.
+ *
+ * <p>It is the responsibility of the caller to bound the contributions of each privacy unit
+ * (e.g., an individual) to at most {@code maxPartitionsContributed} partitions and to ensure that
+ * partitions that are not selected are not published.
+ *
+ * <p>Instances are immutable and may be reused for any number of batches, provided that every
+ * partition is evaluated at most once.
+ */
+public class PartitionSelection {
+  private final Params params;
+  private final double threshold;
+  // Candidates with a smaller raw count are dropped without noising them.
+  private final long minNoisedCount;
+
+  private PartitionSelection(Params params) {
+    this.params = params;
+    threshold =
+        computeThreshold(
+            params.noise(),
+            params.maxPartitionsContributed(),
+            params.maxContributionsPerPartition(),
+            params.epsilon(),
+            params.delta(),
+            params.thresholdDelta());
+    minNoisedCount =
+        params.preFilterDelta() == null
+            ? Long.MIN_VALUE
+            : computeMinNoisedCount(
+                params.noise(),
+                params.maxPartitionsContributed(),
+                params.maxContributionsPerPartition(),
+                params.epsilon(),
+                params.delta(),
+                params.preFilterDelta(),
+                threshold);
+  }
+
+  public static Params.Builder builder() {
+    return Params.Builder.newBuilder();
+  }
+
+  /**
+   * Evaluates the candidate partitions with the given raw counts. For each partition that is
+   * selected, its index in {@code rawCounts} and its noised count are written to the next
+   * position of {@code selectedIndices} and {@code noisedCounts}, respectively.
+   *
+   * @return the number of selected partitions, i.e., of the valid entries of the output arrays.
+   * @throws IllegalArgumentException if an output array is shorter than {@code rawCounts}.
+   */
+  public int selectPartitions(long[] rawCounts, int[] selectedIndices, long[] noisedCounts) {
+    return selectPartitions(rawCounts, 0, rawCounts.length, selectedIndices, noisedCounts);
+  }
+
+  /**
+   * Evaluates the candidate partitions with the raw counts {@code rawCounts[fromIndex]} to {@code
+   * rawCounts[toIndex - 1]}. See {@link #selectPartitions(long[], int[], long[])} for details. The
+   * selected partitions are written to the beginning of the output arrays.
+   */
+  public int selectPartitions(
+      long[] rawCounts, int fromIndex, int toIndex, int[] selectedIndices, long[] noisedCounts) {
+    Preconditions.checkPositionIndexes(fromIndex, toIndex, rawCounts.length);
+    int numCandidates = toIndex - fromIndex;
+    Preconditions.checkArgument(
+        selectedIndices.length >= numCandidates && noisedCounts.length >= numCandidates,
+        "The output arrays must have space for %s partitions. Provided lengths: %s, %s",
+        numCandidates,
+        selectedIndices.length,
+        noisedCounts.length);
+
+    long startNanos = params.metrics().startLatency();
+    Noise noise = params.noise();
+    int l0Sensitivity = params.maxPartitionsContributed();
+    long lInfSensitivity = params.maxContributionsPerPartition();
+    double epsilon = params.epsilon();
+    Double delta = params.delta();
+    int numSelected = 0;
+    for (int i = fromIndex; i < toIndex; i++) {
+      if (rawCounts[i] < minNoisedCount) {
+        continue;
+      }
+      long noisedCount = noise.addNoise(rawCounts[i], l0Sensitivity, lInfSensitivity, epsilon, delta);
+      if (noisedCount >= threshold) {
+        selectedIndices[numSelected] = i;
+        noisedCounts[numSelected] = noisedCount;
+        numSelected++;
+      }
+    }
+    params.metrics().increment(DpMetrics.Counter.ENTRIES_ADDED, numCandidates);
+    params.metrics().recordLatency(DpMetrics.Histogram.COMPUTE_RESULT_LATENCY_NANOS, startNanos);
+    return numSelected;
+  }
+
+  /** Returns the threshold that noised counts must reach for their partition to be selected. */
+  public double getThreshold() {
+    return threshold;
+  }
+
+  /**
+   * Returns the smallest raw count of a candidate that is noised. Candidates with smaller raw
+   * counts are dropped without noising them. Returns {@code Long.MIN_VALUE} if no pre-filter is
+   * applied.
+   */
+  public long getMinNoisedCount() {
+    return minNoisedCount;
+  }
+
+  /**
+   * Computes the smallest raw count that is noised by the pre-filter. A smaller raw count reaches
+   * {@code threshold} after noising with a probability of at most {@code preFilterDelta / ((1 +
+   * e^epsilon) * maxPartitionsContributed)}, see the class documentation.
+   */
+  static long computeMinNoisedCount(
+      Noise noise,
+      int maxPartitionsContributed,
+      int maxContributionsPerPartition,
+      double epsilon,
+      @Nullable Double delta,
+      double preFilterDelta,
+      double threshold) {
+    double survivalProbability =
+        preFilterDelta / ((1.0 + Math.exp(epsilon)) * maxPartitionsContributed);
+    // As for the threshold, the upper quantile of the symmetric noise is computed as the negated
+    // lower quantile for x = 0.0 to avoid the limited resolution of doubles around 1.
+    double noiseUpperQuantile =
+        -1.0
+            * noise.computeQuantile(
+                /* rank= */ survivalProbability,
+                /* x= */ 0.0,
+                maxPartitionsContributed,
+                maxContributionsPerPartition,
+                epsilon,
+                delta);
+    // A raw count c is skipped iff c + noiseUpperQuantile + 1 < threshold. The additional 1
+    // accounts for the rounding of the noised count.
+    double minNoisedCount = Math.ceil(threshold - noiseUpperQuantile - 1.0);
+    return minNoisedCount <= Long.MIN_VALUE ? Long.MIN_VALUE : (long) minNoisedCount;
+  }
+
+  /**
+   * Computes the threshold that noised counts must reach for their partition to be published,
+   * such that the boolean signal of a partition's publication satisfies (0,
+   * thresholdDelta)-differential privacy.
+   */
+  static double computeThreshold(
+      Noise noise,
+      int maxPartitionsContributed,
+      int maxContributionsPerPartition,
+      double epsilon,
+      @Nullable Double delta,
+      double thresholdDelta) {
+    // The implementation will work only for symmetrical noise.
+    Preconditions.checkState(
+        noise.getMechanismType() == MechanismType.LAPLACE
+            || noise.getMechanismType() == MechanismType.GAUSSIAN,
+        "Unable to calculate the threshold for an unknown mechanism type %s",
+        noise.getMechanismType());
+
+    double thresholdDeltaPerPartition = thresholdDelta / maxContributionsPerPartition;
+
+    /*
+    The threshold is set s.t. the noised count of a single privacy ID will not exceed it with a
+    probability greater than thresholdDeltaPerPartition. This is equivalent to calculating the
+    rank = (1-thresholdDeltaPerPartition) quantile of the noise added to
+    x = maxContributionsPerPartition, i.e., the max contribution of a single privacy ID.
+
+    The call below is equivalent to calling noise.computeQuantile(1-thresholdDeltaPerPartition,
+    maxContributionsPerPartition, ...). But because thresholdDeltaPerPartition is typically very
+    small, 1-thresholdDelta might be rounded to 1 as a result of the limited resolution of double
+    values around 1. To mitigate inaccuracy, we calculate the rank = thresholdDeltaPerPartition
+    quantile for x = 0.0, negate the result and shift it by maxContributionsPerPartition. This works
+    because the noise is symmetrical and invariant to translation.
+    */
+    return -1.0
+            * noise.computeQuantile(
+                /* rank= */ thresholdDeltaPerPartition,
+                /* x= */ 0.0,
+                maxPartitionsContributed,
+                maxContributionsPerPartition,
+                epsilon,
+                delta)
+        + maxContributionsPerPartition;
+  }
+
+  @AutoValue
+  public abstract static class Params {
+    abstract Noise noise();
+
+    abstract double epsilon();
+
+    @Nullable
+    abstract Double delta();
+
+    abstract double thresholdDelta();
+
+    @Nullable
+    abstract Double preFilterDelta();
+
+    abstract int maxPartitionsContributed();
+
+    abstract int maxContributionsPerPartition();
+
+    abstract DpMetrics metrics();
+
+    @AutoValue.Builder
+    public abstract static class Builder {
+      private static Builder newBuilder() {
+        Builder builder = new AutoValue_PartitionSelection_Params.Builder();
+        // Provide LaplaceNoise as a default noise generator.
+        builder.noise(new LaplaceNoise());
+        // By default, assume that each user contributes to a given partition no more than once.
+        builder.maxContributionsPerPartition(1);
+        // By default, runtime metrics are discarded.
+        builder.metrics(DpMetrics.noOp());
+
+        return builder;
+      }
+
+      /** Epsilon DP parameter of the noised counts. */
+      public abstract Builder epsilon(double value);
+
+      /**
+       * Delta DP parameter of the noised counts.
+       *
+       * <p>Note that Laplace noise does not use delta. Hence, delta should not be set when Laplace
+       * noise is used.
+       */
+      public abstract Builder delta(@Nullable Double value);
+
+      /** The privacy budget spent on publishing the set of selected partitions. */
+      public abstract Builder thresholdDelta(double value);
+
+      /**
+       * The privacy budget spent on dropping candidates without noising them if their raw count is
+       * too small to survive with a non-negligible probability. If not set, every candidate is
+       * noised. See the class documentation for details.
+       */
+      public abstract Builder preFilterDelta(@Nullable Double value);
+
+      /**
+       * Maximum number of partitions to which a single privacy unit (i.e., an individual) is
+       * allowed to contribute.
+       */
+      public abstract Builder maxPartitionsContributed(int value);
+
+      /**
+       * Maximum number of contributions associated with a single privacy unit (e.g., an
+       * individual) to a single partition. Defaults to 1.
+       */
+      public abstract Builder maxContributionsPerPartition(int value);
+
+      /** Distribution from which the noise will be generated and added to the counts. */
+      public abstract Builder noise(Noise value);
+
+      /** Receiver of runtime metrics of the selection. See {@link DpMetrics} for details. */
+      public abstract Builder metrics(DpMetrics value);
+
+      abstract Params autoBuild();
+
+      public PartitionSelection build() {
+        Params params = autoBuild();
+        // No need to check if noise is null: Laplace noise is used by default.
+        DpPreconditions.checkEpsilon(params.epsilon());
+        DpPreconditions.checkNoiseDelta(params.delta(), params.noise());
+        DpPreconditions.checkDelta(params.thresholdDelta());
+        if (params.preFilterDelta() != null) {
+          DpPreconditions.checkDelta(params.preFilterDelta());
+        }
+        DpPreconditions.checkMaxPartitionsContributed(params.maxPartitionsContributed());
+        DpPreconditions.checkMaxContributionsPerPartition(params.maxContributionsPerPartition());
+
+        return new PartitionSelection(params);
+      }
+    }
+  }
+}
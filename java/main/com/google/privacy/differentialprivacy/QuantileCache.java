@@ -0,0 +1,110 @@
+//
+// Copyright 2020 Google LLC
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//      http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+//
+
+package com.google.privacy.differentialprivacy;
+
+import java.util.Objects;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import javax.annotation.Nullable;
+
+/**
+ * Memoizes quantiles of noise distributions centered at 0, keyed by the rank and the noise
+ * parameters. The noise is invariant to translation, so the quantile for any {@code x} is obtained
+ * by adding {@code x} to the memoized quantile.
+ *
+ * <p>Callers such as confidence intervals of counts or thresholds for partition selection tend to
+ * request the same few quantiles over and over again. The cache is therefore a small direct-mapped
+ * table: each key has a single slot, and a new key evicts the previous key of its slot. The
+ * entries are immutable, so the cache can be shared by threads without locking.
+ */
+final class QuantileCache {
+  private static final int NUM_SLOTS = 16;
+
+  private final AtomicReferenceArray<Entry> slots = new AtomicReferenceArray<>(NUM_SLOTS);
+
+  /** Returns the memoized quantile for the given key, or {@link Double#NaN} if there is none. */
+  double get(
+      double rank,
+      int l0Sensitivity,
+      double lInfSensitivity,
+      double epsilon,
+      @Nullable Double delta) {
+    Entry entry = slots.get(getSlot(rank, l0Sensitivity, lInfSensitivity, epsilon, delta));
+    if (entry != null
+        && entry.rank == rank
+        && entry.l0Sensitivity == l0Sensitivity
+        && entry.lInfSensitivity == lInfSensitivity
+        && entry.epsilon == epsilon
+        && Objects.equals(entry.delta, delta)) {
+      return entry.quantile;
+    }
+    return Double.NaN;
+  }
+
+  /** Memoizes the quantile for the given key. */
+  void put(
+      double rank,
+      int l0Sensitivity,
+      double lInfSensitivity,
+      double epsilon,
+      @Nullable Double delta,
+      double quantile) {
+    slots.set(
+        getSlot(rank, l0Sensitivity, lInfSensitivity, epsilon, delta),
+        new Entry(rank, l0Sensitivity, lInfSensitivity, epsilon, delta, quantile));
+  }
+
+  private static int getSlot(
+      double rank,
+      int l0Sensitivity,
+      double lInfSensitivity,
+      double epsilon,
+      @Nullable Double delta) {
+    long hash = Double.doubleToLongBits(rank);
+    hash = 31 * hash + l0Sensitivity;
+    hash = 31 * hash + Double.doubleToLongBits(lInfSensitivity);
+    hash = 31 * hash + Double.doubleToLongBits(epsilon);
+    hash = 31 * hash + (delta == null ? 0 : Double.doubleToLongBits(delta));
+    // Mixes the high bits into the low bits that select the slot.
+    hash ^= hash >>> 32;
+    hash ^= hash >>> 16;
+    return (int) (hash & (NUM_SLOTS - 1));
+  }
+
+  private static final class Entry {
+    final double rank;
+    final int l0Sensitivity;
+    final double lInfSensitivity;
+    final double epsilon;
+    @Nullable final Double delta;
+    final double quantile;
+
+    Entry(
+        double rank,
+        int l0Sensitivity,
+        double lInfSensitivity,
+        double epsilon,
+        @Nullable Double delta,
+        double quantile) {
+      this.rank = rank;
+      this.l0Sensitivity = l0Sensitivity;
+      this.lInfSensitivity = lInfSensitivity;
+      this.epsilon = epsilon;
+      this.delta = delta;
+      this.quantile = quantile;
+    }
+  }
+}
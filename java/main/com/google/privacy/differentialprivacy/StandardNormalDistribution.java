@@ -0,0 +1,256 @@
+//
+// Copyright 2020 Google LLC
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//      http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+//
+
+package com.google.privacy.differentialprivacy;
+
+/**
+ * The cumulative distribution function (CDF) Phi of the standard normal distribution and its
+ * inverse. Both are evaluated with rational approximations that are accurate to about double
+ * precision, without allocations or calls into other libraries, because they are on the hot path
+ * of the calibration of {@link GaussianNoise}.
+ */
+final class StandardNormalDistribution {
+  private static final double ONE_OVER_SQRT_2_PI = 0.398942280401432677939946059934;
+  private static final double SQRT_32 = 5.656854249492380195206754896838;
+
+  // Coefficients of the approximations of Phi by W. J. Cody, "Rational Chebyshev Approximations
+  // for the Error Function", Mathematics of Computation 23 (1969), for |x| <= 0.67448975,
+  // 0.67448975 < |x| <= sqrt(32) and |x| > sqrt(32), respectively.
+  private static final double[] A = {
+    2.2352520354606839287,
+    161.02823106855587881,
+    1067.6894854603709582,
+    18154.981253343561249,
+    0.065682337918207449113
+  };
+  private static final double[] B = {
+    47.20258190468824187, 976.09855173777669322, 10260.932208618978205, 45507.789335026729956
+  };
+  private static final double[] C = {
+    0.39894151208813466764,
+    8.8831497943883759412,
+    93.506656132177855979,
+    597.27027639480026226,
+    2494.5375852903726711,
+    6848.1904505362823326,
+    11602.651437647350124,
+    9842.7148383839780218,
+    1.0765576773720192317e-8
+  };
+  private static final double[] D = {
+    22.266688044328115691,
+    235.38790178262499861,
+    1519.377599407554805,
+    6485.558298266760755,
+    18615.571640885098091,
+    34900.952721145977266,
+    38912.003286093271411,
+    19685.429676859990727
+  };
+  private static final double[] P = {
+    0.21589853405795699,
+    0.1274011611602473639,
+    0.022235277870649807,
+    0.001421619193227893466,
+    2.9112874951168792e-5,
+    0.02307344176494017303
+  };
+  private static final double[] Q = {
+    1.28426009614491121,
+    0.468238212480865118,
+    0.0659881378689285515,
+    0.00378239633202758244,
+    7.29751555083966205e-5
+  };
+
+  // Coefficients of the rational approximations of Phi^-1 of algorithm AS 241, starting with the
+  // constant terms, for |p - 0.5| <= 0.425 and for the tails of the distribution with
+  // sqrt(-log(min(p, 1 - p))) <= 5 and > 5, respectively.
+  private static final double[] CENTRAL_NUMERATOR = {
+    3.387132872796366608,
+    133.14166789178437745,
+    1971.5909503065514427,
+    13731.693765509461125,
+    45921.953931549871457,
+    67265.770927008700853,
+    33430.575583588128105,
+    2509.0809287301226727
+  };
+  private static final double[] CENTRAL_DENOMINATOR = {
+    1.0,
+    42.313330701600911252,
+    687.1870074920579083,
+    5394.1960214247511077,
+    21213.794301586595867,
+    39307.89580009271061,
+    28729.085735721942674,
+    5226.495278852545925
+  };
+  private static final double[] INTERMEDIATE_NUMERATOR = {
+    1.42343711074968357734,
+    4.6303378461565452959,
+    5.7694972214606914055,
+    3.64784832476320460504,
+    1.27045825245236838258,
+    0.24178072517745061177,
+    0.0227238449892691845833,
+    7.7454501427834140764e-4
+  };
+  private static final double[] INTERMEDIATE_DENOMINATOR = {
+    1.0,
+    2.05319162663775882187,
+    1.6763848301838038494,
+    0.68976733498510000455,
+    0.14810397642748007459,
+    0.0151986665636164571966,
+    5.475938084995344946e-4,
+    1.05075007164441684324e-9
+  };
+  private static final double[] FAR_NUMERATOR = {
+    6.6579046435011037772,
+    5.4637849111641143699,
+    1.7848265399172913358,
+    0.29656057182850489123,
+    0.026532189526576123093,
+    0.0012426609473880784386,
+    2.71155556874348757815e-5,
+    2.01033439929228813265e-7
+  };
+  private static final double[] FAR_DENOMINATOR = {
+    1.0,
+    0.59983220655588793769,
+    0.13692988092273580531,
+    0.0148753612908506148525,
+    7.868691311456132591e-4,
+    1.8463183175100546818e-5,
+    1.4215117583164458887e-7,
+    2.04426310338993978564e-15
+  };
+
+  private StandardNormalDistribution() {}
+
+  /**
+   * Returns Phi({@code x}) = Pr[Z <= x] for a standard normal random variable Z. The relative error
+   * is close to the resolution of double values, also in the lower tail, where the result is
+   * tiny.
+   */
+  static double cdf(double x) {
+    if (Double.isNaN(x)) {
+      return Double.NaN;
+    }
+    double y = Math.abs(x);
+    if (y <= 0.67448975) {
+      double xsq = x * x;
+      double xnum = A[4] * xsq;
+      double xden = xsq;
+      for (int i = 0; i < 3; i++) {
+        xnum = (xnum + A[i]) * xsq;
+        xden = (xden + B[i]) * xsq;
+      }
+      return 0.5 + x * (xnum + A[3]) / (xden + B[3]);
+    }
+
+    // The tail probability Pr[Z > |x|].
+    double tail;
+    if (y <= SQRT_32) {
+      double xnum = C[8] * y;
+      double xden = y;
+      for (int i = 0; i < 7; i++) {
+        xnum = (xnum + C[i]) * y;
+        xden = (xden + D[i]) * y;
+      }
+      tail = gaussianDensityTimesSqrt2Pi(y) * (xnum + C[7]) / (xden + D[7]);
+    } else if (y < 40.0) {
+      double xsq = 1.0 / (y * y);
+      double xnum = P[5] * xsq;
+      double xden = xsq;
+      for (int i = 0; i < 4; i++) {
+        xnum = (xnum + P[i]) * xsq;
+        xden = (xden + Q[i]) * xsq;
+      }
+      double ratio = xsq * (xnum + P[4]) / (xden + Q[4]);
+      tail = gaussianDensityTimesSqrt2Pi(y) * (ONE_OVER_SQRT_2_PI - ratio) / y;
+    } else {
+      // The tail probability underflows.
+      tail = 0.0;
+    }
+    return x > 0 ? 1.0 - tail : tail;
+  }
+
+  /** Returns the probability density phi({@code x}) of the standard normal distribution. */
+  static double density(double x) {
+    return ONE_OVER_SQRT_2_PI * gaussianDensityTimesSqrt2Pi(Math.abs(x));
+  }
+
+  /**
+   * Returns exp(-y^2 / 2). The square is split into a part that is exactly representable and a
+   * small remainder to avoid the cancellation error of exp for large arguments.
+   */
+  private static double gaussianDensityTimesSqrt2Pi(double y) {
+    double ySplit = Math.floor(y * 16.0) / 16.0;
+    double remainder = (y - ySplit) * (y + ySplit);
+    return Math.exp(-ySplit * ySplit * 0.5) * Math.exp(-remainder * 0.5);
+  }
+
+  /**
+   * Returns the quantile Phi^-1({@code p}), i.e., the value z such that Pr[Z <= z] = p for a
+   * standard normal random variable Z, using algorithm AS 241 of M. J. Wichura, "The Percentage
+   * Points of the Normal Distribution", Applied Statistics 37 (1988). The relative error is about
+   * 1e-16.
+   *
+   * <p>Returns negative infinity for {@code p} = 0, positive infinity for {@code p} = 1 and NaN for
+   * {@code p} outside of [0, 1].
+   */
+  static double quantile(double p) {
+    if (!(p >= 0.0 && p <= 1.0)) {
+      return Double.NaN;
+    }
+    if (p == 0.0) {
+      return Double.NEGATIVE_INFINITY;
+    }
+    if (p == 1.0) {
+      return Double.POSITIVE_INFINITY;
+    }
+
+    double q = p - 0.5;
+    if (Math.abs(q) <= 0.425) {
+      double r = 0.180625 - q * q;
+      return q * polynomial(CENTRAL_NUMERATOR, r) / polynomial(CENTRAL_DENOMINATOR, r);
+    }
+
+    // The approximation in the tails uses the smaller of the two tail probabilities, which is
+    // more accurately representable.
+    double r = Math.sqrt(-Math.log(q < 0 ? p : 1.0 - p));
+    double result;
+    if (r <= 5.0) {
+      r -= 1.6;
+      result = polynomial(INTERMEDIATE_NUMERATOR, r) / polynomial(INTERMEDIATE_DENOMINATOR, r);
+    } else {
+      r -= 5.0;
+      result = polynomial(FAR_NUMERATOR, r) / polynomial(FAR_DENOMINATOR, r);
+    }
+    return q < 0.0 ? -result : result;
+  }
+
+  /** Evaluates the polynomial with the given coefficients, starting with the constant term. */
+  private static double polynomial(double[] coefficients, double x) {
+    double result = coefficients[coefficients.length - 1];
+    for (int i = coefficients.length - 2; i >= 0; i--) {
+      result = result * x + coefficients[i];
+    }
+    return result;
+  }
+}
@@ -0,0 +1,224 @@
+//
+// Copyright 2020 Google LLC
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//      http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+//
+
+package com.google.privacy.differentialprivacy;
+
+import com.google.common.base.Preconditions;
+import com.google.common.math.LongMath;
+import java.math.RoundingMode;
+
+/**
+ * Assigns timestamped entries of a stream to tumbling or sliding windows and closes the windows
+ * as event time progresses. Used by {@link WindowedCount} and {@link WindowedBoundedSum}.
+ *
+ * <p>Time is divided into panes of length {@code slideMillis}. A window consists of {@code
+ * windowSizeMillis / slideMillis} consecutive panes, and a new window starts with every pane; if
+ * the window size equals the slide, the windows are tumbling. Subclasses keep one partial state
+ * per pane in primitive arrays that are used as a ring buffer: once all windows that contain a
+ * pane are closed, the pane is evicted and its slot is reused for a later pane.
+ *
+ * <p>The released windows only depend on public inputs, never on the entries: the first window
+ * starts at the first pane boundary at or after {@code startMillis}, and a window closes once the
+ * watermark passed to {@link #advanceWatermark} is at least its end plus the allowed lateness, or
+ * when {@link #finish} is called with a time at or after its end. Every window in this range is
+ * closed and released in order, including empty windows: skipping them would reveal that they are
+ * empty. For the same reason, entries do not advance the watermark, since closing windows early
+ * would drop the late entries of other privacy units.
+ *
+ * <p>Entries before {@code startMillis} and entries that arrive after all windows that contain them
+ * have been closed are dropped. Entries are buffered only up to the capacity of the ring buffer,
+ * which always covers the pane of the watermark and the pane after it; entries further ahead of
+ * the watermark are dropped too.
+ *
+ * <p>A single call of {@link #advanceWatermark} or {@link #finish} may close at most {@link
+ * #MAX_WINDOWS_PER_ADVANCE} windows, which bounds the work of a single call. Larger jumps, e.g.,
+ * to {@code Long.MAX_VALUE} at the end of a stream, are rejected; {@link #finish} should be called
+ * with the end of the stream instead.
+ */
+abstract class WindowedAggregation {
+  /**
+   * Maximum number of windows that a single advance of the watermark may close. Every window is
+   * noised and released, so this bounds the work of a single call.
+   */
+  static final long MAX_WINDOWS_PER_ADVANCE = 1L << 16;
+
+  private final long slideMillis;
+  private final long allowedLatenessMillis;
+  final int numPanesPerWindow;
+  final int numSlots;
+
+  private boolean finished = false;
+  private long watermark = Long.MIN_VALUE;
+  // The last pane of the next window to close. The oldest pane that has not been evicted is the
+  // first pane of this window.
+  private long nextWindowLastPane;
+
+  WindowedAggregation(
+      long windowSizeMillis, long slideMillis, long allowedLatenessMillis, long startMillis) {
+    this.slideMillis = slideMillis;
+    this.allowedLatenessMillis = allowedLatenessMillis;
+    numPanesPerWindow = (int) (windowSizeMillis / slideMillis);
+    // The panes of the next window to close, the panes within the allowed lateness of the
+    // watermark, and the pane of the watermark itself.
+    long latenessPanes = (allowedLatenessMillis + slideMillis - 1) / slideMillis;
+    numSlots = (int) (numPanesPerWindow + latenessPanes + 2);
+    long firstPane = LongMath.divide(startMillis, slideMillis, RoundingMode.CEILING);
+    nextWindowLastPane = firstPane + numPanesPerWindow - 1;
+  }
+
+  /** Resets the partial state of the pane in the given slot. */
+  abstract void clearSlot(int slot);
+
+  /**
+   * Releases the window that consists of the panes {@code firstPane} to {@code lastPane}, whose
+   * slots can be obtained via {@link #getSlot(long)}.
+   */
+  abstract void closeWindow(long firstPane, long lastPane, long startMillis, long endMillis);
+
+  /**
+   * Returns the slot of the pane of {@code timestampMillis}, or -1 if the entry is dropped: if it
+   * is before the start, if all windows that contain its pane have already been closed, or if its
+   * pane is too far ahead of the watermark to be buffered.
+   */
+  int acceptEntry(long timestampMillis) {
+    Preconditions.checkState(!finished, "Windowed aggregation cannot be amended after finish().");
+    long pane = Math.floorDiv(timestampMillis, slideMillis);
+    long oldestPane = getOldestPane();
+    if (pane < oldestPane || LongMath.saturatedSubtract(pane, oldestPane) >= numSlots) {
+      return -1;
+    }
+    return getSlot(pane);
+  }
+
+  /**
+   * Advances the watermark to {@code timestampMillis} if it is larger than the current watermark,
+   * and closes all windows that end at least the allowed lateness before it. The watermark must be
+   * public, e.g., derived from processing time, rather than from the timestamps of the entries.
+   *
+   * @throws IllegalArgumentException if more than {@link #MAX_WINDOWS_PER_ADVANCE} windows would
+   *     be closed. No window is closed in this case.
+   */
+  public void advanceWatermark(long timestampMillis) {
+    Preconditions.checkState(!finished, "Windowed aggregation cannot be amended after finish().");
+    if (timestampMillis <= watermark) {
+      return;
+    }
+    // Closes windows whose end (lastPane + 1) * slideMillis is at most
+    // timestampMillis - allowedLatenessMillis, avoiding an overflow of the multiplication.
+    long closableMillis = LongMath.saturatedSubtract(timestampMillis, allowedLatenessMillis);
+    closeWindowsBefore(Math.floorDiv(closableMillis, slideMillis));
+    watermark = timestampMillis;
+  }
+
+  /**
+   * Closes all remaining windows that end at or before {@code endMillis}, regardless of the
+   * watermark and the allowed lateness, e.g., at the end of a stream. No more entries can be added
+   * afterwards.
+   *
+   * @throws IllegalArgumentException if more than {@link #MAX_WINDOWS_PER_ADVANCE} windows would
+   *     be closed. No window is closed in this case.
+   */
+  public void finish(long endMillis) {
+    Preconditions.checkState(!finished, "Windowed aggregation was already finished.");
+    closeWindowsBefore(Math.floorDiv(endMillis, slideMillis));
+    finished = true;
+  }
+
+  /** Closes all windows whose last pane is before {@code endPane}, in order. */
+  private void closeWindowsBefore(long endPane) {
+    if (endPane <= nextWindowLastPane) {
+      return;
+    }
+    long numWindows = LongMath.saturatedSubtract(endPane, nextWindowLastPane);
+    Preconditions.checkArgument(
+        numWindows <= MAX_WINDOWS_PER_ADVANCE,
+        "Advancing event time to pane %s would close %s windows, more than the maximum of %s per"
+            + " call. Advance the watermark in smaller steps or call finish() with the end of the"
+            + " stream.",
+        endPane,
+        numWindows,
+        MAX_WINDOWS_PER_ADVANCE);
+    while (nextWindowLastPane < endPane) {
+      closeNextWindow();
+    }
+  }
+
+  private void closeNextWindow() {
+    long firstPane = getOldestPane();
+    closeWindow(
+        firstPane,
+        nextWindowLastPane,
+        firstPane * slideMillis,
+        (nextWindowLastPane + 1) * slideMillis);
+    // No later window contains the first pane of the closed window.
+    clearSlot(getSlot(firstPane));
+    nextWindowLastPane++;
+  }
+
+  private long getOldestPane() {
+    return nextWindowLastPane - numPanesPerWindow + 1;
+  }
+
+  int getSlot(long pane) {
+    return (int) Math.floorMod(pane, (long) numSlots);
+  }
+
+  /**
+   * Checks that the L0 sensitivity of the windows, {@code maxPartitionsContributed} times the
+   * number of panes per window, does not overflow.
+   */
+  static void checkPanesPerWindow(
+      int maxPartitionsContributed, long windowSizeMillis, long slideMillis) {
+    DpPreconditions.checkMaxPartitionsContributed(maxPartitionsContributed);
+    Preconditions.checkArgument(
+        maxPartitionsContributed * (windowSizeMillis / slideMillis) <= Integer.MAX_VALUE,
+        "maxPartitionsContributed is too high for the number of panes per window - the L0"
+            + " sensitivity overflows. Provided values: maxPartitionsContributed = %s,"
+            + " windowSizeMillis = %s, slideMillis = %s",
+        maxPartitionsContributed,
+        windowSizeMillis,
+        slideMillis);
+  }
+
+  /** Validates the window parameters shared by all windowed aggregations. */
+  static void checkWindowParameters(
+      long windowSizeMillis, long slideMillis, long allowedLatenessMillis, long startMillis) {
+    Preconditions.checkArgument(
+        windowSizeMillis > 0, "windowSizeMillis must be > 0. Provided value: %s", windowSizeMillis);
+    Preconditions.checkArgument(
+        slideMillis > 0 && windowSizeMillis % slideMillis == 0,
+        "slideMillis must be > 0 and divide windowSizeMillis. Provided values: slideMillis = %s,"
+            + " windowSizeMillis = %s",
+        slideMillis,
+        windowSizeMillis);
+    Preconditions.checkArgument(
+        allowedLatenessMillis >= 0,
+        "allowedLatenessMillis must be >= 0. Provided value: %s",
+        allowedLatenessMillis);
+    long latenessPanes = allowedLatenessMillis / slideMillis + 1;
+    Preconditions.checkArgument(
+        windowSizeMillis / slideMillis + latenessPanes + 2 <= Integer.MAX_VALUE,
+        "The window size and the allowed lateness are too large compared to the slide. Provided"
+            + " values: windowSizeMillis = %s, slideMillis = %s, allowedLatenessMillis = %s",
+        windowSizeMillis,
+        slideMillis,
+        allowedLatenessMillis);
+    Preconditions.checkArgument(
+        startMillis <= Long.MAX_VALUE - windowSizeMillis - slideMillis,
+        "startMillis is too large - the end of the first window overflows. Provided value: %s",
+        startMillis);
+  }
+}
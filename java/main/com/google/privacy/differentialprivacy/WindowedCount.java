@@ -0,0 +1,254 @@
+//
+// Copyright 2020 Google LLC
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//      http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+//
+
+package com.google.privacy.differentialprivacy;
+
+import com.google.auto.value.AutoValue;
+import java.util.Optional;
+import javax.annotation.Nullable;
+
+/**
+ * Calculates differentially private counts of a stream of timestamped entries per tumbling or
+ * sliding window of event time. Each window is released as a {@link Count} as soon as it closes.
+ *
+ * <p>The windows are defined by their size and by the slide between the starts of consecutive
+ * windows, which must divide the size. Entries may arrive out of order by up to the allowed
+ * lateness. See {@link WindowedAggregation} for details on how windows are closed.
+ *
+ * <p>A single privacy unit (e.g., an individual) may contribute to at most {@code
+ * maxPartitionsContributed} pairs of a partition and a slide interval, i.e., a pane of length
+ * {@code slideMillis}, and at most {@code maxContributionsPerPartition} times to each of them.
+ * Since every pane is part of {@code windowSizeMillis / slideMillis} windows, each window is noised
+ * as if the privacy unit contributed to that many times more partitions. For tumbling windows,
+ * the panes are the windows themselves.
+ *
+ * <p>The counts of the panes are kept in a ring buffer of primitive longs whose size only depends
+ * on the window parameters.
+ *
+ * <p>Note: this class is not thread-safe.
+ */
+public class WindowedCount extends WindowedAggregation {
+  /** Receives the noised count of each window when it closes. */
+  public interface Listener {
+    /**
+     * Called with the noised count of the window [{@code windowStartMillis}, {@code
+     * windowEndMillis}).
+     */
+    void onWindowClosed(long windowStartMillis, long windowEndMillis, long noisedCount);
+  }
+
+  private final Params params;
+  private final long[] paneCounts;
+  // Reset and reused for every window.
+  private final Count count;
+
+  private WindowedCount(Params params) {
+    super(
+        params.windowSizeMillis(),
+        params.slideMillis(),
+        params.allowedLatenessMillis(),
+        params.startMillis());
+    this.params = params;
+    paneCounts = new long[numSlots];
+    // Validates the privacy parameters of the counts of the windows.
+    count = newCount();
+  }
+
+  public static Params.Builder builder() {
+    return Params.Builder.newBuilder();
+  }
+
+  /**
+   * Counts an entry with the given event time. The entry does not advance the watermark.
+   *
+   * @return false if the entry was dropped, e.g., because it arrived too late.
+   */
+  public boolean increment(long timestampMillis) {
+    return incrementBy(timestampMillis, 1);
+  }
+
+  /**
+   * Increments the count of the given event time by {@code count}. Note, that this shouldn't be
+   * used to count multiple contributions to a partition from the same user.
+   *
+   * @return false if the entry was dropped, e.g., because it arrived too late.
+   */
+  public boolean incrementBy(long timestampMillis, long count) {
+    int slot = acceptEntry(timestampMillis);
+    if (slot < 0) {
+      return false;
+    }
+    // Non-positive values are ignored because they don't make sense.
+    if (count > 0) {
+      paneCounts[slot] += count;
+      params.metrics().increment(DpMetrics.Counter.ENTRIES_ADDED, count);
+    }
+    return true;
+  }
+
+  @Override
+  void clearSlot(int slot) {
+    paneCounts[slot] = 0;
+  }
+
+  @Override
+  void closeWindow(long firstPane, long lastPane, long startMillis, long endMillis) {
+    long startNanos = params.metrics().startLatency();
+    long windowCount = 0;
+    for (long pane = firstPane; pane <= lastPane; pane++) {
+      windowCount += paneCounts[getSlot(pane)];
+    }
+    count.reset();
+    count.incrementBy(windowCount);
+    long noisedCount = count.computeResult();
+    params.metrics().recordLatency(DpMetrics.Histogram.COMPUTE_RESULT_LATENCY_NANOS, startNanos);
+    params.listener().onWindowClosed(startMillis, endMillis, noisedCount);
+  }
+
+  private Count newCount() {
+    return Count.builder()
+        .noise(params.noise())
+        .epsilon(params.epsilon())
+        .delta(params.delta())
+        // Every pane is part of numPanesPerWindow windows.
+        .maxPartitionsContributed(params.maxPartitionsContributed() * numPanesPerWindow)
+        .maxContributionsPerPartition(params.maxContributionsPerPartition())
+        // Entries and latencies are recorded per window rather than per count.
+        .build();
+  }
+
+  @AutoValue
+  public abstract static class Params {
+    abstract Noise noise();
+
+    abstract double epsilon();
+
+    @Nullable
+    abstract Double delta();
+
+    abstract int maxPartitionsContributed();
+
+    abstract int maxContributionsPerPartition();
+
+    abstract DpMetrics metrics();
+
+    abstract long windowSizeMillis();
+
+    abstract long slideMillis();
+
+    abstract long allowedLatenessMillis();
+
+    abstract long startMillis();
+
+    abstract Listener listener();
+
+    @AutoValue.Builder
+    public abstract static class Builder {
+      private static Builder newBuilder() {
+        Builder builder = new AutoValue_WindowedCount_Params.Builder();
+        // Provide LaplaceNoise as a default noise generator.
+        builder.noise(new LaplaceNoise());
+        // By default, assume that each user contributes to a given partition no more than once.
+        builder.maxContributionsPerPartition(1);
+        // By default, runtime metrics are discarded.
+        builder.metrics(DpMetrics.noOp());
+        // By default, entries must not arrive after the end of their window.
+        builder.allowedLatenessMillis(0);
+        return builder;
+      }
+
+      /**
+       * Epsilon DP parameter. It bounds the privacy loss of a privacy unit across all windows that
+       * its contributions fall into, not of each window separately: every pane is part of {@code
+       * windowSizeMillis / slideMillis} windows, and the L0 sensitivity of each window is scaled
+       * accordingly.
+       */
+      public abstract Builder epsilon(double value);
+
+      /**
+       * Delta DP parameter, which is accounted across windows in the same way as epsilon.
+       *
+       * <p>Note that Laplace noise does not use delta. Hence, delta should not be set when Laplace
+       * noise is used.
+       */
+      public abstract Builder delta(@Nullable Double value);
+
+      /**
+       * Maximum number of pairs of a partition and a pane of length {@code slideMillis} to which
+       * a single privacy unit (i.e., an individual) is allowed to contribute.
+       */
+      public abstract Builder maxPartitionsContributed(int value);
+
+      /**
+       * Maximum number of contributions associated with a single privacy unit (e.g., an
+       * individual) to a single pane of a partition.
+       */
+      public abstract Builder maxContributionsPerPartition(int value);
+
+      /** Distribution from which the noise will be generated and added to the counts. */
+      public abstract Builder noise(Noise value);
+
+      /** Receiver of runtime metrics of the counts. See {@link DpMetrics} for details. */
+      public abstract Builder metrics(DpMetrics value);
+
+      /** Length of a window in milliseconds of event time. */
+      public abstract Builder windowSizeMillis(long value);
+
+      /**
+       * Time between the starts of consecutive windows. Must divide {@code windowSizeMillis}.
+       * Defaults to {@code windowSizeMillis}, i.e., tumbling windows.
+       */
+      public abstract Builder slideMillis(long value);
+
+      /**
+       * Time by which entries may arrive after the end of a window and still be counted in it.
+       * Defaults to 0.
+       */
+      public abstract Builder allowedLatenessMillis(long value);
+
+      /**
+       * Start of the event time range whose windows are released. The first window starts at the
+       * first multiple of {@code slideMillis} at or after this time, and entries before it are
+       * dropped. Must not depend on the data, e.g., the start time of the stream.
+       */
+      public abstract Builder startMillis(long value);
+
+      /** Receives the noised counts of the windows when they close. */
+      public abstract Builder listener(Listener value);
+
+      abstract Optional<Long> windowSizeMillis();
+
+      abstract Optional<Long> slideMillis();
+
+      abstract Params autoBuild();
+
+      public WindowedCount build() {
+        if (!slideMillis().isPresent() && windowSizeMillis().isPresent()) {
+          slideMillis(windowSizeMillis().get());
+        }
+        Params params = autoBuild();
+        checkWindowParameters(
+            params.windowSizeMillis(),
+            params.slideMillis(),
+            params.allowedLatenessMillis(),
+            params.startMillis());
+        checkPanesPerWindow(
+            params.maxPartitionsContributed(), params.windowSizeMillis(), params.slideMillis());
+        return new WindowedCount(params);
+      }
+    }
+  }
+}
@@ -0,0 +1,137 @@
+//
+// Copyright 2020 Google LLC
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//      http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+//
+
+package com.google.privacy.differentialprivacy.testing;
+
+import static com.google.common.base.Preconditions.checkState;
+
+/**
+ * Incrementally counts random samples for the statistical tests of {@link StatisticalTestsUtil},
+ * so that the samples never need to be kept in memory. The memory of a histogram is proportional
+ * to the number of distinct samples rather than to the number of samples.
+ *
+ * <p>The samples are counted in an open-addressing hash table of primitive values. Double samples
+ * are counted by their bit patterns, which are equal iff the samples are equal as {@link Double}
+ * objects. Hence, a histogram must not mix long and double samples.
+ *
+ * <p>Note: this class is not thread-safe. Samples that are generated in parallel should be counted
+ * in one histogram per thread, which are then combined by {@link #addAll}.
+ */
+public final class SampleHistogram {
+  private static final int INITIAL_CAPACITY_BITS = 10;
+
+  private int capacityBits = INITIAL_CAPACITY_BITS;
+  // A slot is empty iff its count is 0.
+  private long[] keys = new long[1 << INITIAL_CAPACITY_BITS];
+  private long[] counts = new long[1 << INITIAL_CAPACITY_BITS];
+  private int numberOfDistinctSamples = 0;
+  private long numberOfSamples = 0;
+
+  /** Counts a long sample. */
+  public void add(long sample) {
+    addCount(sample, 1);
+  }
+
+  /** Counts a double sample. */
+  public void add(double sample) {
+    addCount(Double.doubleToLongBits(sample), 1);
+  }
+
+  /** Counts all samples that were counted by {@code other}. */
+  public void addAll(SampleHistogram other) {
+    for (int slot = 0; slot < other.keys.length; slot++) {
+      if (other.counts[slot] > 0) {
+        addCount(other.keys[slot], other.counts[slot]);
+      }
+    }
+  }
+
+  /** Returns the total number of samples that were counted. */
+  public long getNumberOfSamples() {
+    return numberOfSamples;
+  }
+
+  /** Returns the number of distinct samples that were counted. */
+  public int getNumberOfDistinctSamples() {
+    return numberOfDistinctSamples;
+  }
+
+  /** Returns how often {@code sample} was counted. */
+  public long getCount(long sample) {
+    return counts[findSlot(sample)];
+  }
+
+  /** Returns how often {@code sample} was counted. */
+  public long getCount(double sample) {
+    return getCount(Double.doubleToLongBits(sample));
+  }
+
+  /**
+   * Returns the distinct samples in an arbitrary order, where double samples are represented by
+   * their bit patterns.
+   */
+  long[] getDistinctSamples() {
+    long[] distinctSamples = new long[numberOfDistinctSamples];
+    int i = 0;
+    for (int slot = 0; slot < keys.length; slot++) {
+      if (counts[slot] > 0) {
+        distinctSamples[i++] = keys[slot];
+      }
+    }
+    return distinctSamples;
+  }
+
+  private void addCount(long sample, long count) {
+    int slot = findSlot(sample);
+    if (counts[slot] == 0) {
+      keys[slot] = sample;
+      numberOfDistinctSamples++;
+    }
+    counts[slot] += count;
+    numberOfSamples += count;
+    // Keeps the load factor at most 1/2.
+    if (2 * numberOfDistinctSamples > keys.length) {
+      grow();
+    }
+  }
+
+  /** Returns the slot of {@code sample}, or the empty slot where it should be inserted. */
+  private int findSlot(long sample) {
+    int mask = keys.length - 1;
+    // Fibonacci hashing spreads consecutive and discretized values over the whole table.
+    int slot = (int) ((sample * 0x9E3779B97F4A7C15L) >>> (64 - capacityBits));
+    while (counts[slot] > 0 && keys[slot] != sample) {
+      slot = (slot + 1) & mask;
+    }
+    return slot;
+  }
+
+  private void grow() {
+    checkState(capacityBits < 30, "Too many distinct samples: %s", numberOfDistinctSamples);
+    long[] oldKeys = keys;
+    long[] oldCounts = counts;
+    capacityBits++;
+    keys = new long[1 << capacityBits];
+    counts = new long[1 << capacityBits];
+    for (int oldSlot = 0; oldSlot < oldKeys.length; oldSlot++) {
+      if (oldCounts[oldSlot] > 0) {
+        int slot = findSlot(oldKeys[oldSlot]);
+        keys[slot] = oldKeys[oldSlot];
+        counts[slot] = oldCounts[oldSlot];
+      }
+    }
+  }
+}
@@ -19,16 +19,172 @@ package com.google.privacy.differentialprivacy.testing;
 import static com.google.common.base.Preconditions.checkArgument;
 import static java.lang.Math.max;
 
+import java.util.Arrays;
 import java.util.HashMap;
 import java.util.Map;
+import java.util.concurrent.ForkJoinPool;
+import java.util.function.Consumer;
+import java.util.function.DoubleSupplier;
+import java.util.function.IntConsumer;
+import java.util.function.IntFunction;
+import java.util.function.LongSupplier;
+import java.util.function.Supplier;
+import java.util.stream.IntStream;
 
 /** Utility class providing tests for evaluating statistical properties of anonymization tools. */
 public final class StatisticalTestsUtil {
 
   // TODO: Move Java Doc to README file to improve clarity and structure.
 
+  // Number of chunks of samples per thread of the common fork-join pool, which balances the load if
+  // some threads are slower than others.
+  private static final int CHUNKS_PER_THREAD = 4;
+
   private StatisticalTestsUtil() {}
 
+  /**
+   * Generates independent random samples in parallel on the common fork-join pool.
+   *
+   * <p>The samples are split into chunks, and every chunk draws its samples from a new sample
+   * generator obtained from {@code generatorFactory}. The sample generators therefore need not be
+   * thread-safe. In order to draw the chunks from independent streams of randomness, e.g., of
+   * separate {@link java.security.SecureRandom} instances rather than of a single contended one,
+   * every sample generator should use its own source of randomness.
+   *
+   * @param generatorFactory creates a new sample generator for every chunk. It is called from
+   *     multiple threads and must be thread-safe.
+   * @param numberOfSamples the number of samples to generate. Must be positive.
+   * @param arrayConstructor creates the array of the samples, e.g., {@code Long[]::new}.
+   * @return the samples in the order of their chunks.
+   */
+  public static <T> T[] generateSamples(
+      Supplier<? extends Supplier<? extends T>> generatorFactory,
+      int numberOfSamples,
+      IntFunction<T[]> arrayConstructor) {
+    checkArgument(numberOfSamples > 0, "The number of samples must be positive");
+    T[] samples = arrayConstructor.apply(numberOfSamples);
+    generateInChunks(
+        numberOfSamples,
+        () -> {
+          Supplier<? extends T> generator = generatorFactory.get();
+          return i -> samples[i] = generator.get();
+        });
+    return samples;
+  }
+
+  /**
+   * Same as {@link #generateSamples(Supplier, int, IntFunction)} for samples of type long, which
+   * are stored without boxing.
+   */
+  public static long[] generateLongSamples(
+      Supplier<? extends LongSupplier> generatorFactory, int numberOfSamples) {
+    checkArgument(numberOfSamples > 0, "The number of samples must be positive");
+    long[] samples = new long[numberOfSamples];
+    generateInChunks(
+        numberOfSamples,
+        () -> {
+          LongSupplier generator = generatorFactory.get();
+          return i -> samples[i] = generator.getAsLong();
+        });
+    return samples;
+  }
+
+  /**
+   * Same as {@link #generateSamples(Supplier, int, IntFunction)} for samples of type double, which
+   * are stored without boxing.
+   */
+  public static double[] generateDoubleSamples(
+      Supplier<? extends DoubleSupplier> generatorFactory, int numberOfSamples) {
+    checkArgument(numberOfSamples > 0, "The number of samples must be positive");
+    double[] samples = new double[numberOfSamples];
+    generateInChunks(
+        numberOfSamples,
+        () -> {
+          DoubleSupplier generator = generatorFactory.get();
+          return i -> samples[i] = generator.getAsDouble();
+        });
+    return samples;
+  }
+
+  /**
+   * Counts independent random samples of type long that are generated in parallel on the common
+   * fork-join pool, without keeping the samples in memory. The samples are split into chunks as
+   * for {@link #generateSamples(Supplier, int, IntFunction)}, and every chunk is counted in its own
+   * histogram before the histograms are combined.
+   *
+   * @param generatorFactory creates a new sample generator for every chunk. It is called from
+   *     multiple threads and must be thread-safe.
+   * @param numberOfSamples the number of samples to generate. Must be positive.
+   */
+  public static SampleHistogram generateLongHistogram(
+      Supplier<? extends LongSupplier> generatorFactory, long numberOfSamples) {
+    return generateHistogram(
+        numberOfSamples,
+        () -> {
+          LongSupplier generator = generatorFactory.get();
+          return histogram -> histogram.add(generator.getAsLong());
+        });
+  }
+
+  /** Same as {@link #generateLongHistogram(Supplier, long)} for samples of type double. */
+  public static SampleHistogram generateDoubleHistogram(
+      Supplier<? extends DoubleSupplier> generatorFactory, long numberOfSamples) {
+    return generateHistogram(
+        numberOfSamples,
+        () -> {
+          DoubleSupplier generator = generatorFactory.get();
+          return histogram -> histogram.add(generator.getAsDouble());
+        });
+  }
+
+  private static SampleHistogram generateHistogram(
+      long numberOfSamples, Supplier<Consumer<SampleHistogram>> sampleCounterFactory) {
+    checkArgument(numberOfSamples > 0, "The number of samples must be positive");
+    int numberOfChunks = getNumberOfChunks(numberOfSamples);
+    return IntStream.range(0, numberOfChunks)
+        .parallel()
+        .mapToObj(
+            chunk -> {
+              Consumer<SampleHistogram> sampleCounter = sampleCounterFactory.get();
+              SampleHistogram histogram = new SampleHistogram();
+              long to = getChunkStart(numberOfSamples, chunk + 1, numberOfChunks);
+              for (long i = getChunkStart(numberOfSamples, chunk, numberOfChunks); i < to; i++) {
+                sampleCounter.accept(histogram);
+              }
+              return histogram;
+            })
+        .collect(SampleHistogram::new, SampleHistogram::addAll, SampleHistogram::addAll);
+  }
+
+  /**
+   * Splits the indices of the samples into chunks and passes the indices of every chunk to a new
+   * writer obtained from {@code chunkWriterFactory}.
+   */
+  private static void generateInChunks(
+      int numberOfSamples, Supplier<IntConsumer> chunkWriterFactory) {
+    int numberOfChunks = getNumberOfChunks(numberOfSamples);
+    IntStream.range(0, numberOfChunks)
+        .parallel()
+        .forEach(
+            chunk -> {
+              IntConsumer chunkWriter = chunkWriterFactory.get();
+              int from = (int) getChunkStart(numberOfSamples, chunk, numberOfChunks);
+              int to = (int) getChunkStart(numberOfSamples, chunk + 1, numberOfChunks);
+              for (int i = from; i < to; i++) {
+                chunkWriter.accept(i);
+              }
+            });
+  }
+
+  private static int getNumberOfChunks(long numberOfSamples) {
+    return (int)
+        Math.min(numberOfSamples, CHUNKS_PER_THREAD * ForkJoinPool.getCommonPoolParallelism());
+  }
+
+  private static long getChunkStart(long numberOfSamples, int chunk, int numberOfChunks) {
+    return numberOfSamples * chunk / numberOfChunks;
+  }
+
   /**
    * Decides whether two sets of random samples were likely drawn from similar discrete
    * distributions.
@@ -49,10 +205,7 @@ public final class StatisticalTestsUtil {
    * @return true if the samples are likely drawn from similar distributions and false otherwise.
    */
   public static <T> boolean verifyCloseness(T[] samplesA, T[] samplesB, double l2Tolerance) {
-    checkArgument(samplesA.length == samplesB.length, "The sample sets must be of equal size.");
-    checkArgument(samplesA.length > 0, "The sample sets must not be empty");
-    checkArgument(l2Tolerance > 0, "The l2 tolerance must be positive");
-    checkArgument(l2Tolerance < 1, "The l2 tolerance should be less than 1");
+    checkClosenessArguments(samplesA.length, samplesB.length, l2Tolerance);
 
     Map<T, Long> histogramA = buildHistogram(samplesA);
     Map<T, Long> histogramB = buildHistogram(samplesB);
@@ -66,18 +219,112 @@ public final class StatisticalTestsUtil {
     for (long count : histogramB.values()) {
       selfCollisionCountB += (count * (count - 1)) / 2;
     }
-    for (T sample : histogramA.keySet()) {
-      if (histogramB.containsKey(sample)) {
-        crossCollisionCount += histogramA.get(sample) * histogramB.get(sample);
+    for (Map.Entry<T, Long> entryA : histogramA.entrySet()) {
+      Long countB = histogramB.get(entryA.getKey());
+      if (countB != null) {
+        crossCollisionCount += entryA.getValue() * countB;
       }
     }
+    return isClose(
+        selfCollisionCountA,
+        selfCollisionCountB,
+        crossCollisionCount,
+        samplesA.length,
+        l2Tolerance);
+  }
 
+  /**
+   * Same as {@link #verifyCloseness(Object[], Object[], double)} for samples of type long.
+   *
+   * <p>Rather than hashing boxed samples, the samples are counted in a {@link SampleHistogram}.
+   * Only the distinct values are sorted, and the collisions are counted by a merge-join of the
+   * sorted histograms.
+   */
+  public static boolean verifyCloseness(long[] samplesA, long[] samplesB, double l2Tolerance) {
+    checkClosenessArguments(samplesA.length, samplesB.length, l2Tolerance);
+    return verifyCloseness(
+        new SortedHistogram(histogramOf(samplesA)),
+        new SortedHistogram(histogramOf(samplesB)),
+        samplesA.length,
+        l2Tolerance);
+  }
+
+  /**
+   * Same as {@link #verifyCloseness(long[], long[], double)} for samples of type double. Two
+   * samples are considered equal if they are equal as {@link Double} objects.
+   */
+  public static boolean verifyCloseness(double[] samplesA, double[] samplesB, double l2Tolerance) {
+    checkClosenessArguments(samplesA.length, samplesB.length, l2Tolerance);
+    return verifyCloseness(
+        new SortedHistogram(histogramOf(samplesA)),
+        new SortedHistogram(histogramOf(samplesB)),
+        samplesA.length,
+        l2Tolerance);
+  }
+
+  /**
+   * Same as {@link #verifyCloseness(long[], long[], double)} for samples that were counted in
+   * histograms, e.g., by {@link #generateLongHistogram}. Both histograms must count the same number
+   * of samples, which need not fit into memory.
+   */
+  public static boolean verifyCloseness(
+      SampleHistogram histogramA, SampleHistogram histogramB, double l2Tolerance) {
+    checkClosenessArguments(
+        histogramA.getNumberOfSamples(), histogramB.getNumberOfSamples(), l2Tolerance);
+    return verifyCloseness(
+        new SortedHistogram(histogramA),
+        new SortedHistogram(histogramB),
+        histogramA.getNumberOfSamples(),
+        l2Tolerance);
+  }
+
+  private static boolean verifyCloseness(
+      SortedHistogram histogramA,
+      SortedHistogram histogramB,
+      long numberOfSamples,
+      double l2Tolerance) {
+    long selfCollisionCountA = histogramA.countSelfCollisions();
+    long selfCollisionCountB = histogramB.countSelfCollisions();
+    long crossCollisionCount = 0;
+    int a = 0;
+    int b = 0;
+    while (a < histogramA.size && b < histogramB.size) {
+      if (histogramA.values[a] < histogramB.values[b]) {
+        a++;
+      } else if (histogramA.values[a] > histogramB.values[b]) {
+        b++;
+      } else {
+        crossCollisionCount += histogramA.counts[a++] * histogramB.counts[b++];
+      }
+    }
+    return isClose(
+        selfCollisionCountA,
+        selfCollisionCountB,
+        crossCollisionCount,
+        numberOfSamples,
+        l2Tolerance);
+  }
+
+  private static void checkClosenessArguments(
+      long numberOfSamplesA, long numberOfSamplesB, double l2Tolerance) {
+    checkArgument(numberOfSamplesA == numberOfSamplesB, "The sample sets must be of equal size.");
+    checkArgument(numberOfSamplesA > 0, "The sample sets must not be empty");
+    checkArgument(l2Tolerance > 0, "The l2 tolerance must be positive");
+    checkArgument(l2Tolerance < 1, "The l2 tolerance should be less than 1");
+  }
+
+  private static boolean isClose(
+      long selfCollisionCountA,
+      long selfCollisionCountB,
+      long crossCollisionCount,
+      long numberOfSamples,
+      double l2Tolerance) {
     double testValue =
         selfCollisionCountA
             + selfCollisionCountB
-            - ((samplesA.length - 1.0) / samplesA.length) * crossCollisionCount;
+            - ((numberOfSamples - 1.0) / numberOfSamples) * crossCollisionCount;
     double threshold =
-        (l2Tolerance * (samplesA.length - 1)) * (l2Tolerance * samplesA.length) / 4.0;
+        (l2Tolerance * (numberOfSamples - 1)) * (l2Tolerance * numberOfSamples) / 4.0;
     return testValue < threshold;
   }
 
@@ -114,13 +361,8 @@ public final class StatisticalTestsUtil {
    */
   public static <T> boolean verifyApproximateDp(
       T[] samplesA, T[] samplesB, double epsilon, double delta, double deltaTolerance) {
-    checkArgument(samplesA.length == samplesB.length, "The sample sets must be of equal size.");
-    checkArgument(samplesA.length > 0, "The sample sets must not be empty");
-    checkArgument(deltaTolerance > 0, "The delta tolerance must be positive");
-    checkArgument(deltaTolerance < 1, "The delta tolerance should be less than 1");
-    checkArgument(epsilon >= 0, "Epsilon must not be negative");
-    checkArgument(delta >= 0, "Delta must not be negative");
-    checkArgument(delta < 1, "Delta should be less than 1");
+    checkApproximateDpArguments(
+        samplesA.length, samplesB.length, epsilon, delta, deltaTolerance);
 
     Map<T, Long> histogramA = buildHistogram(samplesA);
     Map<T, Long> histogramB = buildHistogram(samplesB);
@@ -132,6 +374,116 @@ public final class StatisticalTestsUtil {
     return testValueA < delta + deltaTolerance && testValueB < delta + deltaTolerance;
   }
 
+  /**
+   * Same as {@link #verifyApproximateDp(Object[], Object[], double, double, double)} for samples of
+   * type long.
+   *
+   * <p>Rather than hashing boxed samples, the samples are counted in a {@link SampleHistogram}.
+   * Only the distinct values are sorted, and both test values are computed in a single merge-join
+   * of the sorted histograms.
+   */
+  public static boolean verifyApproximateDp(
+      long[] samplesA, long[] samplesB, double epsilon, double delta, double deltaTolerance) {
+    checkApproximateDpArguments(
+        samplesA.length, samplesB.length, epsilon, delta, deltaTolerance);
+    return verifyApproximateDp(
+        new SortedHistogram(histogramOf(samplesA)),
+        new SortedHistogram(histogramOf(samplesB)),
+        samplesA.length,
+        epsilon,
+        delta,
+        deltaTolerance);
+  }
+
+  /**
+   * Same as {@link #verifyApproximateDp(long[], long[], double, double, double)} for samples of
+   * type double. Two samples are considered equal if they are equal as {@link Double} objects.
+   */
+  public static boolean verifyApproximateDp(
+      double[] samplesA, double[] samplesB, double epsilon, double delta, double deltaTolerance) {
+    checkApproximateDpArguments(
+        samplesA.length, samplesB.length, epsilon, delta, deltaTolerance);
+    return verifyApproximateDp(
+        new SortedHistogram(histogramOf(samplesA)),
+        new SortedHistogram(histogramOf(samplesB)),
+        samplesA.length,
+        epsilon,
+        delta,
+        deltaTolerance);
+  }
+
+  /**
+   * Same as {@link #verifyApproximateDp(long[], long[], double, double, double)} for samples that
+   * were counted in histograms, e.g., by {@link #generateLongHistogram}. Both histograms must count
+   * the same number of samples, which need not fit into memory.
+   */
+  public static boolean verifyApproximateDp(
+      SampleHistogram histogramA,
+      SampleHistogram histogramB,
+      double epsilon,
+      double delta,
+      double deltaTolerance) {
+    checkApproximateDpArguments(
+        histogramA.getNumberOfSamples(),
+        histogramB.getNumberOfSamples(),
+        epsilon,
+        delta,
+        deltaTolerance);
+    return verifyApproximateDp(
+        new SortedHistogram(histogramA),
+        new SortedHistogram(histogramB),
+        histogramA.getNumberOfSamples(),
+        epsilon,
+        delta,
+        deltaTolerance);
+  }
+
+  private static boolean verifyApproximateDp(
+      SortedHistogram histogramA,
+      SortedHistogram histogramB,
+      long numberOfSamples,
+      double epsilon,
+      double delta,
+      double deltaTolerance) {
+    double expEpsilon = Math.exp(epsilon);
+    double testValueA = 0;
+    double testValueB = 0;
+    int a = 0;
+    int b = 0;
+    while (a < histogramA.size || b < histogramB.size) {
+      // A sample that only occurs in one of the histograms has a count of 0 in the other one.
+      double sampleCountA = 0;
+      double sampleCountB = 0;
+      if (b == histogramB.size
+          || (a < histogramA.size && histogramA.values[a] < histogramB.values[b])) {
+        sampleCountA = histogramA.counts[a++];
+      } else if (a == histogramA.size || histogramA.values[a] > histogramB.values[b]) {
+        sampleCountB = histogramB.counts[b++];
+      } else {
+        sampleCountA = histogramA.counts[a++];
+        sampleCountB = histogramB.counts[b++];
+      }
+      testValueA += max(0.0, (sampleCountA - expEpsilon * sampleCountB) / numberOfSamples);
+      testValueB += max(0.0, (sampleCountB - expEpsilon * sampleCountA) / numberOfSamples);
+    }
+    return testValueA < delta + deltaTolerance && testValueB < delta + deltaTolerance;
+  }
+
+  private static void checkApproximateDpArguments(
+      long numberOfSamplesA,
+      long numberOfSamplesB,
+      double epsilon,
+      double delta,
+      double deltaTolerance) {
+    checkArgument(numberOfSamplesA == numberOfSamplesB, "The sample sets must be of equal size.");
+    checkArgument(numberOfSamplesA > 0, "The sample sets must not be empty");
+    checkArgument(deltaTolerance > 0, "The delta tolerance must be positive");
+    checkArgument(deltaTolerance < 1, "The delta tolerance should be less than 1");
+    checkArgument(epsilon >= 0, "Epsilon must not be negative");
+    checkArgument(delta >= 0, "Delta must not be negative");
+    checkArgument(delta < 1, "Delta should be less than 1");
+  }
+
   /**
    * Rounds a numerical {@code sample} to the next multiple of the specified {@code granularity}.
    * This is intended as a preprocessing step for continous samples before evaluating them based on
@@ -155,10 +507,11 @@ public final class StatisticalTestsUtil {
   private static <T> double computeAproximateDpTestValue(
       Map<T, Long> histogramA, Map<T, Long> histogramB, double epsilon, int numOfSamples) {
     double testValue = 0;
-    for (T sample : histogramA.keySet()) {
-      double sampleCountA = histogramA.get(sample);
-      if (histogramB.containsKey(sample)) {
-        double sampleCountB = histogramB.get(sample);
+    for (Map.Entry<T, Long> entryA : histogramA.entrySet()) {
+      double sampleCountA = entryA.getValue();
+      Long countB = histogramB.get(entryA.getKey());
+      if (countB != null) {
+        double sampleCountB = countB;
         testValue += max(0.0, (sampleCountA - Math.exp(epsilon) * sampleCountB) / numOfSamples);
       } else {
         testValue += sampleCountA / numOfSamples;
@@ -170,12 +523,53 @@ public final class StatisticalTestsUtil {
   private static <T> Map<T, Long> buildHistogram(T[] samples) {
     Map<T, Long> histogram = new HashMap<>();
     for (T sample : samples) {
-      if (histogram.containsKey(sample)) {
-        histogram.put(sample, histogram.get(sample) + 1);
-      } else {
-        histogram.put(sample, 1L);
-      }
+      histogram.merge(sample, 1L, Long::sum);
     }
     return histogram;
   }
+
+  private static SampleHistogram histogramOf(long[] samples) {
+    SampleHistogram histogram = new SampleHistogram();
+    for (long sample : samples) {
+      histogram.add(sample);
+    }
+    return histogram;
+  }
+
+  private static SampleHistogram histogramOf(double[] samples) {
+    SampleHistogram histogram = new SampleHistogram();
+    for (double sample : samples) {
+      histogram.add(sample);
+    }
+    return histogram;
+  }
+
+  /**
+   * The counts of a {@link SampleHistogram} by its distinct samples in ascending order, where
+   * double samples are ordered by their bit patterns. Only equality matters for the statistical
+   * tests, not the order of the values.
+   */
+  private static final class SortedHistogram {
+    final long[] values;
+    final long[] counts;
+    final int size;
+
+    SortedHistogram(SampleHistogram histogram) {
+      values = histogram.getDistinctSamples();
+      Arrays.sort(values);
+      size = values.length;
+      counts = new long[size];
+      for (int i = 0; i < size; i++) {
+        counts[i] = histogram.getCount(values[i]);
+      }
+    }
+
+    long countSelfCollisions() {
+      long selfCollisionCount = 0;
+      for (int i = 0; i < size; i++) {
+        selfCollisionCount += (counts[i] * (counts[i] - 1)) / 2;
+      }
+      return selfCollisionCount;
+    }
+  }
 }
@@ -19,6 +19,12 @@ package com.google.privacy.differentialprivacy.testing;
 import static com.google.common.base.Preconditions.checkArgument;
 
 import com.google.common.base.Supplier;
+import com.google.common.base.Throwables;
+import java.util.concurrent.CompletionService;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorCompletionService;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
 
 /** Utility class providing voting mechanisms to reduce the error of randomized tests. */
 public final class VotingUtil {
@@ -56,4 +62,65 @@ public final class VotingUtil {
     }
     return acceptVotes > rejectVotes;
   }
+
+  /**
+   * Same as {@link #runParallelBallot(Supplier, int, int)} with one thread per available
+   * processor.
+   */
+  public static boolean runParallelBallot(Supplier<Boolean> voteGenerator, int numberOfVotes) {
+    return runParallelBallot(
+        voteGenerator, numberOfVotes, Runtime.getRuntime().availableProcessors());
+  }
+
+  /**
+   * Casts votes concurrently to determine a majority, with the same result and early stopping as
+   * {@link #runBallot(Supplier, int)}.
+   *
+   * <p>A vote is only started if {@link #runBallot} would cast it as well, whatever the outcome of
+   * the votes that are still running: at most as many votes are running as are still missing for
+   * either side to reach a majority. For example, with 7 votes, the first 4 votes are cast
+   * concurrently and no vote is wasted once the majority is clear.
+   *
+   * @param voteGenerator an interface to supply the results of a randomized test, as for {@link
+   *     #runBallot}. It is called from multiple threads and must be thread-safe.
+   * @param numberOfVotes the number of eligible votes, as for {@link #runBallot}.
+   * @param parallelism the maximum number of votes that are cast concurrently. Must be positive.
+   * @return true if the majority of votes are accept, false otherwise.
+   */
+  public static boolean runParallelBallot(
+      Supplier<Boolean> voteGenerator, int numberOfVotes, int parallelism) {
+    checkArgument(numberOfVotes > 0, "The number of votes must be positive");
+    checkArgument(parallelism > 0, "The parallelism must be positive");
+    int majority = numberOfVotes / 2 + 1;
+    ExecutorService executor = Executors.newFixedThreadPool(Math.min(parallelism, majority));
+    CompletionService<Boolean> votes = new ExecutorCompletionService<>(executor);
+    int acceptVotes = 0;
+    int rejectVotes = 0;
+    int runningVotes = 0;
+    try {
+      while (acceptVotes < majority && rejectVotes < majority) {
+        int missingVotes = Math.min(majority - acceptVotes, majority - rejectVotes);
+        while (runningVotes < Math.min(missingVotes, parallelism)) {
+          votes.submit(voteGenerator::get);
+          runningVotes++;
+        }
+        boolean accept = votes.take().get();
+        runningVotes--;
+        if (accept) {
+          acceptVotes++;
+        } else {
+          rejectVotes++;
+        }
+      }
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new IllegalStateException("Interrupted while casting votes.", e);
+    } catch (ExecutionException e) {
+      Throwables.throwIfUnchecked(e.getCause());
+      throw new IllegalStateException("Failed to cast a vote.", e.getCause());
+    } finally {
+      executor.shutdownNow();
+    }
+    return acceptVotes > rejectVotes;
+  }
 }
@@ -0,0 +1,262 @@
+//
+// Copyright 2020 Google LLC
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//      http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+//
+
+package com.google.privacy.differentialprivacy;
+
+import static com.google.common.truth.Truth.assertThat;
+import static com.google.differentialprivacy.SummaryOuterClass.MechanismType.GAUSSIAN;
+import static org.junit.Assert.assertThrows;
+import static org.mockito.ArgumentMatchers.anyDouble;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.Mockito.when;
+
+import com.google.common.collect.ImmutableList;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.List;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+import org.mockito.Mock;
+import org.mockito.junit.MockitoJUnit;
+import org.mockito.junit.MockitoRule;
+
+/**
+ * Tests behavior of {@link AggregationCheckpoint}. The test mocks a {@link Noise} instance to
+ * always generate zero noise.
+ */
+@RunWith(JUnit4.class)
+public class AggregationCheckpointTest {
+  private static final double EPSILON = 0.123;
+  private static final double DELTA = 0.123;
+
+  @Mock private Noise noise;
+  @Rule public final MockitoRule mocks = MockitoJUnit.rule();
+  @Rule public final TemporaryFolder tempFolder = new TemporaryFolder();
+
+  private Path checkpoint;
+
+  @Before
+  public void setUp() throws IOException {
+    // Mock the noise mechanism so that it does not add any noise.
+    when(noise.addNoise(anyLong(), anyInt(), anyLong(), anyDouble(), anyDouble()))
+        .thenAnswer(invocation -> invocation.getArguments()[0]);
+    when(noise.addNoise(anyDouble(), anyInt(), anyDouble(), anyDouble(), anyDouble()))
+        .thenAnswer(invocation -> invocation.getArguments()[0]);
+    // Tests that use serialization need to access to the type of the noise they use. Because the
+    // tests don't rely on a specific noise type, we arbitrarily return Gaussian.
+    when(noise.getMechanismType()).thenReturn(GAUSSIAN);
+
+    checkpoint = tempFolder.getRoot().toPath().resolve("checkpoint");
+  }
+
+  @Test
+  public void writeCounts_doesNotConsumeCounts() throws IOException {
+    Count count = newCount();
+    count.incrementBy(3);
+
+    AggregationCheckpoint.writeCounts(checkpoint, ImmutableList.of(count));
+    count.increment();
+
+    assertThat(count.computeResult()).isEqualTo(4);
+  }
+
+  @Test
+  public void restoreCounts_restoresRawCountsInOrder() throws IOException {
+    Count first = newCount();
+    first.incrementBy(3);
+    Count second = newCount();
+    second.incrementBy(7);
+    AggregationCheckpoint.writeCounts(checkpoint, ImmutableList.of(first, second));
+
+    List<Count> restored = AggregationCheckpoint.restoreCounts(checkpoint, this::newCount);
+
+    assertThat(restored).hasSize(2);
+    assertThat(restored.get(0).computeResult()).isEqualTo(3);
+    assertThat(restored.get(1).computeResult()).isEqualTo(7);
+  }
+
+  @Test
+  public void restoreCounts_emptyList() throws IOException {
+    AggregationCheckpoint.writeCounts(checkpoint, ImmutableList.of());
+
+    assertThat(AggregationCheckpoint.restoreCounts(checkpoint, this::newCount)).isEmpty();
+  }
+
+  @Test
+  public void writeCounts_replacesPreviousCheckpoint() throws IOException {
+    Count count = newCount();
+    count.incrementBy(3);
+    AggregationCheckpoint.writeCounts(checkpoint, ImmutableList.of(count, newCount()));
+    count.incrementBy(2);
+
+    AggregationCheckpoint.writeCounts(checkpoint, ImmutableList.of(count));
+
+    List<Count> restored = AggregationCheckpoint.restoreCounts(checkpoint, this::newCount);
+    assertThat(restored).hasSize(1);
+    assertThat(restored.get(0).computeResult()).isEqualTo(5);
+    // The temporary file has replaced the checkpoint.
+    assertThat(tempFolder.getRoot().list()).asList().containsExactly("checkpoint");
+  }
+
+  @Test
+  public void writeCounts_computedCount_throwsException() {
+    Count count = newCount();
+    count.computeResult();
+
+    assertThrows(
+        IllegalStateException.class,
+        () -> AggregationCheckpoint.writeCounts(checkpoint, ImmutableList.of(count)));
+  }
+
+  @Test
+  public void restoreCounts_differentParameters_throwsException() throws IOException {
+    AggregationCheckpoint.writeCounts(checkpoint, ImmutableList.of(newCount()));
+
+    assertThrows(
+        IllegalArgumentException.class,
+        () ->
+            AggregationCheckpoint.restoreCounts(
+                checkpoint,
+                () ->
+                    Count.builder()
+                        .epsilon(2 * EPSILON)
+                        .delta(DELTA)
+                        .noise(noise)
+                        .maxPartitionsContributed(1)
+                        .build()));
+  }
+
+  @Test
+  public void restoreCounts_checkpointOfSums_throwsException() throws IOException {
+    AggregationCheckpoint.writeBoundedSums(checkpoint, ImmutableList.of(newBoundedSum()));
+
+    assertThrows(
+        IllegalArgumentException.class,
+        () -> AggregationCheckpoint.restoreCounts(checkpoint, this::newCount));
+  }
+
+  @Test
+  public void restoreCounts_notACheckpoint_throwsException() throws IOException {
+    Files.write(checkpoint, new byte[] {1, 2, 3, 4, 5, 6, 7, 8, 9, 10, 11, 12, 13, 14, 15, 16});
+
+    assertThrows(
+        IOException.class, () -> AggregationCheckpoint.restoreCounts(checkpoint, this::newCount));
+  }
+
+  @Test
+  public void restoreCounts_truncatedRecord_throwsException() throws IOException {
+    AggregationCheckpoint.writeCounts(checkpoint, ImmutableList.of(newCount(), newCount()));
+    byte[] bytes = Files.readAllBytes(checkpoint);
+    Files.write(checkpoint, Arrays.copyOf(bytes, bytes.length - 1));
+
+    assertThrows(
+        IOException.class, () -> AggregationCheckpoint.restoreCounts(checkpoint, this::newCount));
+  }
+
+  @Test
+  public void restoreCounts_negativeRecordLength_throwsException() throws IOException {
+    AggregationCheckpoint.writeCounts(checkpoint, ImmutableList.of(newCount()));
+    byte[] bytes = Files.readAllBytes(checkpoint);
+    // The length of the first record follows the header of 4 ints.
+    ByteBuffer.wrap(bytes).putInt(4 * Integer.BYTES, -1);
+    Files.write(checkpoint, bytes);
+
+    assertThrows(
+        IOException.class, () -> AggregationCheckpoint.restoreCounts(checkpoint, this::newCount));
+  }
+
+  @Test
+  public void restoreCounts_bytesAfterLastRecord_throwsException() throws IOException {
+    AggregationCheckpoint.writeCounts(checkpoint, ImmutableList.of(newCount()));
+    byte[] bytes = Files.readAllBytes(checkpoint);
+    Files.write(checkpoint, Arrays.copyOf(bytes, bytes.length + 1));
+
+    assertThrows(
+        IOException.class, () -> AggregationCheckpoint.restoreCounts(checkpoint, this::newCount));
+  }
+
+  @Test
+  public void restoreBoundedSums_restoresRawSums() throws IOException {
+    BoundedSum sum = newBoundedSum();
+    sum.addEntry(2.5);
+    sum.addEntry(100.0);
+    AggregationCheckpoint.writeBoundedSums(checkpoint, ImmutableList.of(sum));
+    sum.addEntry(1.0);
+
+    List<BoundedSum> restored =
+        AggregationCheckpoint.restoreBoundedSums(checkpoint, this::newBoundedSum);
+
+    assertThat(restored).hasSize(1);
+    assertThat(restored.get(0).computeResult()).isEqualTo(12.5);
+    assertThat(sum.computeResult()).isEqualTo(13.5);
+  }
+
+  @Test
+  public void restoreBoundedMeans_restoresRawMeans() throws IOException {
+    BoundedMean mean = newBoundedMean();
+    mean.addEntry(2.0);
+    mean.addEntry(4.0);
+    AggregationCheckpoint.writeBoundedMeans(checkpoint, ImmutableList.of(mean));
+    mean.addEntry(9.0);
+
+    List<BoundedMean> restored =
+        AggregationCheckpoint.restoreBoundedMeans(checkpoint, this::newBoundedMean);
+
+    assertThat(restored).hasSize(1);
+    assertThat(restored.get(0).computeResult()).isEqualTo(3.0);
+    assertThat(mean.computeResult()).isEqualTo(5.0);
+  }
+
+  private Count newCount() {
+    return Count.builder()
+        .epsilon(EPSILON)
+        .delta(DELTA)
+        .noise(noise)
+        .maxPartitionsContributed(1)
+        .build();
+  }
+
+  private BoundedSum newBoundedSum() {
+    return BoundedSum.builder()
+        .epsilon(EPSILON)
+        .delta(DELTA)
+        .noise(noise)
+        .maxPartitionsContributed(1)
+        .lower(0.0)
+        .upper(10.0)
+        .build();
+  }
+
+  private BoundedMean newBoundedMean() {
+    return BoundedMean.builder()
+        .epsilon(EPSILON)
+        .delta(DELTA)
+        .noise(noise)
+        .maxPartitionsContributed(1)
+        .maxContributionsPerPartition(1)
+        .lower(1.0)
+        .upper(9.0)
+        .build();
+  }
+}
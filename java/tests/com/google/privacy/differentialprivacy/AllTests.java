@@ -23,17 +23,33 @@ import org.junit.runners.Suite.SuiteClasses;
 /** Provides a list of JUnit test classes to Bazel. When creating a new test class, add it here. */
 @RunWith(Suite.class)
 @SuiteClasses({
+  AggregationCheckpointTest.class,
+  ApproxBoundsTest.class,
   BoundedMeanBuilderTest.class,
   BoundedMeanTest.class,
+  BoundedQuantilesBuilderTest.class,
+  BoundedQuantilesTest.class,
   LaplaceNoiseConfidenceIntervalTest.class,
   GaussianNoiseConfidenceIntervalTest.class,
   LaplaceNoiseQuantileTest.class,
   GaussianNoiseQuantileTest.class,
   BoundedSumBuilderTest.class,
   BoundedSumTest.class,
+  BoundedVarianceBuilderTest.class,
+  BoundedVarianceTest.class,
+  ContinualCountTest.class,
   CountBuilderTest.class,
   CountTest.class,
+  DistinctCountBuilderTest.class,
+  DistinctCountTest.class,
+  DpMetricsTest.class,
   GaussianNoiseTest.class,
   LaplaceNoiseTest.class,
+  OffHeapBoundedSumStoreTest.class,
+  OffHeapCountStoreTest.class,
+  PartitionSelectionTest.class,
+  StandardNormalDistributionTest.class,
+  WindowedBoundedSumTest.class,
+  WindowedCountTest.class,
 })
 public class AllTests {}
@@ -0,0 +1,413 @@
+//
+// Copyright 2020 Google LLC
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//      http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+//
+
+package com.google.privacy.differentialprivacy;
+
+import static com.google.common.truth.Truth.assertThat;
+import static java.util.stream.Collectors.toList;
+import static org.junit.Assert.assertThrows;
+import static org.mockito.ArgumentMatchers.anyDouble;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import com.google.differentialprivacy.Data.ValueType;
+import com.google.differentialprivacy.SummaryOuterClass.ApproxBoundsSummary;
+import com.google.differentialprivacy.SummaryOuterClass.MechanismType;
+import com.google.protobuf.InvalidProtocolBufferException;
+import java.util.Arrays;
+import java.util.Random;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+import org.mockito.Mock;
+import org.mockito.junit.MockitoJUnit;
+import org.mockito.junit.MockitoRule;
+
+/**
+ * Tests the behavior of {@link ApproxBounds}. The test mocks {@link Noise} instance which generates
+ * zero noise and a fixed threshold.
+ */
+@RunWith(JUnit4.class)
+public class ApproxBoundsTest {
+  private static final double EPSILON = 1.0;
+  private static final double DELTA = 0.123;
+  private static final double THRESHOLD = 1.5;
+
+  @Rule public final MockitoRule mocks = MockitoJUnit.rule();
+  @Mock private Noise noise;
+  private ApproxBounds approxBounds;
+
+  @Before
+  public void setUp() {
+    when(noise.getMechanismType()).thenReturn(MechanismType.GAUSSIAN);
+    // Mock the noise mechanism so that it does not add any noise.
+    when(noise.addNoise(anyLong(), anyInt(), anyLong(), anyDouble(), anyDouble()))
+        .thenAnswer(invocation -> invocation.getArguments()[0]);
+    when(noise.computeQuantile(
+            anyDouble(), anyDouble(), anyInt(), anyDouble(), anyDouble(), anyDouble()))
+        .thenReturn(THRESHOLD);
+
+    approxBounds = getApproxBoundsBuilderWithFields().build();
+  }
+
+  @Test
+  public void computeResult_returnsBoundariesOfOutermostBinsAboveThreshold() {
+    approxBounds.addEntries(Arrays.asList(0.5, 3.0, 3.0, 6.0, 7.0));
+
+    ApproxBounds.Result result = approxBounds.computeResult();
+
+    assertThat(result.lower()).isEqualTo(2.0);
+    assertThat(result.upper()).isEqualTo(8.0);
+  }
+
+  @Test
+  public void computeResult_negativeEntries_returnsNegativeBounds() {
+    approxBounds.addEntries(Arrays.asList(-3.0, -3.0, -5.0, -5.0, -100.0));
+
+    ApproxBounds.Result result = approxBounds.computeResult();
+
+    assertThat(result.lower()).isEqualTo(-8.0);
+    assertThat(result.upper()).isEqualTo(-2.0);
+  }
+
+  @Test
+  public void computeResult_mixedSignEntries_returnsBoundsAroundZero() {
+    approxBounds.addEntries(Arrays.asList(-3.0, -3.0, 0.0, 0.5, 15.0, 16.0));
+
+    ApproxBounds.Result result = approxBounds.computeResult();
+
+    assertThat(result.lower()).isEqualTo(-4.0);
+    assertThat(result.upper()).isEqualTo(16.0);
+  }
+
+  @Test
+  public void computeResult_noBinAboveThreshold_throwsException() {
+    approxBounds.addEntries(Arrays.asList(1.0, 3.0, 5.0));
+    assertThrows(IllegalStateException.class, () -> approxBounds.computeResult());
+  }
+
+  @Test
+  public void computeResult_multipleCalls_throwsException() {
+    approxBounds.addEntries(Arrays.asList(1.0, 1.0));
+    approxBounds.computeResult();
+    assertThrows(IllegalStateException.class, () -> approxBounds.computeResult());
+  }
+
+  @Test
+  public void reset_discardsEntriesAndAllowsNewResult() {
+    approxBounds.addEntries(Arrays.asList(3.0, 3.0));
+    approxBounds.computeResult();
+
+    approxBounds.reset();
+    approxBounds.addEntries(Arrays.asList(-5.0, -6.0));
+
+    ApproxBounds.Result result = approxBounds.computeResult();
+    assertThat(result.lower()).isEqualTo(-8.0);
+    assertThat(result.upper()).isEqualTo(-4.0);
+  }
+
+  @Test
+  public void computeResult_thresholdIsQuantileOfNoiseForSuccessProbability() {
+    approxBounds =
+        getApproxBoundsBuilderWithFields()
+            .successProbability(0.9)
+            .maxPartitionsContributed(2)
+            .maxContributionsPerPartition(3)
+            .build();
+    approxBounds.addEntries(Arrays.asList(1.0, 1.0));
+
+    approxBounds.computeResult();
+
+    // None of the 2 * numBins - 1 bins that can be empty should exceed the threshold.
+    int numBins = approxBounds.getNumBins();
+    double rank = Math.exp(Math.log(0.9) / (2 * numBins - 1));
+    verify(noise).computeQuantile(eq(rank), eq(0.0), eq(2), eq(3.0), eq(EPSILON), eq(DELTA));
+  }
+
+  @Test
+  public void addEntry_nan_ignored() {
+    approxBounds.addEntry(Double.NaN);
+    approxBounds.addEntries(Arrays.asList(3.0, 3.0));
+
+    ApproxBoundsSummary summary = getSummary(approxBounds);
+    assertThat(summary.getPosBinCountList().stream().mapToLong(Long::longValue).sum())
+        .isEqualTo(2);
+    assertThat(summary.getNegBinCountList().stream().mapToLong(Long::longValue).sum())
+        .isEqualTo(0);
+  }
+
+  @Test
+  public void addEntry_calledAfterComputeResult_throwsException() {
+    approxBounds.addEntries(Arrays.asList(1.0, 1.0));
+    approxBounds.computeResult();
+    assertThrows(IllegalStateException.class, () -> approxBounds.addEntry(1.0));
+  }
+
+  @Test
+  public void getNumBins_defaultParameters_coversAllFiniteDoubles() {
+    ApproxBounds defaultBounds =
+        ApproxBounds.builder().epsilon(EPSILON).maxPartitionsContributed(1).build();
+
+    // Bin i covers magnitudes up to 2^(i - 1022), except for the last two bins, whose boundary is
+    // Double.MAX_VALUE.
+    assertThat(defaultBounds.getNumBins()).isEqualTo(2047);
+    assertThat(defaultBounds.mostSignificantBit(Double.MIN_NORMAL)).isEqualTo(0);
+    assertThat(defaultBounds.mostSignificantBit(1.0)).isEqualTo(1022);
+    assertThat(defaultBounds.mostSignificantBit(Double.MAX_VALUE)).isEqualTo(2045);
+  }
+
+  @Test
+  public void mostSignificantBit_returnsIndexOfBin() {
+    assertThat(approxBounds.mostSignificantBit(0.0)).isEqualTo(0);
+    assertThat(approxBounds.mostSignificantBit(0.5)).isEqualTo(0);
+    assertThat(approxBounds.mostSignificantBit(1.0)).isEqualTo(0);
+    assertThat(approxBounds.mostSignificantBit(Math.nextUp(1.0))).isEqualTo(1);
+    assertThat(approxBounds.mostSignificantBit(2.0)).isEqualTo(1);
+    assertThat(approxBounds.mostSignificantBit(3.0)).isEqualTo(2);
+    assertThat(approxBounds.mostSignificantBit(-4.0)).isEqualTo(2);
+    assertThat(approxBounds.mostSignificantBit(Math.nextDown(1024.0))).isEqualTo(10);
+    assertThat(approxBounds.mostSignificantBit(1024.0)).isEqualTo(10);
+    assertThat(approxBounds.mostSignificantBit(Math.nextUp(1024.0))).isEqualTo(11);
+  }
+
+  @Test
+  public void mostSignificantBit_infinity_returnsBinOfLargestDouble() {
+    int maxBin = approxBounds.mostSignificantBit(Double.MAX_VALUE);
+    assertThat(approxBounds.mostSignificantBit(Double.POSITIVE_INFINITY)).isEqualTo(maxBin);
+    assertThat(approxBounds.mostSignificantBit(Double.NEGATIVE_INFINITY)).isEqualTo(maxBin);
+  }
+
+  @Test
+  public void computeFromPartialSums_boundsAroundZero_clampsValues() {
+    double[] posSums = new double[approxBounds.getNumBins()];
+    double[] negSums = new double[approxBounds.getNumBins()];
+    approxBounds.addEntry(7.0, posSums, negSums);
+    approxBounds.addEntry(-7.0, posSums, negSums);
+
+    // Only the partial sum in the bin of the entry is stored per entry.
+    assertThat(posSums[2]).isEqualTo(0.0);
+    assertThat(posSums[3]).isEqualTo(3.0);
+    assertThat(negSums[3]).isEqualTo(-3.0);
+    assertThat(approxBounds.computeFromPartialSums(posSums, negSums, -2.0, 4.0, 2))
+        .isEqualTo(2.0);
+    assertThat(approxBounds.computeFromPartialSums(posSums, negSums, -8.0, 8.0, 2))
+        .isEqualTo(0.0);
+    assertThat(approxBounds.computeFromPartialSums(posSums, negSums, 0.0, 8.0, 2))
+        .isEqualTo(7.0);
+  }
+
+  @Test
+  public void computeFromPartialSums_positiveBounds_clampsValues() {
+    double[] posSums = new double[approxBounds.getNumBins()];
+    double[] negSums = new double[approxBounds.getNumBins()];
+    approxBounds.addEntry(1.0, posSums, negSums);
+    approxBounds.addEntry(3.0, posSums, negSums);
+    approxBounds.addEntry(100.0, posSums, negSums);
+
+    // The entries are clamped to 2, 3 and 4.
+    assertThat(approxBounds.computeFromPartialSums(posSums, negSums, 2.0, 4.0, 3))
+        .isEqualTo(9.0);
+  }
+
+  @Test
+  public void computeFromPartialSums_negativeBounds_clampsValues() {
+    double[] posSums = new double[approxBounds.getNumBins()];
+    double[] negSums = new double[approxBounds.getNumBins()];
+    approxBounds.addEntry(-1.0, posSums, negSums);
+    approxBounds.addEntry(-7.0, posSums, negSums);
+
+    // The entries are clamped to -2 and -4.
+    assertThat(approxBounds.computeFromPartialSums(posSums, negSums, -4.0, -2.0, 2))
+        .isEqualTo(-6.0);
+  }
+
+  @Test
+  public void computeFromPartialSums_infiniteValue_clampsToBound() {
+    double[] posSums = new double[approxBounds.getNumBins()];
+    double[] negSums = new double[approxBounds.getNumBins()];
+    approxBounds.addEntry(Double.POSITIVE_INFINITY, posSums, negSums);
+
+    assertThat(approxBounds.computeFromPartialSums(posSums, negSums, 0.0, 16.0, 1))
+        .isEqualTo(16.0);
+  }
+
+  @Test
+  public void getCumulativePartialSums_addsWidthsOfBinsBelowEntries() {
+    double[] posSums = new double[approxBounds.getNumBins()];
+    double[] negSums = new double[approxBounds.getNumBins()];
+    approxBounds.addEntry(7.0, posSums, negSums);
+    approxBounds.addEntry(3.0, posSums, negSums);
+    approxBounds.addEntry(-3.0, posSums, negSums);
+
+    double[] cumulativePosSums = approxBounds.getCumulativePartialSums(posSums, false);
+    double[] cumulativeNegSums = approxBounds.getCumulativePartialSums(negSums, true);
+
+    assertThat(Arrays.copyOf(cumulativePosSums, 5)).usingExactEquality()
+        .containsExactly(2.0, 2.0, 3.0, 3.0, 0.0).inOrder();
+    assertThat(Arrays.copyOf(cumulativeNegSums, 3)).usingExactEquality()
+        .containsExactly(-1.0, -1.0, -1.0).inOrder();
+  }
+
+  @Test
+  public void mergePartialSums_inverseOfGetCumulativePartialSums() {
+    ApproxBounds other = getApproxBoundsBuilderWithFields().build();
+    double[] otherPosSums = new double[other.getNumBins()];
+    double[] otherNegSums = new double[other.getNumBins()];
+    other.addEntry(7.0, otherPosSums, otherNegSums);
+    other.addEntry(100.0, otherPosSums, otherNegSums);
+    double[] otherCumulativePosSums = other.getCumulativePartialSums(otherPosSums, false);
+    ApproxBoundsSummary otherSummary = getSummary(other);
+
+    double[] posSums = new double[approxBounds.getNumBins()];
+    double[] negSums = new double[approxBounds.getNumBins()];
+    approxBounds.addEntry(3.0, posSums, negSums);
+    approxBounds.mergePartialSums(
+        posSums,
+        Arrays.stream(otherCumulativePosSums)
+            .mapToObj(v -> ValueType.newBuilder().setFloatValue(v).build())
+            .collect(toList()),
+        otherSummary.getPosBinCountList(),
+        false);
+    approxBounds.mergeWith(otherSummary.toByteArray());
+
+    // The entries 3, 7 and 100 clamped to [0, 8].
+    assertThat(approxBounds.computeFromPartialSums(posSums, negSums, 0.0, 8.0, 3))
+        .isEqualTo(18.0);
+    // The entries 3, 7 and 100 clamped to [4, 128].
+    assertThat(approxBounds.computeFromPartialSums(posSums, negSums, 4.0, 128.0, 3))
+        .isEqualTo(111.0);
+  }
+
+  @Test
+  public void mostSignificantBit_powersOfTwo_matchesLogarithmicBins() {
+    // Base 10 bins are determined with logarithms, base 2 bins from the binary representation.
+    ApproxBounds base10 = getApproxBoundsBuilderWithFields().base(10.0).build();
+    Random random = new Random(42);
+    for (int i = 0; i < 10000; i++) {
+      double value = Math.scalb(random.nextDouble(), random.nextInt(2000) - 1000);
+      int expectedBin = (int) Math.max(0, Math.ceil(Math.log(value) / Math.log(2)));
+      // The logarithm is inaccurate close to bin boundaries, which are exact powers of 2.
+      if (Math.abs(Math.log(value) / Math.log(2) - Math.rint(Math.log(value) / Math.log(2)))
+          > 1e-9) {
+        assertThat(approxBounds.mostSignificantBit(value)).isEqualTo(expectedBin);
+      }
+      assertThat(base10.mostSignificantBit(value))
+          .isEqualTo((int) Math.max(0, Math.min(base10.getNumBins() - 1,
+              Math.ceil(Math.log10(value) - 1e-12))));
+    }
+  }
+
+  @Test
+  public void countOutside_countsEntriesInBinsBeyondBounds() {
+    approxBounds.addEntries(Arrays.asList(-100.0, -3.0, 0.0, 3.0, 7.0, 100.0));
+
+    assertThat(approxBounds.countOutside(-4.0, 8.0)).isEqualTo(2);
+    assertThat(approxBounds.countOutside(2.0, 8.0)).isEqualTo(4);
+    assertThat(approxBounds.countOutside(-128.0, -2.0)).isEqualTo(4);
+  }
+
+  @Test
+  public void mergeWith_addsBinCounts() {
+    ApproxBounds other = getApproxBoundsBuilderWithFields().build();
+    approxBounds.addEntry(3.0);
+    other.addEntry(3.0);
+    other.addEntry(7.0);
+
+    approxBounds.mergeWith(other.getSerializableSummary());
+
+    // Only the bin (2, 4] exceeds the threshold after the merge.
+    ApproxBounds.Result result = approxBounds.computeResult();
+    assertThat(result.lower()).isEqualTo(2.0);
+    assertThat(result.upper()).isEqualTo(4.0);
+  }
+
+  @Test
+  public void mergeWith_differentNumberOfBins_throwsException() {
+    ApproxBounds other = getApproxBoundsBuilderWithFields().base(10.0).build();
+    byte[] summary = other.getSerializableSummary();
+    assertThrows(IllegalArgumentException.class, () -> approxBounds.mergeWith(summary));
+  }
+
+  @Test
+  public void mergeWith_calledAfterSerialization_throwsException() {
+    byte[] summary = getApproxBoundsBuilderWithFields().build().getSerializableSummary();
+    approxBounds.getSerializableSummary();
+    assertThrows(IllegalStateException.class, () -> approxBounds.mergeWith(summary));
+  }
+
+  @Test
+  public void getSerializableSummary_storesBinCounts() {
+    approxBounds.addEntries(Arrays.asList(-3.0, 3.0, 3.0, 7.0));
+
+    ApproxBoundsSummary summary = getSummary(approxBounds);
+
+    assertThat(summary.getPosBinCountCount()).isEqualTo(approxBounds.getNumBins());
+    assertThat(summary.getNegBinCountCount()).isEqualTo(approxBounds.getNumBins());
+    assertThat(summary.getPosBinCount(2)).isEqualTo(2);
+    assertThat(summary.getPosBinCount(3)).isEqualTo(1);
+    assertThat(summary.getNegBinCount(2)).isEqualTo(1);
+  }
+
+  @Test
+  public void getSerializableSummary_multipleCalls_throwsException() {
+    approxBounds.getSerializableSummary();
+    assertThrows(IllegalStateException.class, () -> approxBounds.getSerializableSummary());
+  }
+
+  @Test
+  public void build_invalidScale_throwsException() {
+    assertThrows(
+        IllegalArgumentException.class,
+        () -> getApproxBoundsBuilderWithFields().scale(0.0).build());
+  }
+
+  @Test
+  public void build_invalidBase_throwsException() {
+    assertThrows(
+        IllegalArgumentException.class,
+        () -> getApproxBoundsBuilderWithFields().base(1.0).build());
+  }
+
+  @Test
+  public void build_invalidSuccessProbability_throwsException() {
+    assertThrows(
+        IllegalArgumentException.class,
+        () -> getApproxBoundsBuilderWithFields().successProbability(1.0).build());
+  }
+
+  private ApproxBounds.Params.Builder getApproxBoundsBuilderWithFields() {
+    return ApproxBounds.builder()
+        .epsilon(EPSILON)
+        .delta(DELTA)
+        .noise(noise)
+        .maxPartitionsContributed(1)
+        .scale(1.0)
+        .base(2.0);
+  }
+
+  private static ApproxBoundsSummary getSummary(ApproxBounds approxBounds) {
+    try {
+      return ApproxBoundsSummary.parseFrom(approxBounds.getSerializableSummary());
+    } catch (InvalidProtocolBufferException pbe) {
+      throw new IllegalArgumentException(pbe);
+    }
+  }
+}
@@ -57,6 +57,18 @@ public class BoundedMeanBuilderTest {
     assertThat(builder.build()).isNotNull();
   }
 
+  @Test
+  public void noBounds_buildsInstanceWithAutomaticBounds() {
+    BoundedMean.Params.Builder builderWithoutBounds =
+        BoundedMean.builder()
+            .epsilon(DEFAULT_EPSILON)
+            .delta(DEFAULT_DELTA)
+            .noise(new GaussianNoise())
+            .maxContributionsPerPartition(DEFAULT_MAX_CONTRIBUTIONS_PER_PARTITION)
+            .maxPartitionsContributed(DEFAULT_MAX_PARTITIONS_CONTRIBUTED);
+    assertThat(builderWithoutBounds.build()).isNotNull();
+  }
+
   @Test
   public void epsilon_lessThanZero_throwsException() {
     builder.epsilon(-1.0);
@@ -30,6 +30,7 @@ import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 
 import com.google.common.collect.Range;
+import com.google.differentialprivacy.Data.Output.ErrorReport;
 import com.google.differentialprivacy.SummaryOuterClass.MechanismType;
 import java.util.Arrays;
 import java.util.List;
@@ -659,6 +660,243 @@ public class BoundedMeanTest {
         () -> targetMean.mergeWith(sourceMean.getSerializableSummary()));
   }
 
+  @Test
+  public void newInstance_buildsIndependentMeans() {
+    BoundedMean.Params params = getBoundedMeanBuilderWithFields().buildParams();
+    BoundedMean first = params.newInstance();
+    BoundedMean second = params.newInstance();
+
+    first.addEntry(1.0);
+    first.addEntry(9.0);
+    second.addEntry(-4.0);
+
+    assertThat(first.computeResult()).isEqualTo(5.0);
+    assertThat(second.computeResult()).isEqualTo(-4.0);
+  }
+
+  @Test
+  public void buildParams_derivesInnerParamsOnce() {
+    BoundedMean.Params params = getBoundedMeanBuilderWithFields().buildParams();
+
+    assertThat(params.countParams()).isSameInstanceAs(params.countParams());
+    assertThat(params.normalizedSumParams()).isSameInstanceAs(params.normalizedSumParams());
+    assertThat(params.approxBoundsParams()).isNull();
+  }
+
+  @Test
+  public void newInstance_autoBounds_computesResult() {
+    mockThreshold(1.5);
+    BoundedMean.Params params = getBoundedMeanBuilderWithAutoBounds().buildParams();
+    BoundedMean autoMean = params.newInstance();
+    autoMean.addEntries(Arrays.asList(3.0, 3.0, 100.0));
+
+    assertThat(params.normalizedSumParams()).isNull();
+    assertThat(autoMean.computeResult()).isWithin(1e-12).of(10.0 / 3.0);
+  }
+
+  @Test
+  public void reset_afterComputeResult_startsNewMean() {
+    mean.addEntry(2.0);
+    mean.addEntry(100.0);
+    mean.computeResult();
+    mean.computeBoundingReport(EPSILON, DELTA);
+
+    mean.reset();
+    mean.addEntry(2.0);
+    mean.addEntry(4.0);
+
+    assertThat(mean.computeResult()).isEqualTo(3.0);
+    assertThat(mean.computeBoundingReport(EPSILON, DELTA).getBoundingReport().getNumInputs())
+        .isEqualTo(2.0);
+    assertThrows(IllegalStateException.class, mean::computeResult);
+  }
+
+  @Test
+  public void reset_autoBounds_determinesBoundsAnew() {
+    mockThreshold(1.5);
+    BoundedMean autoMean = getBoundedMeanBuilderWithAutoBounds().build();
+    autoMean.addEntries(Arrays.asList(3.0, 3.0, 100.0));
+    autoMean.computeResult();
+
+    autoMean.reset();
+    autoMean.addEntries(Arrays.asList(-5.0, -6.0, -100.0));
+
+    // Only the bin [-8, -4) exceeds the threshold, so the entries are clamped to -5, -6 and -8.
+    assertThat(autoMean.computeResult()).isWithin(1e-12).of(-19.0 / 3.0);
+  }
+
+  @Test
+  public void getSnapshotSummary_canBeMergedIntoAnotherMean() {
+    BoundedMean targetMean = getBoundedMeanBuilderWithFields().build();
+    BoundedMean sourceMean = getBoundedMeanBuilderWithFields().build();
+    sourceMean.addEntry(1);
+    sourceMean.addEntry(9);
+
+    targetMean.mergeWith(sourceMean.getSnapshotSummary());
+
+    assertThat(targetMean.computeResult()).isEqualTo(5);
+  }
+
+  @Test
+  public void getSnapshotSummary_meanCanStillBeAmendedAndMerged() {
+    BoundedMean targetMean = getBoundedMeanBuilderWithFields().build();
+    BoundedMean sourceMean = getBoundedMeanBuilderWithFields().build();
+    BoundedMean otherMean = getBoundedMeanBuilderWithFields().build();
+    otherMean.addEntry(-4);
+
+    sourceMean.addEntry(1);
+    sourceMean.getSnapshotSummary();
+    sourceMean.addEntry(9);
+    sourceMean.mergeWith(otherMean.getSerializableSummary());
+    sourceMean.getSnapshotSummary();
+    targetMean.mergeWith(sourceMean.getSerializableSummary());
+
+    assertThat(targetMean.computeResult()).isEqualTo(2);
+  }
+
+  @Test
+  public void computeResult_calledAfterSnapshot_throwsException() {
+    mean.getSnapshotSummary();
+    assertThrows(IllegalStateException.class, () -> mean.computeResult());
+  }
+
+  @Test
+  public void computeBoundingReport_calledAfterSnapshot_throwsException() {
+    mean.getSnapshotSummary();
+    assertThrows(IllegalStateException.class, () -> mean.computeBoundingReport(EPSILON, DELTA));
+  }
+
+  @Test
+  public void computeBoundingReport_reportsBoundsAndClampedEntries() {
+    mean.addEntry(0.0);
+    mean.addEntry(5.0);
+    mean.addEntry(10.0);
+    mean.addEntry(NaN);
+
+    ErrorReport report = mean.computeBoundingReport(EPSILON, DELTA);
+
+    assertThat(report.getBoundingReport().getLowerBound().getFloatValue()).isEqualTo(1.0);
+    assertThat(report.getBoundingReport().getUpperBound().getFloatValue()).isEqualTo(9.0);
+    assertThat(report.getBoundingReport().getNumInputs()).isEqualTo(3.0);
+    assertThat(report.getBoundingReport().getNumOutside()).isEqualTo(2.0);
+  }
+
+  @Test
+  public void merge_sumsClampingStatistics() {
+    BoundedMean targetMean = getBoundedMeanBuilderWithFields().build();
+    BoundedMean sourceMean = getBoundedMeanBuilderWithFields().build();
+
+    targetMean.addEntry(-11.0);
+    targetMean.addEntry(0.0);
+    sourceMean.addEntry(11.0);
+    targetMean.mergeWith(sourceMean.getSerializableSummary());
+
+    ErrorReport report = targetMean.computeBoundingReport(EPSILON, DELTA);
+    assertThat(report.getBoundingReport().getNumInputs()).isEqualTo(3.0);
+    assertThat(report.getBoundingReport().getNumOutside()).isEqualTo(2.0);
+  }
+
+  @Test
+  public void computeBoundingReport_calledTwice_throwsException() {
+    mean.computeBoundingReport(EPSILON, DELTA);
+    assertThrows(IllegalStateException.class, () -> mean.computeBoundingReport(EPSILON, DELTA));
+  }
+
+  @Test
+  public void computeBoundingReport_calledAfterSerialization_throwsException() {
+    mean.getSerializableSummary();
+    assertThrows(IllegalStateException.class, () -> mean.computeBoundingReport(EPSILON, DELTA));
+  }
+
+  @Test
+  public void autoBounds_computeResult_clampsToApproxBounds() {
+    mockThreshold(1.5);
+    BoundedMean autoMean = getBoundedMeanBuilderWithAutoBounds().build();
+    autoMean.addEntries(Arrays.asList(3.0, 3.0, 100.0));
+
+    // Only the bin (2, 4] exceeds the threshold, so the entries are clamped to 3, 3 and 4.
+    assertThat(autoMean.computeResult()).isWithin(1e-12).of(10.0 / 3.0);
+    // The normalized sum is relative to the midpoint 3 of the bounds.
+    verify(noise).addNoise(eq(1.0), eq(1), eq(1.0), eq(EPSILON * 0.25), eq(DELTA * 0.25));
+  }
+
+  @Test
+  public void autoBounds_computeResult_entriesNearMaxValue_capsBoundsToFiniteSensitivity() {
+    mockThreshold(1.5);
+    BoundedMean autoMean =
+        getBoundedMeanBuilderWithAutoBounds().maxContributionsPerPartition(2).build();
+    autoMean.addEntries(Arrays.asList(Double.MAX_VALUE, Double.MAX_VALUE));
+
+    // The bin (2^1023, MAX_VALUE] would make the sensitivity of the normalized sum infinite, so the
+    // bounds are capped to the bin (2^1021, 2^1022].
+    assertThat(autoMean.computeResult()).isEqualTo(Math.scalb(1.0, 1022));
+    verify(noise)
+        .addNoise(
+            eq(Math.scalb(1.0, 1021)),
+            eq(1),
+            eq(Math.scalb(1.0, 1021)),
+            eq(EPSILON * 0.25),
+            eq(DELTA * 0.25));
+  }
+
+  @Test
+  public void autoBounds_mergeWith_addsPartialSumsAndCount() {
+    mockThreshold(1.5);
+    BoundedMean targetMean = getBoundedMeanBuilderWithAutoBounds().build();
+    BoundedMean sourceMean = getBoundedMeanBuilderWithAutoBounds().build();
+    targetMean.addEntries(Arrays.asList(3.0, 100.0));
+    sourceMean.addEntry(3.0);
+
+    targetMean.mergeWith(sourceMean.getSerializableSummary());
+
+    assertThat(targetMean.computeResult()).isWithin(1e-12).of(10.0 / 3.0);
+  }
+
+  @Test
+  public void autoBounds_mergeWithManualBounds_throwsException() {
+    BoundedMean autoMean = getBoundedMeanBuilderWithAutoBounds().build();
+    byte[] summary = mean.getSerializableSummary();
+
+    assertThrows(IllegalArgumentException.class, () -> autoMean.mergeWith(summary));
+  }
+
+  @Test
+  public void autoBounds_computeConfidenceInterval_usesApproxBounds() {
+    mockThreshold(1.5);
+    mockDoubleConfInt(ConfidenceInterval.create(-100.0, 100.0));
+    mockLongConfInt(ConfidenceInterval.create(1.0, 10.0));
+    BoundedMean autoMean = getBoundedMeanBuilderWithAutoBounds().build();
+    autoMean.addEntries(Arrays.asList(3.0, 3.0));
+    autoMean.computeResult();
+
+    ConfidenceInterval confInt = autoMean.computeConfidenceInterval(ALPHA);
+
+    // The confidence interval is clamped to the bounds [2, 4].
+    assertThat(confInt).isEqualTo(ConfidenceInterval.create(2.0, 4.0));
+  }
+
+  @Test
+  public void autoBounds_computeBoundingReport_beforeComputeResult_throwsException() {
+    BoundedMean autoMean = getBoundedMeanBuilderWithAutoBounds().build();
+    assertThrows(
+        IllegalStateException.class, () -> autoMean.computeBoundingReport(EPSILON, DELTA));
+  }
+
+  private void mockThreshold(double threshold) {
+    when(noise.computeQuantile(
+            anyDouble(), anyDouble(), anyInt(), anyDouble(), anyDouble(), anyDouble()))
+        .thenReturn(threshold);
+  }
+
+  private BoundedMean.Params.Builder getBoundedMeanBuilderWithAutoBounds() {
+    return BoundedMean.builder()
+        .epsilon(EPSILON)
+        .delta(DELTA)
+        .noise(noise)
+        .maxPartitionsContributed(1)
+        .maxContributionsPerPartition(1);
+  }
+
   private BoundedMean.Params.Builder getBoundedMeanBuilderWithFields() {
     return BoundedMean.builder()
         .epsilon(EPSILON)
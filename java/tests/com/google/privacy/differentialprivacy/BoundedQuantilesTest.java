@@ -0,0 +1,294 @@
+//
+// Copyright 2020 Google LLC
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//      http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+//
+
+package com.google.privacy.differentialprivacy;
+
+import static com.google.common.truth.Truth.assertThat;
+import static com.google.differentialprivacy.SummaryOuterClass.MechanismType.GAUSSIAN;
+import static java.lang.Double.NaN;
+import static org.junit.Assert.assertThrows;
+import static org.mockito.ArgumentMatchers.anyDouble;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.atLeastOnce;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import com.google.differentialprivacy.SummaryOuterClass.BoundedQuantilesSummary;
+import com.google.protobuf.InvalidProtocolBufferException;
+import java.util.Arrays;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+import org.mockito.Mock;
+import org.mockito.junit.MockitoJUnit;
+import org.mockito.junit.MockitoRule;
+
+/**
+ * Tests the accuracy of {@link BoundedQuantiles}. The test mocks {@link Noise} instance which
+ * generates zero noise.
+ */
+@RunWith(JUnit4.class)
+public class BoundedQuantilesTest {
+  private static final double EPSILON = 0.123;
+  private static final double DELTA = 0.123;
+  private static final int TREE_HEIGHT = 4;
+  private static final int BRANCHING_FACTOR = 16;
+  // Width of a leaf of the default tree over [0, 1].
+  private static final double LEAF_WIDTH = 1.0 / 65536;
+
+  @Mock private Noise noise;
+  private BoundedQuantiles quantiles;
+
+  @Rule public final MockitoRule mocks = MockitoJUnit.rule();
+
+  @Before
+  public void setUp() {
+    // Mock the noise mechanism so that it does not add any noise.
+    when(noise.addNoise(anyLong(), anyInt(), anyLong(), anyDouble(), anyDouble()))
+        .thenAnswer(invocation -> invocation.getArguments()[0]);
+    // Tests that use serialization need to access to the type of the noise they use. Because the
+    // tests don't rely on a specific noise type, we arbitrarily return Gaussian.
+    when(noise.getMechanismType()).thenReturn(GAUSSIAN);
+
+    quantiles = getBoundedQuantilesBuilderWithFields().build();
+  }
+
+  @Test
+  public void computeResult_uniformEntries_returnsQuantiles() {
+    for (int i = 0; i < 1000; i++) {
+      quantiles.addEntry((i + 0.5) / 1000.0);
+    }
+
+    assertThat(quantiles.computeResult(0.1)).isWithin(1e-3 + LEAF_WIDTH).of(0.1);
+    assertThat(quantiles.computeResult(0.5)).isWithin(1e-3 + LEAF_WIDTH).of(0.5);
+    assertThat(quantiles.computeResult(0.9)).isWithin(1e-3 + LEAF_WIDTH).of(0.9);
+  }
+
+  @Test
+  public void computeResult_rankZeroAndOne_returnsSmallestAndLargestEntry() {
+    quantiles.addEntries(Arrays.asList(0.2, 0.4, 0.6));
+
+    assertThat(quantiles.computeResult(0.0)).isWithin(LEAF_WIDTH).of(0.2);
+    assertThat(quantiles.computeResult(1.0)).isWithin(LEAF_WIDTH).of(0.6);
+  }
+
+  @Test
+  public void addEntries() {
+    quantiles.addEntries(Arrays.asList(0.3, 0.3, 0.3));
+    assertThat(quantiles.computeResult(0.5)).isWithin(LEAF_WIDTH).of(0.3);
+  }
+
+  @Test
+  public void addEntry_nan_ignored() {
+    quantiles.addEntry(NaN);
+    quantiles.addEntry(0.7);
+    assertThat(quantiles.computeResult(0.5)).isWithin(LEAF_WIDTH).of(0.7);
+  }
+
+  @Test
+  public void addEntry_clampsInput() {
+    quantiles.addEntry(-10.0);
+    quantiles.addEntry(10.0);
+
+    assertThat(quantiles.computeResult(0.0)).isEqualTo(0.0);
+    assertThat(quantiles.computeResult(1.0)).isEqualTo(1.0);
+  }
+
+  @Test
+  public void computeResult_noEntries_interpolatesBetweenBounds() {
+    assertThat(quantiles.computeResult(0.3)).isWithin(1e-12).of(0.3);
+  }
+
+  @Test
+  public void computeResult_noisedEmptyNodes_areIgnored() {
+    // Empty nodes get a small positive noised count.
+    when(noise.addNoise(anyLong(), anyInt(), anyLong(), anyDouble(), anyDouble()))
+        .thenAnswer(invocation -> (long) invocation.getArguments()[0] + 1);
+    for (int i = 0; i < 1000; i++) {
+      quantiles.addEntry(0.25);
+    }
+
+    assertThat(quantiles.computeResult(0.1)).isWithin(LEAF_WIDTH).of(0.25);
+    assertThat(quantiles.computeResult(0.9)).isWithin(LEAF_WIDTH).of(0.25);
+  }
+
+  @Test
+  public void computeResult_callsNoiseWithSensitivityOfTree() {
+    quantiles =
+        getBoundedQuantilesBuilderWithFields()
+            .maxPartitionsContributed(3)
+            .maxContributionsPerPartition(5)
+            .build();
+    quantiles.addEntry(0.5);
+
+    quantiles.computeResult(0.5);
+
+    verify(noise, atLeastOnce())
+        .addNoise(anyLong(), eq(TREE_HEIGHT * 3), eq(5L), eq(EPSILON), eq(DELTA));
+  }
+
+  @Test
+  public void computeResult_multipleCalls_noisesEachNodeOnce() {
+    quantiles.addEntry(0.5);
+
+    double median = quantiles.computeResult(0.5);
+
+    // The traversal visits all children of one node per level.
+    assertThat(quantiles.computeResult(0.5)).isEqualTo(median);
+    verify(noise, times(TREE_HEIGHT * BRANCHING_FACTOR))
+        .addNoise(anyLong(), anyInt(), anyLong(), anyDouble(), anyDouble());
+  }
+
+  @Test
+  public void computeResult_invalidRank_throwsException() {
+    assertThrows(IllegalArgumentException.class, () -> quantiles.computeResult(-0.1));
+    assertThrows(IllegalArgumentException.class, () -> quantiles.computeResult(1.1));
+    assertThrows(IllegalArgumentException.class, () -> quantiles.computeResult(NaN));
+  }
+
+  @Test
+  public void computeResult_maxDoubleBounds_doesntOverflow() {
+    quantiles =
+        getBoundedQuantilesBuilderWithFields()
+            .lower(-Double.MAX_VALUE)
+            .upper(Double.MAX_VALUE)
+            .build();
+    quantiles.addEntries(Arrays.asList(0.0, 0.0, 0.0));
+
+    double median = quantiles.computeResult(0.5);
+
+    assertThat(median).isWithin(Double.MAX_VALUE / 65536 * 2.0).of(0.0);
+  }
+
+  @Test
+  public void addEntry_calledAfterComputeResult_throwsException() {
+    quantiles.computeResult(0.5);
+    assertThrows(IllegalStateException.class, () -> quantiles.addEntry(0.5));
+  }
+
+  @Test
+  public void getSerializableSummary_storesNonZeroNodes() throws InvalidProtocolBufferException {
+    quantiles.addEntry(0.0);
+    quantiles.addEntry(0.0);
+
+    BoundedQuantilesSummary summary =
+        BoundedQuantilesSummary.parseFrom(quantiles.getSerializableSummary());
+
+    // The leftmost node of every level below the root.
+    assertThat(summary.getNodeIndexList()).containsExactly(1, 17, 273, 4369).inOrder();
+    assertThat(summary.getNodeCountList()).containsExactly(2L, 2L, 2L, 2L).inOrder();
+    assertThat(summary.getTreeHeight()).isEqualTo(TREE_HEIGHT);
+    assertThat(summary.getBranchingFactor()).isEqualTo(BRANCHING_FACTOR);
+    assertThat(summary.getLower()).isEqualTo(0.0);
+    assertThat(summary.getUpper()).isEqualTo(1.0);
+    assertThat(summary.getEpsilon()).isEqualTo(EPSILON);
+    assertThat(summary.getDelta()).isEqualTo(DELTA);
+    assertThat(summary.getMechanismType()).isEqualTo(GAUSSIAN);
+  }
+
+  @Test
+  public void getSerializableSummary_calledAfterComputeResult_throwsException() {
+    quantiles.computeResult(0.5);
+    assertThrows(IllegalStateException.class, quantiles::getSerializableSummary);
+  }
+
+  @Test
+  public void computeResult_calledAfterSerialize_throwsException() {
+    quantiles.getSerializableSummary();
+    assertThrows(IllegalStateException.class, () -> quantiles.computeResult(0.5));
+  }
+
+  @Test
+  public void merge_basicExample_mergesTrees() {
+    BoundedQuantiles other = getBoundedQuantilesBuilderWithFields().build();
+    quantiles.addEntries(Arrays.asList(0.1, 0.2));
+    other.addEntries(Arrays.asList(0.8, 0.9, 0.95));
+
+    quantiles.mergeWith(other.getSerializableSummary());
+
+    assertThat(quantiles.computeResult(0.5)).isWithin(LEAF_WIDTH).of(0.8);
+    assertThat(quantiles.computeResult(1.0)).isWithin(LEAF_WIDTH).of(0.95);
+  }
+
+  @Test
+  public void merge_differentTreeHeight_throwsException() {
+    BoundedQuantiles other = getBoundedQuantilesBuilderWithFields().treeHeight(3).build();
+    assertThrows(
+        IllegalArgumentException.class,
+        () -> quantiles.mergeWith(other.getSerializableSummary()));
+  }
+
+  @Test
+  public void merge_differentBranchingFactor_throwsException() {
+    BoundedQuantiles other = getBoundedQuantilesBuilderWithFields().branchingFactor(8).build();
+    assertThrows(
+        IllegalArgumentException.class,
+        () -> quantiles.mergeWith(other.getSerializableSummary()));
+  }
+
+  @Test
+  public void merge_differentBounds_throwsException() {
+    BoundedQuantiles other = getBoundedQuantilesBuilderWithFields().upper(2.0).build();
+    assertThrows(
+        IllegalArgumentException.class,
+        () -> quantiles.mergeWith(other.getSerializableSummary()));
+  }
+
+  @Test
+  public void merge_differentEpsilon_throwsException() {
+    BoundedQuantiles other = getBoundedQuantilesBuilderWithFields().epsilon(2 * EPSILON).build();
+    assertThrows(
+        IllegalArgumentException.class,
+        () -> quantiles.mergeWith(other.getSerializableSummary()));
+  }
+
+  @Test
+  public void merge_nodeIndexOutOfRange_throwsException() throws InvalidProtocolBufferException {
+    BoundedQuantiles other = getBoundedQuantilesBuilderWithFields().build();
+    BoundedQuantilesSummary summary =
+        BoundedQuantilesSummary.parseFrom(other.getSerializableSummary()).toBuilder()
+            .addNodeIndex(100000)
+            .addNodeCount(1)
+            .build();
+
+    assertThrows(IllegalArgumentException.class, () -> quantiles.mergeWith(summary.toByteArray()));
+  }
+
+  @Test
+  public void merge_calledAfterComputeResult_throwsException() {
+    BoundedQuantiles other = getBoundedQuantilesBuilderWithFields().build();
+    quantiles.computeResult(0.5);
+    assertThrows(
+        IllegalStateException.class, () -> quantiles.mergeWith(other.getSerializableSummary()));
+  }
+
+  private BoundedQuantiles.Params.Builder getBoundedQuantilesBuilderWithFields() {
+    return BoundedQuantiles.builder()
+        .epsilon(EPSILON)
+        .delta(DELTA)
+        .noise(noise)
+        .maxPartitionsContributed(1)
+        .lower(0.0)
+        .upper(1.0)
+        .treeHeight(TREE_HEIGHT)
+        .branchingFactor(BRANCHING_FACTOR);
+  }
+}
@@ -27,11 +27,14 @@ import static org.mockito.ArgumentMatchers.anyDouble;
 import static org.mockito.ArgumentMatchers.anyInt;
 import static org.mockito.ArgumentMatchers.anyLong;
 import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.doReturn;
+import static org.mockito.Mockito.spy;
 import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 
 import com.google.common.collect.ImmutableList;
 import com.google.common.math.Stats;
+import com.google.differentialprivacy.Data.Output.ErrorReport;
 import com.google.differentialprivacy.SummaryOuterClass.BoundedSumSummary;
 import com.google.protobuf.InvalidProtocolBufferException;
 import java.util.Arrays;
@@ -283,6 +286,117 @@ public class BoundedSumTest {
     assertThrows(IllegalStateException.class, () -> sum.computeResult());
   }
 
+  @Test
+  public void newInstance_buildsIndependentSums() {
+    BoundedSum.Params params = getBoundedSumBuilderWithFields().buildParams();
+    BoundedSum first = params.newInstance();
+    BoundedSum second = params.newInstance();
+
+    first.addEntry(3.0);
+    second.addEntry(100.0);
+
+    assertThat(first.computeResult()).isEqualTo(3.0);
+    assertThat(second.computeResult()).isEqualTo(10.0);
+  }
+
+  @Test
+  public void buildParams_sensitivityOverflows_throwsException() {
+    assertThrows(
+        IllegalArgumentException.class,
+        () ->
+            getBoundedSumBuilderWithFields()
+                .maxPartitionsContributed(Integer.MAX_VALUE)
+                .lower(-Double.MAX_VALUE)
+                .upper(Double.MAX_VALUE)
+                .buildParams());
+  }
+
+  @Test
+  public void newInstance_autoBounds_sharesApproxBoundsParams() {
+    BoundedSum.Params params = getBoundedSumBuilderWithAutoBounds().buildParams();
+
+    assertThat(params.approxBoundsParams()).isSameInstanceAs(params.approxBoundsParams());
+    assertThat(params.approxBoundsParams().binBoundaries())
+        .isSameInstanceAs(params.approxBoundsParams().binBoundaries());
+  }
+
+  @Test
+  public void reset_afterComputeResult_startsNewSum() {
+    sum = getBoundedSumBuilderWithFields().build();
+    sum.addEntry(100.0);
+    sum.computeResult();
+    sum.computeBoundingReport(EPSILON, DELTA);
+
+    sum.reset();
+    sum.addEntry(3.0);
+
+    assertThat(sum.computeResult()).isEqualTo(3.0);
+    assertThat(sum.computeBoundingReport(EPSILON, DELTA).getBoundingReport().getNumOutside())
+        .isEqualTo(0.0);
+    assertThrows(IllegalStateException.class, sum::computeResult);
+  }
+
+  @Test
+  public void reset_autoBounds_determinesBoundsAnew() {
+    mockLongNoiseToAddNoNoise();
+    mockThreshold(1.5);
+    BoundedSum autoSum = getBoundedSumBuilderWithAutoBounds().build();
+    autoSum.addEntries(Arrays.asList(1.0, 3.0, 3.0, 100.0));
+    autoSum.computeResult();
+
+    autoSum.reset();
+    autoSum.addEntries(Arrays.asList(-5.0, -6.0, -100.0));
+
+    // Only the bin [-8, -4) exceeds the threshold. The bounds [-8, -4] are widened to [-8, 8].
+    assertThat(autoSum.computeResult()).isEqualTo(-19.0);
+  }
+
+  @Test
+  public void getSnapshotSummary_sumCanStillBeAmendedAndMerged() throws Exception {
+    BoundedSum sourceSum = getBoundedSumBuilderWithFields().build();
+    sourceSum.addEntry(4.0);
+    sum = getBoundedSumBuilderWithFields().build();
+
+    sum.addEntry(3.0);
+    BoundedSumSummary snapshot = BoundedSumSummary.parseFrom(sum.getSnapshotSummary());
+    assertThat(snapshot.getPartialSum().getFloatValue()).isEqualTo(3.0);
+    sum.addEntry(100.0);
+    sum.mergeWith(sourceSum.getSerializableSummary());
+
+    BoundedSumSummary summary = getSummary(sum);
+    assertThat(summary.getPartialSum().getFloatValue()).isEqualTo(17.0);
+    assertThat(summary.getNumClampedAbove()).isEqualTo(1);
+  }
+
+  @Test
+  public void getSnapshotSummary_canBeMergedIntoAnotherSum() {
+    BoundedSum targetSum = getBoundedSumBuilderWithFields().build();
+    BoundedSum sourceSum = getBoundedSumBuilderWithFields().build();
+    sourceSum.addEntry(5.0);
+
+    targetSum.mergeWith(sourceSum.getSnapshotSummary());
+
+    assertThat(targetSum.computeResult()).isEqualTo(5.0);
+  }
+
+  @Test
+  public void computeResult_calledAfterSnapshot_throwsException() {
+    sum.getSnapshotSummary();
+    assertThrows(IllegalStateException.class, () -> sum.computeResult());
+  }
+
+  @Test
+  public void computeBoundingReport_calledAfterSnapshot_throwsException() {
+    sum.getSnapshotSummary();
+    assertThrows(IllegalStateException.class, () -> sum.computeBoundingReport(EPSILON, DELTA));
+  }
+
+  @Test
+  public void getSnapshotSummary_calledAfterSerialize_throwsException() {
+    sum.getSerializableSummary();
+    assertThrows(IllegalStateException.class, () -> sum.getSnapshotSummary());
+  }
+
   @Test
   public void getSerializableSummary_copiesEpsilonCorrectly() {
     sum = getBoundedSumBuilderWithFields().epsilon(EPSILON).build();
@@ -480,6 +594,95 @@ public class BoundedSumTest {
         IllegalStateException.class, () -> targetSum.mergeWith(sourceSum.getSerializableSummary()));
   }
 
+  @Test
+  public void getSerializableSummary_copiesClampingStatisticsCorrectly() {
+    sum = getBoundedSumBuilderWithFields().build();
+    sum.addEntry(-11.0);
+    sum.addEntry(0.0);
+    sum.addEntry(11.0);
+    sum.addEntry(12.0);
+
+    BoundedSumSummary summary = getSummary(sum);
+    assertThat(summary.getNumInputs()).isEqualTo(4);
+    assertThat(summary.getNumClampedBelow()).isEqualTo(1);
+    assertThat(summary.getNumClampedAbove()).isEqualTo(2);
+  }
+
+  @Test
+  public void merge_sumsClampingStatistics() {
+    mockLongNoiseToAddNoNoise();
+    BoundedSum targetSum = getBoundedSumBuilderWithFields().build();
+    BoundedSum sourceSum = getBoundedSumBuilderWithFields().build();
+
+    targetSum.addEntry(-11.0);
+    targetSum.addEntry(0.0);
+    sourceSum.addEntry(11.0);
+    targetSum.mergeWith(sourceSum.getSerializableSummary());
+
+    ErrorReport report = targetSum.computeBoundingReport(EPSILON, DELTA);
+    assertThat(report.getBoundingReport().getNumInputs()).isEqualTo(3.0);
+    assertThat(report.getBoundingReport().getNumOutside()).isEqualTo(2.0);
+  }
+
+  @Test
+  public void computeBoundingReport_reportsBoundsAndClampedEntries() {
+    mockLongNoiseToAddNoNoise();
+    sum = getBoundedSumBuilderWithFields().build();
+    sum.addEntry(-11.0);
+    sum.addEntry(0.0);
+    sum.addEntry(10.0);
+    sum.addEntry(NaN);
+
+    ErrorReport report = sum.computeBoundingReport(EPSILON, DELTA);
+
+    assertThat(report.getBoundingReport().getLowerBound().getFloatValue()).isEqualTo(-10.0);
+    assertThat(report.getBoundingReport().getUpperBound().getFloatValue()).isEqualTo(10.0);
+    assertThat(report.getBoundingReport().getNumInputs()).isEqualTo(3.0);
+    assertThat(report.getBoundingReport().getNumOutside()).isEqualTo(1.0);
+  }
+
+  @Test
+  public void computeBoundingReport_callsNoiseWithHalfOfTheBudget() {
+    sum = getBoundedSumBuilderWithFields().build();
+    sum.addEntry(0.0);
+    sum.addEntry(11.0);
+
+    sum.computeBoundingReport(EPSILON, DELTA);
+
+    verify(noise)
+        .addNoise(
+            eq(/* numInputs = */ 2L),
+            eq(/* l0Sensitivity = maxPartitionsContributed = */ 1),
+            eq(/* lInfSensitivity = maxContributionsPerPartition = */ 10L),
+            eq(EPSILON * 0.5),
+            eq(DELTA * 0.5));
+    verify(noise)
+        .addNoise(
+            eq(/* numOutside = */ 1L),
+            eq(/* l0Sensitivity = maxPartitionsContributed = */ 1),
+            eq(/* lInfSensitivity = maxContributionsPerPartition = */ 10L),
+            eq(EPSILON * 0.5),
+            eq(DELTA * 0.5));
+  }
+
+  @Test
+  public void computeBoundingReport_calledAfterComputeResult_succeeds() {
+    sum.computeResult();
+    sum.computeBoundingReport(EPSILON, DELTA);
+  }
+
+  @Test
+  public void computeBoundingReport_calledTwice_throwsException() {
+    sum.computeBoundingReport(EPSILON, DELTA);
+    assertThrows(IllegalStateException.class, () -> sum.computeBoundingReport(EPSILON, DELTA));
+  }
+
+  @Test
+  public void computeBoundingReport_calledAfterSerialization_throwsException() {
+    sum.getSerializableSummary();
+    assertThrows(IllegalStateException.class, () -> sum.computeBoundingReport(EPSILON, DELTA));
+  }
+
   @Test
   public void addNoise_gaussianNoiseDefaultParametersEmptySum_isUnbiased() {
     BoundedSum.Params.Builder sumBuilder =
@@ -656,6 +859,138 @@ public class BoundedSumTest {
     testForBias(sumBuilder, /* rawEntry */ -1.0, /* variance */ 2.0 / (LN_3 * LN_3));
   }
 
+  @Test
+  public void autoBounds_computeResult_clampsToApproxBounds() {
+    mockLongNoiseToAddNoNoise();
+    mockThreshold(1.5);
+    BoundedSum autoSum = getBoundedSumBuilderWithAutoBounds().build();
+    autoSum.addEntries(Arrays.asList(1.0, 3.0, 3.0, 100.0));
+
+    // Only the bin (2, 4] exceeds the threshold. The bounds [2, 4] are widened to [-4, 4].
+    assertThat(autoSum.computeResult()).isEqualTo(11.0);
+    verify(noise).addNoise(eq(11.0), eq(1), eq(4.0), eq(EPSILON * 0.5), eq(DELTA * 0.5));
+  }
+
+  @Test
+  public void autoBounds_computeResult_negativeEntries_clampsToApproxBounds() {
+    mockLongNoiseToAddNoNoise();
+    mockThreshold(1.5);
+    BoundedSum autoSum = getBoundedSumBuilderWithAutoBounds().build();
+    autoSum.addEntries(Arrays.asList(-5.0, -6.0, -100.0));
+
+    // Only the bin [-8, -4) exceeds the threshold. The bounds [-8, -4] are widened to [-8, 8].
+    assertThat(autoSum.computeResult()).isEqualTo(-19.0);
+  }
+
+  @Test
+  public void autoBounds_computeResult_entriesNearMaxValue_capsBoundsToFiniteSensitivity() {
+    mockLongNoiseToAddNoNoise();
+    mockThreshold(1.5);
+    BoundedSum autoSum =
+        getBoundedSumBuilderWithAutoBounds().maxContributionsPerPartition(2).build();
+    autoSum.addEntries(Arrays.asList(Double.MAX_VALUE, Double.MAX_VALUE));
+
+    // The bin (2^1023, MAX_VALUE] would make the LInf sensitivity 2 * MAX_VALUE infinite, so the
+    // bounds are capped at 2^1022.
+    assertThat(autoSum.computeResult()).isEqualTo(Math.scalb(1.0, 1023));
+    verify(noise)
+        .addNoise(
+            eq(Math.scalb(1.0, 1023)),
+            eq(1),
+            eq(Math.scalb(1.0, 1023)),
+            eq(EPSILON * 0.5),
+            eq(DELTA * 0.5));
+  }
+
+  @Test
+  public void autoBounds_computeResult_tooFewEntries_throwsException() {
+    mockLongNoiseToAddNoNoise();
+    mockThreshold(1.5);
+    BoundedSum autoSum = getBoundedSumBuilderWithAutoBounds().build();
+    autoSum.addEntry(1.0);
+
+    assertThrows(IllegalStateException.class, autoSum::computeResult);
+  }
+
+  @Test
+  public void autoBounds_mergeWith_addsPartialSumsAndBins() {
+    mockLongNoiseToAddNoNoise();
+    mockThreshold(1.5);
+    BoundedSum targetSum = getBoundedSumBuilderWithAutoBounds().build();
+    BoundedSum sourceSum = getBoundedSumBuilderWithAutoBounds().build();
+    targetSum.addEntries(Arrays.asList(3.0, 100.0));
+    sourceSum.addEntries(Arrays.asList(1.0, 3.0));
+
+    targetSum.mergeWith(sourceSum.getSerializableSummary());
+
+    assertThat(targetSum.computeResult()).isEqualTo(11.0);
+  }
+
+  @Test
+  public void autoBounds_getSerializableSummary_storesPartialSumsAndBins() {
+    BoundedSum autoSum = getBoundedSumBuilderWithAutoBounds().build();
+    autoSum.addEntry(3.0);
+
+    BoundedSumSummary summary = getSummary(autoSum);
+
+    assertThat(summary.hasBoundsSummary()).isTrue();
+    assertThat(summary.hasLower()).isFalse();
+    assertThat(summary.getPosSumCount())
+        .isEqualTo(summary.getBoundsSummary().getPosBinCountCount());
+    assertThat(summary.getPosSumList().stream().mapToDouble(v -> v.getFloatValue()).sum())
+        .isEqualTo(3.0);
+  }
+
+  @Test
+  public void autoBounds_mergeWithManualBounds_throwsException() {
+    BoundedSum autoSum = getBoundedSumBuilderWithAutoBounds().build();
+    byte[] summary = getBoundedSumBuilderWithFields().build().getSerializableSummary();
+
+    assertThrows(IllegalArgumentException.class, () -> autoSum.mergeWith(summary));
+  }
+
+  @Test
+  public void autoBounds_computeBoundingReport_beforeComputeResult_throwsException() {
+    BoundedSum autoSum = getBoundedSumBuilderWithAutoBounds().build();
+    assertThrows(
+        IllegalStateException.class, () -> autoSum.computeBoundingReport(EPSILON, DELTA));
+  }
+
+  @Test
+  public void autoBounds_computeBoundingReport_countsEntriesOutsideOfApproxBounds() {
+    mockLongNoiseToAddNoNoise();
+    mockThreshold(1.5);
+    BoundedSum autoSum = getBoundedSumBuilderWithAutoBounds().build();
+    autoSum.addEntries(Arrays.asList(1.0, 3.0, 3.0, 100.0));
+    autoSum.computeResult();
+
+    ErrorReport report = autoSum.computeBoundingReport(EPSILON, DELTA);
+
+    assertThat(report.getBoundingReport().getLowerBound().getFloatValue()).isEqualTo(-4.0);
+    assertThat(report.getBoundingReport().getUpperBound().getFloatValue()).isEqualTo(4.0);
+    assertThat(report.getBoundingReport().getNumInputs()).isEqualTo(4.0);
+    assertThat(report.getBoundingReport().getNumOutside()).isEqualTo(1.0);
+  }
+
+  private void mockThreshold(double threshold) {
+    when(noise.computeQuantile(
+            anyDouble(), anyDouble(), anyInt(), anyDouble(), anyDouble(), anyDouble()))
+        .thenReturn(threshold);
+  }
+
+  private BoundedSum.Params.Builder getBoundedSumBuilderWithAutoBounds() {
+    return BoundedSum.builder()
+        .epsilon(EPSILON)
+        .delta(DELTA)
+        .noise(noise)
+        .maxPartitionsContributed(1);
+  }
+
+  private void mockLongNoiseToAddNoNoise() {
+    when(noise.addNoise(anyLong(), anyInt(), anyLong(), anyDouble(), anyDouble()))
+        .thenAnswer(invocation -> invocation.getArguments()[0]);
+  }
+
   private BoundedSum.Params.Builder getBoundedSumBuilderWithFields() {
     return BoundedSum.builder()
         .epsilon(EPSILON)
@@ -889,4 +1224,72 @@ public class BoundedSumTest {
     double maxMagnitude = max(Math.abs(a), Math.abs(b));
     return Math.abs(a - b) <= TOLERANCE * maxMagnitude;
   }
+
+  @Test
+  public void computeConfidenceIntervals_matchesSingleIntervals() {
+    Noise laplaceNoise = new LaplaceNoise();
+    BoundedSum laplaceSum =
+        getBoundedSumBuilderWithFields()
+            .noise(laplaceNoise)
+            .delta(null)
+            .lower(1.0)
+            .upper(5.0)
+            .build();
+    double[] noisedSums = {-100.0, 0.0, 2.5, 1e6};
+    double[] lowerBounds = new double[noisedSums.length];
+    double[] upperBounds = new double[noisedSums.length];
+
+    laplaceSum.computeConfidenceIntervals(noisedSums, ALPHA, lowerBounds, upperBounds);
+
+    for (int i = 0; i < noisedSums.length; i++) {
+      ConfidenceInterval confInt =
+          laplaceNoise.computeConfidenceInterval(
+              noisedSums[i],
+              /* l0Sensitivity= */ 1,
+              /* lInfSensitivity= */ 5.0 * 10,
+              EPSILON,
+              /* delta= */ null,
+              ALPHA);
+      // Positive bounds clamp the intervals to non-negative values.
+      assertThat(lowerBounds[i]).isEqualTo(Math.max(0.0, confInt.lowerBound()));
+      assertThat(upperBounds[i]).isEqualTo(Math.max(0.0, confInt.upperBound()));
+    }
+  }
+
+  @Test
+  public void computeConfidenceIntervals_negativeSumBounds_clampsToNonPositive() {
+    // Only the interval around zero is mocked, the intervals of the noised values are derived from
+    // it by the default implementation of the noise.
+    Noise gaussianNoise = spy(new GaussianNoise());
+    doReturn(ConfidenceInterval.create(-4.0, 4.0))
+        .when(gaussianNoise)
+        .computeConfidenceInterval(
+            anyDouble(), anyInt(), anyDouble(), anyDouble(), anyDouble(), anyDouble());
+    sum = getBoundedSumBuilderWithFields().noise(gaussianNoise).lower(-5.0).upper(-1.0).build();
+    double[] lowerBounds = new double[3];
+    double[] upperBounds = new double[3];
+
+    sum.computeConfidenceIntervals(
+        new double[] {-10.0, 1.0, 10.0}, ALPHA, lowerBounds, upperBounds);
+
+    assertThat(lowerBounds).isEqualTo(new double[] {-14.0, -3.0, 0.0});
+    assertThat(upperBounds).isEqualTo(new double[] {-6.0, 0.0, 0.0});
+  }
+
+  @Test
+  public void computeConfidenceIntervals_automaticBounds_throwsException() {
+    BoundedSum autoBoundsSum =
+        BoundedSum.builder()
+            .epsilon(EPSILON)
+            .delta(DELTA)
+            .noise(noise)
+            .maxPartitionsContributed(1)
+            .build();
+
+    assertThrows(
+        IllegalStateException.class,
+        () ->
+            autoBoundsSum.computeConfidenceIntervals(
+                new double[1], ALPHA, new double[1], new double[1]));
+  }
 }
@@ -0,0 +1,111 @@
+//
+// Copyright 2020 Google LLC
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//      http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+//
+
+package com.google.privacy.differentialprivacy;
+
+import static com.google.common.truth.Truth.assertThat;
+import static java.lang.Double.NaN;
+import static java.lang.Double.POSITIVE_INFINITY;
+import static org.junit.Assert.assertThrows;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+/** Tests validations done by {@link BoundedVariance#builder()}. */
+@RunWith(JUnit4.class)
+public class BoundedVarianceBuilderTest {
+  private static final double DEFAULT_EPSILON = 0.5;
+  private static final double DEFAULT_DELTA = 0.00001;
+  private static final int DEFAULT_MAX_CONTRIBUTIONS_PER_PARTITION = 1;
+  private static final int DEFAULT_MAX_PARTITIONS_CONTRIBUTED = 1;
+  private static final double DEFAULT_LOWER = 0.0;
+  private static final double DEFAULT_UPPER = 1.0;
+
+  private BoundedVariance.Params.Builder builder;
+
+  @Before
+  public void setup() {
+    builder =
+        BoundedVariance.builder()
+            .epsilon(DEFAULT_EPSILON)
+            .delta(DEFAULT_DELTA)
+            .noise(new GaussianNoise())
+            .maxContributionsPerPartition(DEFAULT_MAX_CONTRIBUTIONS_PER_PARTITION)
+            .maxPartitionsContributed(DEFAULT_MAX_PARTITIONS_CONTRIBUTED)
+            .lower(DEFAULT_LOWER)
+            .upper(DEFAULT_UPPER);
+  }
+
+  @Test
+  public void defaultParameters_buildsInstance() {
+    assertThat(builder.build()).isNotNull();
+  }
+
+  @Test
+  public void epsilon_nan_throwsException() {
+    builder.epsilon(NaN);
+    assertThrows(IllegalArgumentException.class, builder::build);
+  }
+
+  @Test
+  public void deltaLaplace_set_throwsException() {
+    builder.noise(new LaplaceNoise());
+    assertThrows(IllegalArgumentException.class, builder::build);
+  }
+
+  @Test
+  public void maxPartitionsContributed_zero_throwsException() {
+    builder.maxPartitionsContributed(0);
+    assertThrows(IllegalArgumentException.class, builder::build);
+  }
+
+  @Test
+  public void maxContributionsPerPartition_notProvided_throwsException() {
+    BoundedVariance.Params.Builder builder =
+        BoundedVariance.builder()
+            .epsilon(DEFAULT_EPSILON)
+            .maxPartitionsContributed(DEFAULT_MAX_PARTITIONS_CONTRIBUTED)
+            .lower(DEFAULT_LOWER)
+            .upper(DEFAULT_UPPER);
+    assertThrows(IllegalStateException.class, builder::build);
+  }
+
+  @Test
+  public void lower_greaterThanUpper_throwsException() {
+    builder.lower(2.0);
+    assertThrows(IllegalArgumentException.class, builder::build);
+  }
+
+  @Test
+  public void lower_equalToUpper_throwsException() {
+    builder.lower(1.0);
+    assertThrows(IllegalArgumentException.class, builder::build);
+  }
+
+  @Test
+  public void upper_infinity_throwsException() {
+    builder.upper(POSITIVE_INFINITY);
+    assertThrows(IllegalArgumentException.class, builder::build);
+  }
+
+  @Test
+  public void bounds_sensitivityOfSquaresOverflows_throwsException() {
+    builder.lower(-Double.MAX_VALUE).upper(Double.MAX_VALUE);
+    assertThrows(IllegalArgumentException.class, builder::build);
+  }
+}
@@ -0,0 +1,328 @@
+//
+// Copyright 2020 Google LLC
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//      http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+//
+
+package com.google.privacy.differentialprivacy;
+
+import static com.google.common.truth.Truth.assertThat;
+import static com.google.differentialprivacy.SummaryOuterClass.MechanismType.GAUSSIAN;
+import static java.lang.Double.NaN;
+import static org.junit.Assert.assertThrows;
+import static org.mockito.ArgumentMatchers.anyDouble;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import com.google.differentialprivacy.SummaryOuterClass.BoundedVarianceSummary;
+import com.google.protobuf.InvalidProtocolBufferException;
+import java.util.Arrays;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+import org.mockito.Mock;
+import org.mockito.junit.MockitoJUnit;
+import org.mockito.junit.MockitoRule;
+
+/**
+ * Tests the accuracy of {@link BoundedVariance}. The test mocks {@link Noise} instance which
+ * generates zero noise.
+ */
+@RunWith(JUnit4.class)
+public class BoundedVarianceTest {
+  private static final double EPSILON = 0.3;
+  private static final double DELTA = 0.3;
+  private static final double TOLERANCE = 1E-9;
+
+  @Mock private Noise noise;
+  private BoundedVariance variance;
+
+  @Rule public final MockitoRule mocks = MockitoJUnit.rule();
+
+  @Before
+  public void setUp() {
+    // Mock the noise mechanism so that it does not add any noise.
+    when(noise.addNoise(anyLong(), anyInt(), anyLong(), anyDouble(), anyDouble()))
+        .thenAnswer(invocation -> invocation.getArguments()[0]);
+    when(noise.addNoise(anyDouble(), anyInt(), anyDouble(), anyDouble(), anyDouble()))
+        .thenAnswer(invocation -> invocation.getArguments()[0]);
+    // Confidence intervals of the mocked noise only contain the noised value.
+    when(noise.computeConfidenceInterval(
+            anyLong(), anyInt(), anyLong(), anyDouble(), anyDouble(), anyDouble()))
+        .thenAnswer(
+            invocation -> {
+              double x = (long) invocation.getArguments()[0];
+              return ConfidenceInterval.create(x, x);
+            });
+    when(noise.computeConfidenceInterval(
+            anyDouble(), anyInt(), anyDouble(), anyDouble(), anyDouble(), anyDouble()))
+        .thenAnswer(
+            invocation -> {
+              double x = (double) invocation.getArguments()[0];
+              return ConfidenceInterval.create(x, x);
+            });
+    // Tests that use serialization need to access to the type of the noise they use. Because the
+    // tests don't rely on a specific noise type, we arbitrarily return Gaussian.
+    when(noise.getMechanismType()).thenReturn(GAUSSIAN);
+
+    variance = getBoundedVarianceBuilderWithFields().build();
+  }
+
+  @Test
+  public void addEntry() {
+    variance.addEntry(1.0);
+    variance.addEntry(2.0);
+    variance.addEntry(3.0);
+    variance.addEntry(4.0);
+
+    assertThat(variance.computeResult()).isWithin(TOLERANCE).of(1.25);
+  }
+
+  @Test
+  public void addEntries() {
+    variance.addEntries(Arrays.asList(2.0, 4.0, 4.0, 4.0, 5.0, 5.0, 7.0, 9.0));
+    assertThat(variance.computeResult()).isWithin(TOLERANCE).of(4.0);
+  }
+
+  @Test
+  public void addEntry_nan_ignored() {
+    variance.addEntries(Arrays.asList(NaN, 1.0, 3.0));
+    assertThat(variance.computeResult()).isWithin(TOLERANCE).of(1.0);
+  }
+
+  @Test
+  public void addEntry_clampsInput() {
+    variance = getBoundedVarianceBuilderWithFields().lower(0.0).upper(1.0).build();
+
+    variance.addEntry(-5.0);
+    variance.addEntry(5.0);
+
+    assertThat(variance.computeResult()).isWithin(TOLERANCE).of(0.25);
+  }
+
+  @Test
+  public void computeResult_callsNoiseWithSplitBudget() {
+    variance =
+        getBoundedVarianceBuilderWithFields()
+            .lower(-1.0)
+            .upper(5.0)
+            .maxPartitionsContributed(2)
+            .maxContributionsPerPartition(3)
+            .build();
+    variance.addEntry(1.0);
+
+    variance.computeResult();
+
+    // The entries are at most 3 away from the midpoint 2. Their squares are at most 9 and
+    // normalized around 4.5.
+    verify(noise)
+        .addNoise(eq(1L), eq(2), eq(3L), eq(EPSILON / 3.0), eq(DELTA / 3.0));
+    verify(noise)
+        .addNoise(eq(-1.0), eq(2), eq(9.0), eq(EPSILON / 3.0), eq(DELTA / 3.0));
+    verify(noise)
+        .addNoise(eq(1.0 - 4.5), eq(2), eq(13.5), eq(EPSILON / 3.0), eq(DELTA / 3.0));
+  }
+
+  @Test
+  public void computeResult_noisedCountBelowOne_dividesByOne() {
+    when(noise.addNoise(anyLong(), anyInt(), anyLong(), anyDouble(), anyDouble())).thenReturn(-5L);
+    variance.addEntry(1.0);
+    variance.addEntry(3.0);
+
+    // The normalized sum is -6 and the sum of squares is 16 + 4 = 20, relative to the midpoint 5.
+    // Dividing by 1 and clamping the mean to [-5, 5] yields 20 - 25 < 0, which is clamped to 0.
+    assertThat(variance.computeResult()).isEqualTo(0.0);
+  }
+
+  @Test
+  public void computeResult_largeNoise_clampsToMaxVariance() {
+    // Only the sum of squares, whose L_inf sensitivity is 12.5, is noised.
+    when(noise.addNoise(anyDouble(), anyInt(), eq(12.5), anyDouble(), anyDouble()))
+        .thenAnswer(invocation -> (double) invocation.getArguments()[0] + 1e9);
+    variance.addEntry(5.0);
+
+    assertThat(variance.computeResult()).isEqualTo(25.0);
+  }
+
+  @Test
+  public void computeResult_multipleCalls_throwsException() {
+    variance.computeResult();
+    assertThrows(IllegalStateException.class, variance::computeResult);
+  }
+
+  @Test
+  public void computeResult_laplaceNoise_isAccurate() {
+    variance =
+        BoundedVariance.builder()
+            .epsilon(1.0)
+            .maxPartitionsContributed(1)
+            .maxContributionsPerPartition(1)
+            .lower(0.0)
+            .upper(1.0)
+            .build();
+    for (int i = 0; i < 100000; i++) {
+      variance.addEntry((i % 1000) / 1000.0);
+    }
+
+    assertThat(variance.computeResult()).isWithin(0.01).of(1.0 / 12.0);
+  }
+
+  @Test
+  public void computeConfidenceInterval_exactComponents_returnsResult() {
+    variance.addEntries(Arrays.asList(1.0, 2.0, 3.0, 4.0));
+    double result = variance.computeResult();
+
+    ConfidenceInterval confInt = variance.computeConfidenceInterval(0.1);
+
+    assertThat(confInt.lowerBound()).isWithin(TOLERANCE).of(result);
+    assertThat(confInt.upperBound()).isWithin(TOLERANCE).of(result);
+  }
+
+  @Test
+  public void computeConfidenceInterval_callsNoiseWithComponentAlpha() {
+    variance.computeResult();
+
+    variance.computeConfidenceInterval(0.1);
+
+    double componentAlpha = 1.0 - Math.pow(0.9, 1.0 / 3.0);
+    verify(noise)
+        .computeConfidenceInterval(
+            anyLong(), eq(1), eq(1L), eq(EPSILON / 3.0), eq(DELTA / 3.0), eq(componentAlpha));
+  }
+
+  @Test
+  public void computeConfidenceInterval_wideComponents_containsResultWithinRange() {
+    when(noise.computeConfidenceInterval(
+            anyDouble(), anyInt(), anyDouble(), anyDouble(), anyDouble(), anyDouble()))
+        .thenAnswer(
+            invocation -> {
+              double x = (double) invocation.getArguments()[0];
+              return ConfidenceInterval.create(x - 2.0, x + 2.0);
+            });
+    variance.addEntries(Arrays.asList(1.0, 2.0, 3.0, 4.0));
+    double result = variance.computeResult();
+
+    ConfidenceInterval confInt = variance.computeConfidenceInterval(0.1);
+
+    assertThat(confInt.lowerBound()).isAtLeast(0.0);
+    assertThat(confInt.lowerBound()).isLessThan(result);
+    assertThat(confInt.upperBound()).isGreaterThan(result);
+    assertThat(confInt.upperBound()).isAtMost(25.0);
+  }
+
+  @Test
+  public void computeConfidenceInterval_computeResultWasNotCalled_throwsException() {
+    assertThrows(IllegalStateException.class, () -> variance.computeConfidenceInterval(0.1));
+  }
+
+  @Test
+  public void getSerializableSummary_copiesAccumulatorAndParameters()
+      throws InvalidProtocolBufferException {
+    variance.addEntries(Arrays.asList(1.0, 9.0));
+
+    BoundedVarianceSummary summary =
+        BoundedVarianceSummary.parseFrom(variance.getSerializableSummary());
+
+    assertThat(summary.getCount()).isEqualTo(2);
+    // Relative to the midpoint 5, and to the midpoint 12.5 of the squares.
+    assertThat(summary.getNormalizedSum()).isEqualTo(0.0);
+    assertThat(summary.getNormalizedSumOfSquares()).isEqualTo(2 * (16.0 - 12.5));
+    assertThat(summary.getEpsilon()).isEqualTo(EPSILON);
+    assertThat(summary.getDelta()).isEqualTo(DELTA);
+    assertThat(summary.getMechanismType()).isEqualTo(GAUSSIAN);
+    assertThat(summary.getLower()).isEqualTo(0.0);
+    assertThat(summary.getUpper()).isEqualTo(10.0);
+    assertThat(summary.getMaxPartitionsContributed()).isEqualTo(1);
+    assertThat(summary.getMaxContributionsPerPartition()).isEqualTo(1);
+  }
+
+  @Test
+  public void getSerializableSummary_calledAfterComputeResult_throwsException() {
+    variance.computeResult();
+    assertThrows(IllegalStateException.class, variance::getSerializableSummary);
+  }
+
+  @Test
+  public void computeResult_calledAfterSerialize_throwsException() {
+    variance.getSerializableSummary();
+    assertThrows(IllegalStateException.class, variance::computeResult);
+  }
+
+  @Test
+  public void merge_basicExample_combinesAccumulators() {
+    BoundedVariance other = getBoundedVarianceBuilderWithFields().build();
+    variance.addEntries(Arrays.asList(1.0, 2.0));
+    other.addEntries(Arrays.asList(3.0, 4.0));
+
+    variance.mergeWith(other.getSerializableSummary());
+
+    assertThat(variance.computeResult()).isWithin(TOLERANCE).of(1.25);
+  }
+
+  @Test
+  public void merge_differentEpsilon_throwsException() {
+    BoundedVariance other = getBoundedVarianceBuilderWithFields().epsilon(2 * EPSILON).build();
+    assertThrows(
+        IllegalArgumentException.class, () -> variance.mergeWith(other.getSerializableSummary()));
+  }
+
+  @Test
+  public void merge_differentNoise_throwsException() {
+    BoundedVariance targetVariance =
+        getBoundedVarianceBuilderWithFields().noise(new LaplaceNoise()).delta(null).build();
+    BoundedVariance sourceVariance =
+        getBoundedVarianceBuilderWithFields().noise(new GaussianNoise()).build();
+    assertThrows(
+        IllegalArgumentException.class,
+        () -> targetVariance.mergeWith(sourceVariance.getSerializableSummary()));
+  }
+
+  @Test
+  public void merge_differentBounds_throwsException() {
+    BoundedVariance other = getBoundedVarianceBuilderWithFields().upper(11.0).build();
+    assertThrows(
+        IllegalArgumentException.class, () -> variance.mergeWith(other.getSerializableSummary()));
+  }
+
+  @Test
+  public void merge_differentMaxContributionsPerPartition_throwsException() {
+    BoundedVariance other =
+        getBoundedVarianceBuilderWithFields().maxContributionsPerPartition(2).build();
+    assertThrows(
+        IllegalArgumentException.class, () -> variance.mergeWith(other.getSerializableSummary()));
+  }
+
+  @Test
+  public void merge_calledAfterComputeResult_throwsException() {
+    BoundedVariance other = getBoundedVarianceBuilderWithFields().build();
+    variance.computeResult();
+    assertThrows(
+        IllegalStateException.class, () -> variance.mergeWith(other.getSerializableSummary()));
+  }
+
+  private BoundedVariance.Params.Builder getBoundedVarianceBuilderWithFields() {
+    return BoundedVariance.builder()
+        .epsilon(EPSILON)
+        .delta(DELTA)
+        .noise(noise)
+        .maxPartitionsContributed(1)
+        .maxContributionsPerPartition(1)
+        .lower(0.0)
+        .upper(10.0);
+  }
+}
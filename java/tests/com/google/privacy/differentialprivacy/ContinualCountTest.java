@@ -0,0 +1,191 @@
+//
+// Copyright 2020 Google LLC
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//      http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+//
+
+package com.google.privacy.differentialprivacy;
+
+import static com.google.common.truth.Truth.assertThat;
+import static org.junit.Assert.assertThrows;
+import static org.mockito.ArgumentMatchers.anyDouble;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+import org.mockito.Mock;
+import org.mockito.junit.MockitoJUnit;
+import org.mockito.junit.MockitoRule;
+
+/** Tests the behavior of {@link ContinualCount}. */
+@RunWith(JUnit4.class)
+public class ContinualCountTest {
+  private static final double EPSILON = 0.123;
+  private static final double DELTA = 0.123;
+
+  @Mock private Noise noise;
+  private ContinualCount count;
+
+  @Rule public final MockitoRule mocks = MockitoJUnit.rule();
+
+  @Before
+  public void setUp() {
+    // Mock the noise mechanism so that it does not add any noise.
+    when(noise.addNoise(anyLong(), anyInt(), anyLong(), anyDouble(), anyDouble()))
+        .thenAnswer(invocation -> invocation.getArguments()[0]);
+
+    count = getContinualCountBuilderWithFields().build();
+  }
+
+  @Test
+  public void endTimeStep_returnsRunningCounts() {
+    long expected = 0;
+    for (int timeStep = 1; timeStep <= 16; timeStep++) {
+      count.incrementBy(timeStep);
+      expected += timeStep;
+
+      assertThat(count.endTimeStep()).isEqualTo(expected);
+    }
+    assertThat(count.getNumEndedTimeSteps()).isEqualTo(16);
+  }
+
+  @Test
+  public void incrementBy_nonPositive_ignored() {
+    count.increment();
+    count.incrementBy(0);
+    count.incrementBy(-5);
+
+    assertThat(count.endTimeStep()).isEqualTo(1);
+  }
+
+  @Test
+  public void endTimeStep_noisesEachNodeOnce() {
+    for (int timeStep = 1; timeStep <= 8; timeStep++) {
+      count.increment();
+      count.endTimeStep();
+    }
+
+    // Every time step completes exactly one node of the tree.
+    verify(noise, times(8)).addNoise(anyLong(), anyInt(), anyLong(), anyDouble(), anyDouble());
+    // The node of the 8th time step covers all of them.
+    verify(noise).addNoise(eq(8L), anyInt(), anyLong(), anyDouble(), anyDouble());
+  }
+
+  @Test
+  public void endTimeStep_sumsOneNoisedNodePerSetBit() {
+    // Each noised node is one larger than its raw count.
+    when(noise.addNoise(anyLong(), anyInt(), anyLong(), anyDouble(), anyDouble()))
+        .thenAnswer(invocation -> (long) invocation.getArguments()[0] + 1);
+
+    long[] runningCounts = new long[7];
+    for (int timeStep = 1; timeStep <= 7; timeStep++) {
+      runningCounts[timeStep - 1] = count.endTimeStep();
+    }
+
+    // The number of noised nodes in a running count is the number of set bits of the time step.
+    assertThat(runningCounts).asList().containsExactly(1L, 1L, 2L, 1L, 2L, 2L, 3L).inOrder();
+  }
+
+  @Test
+  public void endTimeStep_callsNoiseWithSensitivityOfTree() {
+    count =
+        getContinualCountBuilderWithFields()
+            .maxTimeSteps(1000)
+            .maxPartitionsContributed(2)
+            .maxContributions(3)
+            .build();
+    count.increment();
+
+    count.endTimeStep();
+
+    // A tree over 1000 time steps has 10 levels.
+    verify(noise).addNoise(eq(1L), eq(20), eq(3L), eq(EPSILON), eq(DELTA));
+  }
+
+  @Test
+  public void endTimeStep_afterLastTimeStep_throwsException() {
+    count = getContinualCountBuilderWithFields().maxTimeSteps(3).build();
+    count.endTimeStep();
+    count.endTimeStep();
+    count.endTimeStep();
+
+    assertThrows(IllegalStateException.class, count::endTimeStep);
+    assertThrows(IllegalStateException.class, count::increment);
+  }
+
+  @Test
+  public void endTimeStep_laplaceNoise_errorGrowsSlowly() {
+    count =
+        ContinualCount.builder()
+            .epsilon(1.0)
+            .maxPartitionsContributed(1)
+            .maxTimeSteps(1 << 16)
+            .build();
+
+    long maxError = 0;
+    for (int timeStep = 1; timeStep <= 1 << 16; timeStep++) {
+      count.incrementBy(10);
+      maxError = Math.max(maxError, Math.abs(count.endTimeStep() - 10L * timeStep));
+    }
+
+    // Each running count sums at most 17 nodes with Laplace noise of scale 17. The error of
+    // answering every time step with an independently noised count would be in the order of 10^6.
+    assertThat(maxError).isLessThan(2000L);
+  }
+
+  @Test
+  public void build_invalidParameters_throwsException() {
+    assertThrows(
+        IllegalArgumentException.class,
+        () -> getContinualCountBuilderWithFields().maxTimeSteps(0).build());
+    assertThrows(
+        IllegalArgumentException.class,
+        () -> getContinualCountBuilderWithFields().maxContributions(0).build());
+    assertThrows(
+        IllegalArgumentException.class,
+        () -> getContinualCountBuilderWithFields().maxPartitionsContributed(0).build());
+    assertThrows(
+        IllegalArgumentException.class,
+        () -> getContinualCountBuilderWithFields().epsilon(-1.0).build());
+    assertThrows(
+        IllegalArgumentException.class,
+        () ->
+            getContinualCountBuilderWithFields()
+                .maxPartitionsContributed(Integer.MAX_VALUE)
+                .build());
+  }
+
+  @Test
+  public void build_maxTimeStepsNotProvided_throwsException() {
+    ContinualCount.Params.Builder builder =
+        ContinualCount.builder().epsilon(EPSILON).maxPartitionsContributed(1);
+    assertThrows(IllegalStateException.class, builder::build);
+  }
+
+  private ContinualCount.Params.Builder getContinualCountBuilderWithFields() {
+    return ContinualCount.builder()
+        .epsilon(EPSILON)
+        .delta(DELTA)
+        .noise(noise)
+        .maxPartitionsContributed(1)
+        .maxTimeSteps(16);
+  }
+}
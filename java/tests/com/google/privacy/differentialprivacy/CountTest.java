@@ -25,6 +25,8 @@ import static org.mockito.ArgumentMatchers.anyInt;
 import static org.mockito.ArgumentMatchers.anyLong;
 import static org.mockito.ArgumentMatchers.eq;
 import static org.mockito.ArgumentMatchers.isNull;
+import static org.mockito.Mockito.doReturn;
+import static org.mockito.Mockito.spy;
 import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 
@@ -236,6 +238,92 @@ public class CountTest {
     assertThrows(IllegalStateException.class, () -> count.computeResult());
   }
 
+  @Test
+  public void newInstance_buildsIndependentCounts() {
+    Count.Params params = getCountBuilderWithFields().buildParams();
+    Count first = params.newInstance();
+    Count second = params.newInstance();
+
+    first.incrementBy(3);
+    second.increment();
+
+    assertThat(first.computeResult()).isEqualTo(3);
+    assertThat(second.computeResult()).isEqualTo(1);
+  }
+
+  @Test
+  public void buildParams_invalidEpsilon_throwsException() {
+    assertThrows(
+        IllegalArgumentException.class,
+        () -> Count.builder().epsilon(-1).maxPartitionsContributed(1).buildParams());
+  }
+
+  @Test
+  public void reset_afterComputeResult_startsNewCount() {
+    count.incrementBy(5);
+    count.computeResult();
+
+    count.reset();
+    count.incrementBy(3);
+
+    assertThat(count.computeResult()).isEqualTo(3);
+    assertThrows(IllegalStateException.class, count::computeResult);
+  }
+
+  @Test
+  public void reset_afterSerialize_startsNewCount() {
+    count.incrementBy(5);
+    count.getSerializableSummary();
+
+    count.reset();
+
+    assertThat(getSummary(count).getCount()).isEqualTo(0);
+  }
+
+  @Test
+  public void getSnapshotSummary_countCanStillBeAmendedAndMerged() throws Exception {
+    Count sourceCount = getCountBuilderWithFields().build();
+    sourceCount.incrementBy(4);
+    count = getCountBuilderWithFields().build();
+
+    count.incrementBy(3);
+    assertThat(CountSummary.parseFrom(count.getSnapshotSummary()).getCount()).isEqualTo(3);
+    count.increment();
+    count.mergeWith(sourceCount.getSerializableSummary());
+
+    assertThat(CountSummary.parseFrom(count.getSnapshotSummary()).getCount()).isEqualTo(8);
+    assertThat(getSummary(count).getCount()).isEqualTo(8);
+  }
+
+  @Test
+  public void getSnapshotSummary_canBeMergedIntoAnotherCount() {
+    Count targetCount = getCountBuilderWithFields().build();
+    Count sourceCount = getCountBuilderWithFields().build();
+    sourceCount.incrementBy(5);
+
+    targetCount.mergeWith(sourceCount.getSnapshotSummary());
+
+    assertThat(targetCount.computeResult()).isEqualTo(5);
+  }
+
+  @Test
+  public void computeResult_calledAfterSnapshot_throwsException() {
+    count.getSnapshotSummary();
+    assertThrows(IllegalStateException.class, () -> count.computeResult());
+  }
+
+  @Test
+  public void getSnapshotSummary_calledAfterComputeResult_throwsException() {
+    count.computeResult();
+    assertThrows(IllegalStateException.class, () -> count.getSnapshotSummary());
+  }
+
+  @Test
+  public void getSnapshotSummary_calledAfterSerialize_throwsException() {
+    count.getSerializableSummary();
+    assertThrows(IllegalStateException.class, () -> count.getSnapshotSummary());
+  }
+
   @Test
   public void getSerializableSummary_copiesEpsilonCorrectly() {
     count = getCountBuilderWithFields().epsilon(EPSILON).build();
@@ -930,4 +1018,50 @@ public class CountTest {
             eq(DELTA),
             eq(ALPHA));
   }
+
+  @Test
+  public void computeConfidenceIntervals_clampsToZero() {
+    Noise gaussianNoise = new GaussianNoise();
+    Count gaussianCount = getCountBuilderWithFields().noise(gaussianNoise).build();
+    long[] noisedCounts = {-100, 0, 1, 5, 1000, 123456789};
+    double[] lowerBounds = new double[noisedCounts.length];
+    double[] upperBounds = new double[noisedCounts.length];
+
+    gaussianCount.computeConfidenceIntervals(noisedCounts, ALPHA, lowerBounds, upperBounds);
+
+    for (int i = 0; i < noisedCounts.length; i++) {
+      ConfidenceInterval confInt =
+          gaussianNoise.computeConfidenceInterval(
+              noisedCounts[i],
+              /* l0Sensitivity= */ 1,
+              /* lInfSensitivity= */ 10L,
+              EPSILON,
+              DELTA,
+              ALPHA);
+      assertThat(lowerBounds[i]).isEqualTo(Math.max(0.0, confInt.lowerBound()));
+      assertThat(upperBounds[i]).isEqualTo(Math.max(0.0, confInt.upperBound()));
+    }
+    assertThat(upperBounds[0]).isEqualTo(0.0);
+  }
+
+  @Test
+  public void computeConfidenceIntervals_computesIntervalAroundZeroOnce() {
+    // Only the interval around zero is mocked, the intervals of the noised values are derived from
+    // it by the default implementation of the noise.
+    Noise gaussianNoise = spy(new GaussianNoise());
+    doReturn(ConfidenceInterval.create(-5.0, 3.0))
+        .when(gaussianNoise)
+        .computeConfidenceInterval(
+            anyDouble(), anyInt(), anyDouble(), anyDouble(), anyDouble(), anyDouble());
+    count = getCountBuilderWithFields().noise(gaussianNoise).build();
+    double[] lowerBounds = new double[3];
+    double[] upperBounds = new double[3];
+
+    count.computeConfidenceIntervals(new long[] {2, 10, 100}, ALPHA, lowerBounds, upperBounds);
+
+    assertThat(lowerBounds).isEqualTo(new double[] {0.0, 5.0, 95.0});
+    assertThat(upperBounds).isEqualTo(new double[] {5.0, 13.0, 103.0});
+    verify(gaussianNoise)
+        .computeConfidenceInterval(eq(0.0), eq(1), eq(10.0), eq(EPSILON), eq(DELTA), eq(ALPHA));
+  }
 }
@@ -0,0 +1,93 @@
+//
+// Copyright 2020 Google LLC
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//      http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+//
+
+package com.google.privacy.differentialprivacy;
+
+import static com.google.common.truth.Truth.assertThat;
+import static java.lang.Double.NaN;
+import static org.junit.Assert.assertThrows;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+/** Tests validations done by {@link DistinctCount#builder()}. */
+@RunWith(JUnit4.class)
+public class DistinctCountBuilderTest {
+  private static final double DEFAULT_EPSILON = 0.5;
+  private static final int DEFAULT_MAX_PARTITIONS_CONTRIBUTED = 1;
+
+  private DistinctCount.Params.Builder builder;
+
+  @Before
+  public void setup() {
+    builder =
+        DistinctCount.builder()
+            .epsilon(DEFAULT_EPSILON)
+            .maxPartitionsContributed(DEFAULT_MAX_PARTITIONS_CONTRIBUTED);
+  }
+
+  @Test
+  public void defaultParameters_buildsInstance() {
+    assertThat(builder.build()).isNotNull();
+  }
+
+  @Test
+  public void epsilon_nan_throwsException() {
+    builder.epsilon(NaN);
+    assertThrows(IllegalArgumentException.class, builder::build);
+  }
+
+  @Test
+  public void epsilon_notProvided_throwsException() {
+    DistinctCount.Params.Builder builder =
+        DistinctCount.builder().maxPartitionsContributed(DEFAULT_MAX_PARTITIONS_CONTRIBUTED);
+    assertThrows(IllegalStateException.class, builder::build);
+  }
+
+  @Test
+  public void deltaLaplace_set_throwsException() {
+    builder.delta(0.1);
+    assertThrows(IllegalArgumentException.class, builder::build);
+  }
+
+  @Test
+  public void maxPartitionsContributed_zero_throwsException() {
+    builder.maxPartitionsContributed(0);
+    assertThrows(IllegalArgumentException.class, builder::build);
+  }
+
+  @Test
+  public void precision_tooLow_throwsException() {
+    builder.precision(DistinctCount.MIN_PRECISION - 1);
+    assertThrows(IllegalArgumentException.class, builder::build);
+  }
+
+  @Test
+  public void precision_tooHigh_throwsException() {
+    builder.precision(DistinctCount.MAX_PRECISION + 1);
+    assertThrows(IllegalArgumentException.class, builder::build);
+  }
+
+  @Test
+  public void precision_withinRange_buildsInstance() {
+    builder.precision(DistinctCount.MIN_PRECISION);
+    assertThat(builder.build()).isNotNull();
+    builder.precision(DistinctCount.MAX_PRECISION);
+    assertThat(builder.build()).isNotNull();
+  }
+}
@@ -0,0 +1,324 @@
+//
+// Copyright 2020 Google LLC
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//      http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+//
+
+package com.google.privacy.differentialprivacy;
+
+import static com.google.common.truth.Truth.assertThat;
+import static com.google.differentialprivacy.SummaryOuterClass.MechanismType.GAUSSIAN;
+import static org.junit.Assert.assertThrows;
+import static org.mockito.ArgumentMatchers.anyDouble;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import com.google.differentialprivacy.SummaryOuterClass.DistinctCountSummary;
+import com.google.protobuf.ByteString;
+import com.google.protobuf.InvalidProtocolBufferException;
+import java.util.Random;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+import org.mockito.Mock;
+import org.mockito.junit.MockitoJUnit;
+import org.mockito.junit.MockitoRule;
+
+/**
+ * Tests the accuracy of {@link DistinctCount}. The test mocks {@link Noise} instance which
+ * generates zero noise.
+ */
+@RunWith(JUnit4.class)
+public class DistinctCountTest {
+  private static final double EPSILON = 0.123;
+  private static final double DELTA = 0.123;
+
+  @Mock private Noise noise;
+  private DistinctCount distinctCount;
+
+  @Rule public final MockitoRule mocks = MockitoJUnit.rule();
+
+  @Before
+  public void setUp() {
+    // Mock the noise mechanism so that it does not add any noise.
+    when(noise.addNoise(anyLong(), anyInt(), anyLong(), anyDouble(), anyDouble()))
+        .thenAnswer(invocation -> invocation.getArguments()[0]);
+    // Tests that use serialization need to access to the type of the noise they use. Because the
+    // tests don't rely on a specific noise type, we arbitrarily return Gaussian.
+    when(noise.getMechanismType()).thenReturn(GAUSSIAN);
+
+    distinctCount = getDistinctCountBuilderWithFields().build();
+  }
+
+  @Test
+  public void computeResult_noEntries_returnsZero() {
+    assertThat(distinctCount.computeResult()).isEqualTo(0);
+  }
+
+  @Test
+  public void computeResult_smallCardinality_isExact() {
+    for (int i = 0; i < 10; i++) {
+      distinctCount.addEntry("id" + i);
+    }
+    assertThat(distinctCount.computeResult()).isEqualTo(10);
+  }
+
+  @Test
+  public void addEntry_duplicates_countedOnce() {
+    for (int i = 0; i < 100; i++) {
+      distinctCount.addEntry("id");
+      distinctCount.addEntry(42L);
+      distinctCount.addEntry(new byte[] {1, 2, 3});
+    }
+    assertThat(distinctCount.computeResult()).isEqualTo(3);
+  }
+
+  @Test
+  public void computeResult_largeCardinality_isWithinErrorOfSketch() {
+    distinctCount = getDistinctCountBuilderWithFields().precision(14).build();
+    int numDistinct = 1000000;
+    for (int i = 0; i < numDistinct; i++) {
+      distinctCount.addEntry((long) i);
+    }
+
+    // About four times the relative standard error of 1.3 / sqrt(2^14).
+    assertThat((double) distinctCount.computeResult()).isWithin(0.04 * numDistinct).of(numDistinct);
+  }
+
+  @Test
+  public void computeResult_callsNoiseCorrectly() {
+    distinctCount = getDistinctCountBuilderWithFields().maxPartitionsContributed(3).build();
+    distinctCount.addEntry("id");
+
+    distinctCount.computeResult();
+
+    // Every level count is noised with the sensitivity of all levels of all partitions.
+    verify(noise, times(DistinctCount.NUM_LEVELS))
+        .addNoise(anyLong(), eq(3 * DistinctCount.NUM_LEVELS), eq(1L), eq(EPSILON), eq(DELTA));
+  }
+
+  @Test
+  public void computeResult_usesOnlyNoisedLevelCounts() {
+    // Noise that reports every level count as 100 registers makes the result independent of the
+    // sketch: linear counting of 100 out of 1024 registers at the first level.
+    when(noise.addNoise(anyLong(), anyInt(), anyLong(), anyDouble(), anyDouble())).thenReturn(100L);
+    for (int i = 0; i < 10000; i++) {
+      distinctCount.addEntry((long) i);
+    }
+
+    assertThat(distinctCount.computeResult()).isEqualTo(Math.round(1024 * Math.log(1024.0 / 924)));
+  }
+
+  @Test
+  public void computeResult_negativeNoisedLevelCount_returnsZero() {
+    when(noise.addNoise(anyLong(), anyInt(), anyLong(), anyDouble(), anyDouble())).thenReturn(-7L);
+    distinctCount.addEntry("id");
+
+    assertThat(distinctCount.computeResult()).isEqualTo(0);
+  }
+
+  @Test
+  public void getLevelCounts_addedValue_changesEachLevelCountByAtMostOne() {
+    Random random = new Random(42);
+    for (int i = 0; i < 500; i++) {
+      distinctCount.addEntry(random.nextLong());
+    }
+    byte[] summary = distinctCount.getSerializableSummary();
+
+    for (int i = 0; i < 1000; i++) {
+      DistinctCount neighbour = getDistinctCountBuilderWithFields().build();
+      neighbour.mergeWith(summary);
+      long[] levelCounts = neighbour.getLevelCounts();
+      neighbour.addEntry(random.nextLong());
+
+      assertLevelCountsAreNeighbouring(levelCounts, neighbour.getLevelCounts());
+    }
+  }
+
+  @Test
+  public void getLevelCounts_valueWithLargestRank_changesEachLevelCountByAtMostOne()
+      throws InvalidProtocolBufferException {
+    for (int i = 0; i < 500; i++) {
+      distinctCount.addEntry((long) i);
+    }
+    byte[] summary = distinctCount.getSerializableSummary();
+    long[] levelCounts = mergedWith(summary).getLevelCounts();
+
+    // A single value that raises an empty register to the largest possible value, i.e., the
+    // sketch that contains only this value.
+    byte[] registers = DistinctCountSummary.parseFrom(summary).getRegisters().toByteArray();
+    int emptyRegister = 0;
+    while (registers[emptyRegister] != 0) {
+      emptyRegister++;
+    }
+    registers = new byte[1 << 10];
+    registers[emptyRegister] = (byte) (Long.SIZE - 10 + 1);
+    DistinctCount neighbour = mergedWith(summary);
+    neighbour.mergeWith(
+        DistinctCountSummary.parseFrom(summary).toBuilder()
+            .setRegisters(ByteString.copyFrom(registers))
+            .build()
+            .toByteArray());
+
+    assertLevelCountsAreNeighbouring(levelCounts, neighbour.getLevelCounts());
+    // The value reaches every level, so each level count moves by exactly 1.
+    long[] neighbourLevelCounts = neighbour.getLevelCounts();
+    for (int i = 0; i < DistinctCount.NUM_LEVELS; i++) {
+      assertThat(neighbourLevelCounts[i] - levelCounts[i]).isEqualTo(1);
+    }
+  }
+
+  @Test
+  public void computeResult_multipleCalls_throwsException() {
+    distinctCount.computeResult();
+    assertThrows(IllegalStateException.class, distinctCount::computeResult);
+  }
+
+  @Test
+  public void addEntry_afterComputeResult_throwsException() {
+    distinctCount.computeResult();
+    assertThrows(IllegalStateException.class, () -> distinctCount.addEntry("id"));
+  }
+
+  @Test
+  public void computeConfidenceInterval_mapsBoundsOfLevelCount() {
+    when(noise.computeConfidenceInterval(
+            anyLong(), anyInt(), anyLong(), anyDouble(), anyDouble(), anyDouble()))
+        .thenReturn(ConfidenceInterval.create(-5.0, 100.0));
+    distinctCount.computeResult();
+
+    // Negative bounds are clamped to 0 and the upper bound is linear counting of 100 out of 1024
+    // registers, rounded up.
+    assertThat(distinctCount.computeConfidenceInterval(0.1))
+        .isEqualTo(ConfidenceInterval.create(0.0, Math.ceil(1024 * Math.log(1024.0 / 924))));
+    verify(noise)
+        .computeConfidenceInterval(
+            eq(0L), eq(DistinctCount.NUM_LEVELS), eq(1L), eq(EPSILON), eq(DELTA), eq(0.1));
+  }
+
+  @Test
+  public void computeConfidenceInterval_computeResultWasNotCalled_throwsException() {
+    assertThrows(IllegalStateException.class, () -> distinctCount.computeConfidenceInterval(0.1));
+  }
+
+  @Test
+  public void getSerializableSummary_copiesSketchAndParameters()
+      throws InvalidProtocolBufferException {
+    distinctCount.addEntry("id");
+
+    DistinctCountSummary summary =
+        DistinctCountSummary.parseFrom(distinctCount.getSerializableSummary());
+
+    assertThat(summary.getPrecision()).isEqualTo(10);
+    assertThat(summary.getRegisters().size()).isEqualTo(1 << 10);
+    int numNonEmptyRegisters = 0;
+    for (byte register : summary.getRegisters()) {
+      if (register != 0) {
+        numNonEmptyRegisters++;
+      }
+    }
+    assertThat(numNonEmptyRegisters).isEqualTo(1);
+    assertThat(summary.getEpsilon()).isEqualTo(EPSILON);
+    assertThat(summary.getDelta()).isEqualTo(DELTA);
+    assertThat(summary.getMechanismType()).isEqualTo(GAUSSIAN);
+    assertThat(summary.getMaxPartitionsContributed()).isEqualTo(1);
+  }
+
+  @Test
+  public void getSerializableSummary_calledAfterComputeResult_throwsException() {
+    distinctCount.computeResult();
+    assertThrows(IllegalStateException.class, distinctCount::getSerializableSummary);
+  }
+
+  @Test
+  public void merge_overlappingValues_countsUnion() {
+    DistinctCount other = getDistinctCountBuilderWithFields().build();
+    for (int i = 0; i < 20; i++) {
+      distinctCount.addEntry((long) i);
+    }
+    for (int i = 10; i < 30; i++) {
+      other.addEntry((long) i);
+    }
+
+    distinctCount.mergeWith(other.getSerializableSummary());
+
+    assertThat(distinctCount.computeResult()).isEqualTo(30);
+  }
+
+  @Test
+  public void merge_differentPrecision_throwsException() {
+    DistinctCount other = getDistinctCountBuilderWithFields().precision(11).build();
+    assertThrows(
+        IllegalArgumentException.class,
+        () -> distinctCount.mergeWith(other.getSerializableSummary()));
+  }
+
+  @Test
+  public void merge_differentEpsilon_throwsException() {
+    DistinctCount other = getDistinctCountBuilderWithFields().epsilon(2 * EPSILON).build();
+    assertThrows(
+        IllegalArgumentException.class,
+        () -> distinctCount.mergeWith(other.getSerializableSummary()));
+  }
+
+  @Test
+  public void merge_invalidRegisters_throwsException() throws InvalidProtocolBufferException {
+    DistinctCount other = getDistinctCountBuilderWithFields().build();
+    byte[] registers = new byte[1 << 10];
+    registers[0] = 100;
+    byte[] summary =
+        DistinctCountSummary.parseFrom(other.getSerializableSummary()).toBuilder()
+            .setRegisters(ByteString.copyFrom(registers))
+            .build()
+            .toByteArray();
+
+    assertThrows(IllegalArgumentException.class, () -> distinctCount.mergeWith(summary));
+  }
+
+  @Test
+  public void merge_calledAfterComputeResult_throwsException() {
+    DistinctCount other = getDistinctCountBuilderWithFields().build();
+    distinctCount.computeResult();
+    assertThrows(
+        IllegalStateException.class, () -> distinctCount.mergeWith(other.getSerializableSummary()));
+  }
+
+  private DistinctCount mergedWith(byte[] summary) {
+    DistinctCount result = getDistinctCountBuilderWithFields().build();
+    result.mergeWith(summary);
+    return result;
+  }
+
+  private static void assertLevelCountsAreNeighbouring(
+      long[] levelCounts, long[] otherLevelCounts) {
+    assertThat(otherLevelCounts).hasLength(DistinctCount.NUM_LEVELS);
+    for (int i = 0; i < DistinctCount.NUM_LEVELS; i++) {
+      assertThat(Math.abs(otherLevelCounts[i] - levelCounts[i])).isAtMost(1L);
+    }
+  }
+
+  private DistinctCount.Params.Builder getDistinctCountBuilderWithFields() {
+    return DistinctCount.builder()
+        .epsilon(EPSILON)
+        .delta(DELTA)
+        .noise(noise)
+        .maxPartitionsContributed(1)
+        .precision(10);
+  }
+}
@@ -0,0 +1,163 @@
+//
+// Copyright 2020 Google LLC
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//      http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+//
+
+package com.google.privacy.differentialprivacy;
+
+import static com.google.common.truth.Truth.assertThat;
+
+import java.util.ArrayList;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+/** Tests that aggregations and noise mechanisms report runtime metrics to {@link DpMetrics}. */
+@RunWith(JUnit4.class)
+public class DpMetricsTest {
+  private static final double EPSILON = 1.0;
+  private static final double DELTA = 0.123;
+
+  private RecordingMetrics metrics;
+
+  @Before
+  public void setUp() {
+    metrics = new RecordingMetrics();
+  }
+
+  @Test
+  public void noOp_isDisabled() {
+    assertThat(DpMetrics.noOp().isEnabled()).isFalse();
+    assertThat(DpMetrics.noOp().startLatency()).isEqualTo(0L);
+  }
+
+  @Test
+  public void count_reportsEntriesAndMerges() {
+    Count.Params.Builder builder =
+        Count.builder().epsilon(EPSILON).maxPartitionsContributed(1).metrics(metrics);
+    Count count = builder.build();
+    Count other = builder.build();
+
+    count.increment();
+    count.incrementBy(5);
+    // Non-positive increments are ignored and not reported.
+    count.incrementBy(-3);
+    other.increment();
+    byte[] summary = other.getSerializableSummary();
+    count.mergeWith(summary);
+    count.computeResult();
+
+    assertThat(metrics.counters.get(DpMetrics.Counter.ENTRIES_ADDED)).isEqualTo(7L);
+    assertThat(metrics.counters.get(DpMetrics.Counter.SERIALIZED_BYTES))
+        .isEqualTo((long) summary.length);
+    assertThat(metrics.counters.get(DpMetrics.Counter.MERGES)).isEqualTo(1L);
+    assertThat(metrics.histograms.get(DpMetrics.Histogram.MERGE_LATENCY_NANOS)).hasSize(1);
+    assertThat(metrics.histograms.get(DpMetrics.Histogram.COMPUTE_RESULT_LATENCY_NANOS))
+        .hasSize(1);
+  }
+
+  @Test
+  public void boundedSum_reportsClampedEntries() {
+    BoundedSum sum =
+        BoundedSum.builder()
+            .epsilon(EPSILON)
+            .maxPartitionsContributed(1)
+            .lower(0.0)
+            .upper(1.0)
+            .metrics(metrics)
+            .build();
+
+    sum.addEntry(-1.0);
+    sum.addEntry(0.5);
+    sum.addEntry(2.0);
+    sum.addEntry(Double.NaN);
+    sum.computeResult();
+
+    assertThat(metrics.counters.get(DpMetrics.Counter.ENTRIES_ADDED)).isEqualTo(3L);
+    assertThat(metrics.counters.get(DpMetrics.Counter.ENTRIES_CLAMPED)).isEqualTo(2L);
+    assertThat(metrics.histograms.get(DpMetrics.Histogram.COMPUTE_RESULT_LATENCY_NANOS))
+        .hasSize(1);
+  }
+
+  @Test
+  public void boundedMean_reportsClampedEntriesOnce() {
+    BoundedMean mean =
+        BoundedMean.builder()
+            .epsilon(EPSILON)
+            .maxPartitionsContributed(1)
+            .maxContributionsPerPartition(1)
+            .lower(0.0)
+            .upper(1.0)
+            .metrics(metrics)
+            .build();
+
+    mean.addEntry(-1.0);
+    mean.addEntry(0.5);
+    mean.addEntry(2.0);
+    byte[] summary = mean.getSerializableSummary();
+
+    assertThat(metrics.counters.get(DpMetrics.Counter.ENTRIES_ADDED)).isEqualTo(3L);
+    assertThat(metrics.counters.get(DpMetrics.Counter.ENTRIES_CLAMPED)).isEqualTo(2L);
+    assertThat(metrics.counters.get(DpMetrics.Counter.SERIALIZED_BYTES))
+        .isEqualTo((long) summary.length);
+  }
+
+  @Test
+  public void laplaceNoise_reportsBinarySearchDepth() {
+    LaplaceNoise noise = new LaplaceNoise(metrics);
+
+    noise.sampleGeometric(1.0);
+
+    List<Long> depths = metrics.histograms.get(DpMetrics.Histogram.LAPLACE_BINARY_SEARCH_DEPTH);
+    assertThat(depths).hasSize(1);
+    assertThat(depths.get(0)).isGreaterThan(0L);
+  }
+
+  @Test
+  public void gaussianNoise_reportsRejectionIterations() {
+    GaussianNoise noise = new GaussianNoise(metrics);
+
+    noise.addNoise(0.0, 1, 1.0, EPSILON, DELTA);
+
+    List<Long> iterations =
+        metrics.histograms.get(DpMetrics.Histogram.GAUSSIAN_REJECTION_ITERATIONS);
+    assertThat(iterations).hasSize(1);
+    assertThat(iterations.get(0)).isAtLeast(1L);
+  }
+
+  /** Keeps all reported events in memory. */
+  private static final class RecordingMetrics implements DpMetrics {
+    final Map<Counter, Long> counters = new EnumMap<>(Counter.class);
+    final Map<Histogram, List<Long>> histograms = new EnumMap<>(Histogram.class);
+
+    @Override
+    public boolean isEnabled() {
+      return true;
+    }
+
+    @Override
+    public void increment(Counter counter, long value) {
+      counters.merge(counter, value, Long::sum);
+    }
+
+    @Override
+    public void record(Histogram histogram, long value) {
+      histograms.computeIfAbsent(histogram, h -> new ArrayList<>()).add(value);
+    }
+  }
+}
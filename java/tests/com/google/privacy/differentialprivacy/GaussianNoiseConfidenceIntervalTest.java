@@ -45,7 +45,7 @@ public class GaussianNoiseConfidenceIntervalTest {
             DEFAULT_EPSILON,
             DEFAULT_DELTA,
             /* alpha= */ 0.24);
-    ConfidenceInterval expected = ConfidenceInterval.create(69.056133, 96.943867);
+    ConfidenceInterval expected = ConfidenceInterval.create(69.060687, 96.939313);
     verifyApproxEqual(actual, expected);
   }
 
@@ -59,7 +59,7 @@ public class GaussianNoiseConfidenceIntervalTest {
             DEFAULT_EPSILON,
             DEFAULT_DELTA,
             DEFAULT_ALPHA);
-    ConfidenceInterval expected = ConfidenceInterval.create(-5.6349087, 5.6349087);
+    ConfidenceInterval expected = ConfidenceInterval.create(-5.6330684, 5.6330684);
     verifyApproxEqual(actual, expected);
   }
 
@@ -73,7 +73,7 @@ public class GaussianNoiseConfidenceIntervalTest {
             DEFAULT_EPSILON,
             DEFAULT_DELTA,
             DEFAULT_ALPHA);
-    ConfidenceInterval expected = ConfidenceInterval.create(-4.0483540, 7.2214635);
+    ConfidenceInterval expected = ConfidenceInterval.create(-4.0465136, 7.2196231);
     verifyApproxEqual(actual, expected);
   }
 
@@ -87,7 +87,7 @@ public class GaussianNoiseConfidenceIntervalTest {
             DEFAULT_EPSILON,
             DEFAULT_DELTA,
             DEFAULT_ALPHA);
-    ConfidenceInterval expected = ConfidenceInterval.create(-7.2214635, 4.0483540);
+    ConfidenceInterval expected = ConfidenceInterval.create(-7.2196231, 4.0465136);
     verifyApproxEqual(actual, expected);
   }
 
@@ -129,7 +129,7 @@ public class GaussianNoiseConfidenceIntervalTest {
             DEFAULT_EPSILON,
             DEFAULT_DELTA,
             /* alpha= */ 7.856382354E-10);
-    ConfidenceInterval expected = ConfidenceInterval.create(-21.061026, 21.061026);
+    ConfidenceInterval expected = ConfidenceInterval.create(-21.054148, 21.054148);
     verifyApproxEqual(actual, expected);
   }
 
@@ -144,7 +144,7 @@ public class GaussianNoiseConfidenceIntervalTest {
             DEFAULT_DELTA,
             /* alpha= */ 1 - 7.856382354E-10);
 
-    ConfidenceInterval expected = ConfidenceInterval.create(-3.3732006E-9, 3.3732006E-9);
+    ConfidenceInterval expected = ConfidenceInterval.create(-3.3720989E-9, 3.3720989E-9);
     verifyApproxEqual(actual, expected);
   }
 
@@ -158,7 +158,7 @@ public class GaussianNoiseConfidenceIntervalTest {
             DEFAULT_EPSILON,
             /* delta= */ 1.78468549878E-10,
             DEFAULT_ALPHA);
-    ConfidenceInterval expected = ConfidenceInterval.create(-8.6868832, 8.6868832);
+    ConfidenceInterval expected = ConfidenceInterval.create(-8.6818791, 8.6818791);
     verifyApproxEqual(actual, expected);
   }
 
@@ -172,7 +172,7 @@ public class GaussianNoiseConfidenceIntervalTest {
             DEFAULT_EPSILON,
             /* delta= */ 1 - 1.78468549878E-10,
             DEFAULT_ALPHA);
-    ConfidenceInterval expected = ConfidenceInterval.create(-0.12729946, 0.12729946);
+    ConfidenceInterval expected = ConfidenceInterval.create(-0.12727320, 0.12727320);
     verifyApproxEqual(actual, expected);
   }
 
@@ -186,7 +186,7 @@ public class GaussianNoiseConfidenceIntervalTest {
             /* epsilon= */ 1.65463453425E-10,
             DEFAULT_DELTA,
             DEFAULT_ALPHA);
-    ConfidenceInterval expected = ConfidenceInterval.create(-65636.239, 65636.239);
+    ConfidenceInterval expected = ConfidenceInterval.create(-65619.623, 65619.623);
     verifyApproxEqual(actual, expected);
   }
 
@@ -558,7 +558,7 @@ public class GaussianNoiseConfidenceIntervalTest {
             /* epsilon= */ 1.65463453425E-10,
             DEFAULT_DELTA,
             DEFAULT_ALPHA);
-    ConfidenceInterval expected = ConfidenceInterval.create(-65636.0, 65636.0);
+    ConfidenceInterval expected = ConfidenceInterval.create(-65620.0, 65620.0);
     verifyEqual(actual, expected);
   }
 
@@ -744,6 +744,96 @@ public class GaussianNoiseConfidenceIntervalTest {
                 /* alpha= */ Double.NaN));
   }
 
+  @Test
+  public void computeConfidenceIntervals_forDouble_matchesSingleIntervals() {
+    double[] noisedX = {0.0, -3.5, 83.0, 958655.4745, -1e12, 1e-9};
+    double[] lowerBounds = new double[noisedX.length];
+    double[] upperBounds = new double[noisedX.length];
+
+    NOISE.computeConfidenceIntervals(
+        noisedX,
+        /* l0Sensitivity= */ 3,
+        /* lInfSensitivity= */ 2.0,
+        DEFAULT_EPSILON,
+        DEFAULT_DELTA,
+        /* alpha= */ 0.24,
+        lowerBounds,
+        upperBounds);
+
+    for (int i = 0; i < noisedX.length; i++) {
+      verifyEqual(
+          ConfidenceInterval.create(lowerBounds[i], upperBounds[i]),
+          NOISE.computeConfidenceInterval(
+              noisedX[i],
+              /* l0Sensitivity= */ 3,
+              /* lInfSensitivity= */ 2.0,
+              DEFAULT_EPSILON,
+              DEFAULT_DELTA,
+              /* alpha= */ 0.24));
+    }
+  }
+
+  @Test
+  public void computeConfidenceIntervals_forLong_matchesSingleIntervals() {
+    long[] noisedX = {0, -3, 83, 958655, (1L << 60) + 1, -(1L << 60) - 1};
+    double[] lowerBounds = new double[noisedX.length];
+    double[] upperBounds = new double[noisedX.length];
+
+    NOISE.computeConfidenceIntervals(
+        noisedX,
+        /* l0Sensitivity= */ 3,
+        /* lInfSensitivity= */ 2L,
+        DEFAULT_EPSILON,
+        DEFAULT_DELTA,
+        /* alpha= */ 0.24,
+        lowerBounds,
+        upperBounds);
+
+    for (int i = 0; i < noisedX.length; i++) {
+      verifyEqual(
+          ConfidenceInterval.create(lowerBounds[i], upperBounds[i]),
+          NOISE.computeConfidenceInterval(
+              noisedX[i],
+              /* l0Sensitivity= */ 3,
+              /* lInfSensitivity= */ 2L,
+              DEFAULT_EPSILON,
+              DEFAULT_DELTA,
+              /* alpha= */ 0.24));
+    }
+  }
+
+  @Test
+  public void computeConfidenceIntervals_boundArraysTooShort_throwsException() {
+    assertThrows(
+        IllegalArgumentException.class,
+        () ->
+            NOISE.computeConfidenceIntervals(
+                new double[3],
+                DEFAULT_L_0_SENSITIVITY,
+                DEFAULT_L_INF_SENSITIVITY,
+                DEFAULT_EPSILON,
+                DEFAULT_DELTA,
+                DEFAULT_ALPHA,
+                new double[2],
+                new double[3]));
+  }
+
+  @Test
+  public void computeConfidenceIntervals_invalidAlpha_throwsException() {
+    assertThrows(
+        IllegalArgumentException.class,
+        () ->
+            NOISE.computeConfidenceIntervals(
+                new long[3],
+                DEFAULT_L_0_SENSITIVITY,
+                /* lInfSensitivity= */ 1L,
+                DEFAULT_EPSILON,
+                DEFAULT_DELTA,
+                /* alpha= */ 1.5,
+                new double[3],
+                new double[3]));
+  }
+
   private static boolean approxEqual(double a, double b) {
     double mxMagnitude = max(Math.abs(a), Math.abs(b));
     return Math.abs(a - b) <= TOLERANCE * mxMagnitude;
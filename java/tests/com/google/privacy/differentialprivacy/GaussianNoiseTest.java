@@ -446,8 +446,36 @@ public final class GaussianNoiseTest {
     assertThat(stats.populationVariance()).isWithin(sampleVarianceTolerance).of(stdDev * stdDev);
   }
 
+  @Test
+  public void computeQuantile_sigmaIsTightlyCalibrated() {
+    double rank = 0.9;
+    for (double epsilon : new double[] {0.01, LN_3, 5.0}) {
+      for (double delta : new double[] {1e-12, 1e-5, 0.1}) {
+        // The L_2 sensitivity is sqrt(4) * 0.5 = 1.
+        double sigma =
+            NOISE.computeQuantile(rank, 0.0, 4, 0.5, epsilon, delta)
+                / StandardNormalDistribution.quantile(rank);
+
+        // The sigma obtains the privacy guarantee, and a slightly smaller one does not.
+        assertThat(getTightDelta(sigma, epsilon)).isAtMost(delta * (1.0 + 1e-9));
+        assertThat(getTightDelta(sigma * (1.0 - 1e-8), epsilon)).isGreaterThan(delta);
+      }
+    }
+  }
+
   @Test
   public void getMechanismType_returnsGaussian() {
     assertThat(NOISE.getMechanismType()).isEqualTo(GAUSSIAN);
   }
+
+  /**
+   * Returns the smallest delta of Gaussian noise with standard deviation {@code sigma} and an L_2
+   * sensitivity of 1 according to Theorem 8 of Balle and Wang.
+   */
+  private static double getTightDelta(double sigma, double epsilon) {
+    double a = 1.0 / (2.0 * sigma);
+    double b = epsilon * sigma;
+    return StandardNormalDistribution.cdf(a - b)
+        - Math.exp(epsilon) * StandardNormalDistribution.cdf(-a - b);
+  }
 }
@@ -715,6 +715,96 @@ public class LaplaceNoiseConfidenceIntervalTest {
                 /* alpha= */ Double.NaN));
   }
 
+  @Test
+  public void computeConfidenceIntervals_forDouble_matchesSingleIntervals() {
+    double[] noisedX = {0.0, -3.5, 83.0, 958655.4745, -1e12, 1e-9};
+    double[] lowerBounds = new double[noisedX.length];
+    double[] upperBounds = new double[noisedX.length];
+
+    NOISE.computeConfidenceIntervals(
+        noisedX,
+        /* l0Sensitivity= */ 3,
+        /* lInfSensitivity= */ 2.0,
+        DEFAULT_EPSILON,
+        DEFAULT_DELTA,
+        /* alpha= */ 0.24,
+        lowerBounds,
+        upperBounds);
+
+    for (int i = 0; i < noisedX.length; i++) {
+      verifyEqual(
+          ConfidenceInterval.create(lowerBounds[i], upperBounds[i]),
+          NOISE.computeConfidenceInterval(
+              noisedX[i],
+              /* l0Sensitivity= */ 3,
+              /* lInfSensitivity= */ 2.0,
+              DEFAULT_EPSILON,
+              DEFAULT_DELTA,
+              /* alpha= */ 0.24));
+    }
+  }
+
+  @Test
+  public void computeConfidenceIntervals_forLong_matchesSingleIntervals() {
+    long[] noisedX = {0, -3, 83, 958655, (1L << 60) + 1, -(1L << 60) - 1};
+    double[] lowerBounds = new double[noisedX.length];
+    double[] upperBounds = new double[noisedX.length];
+
+    NOISE.computeConfidenceIntervals(
+        noisedX,
+        /* l0Sensitivity= */ 3,
+        /* lInfSensitivity= */ 2L,
+        DEFAULT_EPSILON,
+        DEFAULT_DELTA,
+        /* alpha= */ 0.24,
+        lowerBounds,
+        upperBounds);
+
+    for (int i = 0; i < noisedX.length; i++) {
+      verifyEqual(
+          ConfidenceInterval.create(lowerBounds[i], upperBounds[i]),
+          NOISE.computeConfidenceInterval(
+              noisedX[i],
+              /* l0Sensitivity= */ 3,
+              /* lInfSensitivity= */ 2L,
+              DEFAULT_EPSILON,
+              DEFAULT_DELTA,
+              /* alpha= */ 0.24));
+    }
+  }
+
+  @Test
+  public void computeConfidenceIntervals_boundArraysTooShort_throwsException() {
+    assertThrows(
+        IllegalArgumentException.class,
+        () ->
+            NOISE.computeConfidenceIntervals(
+                new double[3],
+                DEFAULT_L_0_SENSITIVITY,
+                DEFAULT_L_INF_SENSITIVITY,
+                DEFAULT_EPSILON,
+                DEFAULT_DELTA,
+                DEFAULT_ALPHA,
+                new double[2],
+                new double[3]));
+  }
+
+  @Test
+  public void computeConfidenceIntervals_invalidAlpha_throwsException() {
+    assertThrows(
+        IllegalArgumentException.class,
+        () ->
+            NOISE.computeConfidenceIntervals(
+                new long[3],
+                DEFAULT_L_0_SENSITIVITY,
+                /* lInfSensitivity= */ 1L,
+                DEFAULT_EPSILON,
+                DEFAULT_DELTA,
+                /* alpha= */ 1.5,
+                new double[3],
+                new double[3]));
+  }
+
   private static boolean approxEqual(double a, double b) {
     double maxMagnitude = max(Math.abs(a), Math.abs(b));
     return Math.abs(a - b) <= TOLERANCE * maxMagnitude;
@@ -455,6 +455,60 @@ public final class LaplaceNoiseQuantileTest {
     assertThat(e).hasMessageThat().startsWith("l0Sensitivity must be");
   }
 
+  @Test
+  public void computeQuantile_interleavedParameters_returnsSameResultsAsFreshInstance() {
+    // More keys than the quantile cache has slots, so that memoized quantiles are evicted.
+    int numKeys = 40;
+    double[] expectedQuantiles = new double[numKeys];
+    for (int i = 0; i < numKeys; i++) {
+      expectedQuantiles[i] =
+          new LaplaceNoise()
+              .computeQuantile(
+                  RANKS[i % RANKS.length],
+                  DEFAULT_X,
+                  /* l0Sensitivity= */ i + 1,
+                  DEFAULT_L_INF_SENSITIVITY,
+                  DEFAULT_EPSILON,
+                  /* delta= */ null);
+    }
+    for (int round = 0; round < 3; round++) {
+      for (int i = 0; i < numKeys; i++) {
+        assertThat(
+                NOISE.computeQuantile(
+                    RANKS[i % RANKS.length],
+                    DEFAULT_X,
+                    /* l0Sensitivity= */ i + 1,
+                    DEFAULT_L_INF_SENSITIVITY,
+                    DEFAULT_EPSILON,
+                    /* delta= */ null))
+            .isEqualTo(expectedQuantiles[i]);
+      }
+    }
+  }
+
+  @Test
+  public void computeQuantile_memoizedQuantile_isShiftedByX() {
+    double quantileAtZero =
+        NOISE.computeQuantile(
+            DEFAULT_RANK,
+            /* x= */ 0.0,
+            DEFAULT_L_0_SENSITIVITY,
+            DEFAULT_L_INF_SENSITIVITY,
+            DEFAULT_EPSILON,
+            /* delta= */ null);
+    double x = 123456.789;
+
+    assertThat(
+            NOISE.computeQuantile(
+                DEFAULT_RANK,
+                x,
+                DEFAULT_L_0_SENSITIVITY,
+                DEFAULT_L_INF_SENSITIVITY,
+                DEFAULT_EPSILON,
+                /* delta= */ null))
+        .isEqualTo(x + quantileAtZero);
+  }
+
   private static boolean approxEqual(double a, double b) {
     double maxMagnitude = max(Math.abs(a), Math.abs(b));
     return Math.abs(a - b) <= TOLERANCE * maxMagnitude;
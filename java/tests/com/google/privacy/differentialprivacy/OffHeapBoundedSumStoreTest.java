@@ -0,0 +1,206 @@
+//
+// Copyright 2020 Google LLC
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//      http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+//
+
+package com.google.privacy.differentialprivacy;
+
+import static com.google.common.truth.Truth.assertThat;
+import static com.google.differentialprivacy.SummaryOuterClass.MechanismType.GAUSSIAN;
+import static org.junit.Assert.assertThrows;
+import static org.mockito.ArgumentMatchers.anyDouble;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+import org.mockito.Mock;
+import org.mockito.junit.MockitoJUnit;
+import org.mockito.junit.MockitoRule;
+
+/**
+ * Tests behavior of {@link OffHeapBoundedSumStore}. The test mocks a {@link Noise} instance to
+ * always generate zero noise.
+ */
+@RunWith(JUnit4.class)
+public class OffHeapBoundedSumStoreTest {
+  private static final double EPSILON = 0.123;
+  private static final double DELTA = 0.123;
+  private static final double LOWER = -5.0;
+  private static final double UPPER = 10.0;
+  private static final int NUM_PARTITIONS = 4;
+
+  @Mock private Noise noise;
+  @Rule public final MockitoRule mocks = MockitoJUnit.rule();
+
+  private OffHeapBoundedSumStore store;
+
+  @Before
+  public void setUp() {
+    // Mock the noise mechanism so that it does not add any noise.
+    when(noise.addNoise(anyDouble(), anyInt(), anyDouble(), anyDouble(), anyDouble()))
+        .thenAnswer(invocation -> invocation.getArguments()[0]);
+    // Tests that use serialization need to access to the type of the noise they use. Because the
+    // tests don't rely on a specific noise type, we arbitrarily return Gaussian.
+    when(noise.getMechanismType()).thenReturn(GAUSSIAN);
+
+    store = newStoreBuilder().build();
+  }
+
+  @Test
+  public void addEntry_sumsPerPartition() {
+    store.addEntry(0, 1.5);
+    store.addEntry(0, 2.0);
+    store.addEntry(3, -4.0);
+
+    assertThat(computeResults(store)).usingExactEquality().containsExactly(3.5, 0.0, 0.0, -4.0);
+  }
+
+  @Test
+  public void addEntry_clampsToBounds() {
+    store.addEntry(1, 100.0);
+    store.addEntry(1, -100.0);
+    store.addEntry(1, 3.0);
+
+    assertThat(computeResults(store)[1]).isEqualTo(UPPER + LOWER + 3.0);
+  }
+
+  @Test
+  public void addEntry_nan_ignored() {
+    store.addEntry(2, 1.0);
+    store.addEntry(2, Double.NaN);
+
+    assertThat(computeResults(store)[2]).isEqualTo(1.0);
+  }
+
+  @Test
+  public void addEntry_partitionOutOfRange_throwsException() {
+    assertThrows(IndexOutOfBoundsException.class, () -> store.addEntry(NUM_PARTITIONS, 1.0));
+  }
+
+  @Test
+  public void computeResults_addsNoiseWithSumParameters() {
+    store.addEntry(1, 2.0);
+
+    computeResults(store);
+
+    // The L_inf sensitivity is max(|lower|, |upper|).
+    verify(noise).addNoise(eq(2.0), eq(1), eq(UPPER), eq(EPSILON), eq(DELTA));
+  }
+
+  @Test
+  public void computeResults_calledTwice_throwsException() {
+    computeResults(store);
+
+    assertThrows(IllegalStateException.class, () -> computeResults(store));
+  }
+
+  @Test
+  public void addEntry_afterComputeResults_throwsException() {
+    computeResults(store);
+
+    assertThrows(IllegalStateException.class, () -> store.addEntry(0, 1.0));
+  }
+
+  @Test
+  public void mergeWith_addsSumOfSummary() {
+    BoundedSum sum = newBoundedSumBuilder().build();
+    sum.addEntry(4.0);
+    sum.addEntry(20.0);
+    store.addEntry(1, 1.0);
+
+    store.mergeWith(1, sum.getSerializableSummary());
+
+    assertThat(computeResults(store)[1]).isEqualTo(15.0);
+  }
+
+  @Test
+  public void mergeWith_differentBounds_throwsException() {
+    BoundedSum sum = newBoundedSumBuilder().upper(UPPER + 1).build();
+
+    assertThrows(
+        IllegalArgumentException.class, () -> store.mergeWith(0, sum.getSerializableSummary()));
+  }
+
+  @Test
+  public void mergeWith_automaticBounds_throwsException() {
+    BoundedSum sum =
+        BoundedSum.builder()
+            .epsilon(EPSILON)
+            .delta(DELTA)
+            .noise(noise)
+            .maxPartitionsContributed(1)
+            .build();
+
+    assertThrows(
+        IllegalArgumentException.class, () -> store.mergeWith(0, sum.getSerializableSummary()));
+  }
+
+  @Test
+  public void build_noBounds_throwsException() {
+    assertThrows(
+        IllegalStateException.class,
+        () ->
+            OffHeapBoundedSumStore.builder()
+                .epsilon(EPSILON)
+                .noise(noise)
+                .maxPartitionsContributed(1)
+                .numPartitions(NUM_PARTITIONS)
+                .build());
+  }
+
+  @Test
+  public void build_invalidBounds_throwsException() {
+    assertThrows(
+        IllegalArgumentException.class, () -> newStoreBuilder().lower(UPPER + 1).build());
+  }
+
+  @Test
+  public void build_nonPositiveNumPartitions_throwsException() {
+    assertThrows(
+        IllegalArgumentException.class, () -> newStoreBuilder().numPartitions(-1).build());
+  }
+
+  private OffHeapBoundedSumStore.Params.Builder newStoreBuilder() {
+    return OffHeapBoundedSumStore.builder()
+        .epsilon(EPSILON)
+        .delta(DELTA)
+        .noise(noise)
+        .maxPartitionsContributed(1)
+        .lower(LOWER)
+        .upper(UPPER)
+        .numPartitions(NUM_PARTITIONS);
+  }
+
+  private BoundedSum.Params.Builder newBoundedSumBuilder() {
+    return BoundedSum.builder()
+        .epsilon(EPSILON)
+        .delta(DELTA)
+        .noise(noise)
+        .maxPartitionsContributed(1)
+        .lower(LOWER)
+        .upper(UPPER);
+  }
+
+  private static double[] computeResults(OffHeapBoundedSumStore store) {
+    double[] results = new double[store.getNumPartitions()];
+    store.computeResults((partition, noisedSum) -> results[partition] = noisedSum);
+    return results;
+  }
+}
@@ -0,0 +1,200 @@
+//
+// Copyright 2020 Google LLC
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//      http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+//
+
+package com.google.privacy.differentialprivacy;
+
+import static com.google.common.truth.Truth.assertThat;
+import static com.google.differentialprivacy.SummaryOuterClass.MechanismType.GAUSSIAN;
+import static org.junit.Assert.assertThrows;
+import static org.mockito.ArgumentMatchers.anyDouble;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+import org.mockito.Mock;
+import org.mockito.junit.MockitoJUnit;
+import org.mockito.junit.MockitoRule;
+
+/**
+ * Tests behavior of {@link OffHeapCountStore}. The test mocks a {@link Noise} instance to always
+ * generate zero noise.
+ */
+@RunWith(JUnit4.class)
+public class OffHeapCountStoreTest {
+  private static final double EPSILON = 0.123;
+  private static final double DELTA = 0.123;
+  private static final int NUM_PARTITIONS = 5;
+
+  @Mock private Noise noise;
+  @Rule public final MockitoRule mocks = MockitoJUnit.rule();
+
+  private OffHeapCountStore store;
+
+  @Before
+  public void setUp() {
+    // Mock the noise mechanism so that it does not add any noise.
+    when(noise.addNoise(anyLong(), anyInt(), anyLong(), anyDouble(), anyDouble()))
+        .thenAnswer(invocation -> invocation.getArguments()[0]);
+    // Tests that use serialization need to access to the type of the noise they use. Because the
+    // tests don't rely on a specific noise type, we arbitrarily return Gaussian.
+    when(noise.getMechanismType()).thenReturn(GAUSSIAN);
+
+    store = newStoreBuilder().build();
+  }
+
+  @Test
+  public void increment_countsPerPartition() {
+    store.increment(0);
+    store.increment(3);
+    store.increment(3);
+    store.incrementBy(4, 10);
+
+    assertThat(computeResults(store)).asList().containsExactly(1L, 0L, 0L, 2L, 10L).inOrder();
+  }
+
+  @Test
+  public void incrementBy_nonPositiveValues_ignored() {
+    store.incrementBy(1, 5);
+    store.incrementBy(1, 0);
+    store.incrementBy(1, -3);
+
+    assertThat(computeResults(store)[1]).isEqualTo(5);
+  }
+
+  @Test
+  public void increment_partitionOutOfRange_throwsException() {
+    assertThrows(IndexOutOfBoundsException.class, () -> store.increment(NUM_PARTITIONS));
+    assertThrows(IndexOutOfBoundsException.class, () -> store.increment(-1));
+  }
+
+  @Test
+  public void increment_manyPartitions_keepsPartitionsOfDifferentBuffersApart() {
+    // More partitions than fit into a single direct buffer.
+    int numPartitions = (1 << 24) + 2;
+    OffHeapCountStore largeStore = newStoreBuilder().numPartitions(numPartitions).build();
+    largeStore.incrementBy(1, 3);
+    largeStore.incrementBy(numPartitions - 1, 7);
+
+    // Reads the raw counts directly rather than noising millions of partitions.
+    assertThat(largeStore.getLong(1)).isEqualTo(3);
+    assertThat(largeStore.getLong(numPartitions - 1)).isEqualTo(7);
+    assertThat(largeStore.getLong(numPartitions - 2)).isEqualTo(0);
+    assertThat(largeStore.getLong(numPartitions - 2 - (1 << 24))).isEqualTo(0);
+  }
+
+  @Test
+  public void computeResults_addsNoiseWithCountParameters() {
+    store.incrementBy(2, 42);
+
+    computeResults(store);
+
+    verify(noise).addNoise(eq(42L), eq(1), eq(1L), eq(EPSILON), eq(DELTA));
+  }
+
+  @Test
+  public void computeResults_calledTwice_throwsException() {
+    computeResults(store);
+
+    assertThrows(IllegalStateException.class, () -> computeResults(store));
+  }
+
+  @Test
+  public void increment_afterComputeResults_throwsException() {
+    computeResults(store);
+
+    assertThrows(IllegalStateException.class, () -> store.increment(0));
+  }
+
+  @Test
+  public void mergeWith_addsCountOfSummary() {
+    Count count = newCount();
+    count.incrementBy(5);
+    store.incrementBy(2, 3);
+
+    store.mergeWith(2, count.getSerializableSummary());
+
+    assertThat(computeResults(store)[2]).isEqualTo(8);
+  }
+
+  @Test
+  public void mergeWith_differentEpsilon_throwsException() {
+    Count count =
+        Count.builder()
+            .epsilon(2 * EPSILON)
+            .delta(DELTA)
+            .noise(noise)
+            .maxPartitionsContributed(1)
+            .build();
+
+    assertThrows(
+        IllegalArgumentException.class, () -> store.mergeWith(0, count.getSerializableSummary()));
+  }
+
+  @Test
+  public void mergeWith_invalidSummary_throwsException() {
+    assertThrows(IllegalArgumentException.class, () -> store.mergeWith(0, new byte[] {-1}));
+  }
+
+  @Test
+  public void mergeWith_afterComputeResults_throwsException() {
+    byte[] summary = newCount().getSerializableSummary();
+    computeResults(store);
+
+    assertThrows(IllegalStateException.class, () -> store.mergeWith(0, summary));
+  }
+
+  @Test
+  public void build_nonPositiveNumPartitions_throwsException() {
+    assertThrows(
+        IllegalArgumentException.class, () -> newStoreBuilder().numPartitions(0).build());
+  }
+
+  @Test
+  public void build_invalidEpsilon_throwsException() {
+    assertThrows(IllegalArgumentException.class, () -> newStoreBuilder().epsilon(-1.0).build());
+  }
+
+  private OffHeapCountStore.Params.Builder newStoreBuilder() {
+    return OffHeapCountStore.builder()
+        .epsilon(EPSILON)
+        .delta(DELTA)
+        .noise(noise)
+        .maxPartitionsContributed(1)
+        .numPartitions(NUM_PARTITIONS);
+  }
+
+  private Count newCount() {
+    return Count.builder()
+        .epsilon(EPSILON)
+        .delta(DELTA)
+        .noise(noise)
+        .maxPartitionsContributed(1)
+        .build();
+  }
+
+  private static long[] computeResults(OffHeapCountStore store) {
+    long[] results = new long[store.getNumPartitions()];
+    store.computeResults((partition, noisedCount) -> results[partition] = noisedCount);
+    return results;
+  }
+}
@@ -0,0 +1,263 @@
+//
+// Copyright 2020 Google LLC
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//      http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+//
+
+package com.google.privacy.differentialprivacy;
+
+import static com.google.common.truth.Truth.assertThat;
+import static com.google.differentialprivacy.SummaryOuterClass.MechanismType.GAUSSIAN;
+import static org.junit.Assert.assertThrows;
+import static org.mockito.ArgumentMatchers.anyDouble;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import com.google.differentialprivacy.SummaryOuterClass.MechanismType;
+import java.util.Arrays;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+import org.mockito.Mock;
+import org.mockito.junit.MockitoJUnit;
+import org.mockito.junit.MockitoRule;
+
+/** Tests the behavior of {@link PartitionSelection}. */
+@RunWith(JUnit4.class)
+public class PartitionSelectionTest {
+  private static final double EPSILON = 0.123;
+  private static final double DELTA = 0.123;
+  private static final double THRESHOLD_DELTA = 0.1;
+
+  @Mock private Noise noise;
+
+  @Rule public final MockitoRule mocks = MockitoJUnit.rule();
+
+  @Before
+  public void setUp() {
+    // Mock the noise mechanism so that it does not add any noise.
+    when(noise.addNoise(anyLong(), anyInt(), anyLong(), anyDouble(), anyDouble()))
+        .thenAnswer(invocation -> invocation.getArguments()[0]);
+    when(noise.getMechanismType()).thenReturn(GAUSSIAN);
+    // The threshold is -(-4.5) + maxContributionsPerPartition.
+    when(noise.computeQuantile(
+            anyDouble(), anyDouble(), anyInt(), anyDouble(), anyDouble(), anyDouble()))
+        .thenReturn(-4.5);
+  }
+
+  @Test
+  public void build_computesThresholdOnce() {
+    PartitionSelection selection = getPartitionSelectionBuilderWithFields().build();
+
+    selection.selectPartitions(new long[] {1, 2, 3}, new int[3], new long[3]);
+    selection.selectPartitions(new long[] {4, 5, 6}, new int[3], new long[3]);
+
+    assertThat(selection.getThreshold()).isEqualTo(5.5);
+    verify(noise, times(1))
+        .computeQuantile(eq(THRESHOLD_DELTA), eq(0.0), eq(1), eq(1.0), eq(EPSILON), eq(DELTA));
+  }
+
+  @Test
+  public void build_scaledLinfSensitivity_computesThresholdCorrectly() {
+    PartitionSelection selection =
+        getPartitionSelectionBuilderWithFields()
+            .maxPartitionsContributed(2)
+            .maxContributionsPerPartition(3)
+            .build();
+
+    assertThat(selection.getThreshold()).isEqualTo(7.5);
+    verify(noise)
+        .computeQuantile(
+            eq(THRESHOLD_DELTA / 3), eq(0.0), eq(2), eq(3.0), eq(EPSILON), eq(DELTA));
+  }
+
+  @Test
+  public void selectPartitions_returnsPartitionsReachingThreshold() {
+    PartitionSelection selection = getPartitionSelectionBuilderWithFields().build();
+    long[] rawCounts = {10, 5, 6, 0, 100, 5};
+    int[] selectedIndices = new int[rawCounts.length];
+    long[] noisedCounts = new long[rawCounts.length];
+
+    int numSelected = selection.selectPartitions(rawCounts, selectedIndices, noisedCounts);
+
+    assertThat(numSelected).isEqualTo(3);
+    assertThat(Arrays.copyOf(selectedIndices, numSelected)).isEqualTo(new int[] {0, 2, 4});
+    assertThat(Arrays.copyOf(noisedCounts, numSelected)).isEqualTo(new long[] {10, 6, 100});
+  }
+
+  @Test
+  public void selectPartitions_range_returnsIndicesOfWholeArray() {
+    PartitionSelection selection = getPartitionSelectionBuilderWithFields().build();
+    long[] rawCounts = {10, 5, 6, 0, 100, 5};
+    int[] selectedIndices = new int[2];
+    long[] noisedCounts = new long[2];
+
+    int numSelected = selection.selectPartitions(rawCounts, 1, 3, selectedIndices, noisedCounts);
+
+    assertThat(numSelected).isEqualTo(1);
+    assertThat(selectedIndices[0]).isEqualTo(2);
+    assertThat(noisedCounts[0]).isEqualTo(6);
+  }
+
+  @Test
+  public void selectPartitions_noisesEveryCandidate() {
+    PartitionSelection selection = getPartitionSelectionBuilderWithFields().build();
+
+    selection.selectPartitions(new long[] {0, 1, 1000}, new int[3], new long[3]);
+
+    verify(noise, times(3)).addNoise(anyLong(), eq(1), eq(1L), eq(EPSILON), eq(DELTA));
+  }
+
+  @Test
+  public void selectPartitions_noPreFilter_noisesEveryCandidate() {
+    PartitionSelection selection = getPartitionSelectionBuilderWithFields().build();
+
+    assertThat(selection.getMinNoisedCount()).isEqualTo(Long.MIN_VALUE);
+  }
+
+  @Test
+  public void selectPartitions_preFilter_skipsCandidatesFarBelowThreshold() {
+    double preFilterDelta = 1e-6;
+    double survivalProbability = preFilterDelta / ((1.0 + Math.exp(EPSILON)) * 2);
+    // The noise exceeds 2.0 with the survival probability, so raw counts c with c + 2.0 + 1 < 5.5
+    // are skipped.
+    when(noise.computeQuantile(
+            eq(survivalProbability), anyDouble(), anyInt(), anyDouble(), anyDouble(), anyDouble()))
+        .thenReturn(-2.0);
+    PartitionSelection selection =
+        getPartitionSelectionBuilderWithFields()
+            .maxPartitionsContributed(2)
+            .preFilterDelta(preFilterDelta)
+            .build();
+    long[] rawCounts = {10, 2, 3, 0, 6};
+    int[] selectedIndices = new int[rawCounts.length];
+
+    int numSelected = selection.selectPartitions(rawCounts, selectedIndices, new long[5]);
+
+    assertThat(selection.getMinNoisedCount()).isEqualTo(3);
+    verify(noise).addNoise(eq(10L), eq(2), eq(1L), eq(EPSILON), eq(DELTA));
+    verify(noise).addNoise(eq(3L), eq(2), eq(1L), eq(EPSILON), eq(DELTA));
+    verify(noise).addNoise(eq(6L), eq(2), eq(1L), eq(EPSILON), eq(DELTA));
+    verify(noise, times(3)).addNoise(anyLong(), anyInt(), anyLong(), anyDouble(), anyDouble());
+    assertThat(Arrays.copyOf(selectedIndices, numSelected)).isEqualTo(new int[] {0, 4});
+  }
+
+  @Test
+  public void build_invalidPreFilterDelta_throwsException() {
+    assertThrows(
+        IllegalArgumentException.class,
+        () -> getPartitionSelectionBuilderWithFields().preFilterDelta(0.0).build());
+  }
+
+  @Test
+  public void selectPartitions_matchesCountThresholding() {
+    PartitionSelection selection = getPartitionSelectionBuilderWithFields().build();
+    long[] rawCounts = {3, 5, 6, 7};
+    int[] selectedIndices = new int[rawCounts.length];
+    long[] noisedCounts = new long[rawCounts.length];
+
+    int numSelected = selection.selectPartitions(rawCounts, selectedIndices, noisedCounts);
+
+    int expectedNumSelected = 0;
+    for (long rawCount : rawCounts) {
+      Count count =
+          Count.builder()
+              .epsilon(EPSILON)
+              .delta(DELTA)
+              .noise(noise)
+              .maxPartitionsContributed(1)
+              .build();
+      count.incrementBy(rawCount);
+      if (count.computeThresholdedResult(THRESHOLD_DELTA).isPresent()) {
+        expectedNumSelected++;
+      }
+    }
+    assertThat(numSelected).isEqualTo(expectedNumSelected);
+  }
+
+  @Test
+  public void selectPartitions_outputArraysTooShort_throwsException() {
+    PartitionSelection selection = getPartitionSelectionBuilderWithFields().build();
+
+    assertThrows(
+        IllegalArgumentException.class,
+        () -> selection.selectPartitions(new long[3], new int[2], new long[3]));
+    assertThrows(
+        IllegalArgumentException.class,
+        () -> selection.selectPartitions(new long[3], new int[3], new long[2]));
+  }
+
+  @Test
+  public void selectPartitions_invalidRange_throwsException() {
+    PartitionSelection selection = getPartitionSelectionBuilderWithFields().build();
+
+    assertThrows(
+        IndexOutOfBoundsException.class,
+        () -> selection.selectPartitions(new long[3], 2, 4, new int[3], new long[3]));
+  }
+
+  @Test
+  public void build_unknownNoiseType_throwsException() {
+    when(noise.getMechanismType()).thenReturn(MechanismType.EMPTY);
+
+    IllegalStateException exception =
+        assertThrows(
+            IllegalStateException.class, () -> getPartitionSelectionBuilderWithFields().build());
+    assertThat(exception).hasMessageThat().contains("unknown mechanism type");
+  }
+
+  @Test
+  public void build_invalidThresholdDelta_throwsException() {
+    assertThrows(
+        IllegalArgumentException.class,
+        () -> getPartitionSelectionBuilderWithFields().thresholdDelta(0.0).build());
+    assertThrows(
+        IllegalArgumentException.class,
+        () -> getPartitionSelectionBuilderWithFields().thresholdDelta(1.0).build());
+  }
+
+  @Test
+  public void build_missingThresholdDelta_throwsException() {
+    assertThrows(
+        IllegalStateException.class,
+        () ->
+            PartitionSelection.builder()
+                .epsilon(EPSILON)
+                .delta(DELTA)
+                .noise(noise)
+                .maxPartitionsContributed(1)
+                .build());
+  }
+
+  @Test
+  public void build_invalidMaxPartitionsContributed_throwsException() {
+    assertThrows(
+        IllegalArgumentException.class,
+        () -> getPartitionSelectionBuilderWithFields().maxPartitionsContributed(0).build());
+  }
+
+  private PartitionSelection.Params.Builder getPartitionSelectionBuilderWithFields() {
+    return PartitionSelection.builder()
+        .epsilon(EPSILON)
+        .delta(DELTA)
+        .noise(noise)
+        .maxPartitionsContributed(1)
+        .thresholdDelta(THRESHOLD_DELTA);
+  }
+}
@@ -0,0 +1,113 @@
+//
+// Copyright 2020 Google LLC
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//      http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+//
+
+package com.google.privacy.differentialprivacy;
+
+import static com.google.common.truth.Truth.assertThat;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+@RunWith(JUnit4.class)
+public final class StandardNormalDistributionTest {
+  private static final double RELATIVE_TOLERANCE = 1e-12;
+
+  @Test
+  public void cdf_matchesReferenceValues() {
+    // The reference values were computed as 0.5 * erfc(-x / sqrt(2)) in higher precision.
+    assertCdf(-37.5, 4.605353009582584e-308);
+    assertCdf(-20.0, 2.7536241186063314e-89);
+    assertCdf(-10.0, 7.619853024160593e-24);
+    assertCdf(-5.0, 2.866515718791946e-07);
+    assertCdf(-3.0, 0.0013498980316300957);
+    assertCdf(-2.0, 0.02275013194817922);
+    assertCdf(-1.0, 0.15865525393145707);
+    assertCdf(-0.5, 0.3085375387259869);
+    assertCdf(-0.1, 0.460172162722971);
+    assertCdf(0.0, 0.5);
+    assertCdf(0.3, 0.6179114221889526);
+    assertCdf(1.0, 0.8413447460685429);
+    assertCdf(2.5, 0.9937903346742238);
+    assertCdf(6.0, 0.9999999990134123);
+  }
+
+  @Test
+  public void cdf_handlesExtremeArguments() {
+    assertThat(StandardNormalDistribution.cdf(-40.0)).isEqualTo(0.0);
+    assertThat(StandardNormalDistribution.cdf(Double.NEGATIVE_INFINITY)).isEqualTo(0.0);
+    assertThat(StandardNormalDistribution.cdf(40.0)).isEqualTo(1.0);
+    assertThat(StandardNormalDistribution.cdf(Double.POSITIVE_INFINITY)).isEqualTo(1.0);
+    assertThat(StandardNormalDistribution.cdf(Double.NaN)).isNaN();
+  }
+
+  @Test
+  public void cdf_isSymmetric() {
+    for (double x = 0.0; x < 8.0; x += 0.01) {
+      assertThat(StandardNormalDistribution.cdf(x) + StandardNormalDistribution.cdf(-x))
+          .isWithin(1e-15)
+          .of(1.0);
+    }
+  }
+
+  @Test
+  public void quantile_matchesReferenceValues() {
+    assertQuantile(1e-300, -37.0470962993612);
+    assertQuantile(1e-100, -21.27345356096532);
+    assertQuantile(1e-10, -6.361340902404056);
+    assertQuantile(1e-5, -4.2648907939228256);
+    assertQuantile(0.025, -1.9599639845400538);
+    assertQuantile(0.3, -0.5244005127080407);
+    assertQuantile(0.9, 1.2815515655446008);
+    assertQuantile(0.999999, 4.753424308817089);
+    assertThat(StandardNormalDistribution.quantile(0.5)).isEqualTo(0.0);
+  }
+
+  @Test
+  public void quantile_handlesExtremeArguments() {
+    assertThat(StandardNormalDistribution.quantile(0.0)).isNegativeInfinity();
+    assertThat(StandardNormalDistribution.quantile(1.0)).isPositiveInfinity();
+    assertThat(StandardNormalDistribution.quantile(-0.1)).isNaN();
+    assertThat(StandardNormalDistribution.quantile(1.1)).isNaN();
+    assertThat(StandardNormalDistribution.quantile(Double.NaN)).isNaN();
+  }
+
+  @Test
+  public void quantile_invertsCdf() {
+    for (double p = Double.MIN_NORMAL; p < 1e-3; p *= 1.37) {
+      assertThat(StandardNormalDistribution.cdf(StandardNormalDistribution.quantile(p)))
+          .isWithin(RELATIVE_TOLERANCE * p)
+          .of(p);
+    }
+    for (double p = 1e-3; p < 1.0; p += 0.000731) {
+      assertThat(StandardNormalDistribution.cdf(StandardNormalDistribution.quantile(p)))
+          .isWithin(RELATIVE_TOLERANCE)
+          .of(p);
+    }
+  }
+
+  private static void assertCdf(double x, double expected) {
+    assertThat(StandardNormalDistribution.cdf(x))
+        .isWithin(RELATIVE_TOLERANCE * expected)
+        .of(expected);
+  }
+
+  private static void assertQuantile(double p, double expected) {
+    assertThat(StandardNormalDistribution.quantile(p))
+        .isWithin(RELATIVE_TOLERANCE * Math.abs(expected))
+        .of(expected);
+  }
+}
@@ -0,0 +1,190 @@
+//
+// Copyright 2020 Google LLC
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//      http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+//
+
+package com.google.privacy.differentialprivacy;
+
+import static com.google.common.truth.Truth.assertThat;
+import static com.google.differentialprivacy.SummaryOuterClass.MechanismType.GAUSSIAN;
+import static org.junit.Assert.assertThrows;
+import static org.mockito.ArgumentMatchers.anyDouble;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.atLeastOnce;
+import static org.mockito.Mockito.lenient;
+import static org.mockito.Mockito.verify;
+
+import java.util.ArrayList;
+import java.util.List;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+import org.mockito.Mock;
+import org.mockito.junit.MockitoJUnit;
+import org.mockito.junit.MockitoRule;
+
+/** Tests the behavior of {@link WindowedBoundedSum}. */
+@RunWith(JUnit4.class)
+public class WindowedBoundedSumTest {
+  private static final double EPSILON = 0.123;
+  private static final double DELTA = 0.123;
+  private static final double TOLERANCE = 1e-9;
+
+  @Mock private Noise noise;
+  // Each released window as {start, end, sum}.
+  private final List<double[]> windows = new ArrayList<>();
+
+  @Rule public final MockitoRule mocks = MockitoJUnit.rule();
+
+  @Before
+  public void setUp() {
+    // Mock the noise mechanism so that it does not add any noise. The stubs are lenient because
+    // tests that don't build a sum or don't release any window don't use them.
+    lenient()
+        .when(noise.addNoise(anyDouble(), anyInt(), anyDouble(), anyDouble(), anyDouble()))
+        .thenAnswer(invocation -> invocation.getArguments()[0]);
+    lenient().when(noise.getMechanismType()).thenReturn(GAUSSIAN);
+  }
+
+  @Test
+  public void tumblingWindows_releasesClampedSumPerWindow() {
+    WindowedBoundedSum sum = getWindowedSumBuilderWithFields().windowSizeMillis(10).build();
+
+    sum.addEntry(0, 1.5);
+    sum.addEntry(4, 100.0);
+    sum.addEntry(9, -100.0);
+    sum.addEntry(11, 2.0);
+    sum.finish(20);
+
+    assertThat(windows).hasSize(2);
+    assertWindow(windows.get(0), 0, 10, 1.5 + 10.0 - 5.0);
+    assertWindow(windows.get(1), 10, 20, 2.0);
+  }
+
+  @Test
+  public void slidingWindows_releasesSumPerWindow() {
+    WindowedBoundedSum sum =
+        getWindowedSumBuilderWithFields().windowSizeMillis(10).slideMillis(5).build();
+
+    sum.addEntry(5, 1.0);
+    sum.addEntry(12, 2.0);
+    sum.finish(20);
+
+    assertThat(windows).hasSize(3);
+    assertWindow(windows.get(0), 0, 10, 1.0);
+    assertWindow(windows.get(1), 5, 15, 3.0);
+    assertWindow(windows.get(2), 10, 20, 2.0);
+  }
+
+  @Test
+  public void slidingWindows_noiseAccountsForOverlappingWindows() {
+    WindowedBoundedSum sum =
+        getWindowedSumBuilderWithFields()
+            .windowSizeMillis(20)
+            .slideMillis(5)
+            .maxPartitionsContributed(3)
+            .build();
+
+    sum.addEntry(0, 1.0);
+    sum.finish(20);
+
+    verify(noise, atLeastOnce())
+        .addNoise(anyDouble(), eq(/* l0Sensitivity= */ 12), eq(10.0), eq(EPSILON), eq(DELTA));
+  }
+
+  @Test
+  public void addEntry_nan_ignored() {
+    WindowedBoundedSum sum = getWindowedSumBuilderWithFields().windowSizeMillis(10).build();
+
+    sum.addEntry(1, Double.NaN);
+    sum.addEntry(2, 3.0);
+    sum.finish(10);
+
+    assertThat(windows).hasSize(1);
+    assertWindow(windows.get(0), 0, 10, 3.0);
+  }
+
+  @Test
+  public void lateEntries_afterWindowClosed_dropped() {
+    WindowedBoundedSum sum =
+        getWindowedSumBuilderWithFields().windowSizeMillis(10).allowedLatenessMillis(3).build();
+
+    sum.addEntry(5, 1.0);
+    assertThat(sum.addEntry(12, 2.0)).isTrue();
+    assertThat(sum.addEntry(8, 4.0)).isTrue();
+    sum.advanceWatermark(13);
+    sum.addEntry(13, 1.0);
+    assertThat(sum.addEntry(9, 8.0)).isFalse();
+    sum.finish(20);
+
+    assertThat(windows).hasSize(2);
+    assertWindow(windows.get(0), 0, 10, 5.0);
+    assertWindow(windows.get(1), 10, 20, 3.0);
+  }
+
+  @Test
+  public void build_missingBounds_throwsException() {
+    assertThrows(
+        IllegalStateException.class,
+        () ->
+            WindowedBoundedSum.builder()
+                .epsilon(EPSILON)
+                .noise(noise)
+                .maxPartitionsContributed(1)
+                .windowSizeMillis(10)
+                .startMillis(0)
+                .listener((start, end, sum) -> {})
+                .build());
+  }
+
+  @Test
+  public void build_invalidBounds_throwsException() {
+    assertThrows(
+        IllegalArgumentException.class,
+        () ->
+            getWindowedSumBuilderWithFields()
+                .windowSizeMillis(10)
+                .lower(1.0)
+                .upper(-1.0)
+                .build());
+  }
+
+  @Test
+  public void build_slideDoesNotDivideWindowSize_throwsException() {
+    assertThrows(
+        IllegalArgumentException.class,
+        () -> getWindowedSumBuilderWithFields().windowSizeMillis(10).slideMillis(4).build());
+  }
+
+  private static void assertWindow(double[] window, double start, double end, double sum) {
+    assertThat(window[0]).isEqualTo(start);
+    assertThat(window[1]).isEqualTo(end);
+    assertThat(window[2]).isWithin(TOLERANCE).of(sum);
+  }
+
+  private WindowedBoundedSum.Params.Builder getWindowedSumBuilderWithFields() {
+    return WindowedBoundedSum.builder()
+        .epsilon(EPSILON)
+        .delta(DELTA)
+        .noise(noise)
+        .maxPartitionsContributed(1)
+        .lower(-5.0)
+        .upper(10.0)
+        .startMillis(0)
+        .listener((start, end, sum) -> windows.add(new double[] {start, end, sum}));
+  }
+}
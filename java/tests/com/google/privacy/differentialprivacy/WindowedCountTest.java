@@ -0,0 +1,472 @@
+//
+// Copyright 2020 Google LLC
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//      http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+//
+
+package com.google.privacy.differentialprivacy;
+
+import static com.google.common.truth.Truth.assertThat;
+import static org.junit.Assert.assertThrows;
+import static org.mockito.ArgumentMatchers.anyDouble;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.atLeastOnce;
+import static org.mockito.Mockito.lenient;
+import static org.mockito.Mockito.verify;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+import org.mockito.Mock;
+import org.mockito.junit.MockitoJUnit;
+import org.mockito.junit.MockitoRule;
+
+/** Tests the behavior of {@link WindowedCount}. */
+@RunWith(JUnit4.class)
+public class WindowedCountTest {
+  private static final double EPSILON = 0.123;
+  private static final double DELTA = 0.123;
+
+  @Mock private Noise noise;
+  // Each released window as {start, end, count}.
+  private final List<long[]> windows = new ArrayList<>();
+
+  @Rule public final MockitoRule mocks = MockitoJUnit.rule();
+
+  @Before
+  public void setUp() {
+    // Mock the noise mechanism so that it does not add any noise. The stub is lenient because
+    // tests that don't release any window don't use it.
+    lenient()
+        .when(noise.addNoise(anyLong(), anyInt(), anyLong(), anyDouble(), anyDouble()))
+        .thenAnswer(invocation -> invocation.getArguments()[0]);
+  }
+
+  @Test
+  public void tumblingWindows_releasesCountPerWindow() {
+    WindowedCount count = getWindowedCountBuilderWithFields().windowSizeMillis(10).build();
+
+    count.increment(0);
+    count.increment(3);
+    count.increment(9);
+    count.increment(12);
+    count.finish(20);
+
+    assertThat(windows).hasSize(2);
+    assertWindow(windows.get(0), 0, 10, 3);
+    assertWindow(windows.get(1), 10, 20, 1);
+  }
+
+  @Test
+  public void tumblingWindows_closeWhenWatermarkPassesEnd() {
+    WindowedCount count = getWindowedCountBuilderWithFields().windowSizeMillis(10).build();
+
+    count.increment(1);
+    count.increment(9);
+    count.advanceWatermark(9);
+    assertThat(windows).isEmpty();
+
+    count.advanceWatermark(10);
+    assertThat(windows).hasSize(1);
+    assertWindow(windows.get(0), 0, 10, 2);
+  }
+
+  @Test
+  public void entries_doNotAdvanceWatermark() {
+    WindowedCount count = getWindowedCountBuilderWithFields().windowSizeMillis(10).build();
+
+    count.increment(1);
+    count.increment(15);
+
+    assertThat(windows).isEmpty();
+  }
+
+  @Test
+  public void tumblingWindows_releasesEmptyWindows() {
+    WindowedCount count = getWindowedCountBuilderWithFields().windowSizeMillis(10).build();
+
+    count.increment(5);
+    count.advanceWatermark(30);
+    count.increment(35);
+    count.finish(40);
+
+    assertThat(windows).hasSize(4);
+    assertWindow(windows.get(0), 0, 10, 1);
+    assertWindow(windows.get(1), 10, 20, 0);
+    assertWindow(windows.get(2), 20, 30, 0);
+    assertWindow(windows.get(3), 30, 40, 1);
+  }
+
+  @Test
+  public void slidingWindows_releasesCountPerWindow() {
+    WindowedCount count =
+        getWindowedCountBuilderWithFields().windowSizeMillis(10).slideMillis(5).build();
+
+    count.increment(2);
+    count.increment(7);
+    count.increment(8);
+    count.increment(12);
+    count.finish(20);
+
+    // The first window starts at startMillis.
+    assertThat(windows).hasSize(3);
+    assertWindow(windows.get(0), 0, 10, 3);
+    assertWindow(windows.get(1), 5, 15, 3);
+    assertWindow(windows.get(2), 10, 20, 1);
+  }
+
+  @Test
+  public void slidingWindows_noiseAccountsForOverlappingWindows() {
+    WindowedCount count =
+        getWindowedCountBuilderWithFields()
+            .windowSizeMillis(30)
+            .slideMillis(10)
+            .maxPartitionsContributed(2)
+            .build();
+
+    count.increment(0);
+    count.finish(30);
+
+    verify(noise, atLeastOnce())
+        .addNoise(anyLong(), eq(/* l0Sensitivity= */ 6), eq(1L), eq(EPSILON), eq(DELTA));
+  }
+
+  @Test
+  public void incrementBy_nonPositive_ignored() {
+    WindowedCount count = getWindowedCountBuilderWithFields().windowSizeMillis(10).build();
+
+    count.incrementBy(1, 2);
+    count.incrementBy(2, 0);
+    count.incrementBy(3, -5);
+    count.finish(10);
+
+    assertThat(windows).hasSize(1);
+    assertWindow(windows.get(0), 0, 10, 2);
+  }
+
+  @Test
+  public void lateEntries_withinAllowedLateness_counted() {
+    WindowedCount count =
+        getWindowedCountBuilderWithFields().windowSizeMillis(10).allowedLatenessMillis(5).build();
+
+    count.increment(6);
+    count.increment(14);
+    count.advanceWatermark(14);
+    assertThat(windows).isEmpty();
+    assertThat(count.increment(9)).isTrue();
+
+    count.advanceWatermark(15);
+    assertThat(windows).hasSize(1);
+    assertWindow(windows.get(0), 0, 10, 2);
+  }
+
+  @Test
+  public void lateEntries_afterWindowClosed_dropped() {
+    WindowedCount count =
+        getWindowedCountBuilderWithFields().windowSizeMillis(10).allowedLatenessMillis(5).build();
+
+    count.increment(6);
+    count.increment(15);
+    count.advanceWatermark(15);
+    assertThat(count.increment(9)).isFalse();
+    count.finish(20);
+
+    assertThat(windows).hasSize(2);
+    assertWindow(windows.get(0), 0, 10, 1);
+    assertWindow(windows.get(1), 10, 20, 1);
+  }
+
+  @Test
+  public void entriesBeforeStart_dropped() {
+    // The first window starts at the first multiple of the slide at or after startMillis.
+    WindowedCount count =
+        getWindowedCountBuilderWithFields().windowSizeMillis(10).startMillis(15).build();
+
+    assertThat(count.increment(5)).isFalse();
+    assertThat(count.increment(17)).isFalse();
+    assertThat(count.increment(21)).isTrue();
+    count.finish(30);
+
+    assertThat(windows).hasSize(1);
+    assertWindow(windows.get(0), 20, 30, 1);
+  }
+
+  @Test
+  public void entriesFarAheadOfWatermark_dropped() {
+    WindowedCount count = getWindowedCountBuilderWithFields().windowSizeMillis(10).build();
+    count.advanceWatermark(20);
+
+    // The ring buffer covers at least the pane of the watermark and the pane after it.
+    assertThat(count.increment(25)).isTrue();
+    assertThat(count.increment(35)).isTrue();
+    assertThat(count.increment(1_000)).isFalse();
+    count.finish(40);
+
+    assertThat(windows).hasSize(4);
+    assertWindow(windows.get(2), 20, 30, 1);
+    assertWindow(windows.get(3), 30, 40, 1);
+  }
+
+  @Test
+  public void advanceWatermark_closesWindowsWithoutEntries() {
+    WindowedCount count = getWindowedCountBuilderWithFields().windowSizeMillis(10).build();
+
+    count.increment(1);
+    count.advanceWatermark(25);
+
+    assertThat(windows).hasSize(2);
+    assertWindow(windows.get(0), 0, 10, 1);
+    assertWindow(windows.get(1), 10, 20, 0);
+  }
+
+  @Test
+  public void advanceWatermark_noEntries_releasesEmptyWindows() {
+    WindowedCount count = getWindowedCountBuilderWithFields().windowSizeMillis(10).build();
+
+    count.advanceWatermark(25);
+    count.finish(30);
+
+    assertThat(windows).hasSize(3);
+    assertWindow(windows.get(0), 0, 10, 0);
+    assertWindow(windows.get(1), 10, 20, 0);
+    assertWindow(windows.get(2), 20, 30, 0);
+  }
+
+  @Test
+  public void advanceWatermark_largeJump_throwsExceptionAndClosesNothing() {
+    WindowedCount count = getWindowedCountBuilderWithFields().windowSizeMillis(10).build();
+    count.increment(1);
+
+    assertThrows(IllegalArgumentException.class, () -> count.advanceWatermark(Long.MAX_VALUE));
+    assertThrows(
+        IllegalArgumentException.class,
+        () -> count.advanceWatermark(10 * (WindowedAggregation.MAX_WINDOWS_PER_ADVANCE + 1)));
+    assertThrows(IllegalArgumentException.class, () -> count.finish(Long.MAX_VALUE));
+    assertThat(windows).isEmpty();
+
+    // The aggregation is still usable, and the rejected watermarks did not close any window.
+    count.advanceWatermark(10);
+    count.finish(20);
+    assertThat(windows).hasSize(2);
+    assertWindow(windows.get(0), 0, 10, 1);
+    assertWindow(windows.get(1), 10, 20, 0);
+  }
+
+  @Test
+  public void advanceWatermark_largestAllowedJump_closesAllWindows() {
+    // The mocked noise would record the invocations of all windows.
+    long[] numWindowsAndLastEnd = new long[2];
+    WindowedCount count =
+        getWindowedCountBuilderWithFields()
+            .noise(new LaplaceNoise())
+            .delta(null)
+            .windowSizeMillis(10)
+            .listener(
+                (start, end, noisedCount) -> {
+                  numWindowsAndLastEnd[0]++;
+                  numWindowsAndLastEnd[1] = end;
+                })
+            .build();
+
+    // E.g., a partition that was idle for a long time.
+    long watermark = 10 * WindowedAggregation.MAX_WINDOWS_PER_ADVANCE;
+    count.advanceWatermark(watermark);
+
+    assertThat(numWindowsAndLastEnd)
+        .isEqualTo(new long[] {WindowedAggregation.MAX_WINDOWS_PER_ADVANCE, watermark});
+  }
+
+  @Test
+  public void neighbouringStreams_releaseSameWindows() {
+    List<Long> timestamps = new ArrayList<>(Arrays.asList(14L, 22L, 23L, 47L, 61L));
+    List<List<Long>> boundaries = getWindowBoundaries(timestamps);
+
+    // An entry before, between or after all other entries, including entries that are dropped.
+    for (long extraTimestamp : new long[] {-100L, 0L, 30L, 99L, 150L, 10_000L}) {
+      List<Long> neighbour = new ArrayList<>(timestamps);
+      neighbour.add(extraTimestamp);
+      Collections.sort(neighbour);
+
+      assertThat(getWindowBoundaries(neighbour)).containsExactlyElementsIn(boundaries).inOrder();
+    }
+    assertThat(boundaries).hasSize(17);
+  }
+
+  @Test
+  public void manyWindows_reuseRingBuffer() {
+    WindowedCount count =
+        getWindowedCountBuilderWithFields()
+            .windowSizeMillis(40)
+            .slideMillis(10)
+            .allowedLatenessMillis(25)
+            .build();
+
+    for (long t = 0; t < 10_000; t++) {
+      count.advanceWatermark(t);
+      assertThat(count.increment(t)).isTrue();
+    }
+    count.finish(10_000);
+
+    // Every window lies completely within [0, 10000) and contains 40 entries.
+    assertThat(windows).hasSize(997);
+    for (long[] window : windows) {
+      assertThat(window[2]).isEqualTo(40);
+    }
+    assertThat(windows.get(windows.size() - 1)[0]).isEqualTo(9_960);
+  }
+
+  @Test
+  public void negativeTimestamps_assignedToWindows() {
+    WindowedCount count =
+        getWindowedCountBuilderWithFields().windowSizeMillis(10).startMillis(-20).build();
+
+    count.increment(-15);
+    count.increment(-1);
+    count.finish(0);
+
+    assertThat(windows).hasSize(2);
+    assertWindow(windows.get(0), -20, -10, 1);
+    assertWindow(windows.get(1), -10, 0, 1);
+  }
+
+  @Test
+  public void increment_afterFinish_throwsException() {
+    WindowedCount count = getWindowedCountBuilderWithFields().windowSizeMillis(10).build();
+    count.finish(0);
+
+    assertThrows(IllegalStateException.class, () -> count.increment(0));
+    assertThrows(IllegalStateException.class, () -> count.advanceWatermark(0));
+    assertThrows(IllegalStateException.class, () -> count.finish(0));
+  }
+
+  @Test
+  public void build_slideDoesNotDivideWindowSize_throwsException() {
+    assertThrows(
+        IllegalArgumentException.class,
+        () -> getWindowedCountBuilderWithFields().windowSizeMillis(10).slideMillis(3).build());
+  }
+
+  @Test
+  public void build_nonPositiveWindowSize_throwsException() {
+    assertThrows(
+        IllegalArgumentException.class,
+        () -> getWindowedCountBuilderWithFields().windowSizeMillis(0).slideMillis(1).build());
+  }
+
+  @Test
+  public void build_negativeAllowedLateness_throwsException() {
+    assertThrows(
+        IllegalArgumentException.class,
+        () ->
+            getWindowedCountBuilderWithFields()
+                .windowSizeMillis(10)
+                .allowedLatenessMillis(-1)
+                .build());
+  }
+
+  @Test
+  public void build_l0SensitivityOverflows_throwsException() {
+    assertThrows(
+        IllegalArgumentException.class,
+        () ->
+            getWindowedCountBuilderWithFields()
+                .windowSizeMillis(1_000_000)
+                .slideMillis(1)
+                .maxPartitionsContributed(1_000_000)
+                .build());
+  }
+
+  @Test
+  public void build_invalidEpsilon_throwsException() {
+    assertThrows(
+        IllegalArgumentException.class,
+        () -> getWindowedCountBuilderWithFields().windowSizeMillis(10).epsilon(-1).build());
+  }
+
+  @Test
+  public void build_missingWindowSize_throwsException() {
+    assertThrows(IllegalStateException.class, () -> getWindowedCountBuilderWithFields().build());
+  }
+
+  @Test
+  public void build_missingStartMillis_throwsException() {
+    assertThrows(
+        IllegalStateException.class,
+        () ->
+            WindowedCount.builder()
+                .epsilon(EPSILON)
+                .noise(noise)
+                .maxPartitionsContributed(1)
+                .windowSizeMillis(10)
+                .listener((start, end, count) -> {})
+                .build());
+  }
+
+  @Test
+  public void build_firstWindowEndOverflows_throwsException() {
+    assertThrows(
+        IllegalArgumentException.class,
+        () ->
+            getWindowedCountBuilderWithFields()
+                .windowSizeMillis(10)
+                .startMillis(Long.MAX_VALUE - 15)
+                .build());
+  }
+
+  private static void assertWindow(long[] window, long start, long end, long count) {
+    assertThat(window).isEqualTo(new long[] {start, end, count});
+  }
+
+  /**
+   * Returns the boundaries of the windows released for the given entries, with the watermark
+   * advanced every 25ms of event time and the stream finished at 100.
+   */
+  private List<List<Long>> getWindowBoundaries(List<Long> timestamps) {
+    List<List<Long>> boundaries = new ArrayList<>();
+    WindowedCount count =
+        getWindowedCountBuilderWithFields()
+            .windowSizeMillis(20)
+            .slideMillis(5)
+            .allowedLatenessMillis(5)
+            .listener((start, end, noisedCount) -> boundaries.add(Arrays.asList(start, end)))
+            .build();
+    long watermark = 0;
+    for (long timestamp : timestamps) {
+      while (watermark + 25 <= Math.min(timestamp, 100)) {
+        watermark += 25;
+        count.advanceWatermark(watermark);
+      }
+      count.increment(timestamp);
+    }
+    count.finish(100);
+    return boundaries;
+  }
+
+  private WindowedCount.Params.Builder getWindowedCountBuilderWithFields() {
+    return WindowedCount.builder()
+        .epsilon(EPSILON)
+        .delta(DELTA)
+        .noise(noise)
+        .maxPartitionsContributed(1)
+        .startMillis(0)
+        .listener((start, end, count) -> windows.add(new long[] {start, end, count}));
+  }
+}
@@ -27,11 +27,14 @@ import com.google.privacy.differentialprivacy.BoundedMean;
 import com.google.privacy.differentialprivacy.GaussianNoise;
 import com.google.privacy.differentialprivacy.LaplaceNoise;
 import com.google.privacy.differentialprivacy.Noise;
+import com.google.privacy.differentialprivacy.testing.SampleHistogram;
 import com.google.privacy.differentialprivacy.testing.StatisticalTestsUtil;
 import com.google.privacy.differentialprivacy.testing.VotingUtil;
 import com.google.protobuf.TextFormat;
 import java.io.IOException;
 import java.io.InputStreamReader;
+import java.util.List;
+import java.util.function.DoubleSupplier;
 import java.util.function.Supplier;
 import org.junit.Test;
 import org.junit.runner.RunWith;
@@ -63,15 +66,15 @@ public final class BoundedMeanDpTest {
     BoundedMeanSamplingParameters samplingParameters = testCase.getBoundedMeanSamplingParameters();
     DpTestParameters dpTestParameters = testCase.getDpTestParameters();
 
-    Noise noise;
+    Supplier<Noise> noiseFactory;
     Double delta;
     switch (samplingParameters.getNoiseType()) {
       case LAPLACE:
-        noise = new LaplaceNoise();
+        noiseFactory = LaplaceNoise::new;
         delta = null;
         break;
       case GAUSSIAN:
-        noise = new GaussianNoise();
+        noiseFactory = GaussianNoise::new;
         delta = samplingParameters.getDelta();
         break;
       default:
@@ -79,39 +82,28 @@ public final class BoundedMeanDpTest {
             "Noise type " + samplingParameters.getNoiseType() + " is not supported");
     }
 
-    BoundedMean.Params.Builder boundedMeanBuilder =
-        BoundedMean.builder()
-            .epsilon(samplingParameters.getEpsilon())
-            .delta(delta)
-            .maxPartitionsContributed(samplingParameters.getMaxPartitionsContributed())
-            .maxContributionsPerPartition(samplingParameters.getMaxContributionsPerPartition())
-            .lower(samplingParameters.getLowerBound())
-            .upper(samplingParameters.getUpperBound())
-            .noise(noise);
-
-    Supplier<Double> boundedMeanGenerator =
-        () -> {
-          BoundedMean boundedMean = boundedMeanBuilder.build();
-          for (double entry : samplingParameters.getRawEntryList()) {
-            boundedMean.addEntry(entry);
-          }
-          return boundedMean.computeResult();
-        };
-    Supplier<Double> neighbourBoundedMeanGenerator =
-        () -> {
-          BoundedMean boundedMean = boundedMeanBuilder.build();
-          for (double entry : samplingParameters.getNeighbourRawEntryList()) {
-            boundedMean.addEntry(entry);
-          }
-          return boundedMean.computeResult();
-        };
+    // Every chunk of samples is drawn with its own noise, i.e., its own source of randomness.
+    Supplier<DoubleSupplier> boundedMeanGeneratorFactory =
+        () ->
+            newBoundedMeanGenerator(
+                samplingParameters,
+                samplingParameters.getRawEntryList(),
+                noiseFactory.get(),
+                delta);
+    Supplier<DoubleSupplier> neighbourBoundedMeanGeneratorFactory =
+        () ->
+            newBoundedMeanGenerator(
+                samplingParameters,
+                samplingParameters.getNeighbourRawEntryList(),
+                noiseFactory.get(),
+                delta);
 
     assertThat(
-            VotingUtil.runBallot(
+            VotingUtil.runParallelBallot(
                 () ->
                     generateVote(
-                        boundedMeanGenerator,
-                        neighbourBoundedMeanGenerator,
+                        boundedMeanGeneratorFactory,
+                        neighbourBoundedMeanGeneratorFactory,
                         samplingParameters.getNumberOfSamples(),
                         dpTestParameters.getEpsilon(),
                         dpTestParameters.getDelta(),
@@ -142,21 +134,53 @@ public final class BoundedMeanDpTest {
     return testCaseCollectionBuilder.build();
   }
 
+  private static DoubleSupplier newBoundedMeanGenerator(
+      BoundedMeanSamplingParameters samplingParameters,
+      List<Double> rawEntries,
+      Noise noise,
+      Double delta) {
+    BoundedMean.Params boundedMeanParams =
+        BoundedMean.builder()
+            .epsilon(samplingParameters.getEpsilon())
+            .delta(delta)
+            .maxPartitionsContributed(samplingParameters.getMaxPartitionsContributed())
+            .maxContributionsPerPartition(samplingParameters.getMaxContributionsPerPartition())
+            .lower(samplingParameters.getLowerBound())
+            .upper(samplingParameters.getUpperBound())
+            .noise(noise)
+            .buildParams();
+    return () -> {
+      BoundedMean boundedMean = boundedMeanParams.newInstance();
+      for (double entry : rawEntries) {
+        boundedMean.addEntry(entry);
+      }
+      return boundedMean.computeResult();
+    };
+  }
+
   private static boolean generateVote(
-      Supplier<Double> sampleGeneratorA,
-      Supplier<Double> sampleGeneratorB,
+      Supplier<DoubleSupplier> sampleGeneratorFactoryA,
+      Supplier<DoubleSupplier> sampleGeneratorFactoryB,
       int numberOfSamples,
       double epsilon,
       double delta,
       double l2Tolerance,
       double granularity) {
-    Double[] samplesA = new Double[numberOfSamples];
-    Double[] samplesB = new Double[numberOfSamples];
-    for (int i = 0; i < numberOfSamples; i++) {
-      samplesA[i] = StatisticalTestsUtil.discretize(sampleGeneratorA.get(), granularity);
-      samplesB[i] = StatisticalTestsUtil.discretize(sampleGeneratorB.get(), granularity);
-    }
+    SampleHistogram histogramA =
+        StatisticalTestsUtil.generateDoubleHistogram(
+            discretized(sampleGeneratorFactoryA, granularity), numberOfSamples);
+    SampleHistogram histogramB =
+        StatisticalTestsUtil.generateDoubleHistogram(
+            discretized(sampleGeneratorFactoryB, granularity), numberOfSamples);
     return StatisticalTestsUtil.verifyApproximateDp(
-        samplesA, samplesB, epsilon, delta, l2Tolerance);
+        histogramA, histogramB, epsilon, delta, l2Tolerance);
+  }
+
+  private static Supplier<DoubleSupplier> discretized(
+      Supplier<DoubleSupplier> sampleGeneratorFactory, double granularity) {
+    return () -> {
+      DoubleSupplier sampleGenerator = sampleGeneratorFactory.get();
+      return () -> StatisticalTestsUtil.discretize(sampleGenerator.getAsDouble(), granularity);
+    };
   }
 }
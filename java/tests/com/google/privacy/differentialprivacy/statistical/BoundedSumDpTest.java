@@ -27,11 +27,14 @@ import com.google.privacy.differentialprivacy.BoundedSum;
 import com.google.privacy.differentialprivacy.GaussianNoise;
 import com.google.privacy.differentialprivacy.LaplaceNoise;
 import com.google.privacy.differentialprivacy.Noise;
+import com.google.privacy.differentialprivacy.testing.SampleHistogram;
 import com.google.privacy.differentialprivacy.testing.StatisticalTestsUtil;
 import com.google.privacy.differentialprivacy.testing.VotingUtil;
 import com.google.protobuf.TextFormat;
 import java.io.IOException;
 import java.io.InputStreamReader;
+import java.util.List;
+import java.util.function.DoubleSupplier;
 import java.util.function.Supplier;
 import org.junit.Test;
 import org.junit.runner.RunWith;
@@ -60,15 +63,15 @@ public final class BoundedSumDpTest {
     BoundedSumSamplingParameters samplingParameters = testCase.getBoundedSumSamplingParameters();
     DpTestParameters dpTestParameters = testCase.getDpTestParameters();
 
-    Noise noise;
+    Supplier<Noise> noiseFactory;
     Double delta;
     switch (samplingParameters.getNoiseType()) {
       case LAPLACE:
-        noise = new LaplaceNoise();
+        noiseFactory = LaplaceNoise::new;
         delta = null;
         break;
       case GAUSSIAN:
-        noise = new GaussianNoise();
+        noiseFactory = GaussianNoise::new;
         delta = samplingParameters.getDelta();
         break;
       default:
@@ -76,38 +79,28 @@ public final class BoundedSumDpTest {
             "Noise type " + samplingParameters.getNoiseType() + " is not supported");
     }
 
-    BoundedSum.Params.Builder boundedSumBuilder =
-        BoundedSum.builder()
-            .epsilon(samplingParameters.getEpsilon())
-            .delta(delta)
-            .maxPartitionsContributed(samplingParameters.getMaxPartitionsContributed())
-            .lower(samplingParameters.getLowerBound())
-            .upper(samplingParameters.getUpperBound())
-            .noise(noise);
-
-    Supplier<Double> boundedSumGenerator =
-        () -> {
-          BoundedSum boundedSum = boundedSumBuilder.build();
-          for (double entry : samplingParameters.getRawEntryList()) {
-            boundedSum.addEntry(entry);
-          }
-          return boundedSum.computeResult();
-        };
-    Supplier<Double> neighbourBoundedSumGenerator =
-        () -> {
-          BoundedSum boundedSum = boundedSumBuilder.build();
-          for (double entry : samplingParameters.getNeighbourRawEntryList()) {
-            boundedSum.addEntry(entry);
-          }
-          return boundedSum.computeResult();
-        };
+    // Every chunk of samples is drawn with its own noise, i.e., its own source of randomness.
+    Supplier<DoubleSupplier> boundedSumGeneratorFactory =
+        () ->
+            newBoundedSumGenerator(
+                samplingParameters,
+                samplingParameters.getRawEntryList(),
+                noiseFactory.get(),
+                delta);
+    Supplier<DoubleSupplier> neighbourBoundedSumGeneratorFactory =
+        () ->
+            newBoundedSumGenerator(
+                samplingParameters,
+                samplingParameters.getNeighbourRawEntryList(),
+                noiseFactory.get(),
+                delta);
 
     assertThat(
-            VotingUtil.runBallot(
+            VotingUtil.runParallelBallot(
                 () ->
                     generateVote(
-                        boundedSumGenerator,
-                        neighbourBoundedSumGenerator,
+                        boundedSumGeneratorFactory,
+                        neighbourBoundedSumGeneratorFactory,
                         samplingParameters.getNumberOfSamples(),
                         dpTestParameters.getEpsilon(),
                         dpTestParameters.getDelta(),
@@ -137,21 +130,52 @@ public final class BoundedSumDpTest {
     return testCaseCollectionBuilder.build();
   }
 
+  private static DoubleSupplier newBoundedSumGenerator(
+      BoundedSumSamplingParameters samplingParameters,
+      List<Double> rawEntries,
+      Noise noise,
+      Double delta) {
+    BoundedSum.Params boundedSumParams =
+        BoundedSum.builder()
+            .epsilon(samplingParameters.getEpsilon())
+            .delta(delta)
+            .maxPartitionsContributed(samplingParameters.getMaxPartitionsContributed())
+            .lower(samplingParameters.getLowerBound())
+            .upper(samplingParameters.getUpperBound())
+            .noise(noise)
+            .buildParams();
+    return () -> {
+      BoundedSum boundedSum = boundedSumParams.newInstance();
+      for (double entry : rawEntries) {
+        boundedSum.addEntry(entry);
+      }
+      return boundedSum.computeResult();
+    };
+  }
+
   private static boolean generateVote(
-      Supplier<Double> sampleGeneratorA,
-      Supplier<Double> sampleGeneratorB,
+      Supplier<DoubleSupplier> sampleGeneratorFactoryA,
+      Supplier<DoubleSupplier> sampleGeneratorFactoryB,
       int numberOfSamples,
       double epsilon,
       double delta,
       double l2Tolerance,
       double granularity) {
-    Double[] samplesA = new Double[numberOfSamples];
-    Double[] samplesB = new Double[numberOfSamples];
-    for (int i = 0; i < numberOfSamples; i++) {
-      samplesA[i] = StatisticalTestsUtil.discretize(sampleGeneratorA.get(), granularity);
-      samplesB[i] = StatisticalTestsUtil.discretize(sampleGeneratorB.get(), granularity);
-    }
+    SampleHistogram histogramA =
+        StatisticalTestsUtil.generateDoubleHistogram(
+            discretized(sampleGeneratorFactoryA, granularity), numberOfSamples);
+    SampleHistogram histogramB =
+        StatisticalTestsUtil.generateDoubleHistogram(
+            discretized(sampleGeneratorFactoryB, granularity), numberOfSamples);
     return StatisticalTestsUtil.verifyApproximateDp(
-        samplesA, samplesB, epsilon, delta, l2Tolerance);
+        histogramA, histogramB, epsilon, delta, l2Tolerance);
+  }
+
+  private static Supplier<DoubleSupplier> discretized(
+      Supplier<DoubleSupplier> sampleGeneratorFactory, double granularity) {
+    return () -> {
+      DoubleSupplier sampleGenerator = sampleGeneratorFactory.get();
+      return () -> StatisticalTestsUtil.discretize(sampleGenerator.getAsDouble(), granularity);
+    };
   }
 }
@@ -27,11 +27,14 @@ import com.google.privacy.differentialprivacy.Count;
 import com.google.privacy.differentialprivacy.GaussianNoise;
 import com.google.privacy.differentialprivacy.LaplaceNoise;
 import com.google.privacy.differentialprivacy.Noise;
+import com.google.privacy.differentialprivacy.testing.SampleHistogram;
 import com.google.privacy.differentialprivacy.testing.StatisticalTestsUtil;
 import com.google.privacy.differentialprivacy.testing.VotingUtil;
 import com.google.protobuf.TextFormat;
 import java.io.IOException;
 import java.io.InputStreamReader;
+import java.util.List;
+import java.util.function.LongSupplier;
 import java.util.function.Supplier;
 import org.junit.Test;
 import org.junit.runner.RunWith;
@@ -60,15 +63,15 @@ public final class CountDpTest {
     CountSamplingParameters samplingParameters = testCase.getCountSamplingParameters();
     DpTestParameters dpTestParameters = testCase.getDpTestParameters();
 
-    Noise noise;
+    Supplier<Noise> noiseFactory;
     Double delta;
     switch (samplingParameters.getNoiseType()) {
       case LAPLACE:
-        noise = new LaplaceNoise();
+        noiseFactory = LaplaceNoise::new;
         delta = null;
         break;
       case GAUSSIAN:
-        noise = new GaussianNoise();
+        noiseFactory = GaussianNoise::new;
         delta = samplingParameters.getDelta();
         break;
       default:
@@ -76,36 +79,28 @@ public final class CountDpTest {
             "Noise type " + samplingParameters.getNoiseType() + " is not supported");
     }
 
-    Count.Params.Builder countBuilder =
-        Count.builder()
-            .epsilon(samplingParameters.getEpsilon())
-            .delta(delta)
-            .maxPartitionsContributed(samplingParameters.getMaxPartitionsContributed())
-            .noise(noise);
-
-    Supplier<Long> countGenerator =
-        () -> {
-          Count count = countBuilder.build();
-          for (long increment : samplingParameters.getRawIncrementByList()) {
-            count.incrementBy((int) increment);
-          }
-          return count.computeResult();
-        };
-    Supplier<Long> neighbourCountGenerator =
-        () -> {
-          Count count = countBuilder.build();
-          for (long increment : samplingParameters.getNeighbourRawIncrementByList()) {
-            count.incrementBy((int) increment);
-          }
-          return count.computeResult();
-        };
+    // Every chunk of samples is drawn with its own noise, i.e., its own source of randomness.
+    Supplier<LongSupplier> countGeneratorFactory =
+        () ->
+            newCountGenerator(
+                samplingParameters,
+                samplingParameters.getRawIncrementByList(),
+                noiseFactory.get(),
+                delta);
+    Supplier<LongSupplier> neighbourCountGeneratorFactory =
+        () ->
+            newCountGenerator(
+                samplingParameters,
+                samplingParameters.getNeighbourRawIncrementByList(),
+                noiseFactory.get(),
+                delta);
 
     assertThat(
-            VotingUtil.runBallot(
+            VotingUtil.runParallelBallot(
                 () ->
                     generateVote(
-                        countGenerator,
-                        neighbourCountGenerator,
+                        countGeneratorFactory,
+                        neighbourCountGeneratorFactory,
                         samplingParameters.getNumberOfSamples(),
                         dpTestParameters.getEpsilon(),
                         dpTestParameters.getDelta(),
@@ -134,20 +129,39 @@ public final class CountDpTest {
     return testCaseCollectionBuilder.build();
   }
 
+  private static LongSupplier newCountGenerator(
+      CountSamplingParameters samplingParameters,
+      List<Long> rawIncrements,
+      Noise noise,
+      Double delta) {
+    Count.Params countParams =
+        Count.builder()
+            .epsilon(samplingParameters.getEpsilon())
+            .delta(delta)
+            .maxPartitionsContributed(samplingParameters.getMaxPartitionsContributed())
+            .noise(noise)
+            .buildParams();
+    return () -> {
+      Count count = countParams.newInstance();
+      for (long increment : rawIncrements) {
+        count.incrementBy((int) increment);
+      }
+      return count.computeResult();
+    };
+  }
+
   private static boolean generateVote(
-      Supplier<Long> sampleGeneratorA,
-      Supplier<Long> sampleGeneratorB,
+      Supplier<LongSupplier> sampleGeneratorFactoryA,
+      Supplier<LongSupplier> sampleGeneratorFactoryB,
       int numberOfSamples,
       double epsilon,
       double delta,
       double l2Tolerance) {
-    Long[] samplesA = new Long[numberOfSamples];
-    Long[] samplesB = new Long[numberOfSamples];
-    for (int i = 0; i < numberOfSamples; i++) {
-      samplesA[i] = sampleGeneratorA.get();
-      samplesB[i] = sampleGeneratorB.get();
-    }
+    SampleHistogram histogramA =
+        StatisticalTestsUtil.generateLongHistogram(sampleGeneratorFactoryA, numberOfSamples);
+    SampleHistogram histogramB =
+        StatisticalTestsUtil.generateLongHistogram(sampleGeneratorFactoryB, numberOfSamples);
     return StatisticalTestsUtil.verifyApproximateDp(
-        samplesA, samplesB, epsilon, delta, l2Tolerance);
+        histogramA, histogramB, epsilon, delta, l2Tolerance);
   }
 }
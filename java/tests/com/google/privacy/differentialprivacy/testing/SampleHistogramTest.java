@@ -0,0 +1,93 @@
+//
+// Copyright 2020 Google LLC
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//      http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+//
+
+package com.google.privacy.differentialprivacy.testing;
+
+import static com.google.common.truth.Truth.assertThat;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+/** Tests the counting of samples by {@link SampleHistogram}. */
+@RunWith(JUnit4.class)
+public class SampleHistogramTest {
+  @Test
+  public void add_countsLongSamples() {
+    SampleHistogram histogram = new SampleHistogram();
+    histogram.add(3L);
+    histogram.add(-1L);
+    histogram.add(3L);
+
+    assertThat(histogram.getNumberOfSamples()).isEqualTo(3);
+    assertThat(histogram.getNumberOfDistinctSamples()).isEqualTo(2);
+    assertThat(histogram.getCount(3L)).isEqualTo(2);
+    assertThat(histogram.getCount(-1L)).isEqualTo(1);
+    assertThat(histogram.getCount(0L)).isEqualTo(0);
+  }
+
+  @Test
+  public void add_countsDoubleSamplesLikeBoxedDoubles() {
+    SampleHistogram histogram = new SampleHistogram();
+    histogram.add(0.0);
+    histogram.add(-0.0);
+    histogram.add(Double.NaN);
+    histogram.add(0.0 / 0.0);
+
+    // Like Double objects, -0.0 and 0.0 are distinct samples whereas NaNs are equal.
+    assertThat(histogram.getNumberOfDistinctSamples()).isEqualTo(3);
+    assertThat(histogram.getCount(0.0)).isEqualTo(1);
+    assertThat(histogram.getCount(-0.0)).isEqualTo(1);
+    assertThat(histogram.getCount(Double.NaN)).isEqualTo(2);
+  }
+
+  @Test
+  public void add_manyDistinctSamples_keepsAllCounts() {
+    SampleHistogram histogram = new SampleHistogram();
+    for (long sample = 0; sample < 100000; sample++) {
+      histogram.add(sample * 1024);
+      histogram.add(sample * 1024);
+    }
+
+    assertThat(histogram.getNumberOfSamples()).isEqualTo(200000);
+    assertThat(histogram.getNumberOfDistinctSamples()).isEqualTo(100000);
+    for (long sample = 0; sample < 100000; sample++) {
+      assertThat(histogram.getCount(sample * 1024)).isEqualTo(2);
+    }
+    assertThat(histogram.getDistinctSamples()).hasLength(100000);
+  }
+
+  @Test
+  public void addAll_addsCountsOfOtherHistogram() {
+    SampleHistogram histogram = new SampleHistogram();
+    histogram.add(1L);
+    histogram.add(2L);
+    SampleHistogram other = new SampleHistogram();
+    other.add(2L);
+    other.add(2L);
+    other.add(5L);
+
+    histogram.addAll(other);
+
+    assertThat(histogram.getNumberOfSamples()).isEqualTo(5);
+    assertThat(histogram.getNumberOfDistinctSamples()).isEqualTo(3);
+    assertThat(histogram.getCount(1L)).isEqualTo(1);
+    assertThat(histogram.getCount(2L)).isEqualTo(3);
+    assertThat(histogram.getCount(5L)).isEqualTo(1);
+    // The other histogram is unchanged.
+    assertThat(other.getNumberOfSamples()).isEqualTo(3);
+  }
+}
@@ -19,6 +19,10 @@ package com.google.privacy.differentialprivacy.testing;
 import static com.google.common.truth.Truth.assertThat;
 import static org.junit.Assert.assertThrows;
 
+import java.util.Arrays;
+import java.util.Random;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
 import org.junit.Test;
 import org.junit.runner.RunWith;
 import org.junit.runners.JUnit4;
@@ -316,6 +320,158 @@ public class StatisticalTestsUtilTest {
                 DEFAULT_DELTA_TOLERANCE));
   }
 
+  @Test
+  public void primitiveSamples_agreeWithBoxedSamples() {
+    Random random = new Random(42);
+    for (int run = 0; run < 100; run++) {
+      int numberOfSamples = 1 + random.nextInt(10000);
+      // Also covers histograms with many distinct values.
+      int supportSize = run % 2 == 0 ? 20 : 5000;
+      long[] samplesA = new long[numberOfSamples];
+      long[] samplesB = new long[numberOfSamples];
+      for (int i = 0; i < numberOfSamples; i++) {
+        samplesA[i] = random.nextInt(supportSize) - supportSize / 2;
+        samplesB[i] = random.nextInt(supportSize) - supportSize / 3;
+      }
+      Long[] boxedSamplesA = Arrays.stream(samplesA).boxed().toArray(Long[]::new);
+      Long[] boxedSamplesB = Arrays.stream(samplesB).boxed().toArray(Long[]::new);
+      double l2Tolerance = 0.01 + 0.98 * random.nextDouble();
+      double deltaTolerance = 0.01 + 0.98 * random.nextDouble();
+
+      assertThat(StatisticalTestsUtil.verifyCloseness(samplesA, samplesB, l2Tolerance))
+          .isEqualTo(
+              StatisticalTestsUtil.verifyCloseness(boxedSamplesA, boxedSamplesB, l2Tolerance));
+      assertThat(
+              StatisticalTestsUtil.verifyApproximateDp(
+                  samplesA, samplesB, DEFAULT_EPSILON, DEFAULT_DELTA, deltaTolerance))
+          .isEqualTo(
+              StatisticalTestsUtil.verifyApproximateDp(
+                  boxedSamplesA, boxedSamplesB, DEFAULT_EPSILON, DEFAULT_DELTA, deltaTolerance));
+    }
+  }
+
+  @Test
+  public void primitiveSamples_sameAsBoxedTestCases() {
+    double[] samplesA = Arrays.stream(SAMPLES_A).mapToDouble(Double::doubleValue).toArray();
+    double[] samplesB = Arrays.stream(SAMPLES_B).mapToDouble(Double::doubleValue).toArray();
+
+    assertThat(StatisticalTestsUtil.verifyCloseness(samplesA, samplesA, LOW_L2_TOLERANCE)).isTrue();
+    assertThat(StatisticalTestsUtil.verifyCloseness(samplesA, samplesB, DEFAULT_L2_TOLERANCE))
+        .isFalse();
+    assertThat(StatisticalTestsUtil.verifyCloseness(samplesA, samplesB, HIGH_L2_TOLERANCE))
+        .isTrue();
+    assertThat(
+            StatisticalTestsUtil.verifyApproximateDp(
+                samplesA, samplesA, DEFAULT_EPSILON, DEFAULT_DELTA, LOW_DELTA_TOLERANCE))
+        .isTrue();
+    assertThat(
+            StatisticalTestsUtil.verifyApproximateDp(
+                samplesA, samplesB, DEFAULT_EPSILON, DEFAULT_DELTA, DEFAULT_DELTA_TOLERANCE))
+        .isFalse();
+    assertThat(
+            StatisticalTestsUtil.verifyApproximateDp(
+                samplesA, samplesB, DEFAULT_EPSILON, DEFAULT_DELTA, HIGH_DELTA_TOLERANCE))
+        .isTrue();
+  }
+
+  @Test
+  public void primitiveSamples_doesNotModifySamples() {
+    long[] samples = new long[] {3, 1, 2, 1};
+
+    StatisticalTestsUtil.verifyCloseness(samples, samples, DEFAULT_L2_TOLERANCE);
+    StatisticalTestsUtil.verifyApproximateDp(
+        samples, samples, DEFAULT_EPSILON, DEFAULT_DELTA, DEFAULT_DELTA_TOLERANCE);
+
+    assertThat(samples).asList().containsExactly(3L, 1L, 2L, 1L).inOrder();
+  }
+
+  @Test
+  public void primitiveDoubleSamples_compareLikeBoxedDoubles() {
+    // Like Double objects, -0.0 and 0.0 are distinct samples whereas NaNs are equal.
+    double[] samplesA = new double[] {0.0, 0.0, Double.NaN, Double.NaN};
+    double[] samplesB = new double[] {-0.0, -0.0, Double.NaN, Double.NaN};
+
+    assertThat(StatisticalTestsUtil.verifyCloseness(samplesA, samplesB, HIGH_L2_TOLERANCE))
+        .isEqualTo(
+            StatisticalTestsUtil.verifyCloseness(
+                new Double[] {0.0, 0.0, Double.NaN, Double.NaN},
+                new Double[] {-0.0, -0.0, Double.NaN, Double.NaN},
+                HIGH_L2_TOLERANCE));
+    assertThat(
+            StatisticalTestsUtil.verifyApproximateDp(
+                samplesA, samplesA, DEFAULT_EPSILON, DEFAULT_DELTA, LOW_DELTA_TOLERANCE))
+        .isTrue();
+    assertThat(
+            StatisticalTestsUtil.verifyApproximateDp(
+                samplesA, samplesB, DEFAULT_EPSILON, DEFAULT_DELTA, DEFAULT_DELTA_TOLERANCE))
+        .isFalse();
+  }
+
+  @Test
+  public void histograms_agreeWithSamples() {
+    Random random = new Random(42);
+    for (int run = 0; run < 20; run++) {
+      int numberOfSamples = 1 + random.nextInt(10000);
+      long[] samplesA = new long[numberOfSamples];
+      long[] samplesB = new long[numberOfSamples];
+      SampleHistogram histogramA = new SampleHistogram();
+      SampleHistogram histogramB = new SampleHistogram();
+      for (int i = 0; i < numberOfSamples; i++) {
+        samplesA[i] = random.nextInt(20) - 10;
+        samplesB[i] = random.nextInt(20) - 8;
+        histogramA.add(samplesA[i]);
+        histogramB.add(samplesB[i]);
+      }
+      double l2Tolerance = 0.01 + 0.98 * random.nextDouble();
+      double deltaTolerance = 0.01 + 0.98 * random.nextDouble();
+
+      assertThat(StatisticalTestsUtil.verifyCloseness(histogramA, histogramB, l2Tolerance))
+          .isEqualTo(StatisticalTestsUtil.verifyCloseness(samplesA, samplesB, l2Tolerance));
+      assertThat(
+              StatisticalTestsUtil.verifyApproximateDp(
+                  histogramA, histogramB, DEFAULT_EPSILON, DEFAULT_DELTA, deltaTolerance))
+          .isEqualTo(
+              StatisticalTestsUtil.verifyApproximateDp(
+                  samplesA, samplesB, DEFAULT_EPSILON, DEFAULT_DELTA, deltaTolerance));
+    }
+  }
+
+  @Test
+  public void histograms_mismatchingNumberOfSamples_throwsError() {
+    SampleHistogram histogramA = new SampleHistogram();
+    histogramA.add(1L);
+    histogramA.add(2L);
+    SampleHistogram histogramB = new SampleHistogram();
+    histogramB.add(1L);
+
+    assertThrows(
+        IllegalArgumentException.class,
+        () -> StatisticalTestsUtil.verifyCloseness(histogramA, histogramB, DEFAULT_L2_TOLERANCE));
+    assertThrows(
+        IllegalArgumentException.class,
+        () ->
+            StatisticalTestsUtil.verifyApproximateDp(
+                histogramA, histogramB, DEFAULT_EPSILON, DEFAULT_DELTA, DEFAULT_DELTA_TOLERANCE));
+  }
+
+  @Test
+  public void primitiveSamples_mismatchingNumberOfSamples_throwsError() {
+    assertThrows(
+        IllegalArgumentException.class,
+        () ->
+            StatisticalTestsUtil.verifyCloseness(
+                new long[] {1, 2}, new long[] {1}, DEFAULT_L2_TOLERANCE));
+    assertThrows(
+        IllegalArgumentException.class,
+        () ->
+            StatisticalTestsUtil.verifyApproximateDp(
+                new double[] {},
+                new double[] {},
+                DEFAULT_EPSILON,
+                DEFAULT_DELTA,
+                DEFAULT_DELTA_TOLERANCE));
+  }
+
   @Test
   public void discretize_binaryGranularity() {
     assertThat(StatisticalTestsUtil.discretize(36.4621596072, Math.pow(2.0, -10.0)))
@@ -363,4 +519,78 @@ public class StatisticalTestsUtilTest {
     assertThrows(
         IllegalArgumentException.class, () -> StatisticalTestsUtil.discretize(36.4621596072, -1.0));
   }
+
+  @Test
+  public void generateSamples_returnsRequestedNumberOfSamples() {
+    Long[] samples = StatisticalTestsUtil.generateSamples(() -> () -> 1L, 1001, Long[]::new);
+
+    assertThat(samples).hasLength(1001);
+    assertThat(samples).asList().containsNoneOf(null, 0L);
+  }
+
+  @Test
+  public void generateSamples_drawsEachChunkFromNewGenerator() {
+    AtomicInteger numberOfGenerators = new AtomicInteger();
+    Supplier<Supplier<Integer>> generatorFactory =
+        () -> {
+          int generator = numberOfGenerators.incrementAndGet();
+          return () -> generator;
+        };
+
+    Integer[] samples =
+        StatisticalTestsUtil.generateSamples(generatorFactory, 10000, Integer[]::new);
+
+    // Every generator draws a contiguous chunk of samples.
+    int numberOfChunks = 1;
+    for (int i = 1; i < samples.length; i++) {
+      if (!samples[i].equals(samples[i - 1])) {
+        numberOfChunks++;
+      }
+    }
+    assertThat(numberOfChunks).isEqualTo(numberOfGenerators.get());
+  }
+
+  @Test
+  public void generateSamples_fewerSamplesThanChunks_generatesEachSampleOnce() {
+    AtomicInteger numberOfSamples = new AtomicInteger();
+
+    Integer[] samples =
+        StatisticalTestsUtil.generateSamples(
+            () -> numberOfSamples::incrementAndGet, 1, Integer[]::new);
+
+    assertThat(samples).asList().containsExactly(1);
+    assertThat(numberOfSamples.get()).isEqualTo(1);
+  }
+
+  @Test
+  public void generateLongHistogram_countsAllSamples() {
+    AtomicInteger numberOfGenerators = new AtomicInteger();
+    SampleHistogram histogram =
+        StatisticalTestsUtil.generateLongHistogram(
+            () -> {
+              long generator = numberOfGenerators.incrementAndGet();
+              return () -> generator;
+            },
+            10001);
+
+    assertThat(histogram.getNumberOfSamples()).isEqualTo(10001);
+    // Every generator counts one chunk of samples.
+    assertThat(histogram.getNumberOfDistinctSamples()).isEqualTo(numberOfGenerators.get());
+  }
+
+  @Test
+  public void generateDoubleHistogram_countsAllSamples() {
+    SampleHistogram histogram =
+        StatisticalTestsUtil.generateDoubleHistogram(() -> () -> 0.5, 1000);
+
+    assertThat(histogram.getNumberOfSamples()).isEqualTo(1000);
+    assertThat(histogram.getCount(0.5)).isEqualTo(1000);
+  }
+
+  @Test
+  public void generateSamples_numberOfSamplesNotPositive_throwsException() {
+    assertThrows(
+        IllegalArgumentException.class,
+        () -> StatisticalTestsUtil.generateSamples(() -> () -> 1L, 0, Long[]::new));
+  }
 }
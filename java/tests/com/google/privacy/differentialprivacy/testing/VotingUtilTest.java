@@ -0,0 +1,106 @@
+//
+// Copyright 2020 Google LLC
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//      http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+//
+
+package com.google.privacy.differentialprivacy.testing;
+
+import static com.google.common.truth.Truth.assertThat;
+import static org.junit.Assert.assertThrows;
+
+import java.util.concurrent.atomic.AtomicInteger;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+/** Tests the ballots of {@link VotingUtil}. */
+@RunWith(JUnit4.class)
+public class VotingUtilTest {
+  private static final int NUMBER_OF_VOTES = 7;
+
+  @Test
+  public void runBallot_stopsOnceMajorityIsReached() {
+    AtomicInteger castVotes = new AtomicInteger();
+
+    assertThat(VotingUtil.runBallot(() -> castVotes.incrementAndGet() > 0, NUMBER_OF_VOTES))
+        .isTrue();
+    assertThat(castVotes.get()).isEqualTo(4);
+  }
+
+  @Test
+  public void runParallelBallot_allVotesAccept_castsOnlyMajority() {
+    AtomicInteger castVotes = new AtomicInteger();
+
+    assertThat(
+            VotingUtil.runParallelBallot(
+                () -> castVotes.incrementAndGet() > 0, NUMBER_OF_VOTES, /* parallelism= */ 8))
+        .isTrue();
+    assertThat(castVotes.get()).isEqualTo(4);
+  }
+
+  @Test
+  public void runParallelBallot_allVotesReject_castsOnlyMajority() {
+    AtomicInteger castVotes = new AtomicInteger();
+
+    assertThat(
+            VotingUtil.runParallelBallot(
+                () -> castVotes.incrementAndGet() < 0, NUMBER_OF_VOTES, /* parallelism= */ 8))
+        .isFalse();
+    assertThat(castVotes.get()).isEqualTo(4);
+  }
+
+  @Test
+  public void runParallelBallot_alternatingVotes_neverCastsMoreThanNumberOfVotes() {
+    AtomicInteger castVotes = new AtomicInteger();
+
+    // Whatever the order in which the votes complete, 4 of the 7 votes accept.
+    assertThat(
+            VotingUtil.runParallelBallot(
+                () -> castVotes.incrementAndGet() % 2 == 1, NUMBER_OF_VOTES, /* parallelism= */ 8))
+        .isTrue();
+    assertThat(castVotes.get()).isAtMost(NUMBER_OF_VOTES);
+  }
+
+  @Test
+  public void runParallelBallot_singleThread_castsVotesLikeRunBallot() {
+    AtomicInteger castVotes = new AtomicInteger();
+
+    assertThat(
+            VotingUtil.runParallelBallot(
+                () -> castVotes.incrementAndGet() % 2 == 0, NUMBER_OF_VOTES, /* parallelism= */ 1))
+        .isFalse();
+    assertThat(castVotes.get()).isEqualTo(NUMBER_OF_VOTES);
+  }
+
+  @Test
+  public void runParallelBallot_voteThrows_rethrowsException() {
+    IllegalStateException exception =
+        assertThrows(
+            IllegalStateException.class,
+            () ->
+                VotingUtil.runParallelBallot(
+                    () -> {
+                      throw new IllegalStateException("broken vote");
+                    },
+                    NUMBER_OF_VOTES));
+    assertThat(exception).hasMessageThat().isEqualTo("broken vote");
+  }
+
+  @Test
+  public void runParallelBallot_parallelismNotPositive_throwsException() {
+    assertThrows(
+        IllegalArgumentException.class,
+        () -> VotingUtil.runParallelBallot(() -> true, NUMBER_OF_VOTES, /* parallelism= */ 0));
+  }
+}